@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.shuffle.celeborn;
+
+import java.io.IOException;
+
+import org.apache.spark.memory.MemoryConsumer;
+import org.apache.spark.memory.MemoryMode;
+import org.apache.spark.memory.TaskMemoryManager;
+
+/**
+ * Accounts the send buffers of a hash-based shuffle writer in the TaskMemoryManager, so that the
+ * writer gives its buffers up, and continues sort-based, when they grow beyond a threshold or the
+ * task runs short of execution memory.
+ */
+public class SendBufferMemoryConsumer extends MemoryConsumer {
+
+  /** Pushes the buffered data of the writer and drops its buffers. */
+  public interface BufferSpiller {
+    void spillBuffers() throws IOException;
+  }
+
+  private final long threshold;
+  private final BufferSpiller spiller;
+
+  public SendBufferMemoryConsumer(
+      TaskMemoryManager memoryManager, long threshold, BufferSpiller spiller) {
+    super(memoryManager, memoryManager.pageSizeBytes(), MemoryMode.ON_HEAP);
+    this.threshold = threshold;
+    this.spiller = spiller;
+  }
+
+  /** Returns false if the buffers may not grow by the bytes, nothing is acquired then. */
+  public boolean tryAcquire(long bytes) {
+    if (bytes == 0) {
+      return true;
+    }
+    if (getUsed() + bytes > threshold) {
+      return false;
+    }
+    long granted = acquireMemory(bytes);
+    if (granted < bytes) {
+      freeMemory(granted);
+      return false;
+    }
+    return true;
+  }
+
+  public void releaseAll() {
+    if (getUsed() > 0) {
+      freeMemory(getUsed());
+    }
+  }
+
+  public long getUsed() {
+    return super.getUsed();
+  }
+
+  @Override
+  public long spill(long size, MemoryConsumer trigger) throws IOException {
+    // the writer spills on its own when its acquisition falls short
+    if (trigger == this || getUsed() == 0) {
+      return 0;
+    }
+    long used = getUsed();
+    spiller.spillBuffers();
+    releaseAll();
+    return used;
+  }
+}
@@ -19,9 +19,13 @@ package org.apache.spark.shuffle.celeborn;
 
 import java.io.IOException;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.spark.memory.MemoryConsumer;
 import org.apache.spark.memory.SparkOutOfMemoryError;
 import org.apache.spark.memory.TaskMemoryManager;
@@ -35,7 +39,9 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.celeborn.client.ShuffleClient;
 import org.apache.celeborn.client.write.DataPusher;
+import org.apache.celeborn.client.write.PushTask;
 import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.util.ThreadUtils;
 import org.apache.celeborn.common.util.Utils;
 
 public class SortBasedPusher extends MemoryConsumer {
@@ -51,6 +57,13 @@ public class SortBasedPusher extends MemoryConsumer {
   private final DataPusher dataPusher;
   private final int pushBufferMaxSize;
   private final long pushSortMemoryThreshold;
+  private final boolean sortPipelineEnabled;
+  // the records handed to the background thread, which are freed by the task thread once pushed
+  private ExecutorService drainer = null;
+  private Future<Void> draining = null;
+  private ShuffleInMemorySorter drainingSorter = null;
+  private LinkedList<MemoryBlock> drainingPages = null;
+  private long drainingBytes = 0;
   final int uaoSize = UnsafeAlignedOffset.getUaoSize();
 
   String appId;
@@ -112,19 +125,96 @@ public class SortBasedPusher extends MemoryConsumer {
 
     pushBufferMaxSize = conf.pushBufferMaxSize();
     pushSortMemoryThreshold = conf.pushSortMemoryThreshold();
+    sortPipelineEnabled = conf.pushSortPipelineEnabled();
 
     inMemSorter = new ShuffleInMemorySorter(this, 4 * 1024 * 1024);
   }
 
   /**
+   * Pushes the records inserted so far, after the records handed to the background thread before.
+   *
    * @return bytes of memory freed
    * @throws IOException
    */
   public long pushData() throws IOException {
-    final ShuffleInMemorySorter.ShuffleSorterIterator sortedRecords =
-        inMemSorter.getSortedIterator();
+    long freedBytes = finishDraining();
+    if (inMemSorter != null) {
+      pushSortedRecords(inMemSorter);
+      freedBytes += freeMemory();
+      inMemSorter.freeMemory();
+    }
+    return freedBytes;
+  }
+
+  /**
+   * Hands the records inserted so far to the background thread and continues with new pages and a
+   * new pointer array, the records handed over before must have been pushed by then.
+   */
+  private void pushDataAsync() throws IOException {
+    finishDraining();
+    final ShuffleInMemorySorter sorter = inMemSorter;
+    drainingSorter = sorter;
+    drainingPages = new LinkedList<>(allocatedPages);
+    drainingBytes = getUsed();
+    allocatedPages.clear();
+    currentPage = null;
+    pageCursor = 0;
+    inMemSorter = null;
+    if (drainer == null) {
+      // the thread ends when idle, also if the task fails without closing the pusher
+      drainer = ThreadUtils.newDaemonCachedThreadPool("SortBasedPusher-" + taskAttemptId, 1, 60);
+    }
+    draining =
+        drainer.submit(
+            () -> {
+              pushSortedRecords(sorter);
+              return null;
+            });
+    // could trigger spilling, which waits for the records just handed over
+    inMemSorter = new ShuffleInMemorySorter(this, 4 * 1024 * 1024);
+  }
 
-    byte[] dataBuf = new byte[pushBufferMaxSize];
+  /**
+   * Waits until the background thread has pushed the records handed to it, and frees their memory.
+   * The memory is freed by the task thread as the accounting of MemoryConsumer is not thread-safe.
+   *
+   * @return bytes of memory freed
+   */
+  private long finishDraining() throws IOException {
+    if (draining == null) {
+      return 0;
+    }
+    long freedBytes = 0;
+    try {
+      Uninterruptibles.getUninterruptibly(draining);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      for (MemoryBlock block : drainingPages) {
+        freedBytes += block.size();
+        freePage(block);
+      }
+      freedBytes += drainingSorter.getMemoryUsage();
+      drainingSorter.freeMemory();
+      drainingPages = null;
+      drainingSorter = null;
+      drainingBytes = 0;
+      draining = null;
+    }
+    return freedBytes;
+  }
+
+  /**
+   * Sorts the records by partition and copies them from the pages into the buffers of idle push
+   * tasks. Full buffers are pushed by the DataPusher, the rest of each partition is merged.
+   */
+  private void pushSortedRecords(ShuffleInMemorySorter sorter) throws IOException {
+    final ShuffleInMemorySorter.ShuffleSorterIterator sortedRecords = sorter.getSortedIterator();
+
+    PushTask task = null;
     int offSet = 0;
     int currentPartition = -1;
     while (sortedRecords.hasNext()) {
@@ -142,7 +232,7 @@ public class SortBasedPusher extends MemoryConsumer {
                   mapId,
                   attemptNumber,
                   currentPartition,
-                  dataBuf,
+                  task.getBuffer(),
                   0,
                   offSet,
                   numMappers,
@@ -158,30 +248,34 @@ public class SortBasedPusher extends MemoryConsumer {
       final long recordOffsetInPage = taskMemoryManager.getOffsetInPage(recordPointer);
       int recordSize = UnsafeAlignedOffset.getSize(recordPage, recordOffsetInPage);
 
-      if (offSet + recordSize > dataBuf.length) {
-        dataPusher.addTask(partition, dataBuf, offSet);
+      if (task == null) {
+        task = dataPusher.takeIdleTask();
+      } else if (offSet + recordSize > task.getBuffer().length) {
+        dataPusher.submitTask(task, partition, offSet);
+        task = dataPusher.takeIdleTask();
         offSet = 0;
       }
 
       long recordReadPosition = recordOffsetInPage + uaoSize;
       Platform.copyMemory(
-          recordPage, recordReadPosition, dataBuf, Platform.BYTE_ARRAY_OFFSET + offSet, recordSize);
+          recordPage,
+          recordReadPosition,
+          task.getBuffer(),
+          Platform.BYTE_ARRAY_OFFSET + offSet,
+          recordSize);
       offSet += recordSize;
     }
     if (offSet > 0) {
-      dataPusher.addTask(currentPartition, dataBuf, offSet);
+      dataPusher.submitTask(task, currentPartition, offSet);
     }
-
-    long freedBytes = freeMemory();
-    inMemSorter.freeMemory();
-    return freedBytes;
   }
 
   public void insertRecord(
       Object recordBase, long recordOffset, int recordSize, int partitionId, boolean copySize)
       throws IOException {
 
-    if (getUsed() > pushSortMemoryThreshold
+    if (getUsed() - drainingBytes > pushSortMemoryThreshold
+        && currentPage != null
         && pageCursor + Utils.byteStringAsBytes("8k")
             > currentPage.getBaseOffset() + currentPage.size()) {
       logger.info(
@@ -189,7 +283,11 @@ public class SortBasedPusher extends MemoryConsumer {
               + getUsed()
               + ", currentPage size: "
               + currentPage.size());
-      pushData();
+      if (sortPipelineEnabled) {
+        pushDataAsync();
+      } else {
+        pushData();
+      }
     }
 
     final int uaoSize = UnsafeAlignedOffset.getUaoSize();
@@ -337,6 +435,15 @@ public class SortBasedPusher extends MemoryConsumer {
   }
 
   public void cleanupResources() {
+    try {
+      finishDraining();
+    } catch (IOException e) {
+      logger.warn("Push of sorted records failed.", e);
+    }
+    if (drainer != null) {
+      drainer.shutdown();
+      drainer = null;
+    }
     freeMemory();
     if (inMemSorter != null) {
       inMemSorter.freeMemory();
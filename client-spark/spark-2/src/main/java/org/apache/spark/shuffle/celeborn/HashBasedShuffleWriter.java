@@ -18,6 +18,7 @@
 package org.apache.spark.shuffle.celeborn;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nullable;
@@ -94,8 +95,15 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
    */
   private volatile boolean stopping = false;
 
+  private final CelebornConf conf;
+
   private final DataPusher dataPusher;
 
+  private final SendBufferMemoryConsumer sendBufferMemory;
+  // set once the send buffers are given up, the records are then pushed by sortBasedPusher
+  private boolean sortBased = false;
+  private SortBasedPusher sortBasedPusher;
+
   // In order to facilitate the writing of unit test code, ShuffleClient needs to be passed in as
   // parameters. By the way, simplify the passed parameters.
   public HashBasedShuffleWriter(
@@ -118,6 +126,7 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     this.numPartitions = dep.partitioner().numPartitions();
 
     this.rssShuffleClient = client;
+    this.conf = conf;
 
     serBuffer = new OpenByteArrayOutputStream(DEFAULT_INITIAL_SER_BUFFER_SIZE);
     serOutputStream = serializer.serializeStream(serBuffer);
@@ -139,6 +148,20 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       sendBuffers = new byte[numPartitions][];
     }
     sendOffsets = new int[numPartitions];
+    sendBufferMemory =
+        new SendBufferMemoryConsumer(
+            taskContext.taskMemoryManager(),
+            conf.pushHashMemoryThreshold(),
+            this::spillSendBuffers);
+    long pooledBytes = 0;
+    for (byte[] buffer : sendBuffers) {
+      if (buffer != null) {
+        pooledBytes += buffer.length;
+      }
+    }
+    if (!sendBufferMemory.tryAcquire(pooledBytes)) {
+      Arrays.fill(sendBuffers, null);
+    }
 
     dataPusher =
         new DataPusher(
@@ -205,16 +228,22 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
             rowSize);
         pushGiantRecord(partitionId, giantBuffer, serializedRecordSize);
       } else {
-        int offset = getOrUpdateOffset(partitionId, serializedRecordSize);
-        byte[] buffer = getOrCreateBuffer(partitionId);
-        Platform.putInt(buffer, Platform.BYTE_ARRAY_OFFSET + offset, Integer.reverseBytes(rowSize));
-        Platform.copyMemory(
-            row.getBaseObject(),
-            row.getBaseOffset(),
-            buffer,
-            Platform.BYTE_ARRAY_OFFSET + offset + 4,
-            rowSize);
-        sendOffsets[partitionId] = offset + serializedRecordSize;
+        int offset = sortBased ? -1 : getOrUpdateOffset(partitionId, serializedRecordSize);
+        if (offset < 0) {
+          getSortBasedPusher()
+              .insertRecord(row.getBaseObject(), row.getBaseOffset(), rowSize, partitionId, true);
+        } else {
+          byte[] buffer = getOrCreateBuffer(partitionId);
+          Platform.putInt(
+              buffer, Platform.BYTE_ARRAY_OFFSET + offset, Integer.reverseBytes(rowSize));
+          Platform.copyMemory(
+              row.getBaseObject(),
+              row.getBaseOffset(),
+              buffer,
+              Platform.BYTE_ARRAY_OFFSET + offset + 4,
+              rowSize);
+          sendOffsets[partitionId] = offset + serializedRecordSize;
+        }
       }
       tmpRecords[partitionId] += 1;
     }
@@ -238,18 +267,32 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       if (serializedRecordSize > PUSH_BUFFER_MAX_SIZE) {
         pushGiantRecord(partitionId, serBuffer.getBuf(), serializedRecordSize);
       } else {
-        int offset = getOrUpdateOffset(partitionId, serializedRecordSize);
-        byte[] buffer = getOrCreateBuffer(partitionId);
-        System.arraycopy(serBuffer.getBuf(), 0, buffer, offset, serializedRecordSize);
-        sendOffsets[partitionId] = offset + serializedRecordSize;
+        int offset = sortBased ? -1 : getOrUpdateOffset(partitionId, serializedRecordSize);
+        if (offset < 0) {
+          getSortBasedPusher()
+              .insertRecord(
+                  serBuffer.getBuf(),
+                  Platform.BYTE_ARRAY_OFFSET,
+                  serializedRecordSize,
+                  partitionId,
+                  false);
+        } else {
+          byte[] buffer = getOrCreateBuffer(partitionId);
+          System.arraycopy(serBuffer.getBuf(), 0, buffer, offset, serializedRecordSize);
+          sendOffsets[partitionId] = offset + serializedRecordSize;
+        }
       }
       tmpRecords[partitionId] += 1;
     }
   }
 
-  private byte[] getOrCreateBuffer(int partitionId) {
+  /** Returns null if the buffers were given up instead. */
+  private byte[] getOrCreateBuffer(int partitionId) throws IOException {
     byte[] buffer = sendBuffers[partitionId];
     if (buffer == null) {
+      if (!reserveSendBuffer(PUSH_BUFFER_INIT_SIZE)) {
+        return null;
+      }
       buffer = new byte[PUSH_BUFFER_INIT_SIZE];
       sendBuffers[partitionId] = buffer;
       peakMemoryUsedBytes += PUSH_BUFFER_INIT_SIZE;
@@ -277,13 +320,21 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
   }
 
+  /** Returns -1 if the buffers were given up, the record has to be pushed sort-based then. */
   private int getOrUpdateOffset(int partitionId, int serializedRecordSize) throws IOException {
     int offset = sendOffsets[partitionId];
     byte[] buffer = getOrCreateBuffer(partitionId);
+    if (buffer == null) {
+      return -1;
+    }
     while ((buffer.length - offset) < serializedRecordSize
         && buffer.length < PUSH_BUFFER_MAX_SIZE) {
 
-      byte[] newBuffer = new byte[Math.min(buffer.length * 2, PUSH_BUFFER_MAX_SIZE)];
+      int newSize = Math.min(buffer.length * 2, PUSH_BUFFER_MAX_SIZE);
+      if (!reserveSendBuffer(newSize - buffer.length)) {
+        return -1;
+      }
+      byte[] newBuffer = new byte[newSize];
       peakMemoryUsedBytes += newBuffer.length - buffer.length;
       System.arraycopy(buffer, 0, newBuffer, 0, offset);
       sendBuffers[partitionId] = newBuffer;
@@ -305,9 +356,77 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
   }
 
+  /** Gives the send buffers up if they may not grow by the bytes. */
+  private boolean reserveSendBuffer(int bytes) throws IOException {
+    if (sendBufferMemory.tryAcquire(bytes)) {
+      return true;
+    }
+    spillSendBuffers();
+    sendBufferMemory.releaseAll();
+    return false;
+  }
+
+  /**
+   * Merges the buffered data to push it with the following merged data, and continues sort-based,
+   * which keeps the records in memory of the TaskMemoryManager and pushes them when it runs short.
+   */
+  private void spillSendBuffers() throws IOException {
+    logger.info(
+        "Send buffers of map {} use {} bytes, continue sort-based.",
+        mapId,
+        sendBufferMemory.getUsed());
+    long pushStartTime = System.nanoTime();
+    for (int i = 0; i < numPartitions; i++) {
+      if (sendOffsets[i] > 0) {
+        int bytesWritten =
+            rssShuffleClient.mergeData(
+                appId,
+                shuffleId,
+                mapId,
+                taskContext.attemptNumber(),
+                i,
+                sendBuffers[i],
+                0,
+                sendOffsets[i],
+                numMappers,
+                numPartitions);
+        mapStatusLengths[i].add(bytesWritten);
+        writeMetrics.incBytesWritten(bytesWritten);
+        sendOffsets[i] = 0;
+      }
+      sendBuffers[i] = null;
+    }
+    sortBased = true;
+    writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
+  }
+
+  private SortBasedPusher getSortBasedPusher() throws IOException {
+    if (sortBasedPusher == null) {
+      sortBasedPusher =
+          new SortBasedPusher(
+              taskContext.taskMemoryManager(),
+              rssShuffleClient,
+              appId,
+              shuffleId,
+              mapId,
+              taskContext.attemptNumber(),
+              taskContext.taskAttemptId(),
+              numMappers,
+              numPartitions,
+              conf,
+              writeMetrics::incBytesWritten,
+              mapStatusLengths);
+    }
+    return sortBasedPusher;
+  }
+
   private void close() throws IOException {
     // here we wait for all the in-flight batches to return which sent by dataPusher thread
     dataPusher.waitOnTermination();
+    if (sortBasedPusher != null) {
+      sortBasedPusher.pushData();
+      sortBasedPusher.close();
+    }
     rssShuffleClient.prepareForMergeData(shuffleId, mapId, taskContext.attemptNumber());
 
     // merge and push residual data to reduce network traffic
@@ -339,6 +458,7 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     updateMapStatus();
 
     sendBufferPool.returnBuffer(sendBuffers);
+    sendBufferMemory.releaseAll();
     sendBuffers = null;
     sendOffsets = null;
 
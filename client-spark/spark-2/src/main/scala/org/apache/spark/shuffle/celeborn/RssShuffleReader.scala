@@ -57,6 +57,9 @@ class RssShuffleReader[K, C](
 
       override def incReadTime(time: Long): Unit =
         readMetrics.incFetchWaitTime(time)
+
+      override def incPeakFetchMemory(bytes: Long): Unit =
+        context.taskMetrics().incPeakExecutionMemory(bytes)
     }
 
     val recordIter = (startPartition until endPartition).iterator.map(partitionId => {
@@ -185,6 +185,26 @@ public class RssShuffleWriterSuiteJ {
     check(10000, conf, serializer, false);
   }
 
+  @Test
+  public void testSwitchToSortBased() throws Exception {
+    final KryoSerializer serializer = new KryoSerializer(sparkConf);
+    final CelebornConf conf =
+        new CelebornConf()
+            .set("celeborn.push.buffer.initial.size", "1k")
+            .set("celeborn.push.hashMemory.threshold", "4k");
+    check(100000, conf, serializer, true);
+  }
+
+  @Test
+  public void testSwitchToSortBasedWithFastWrite() throws Exception {
+    final UnsafeRowSerializer serializer = new UnsafeRowSerializer(2, null);
+    final CelebornConf conf =
+        new CelebornConf()
+            .set("celeborn.push.buffer.initial.size", "1k")
+            .set("celeborn.push.hashMemory.threshold", "4k");
+    check(100000, conf, serializer, true);
+  }
+
   @Test
   public void testGiantRecord() throws Exception {
     final KryoSerializer serializer = new KryoSerializer(sparkConf);
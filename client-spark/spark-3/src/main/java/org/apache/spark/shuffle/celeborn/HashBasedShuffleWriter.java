@@ -18,6 +18,7 @@
 package org.apache.spark.shuffle.celeborn;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nullable;
@@ -99,6 +100,11 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
 
   private final DataPusher dataPusher;
 
+  private final SendBufferMemoryConsumer sendBufferMemory;
+  // set once the send buffers are given up, the records are then pushed by sortBasedPusher
+  private boolean sortBased = false;
+  private SortBasedPusher sortBasedPusher;
+
   private StructType schema;
 
   private boolean isColumnarShuffle = false;
@@ -145,6 +151,20 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       sendBuffers = new byte[numPartitions][];
     }
     sendOffsets = new int[numPartitions];
+    sendBufferMemory =
+        new SendBufferMemoryConsumer(
+            taskContext.taskMemoryManager(),
+            conf.pushHashMemoryThreshold(),
+            this::spillSendBuffers);
+    long pooledBytes = 0;
+    for (byte[] buffer : sendBuffers) {
+      if (buffer != null) {
+        pooledBytes += buffer.length;
+      }
+    }
+    if (!sendBufferMemory.tryAcquire(pooledBytes)) {
+      Arrays.fill(sendBuffers, null);
+    }
 
     dataPusher =
         new DataPusher(
@@ -253,16 +273,22 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
             rowSize);
         pushGiantRecord(partitionId, giantBuffer, serializedRecordSize);
       } else {
-        int offset = getOrUpdateOffset(partitionId, serializedRecordSize);
-        byte[] buffer = getOrCreateBuffer(partitionId);
-        Platform.putInt(buffer, Platform.BYTE_ARRAY_OFFSET + offset, Integer.reverseBytes(rowSize));
-        Platform.copyMemory(
-            row.getBaseObject(),
-            row.getBaseOffset(),
-            buffer,
-            Platform.BYTE_ARRAY_OFFSET + offset + 4,
-            rowSize);
-        sendOffsets[partitionId] = offset + serializedRecordSize;
+        int offset = sortBased ? -1 : getOrUpdateOffset(partitionId, serializedRecordSize);
+        if (offset < 0) {
+          getSortBasedPusher()
+              .insertRecord(row.getBaseObject(), row.getBaseOffset(), rowSize, partitionId, true);
+        } else {
+          byte[] buffer = getOrCreateBuffer(partitionId);
+          Platform.putInt(
+              buffer, Platform.BYTE_ARRAY_OFFSET + offset, Integer.reverseBytes(rowSize));
+          Platform.copyMemory(
+              row.getBaseObject(),
+              row.getBaseOffset(),
+              buffer,
+              Platform.BYTE_ARRAY_OFFSET + offset + 4,
+              rowSize);
+          sendOffsets[partitionId] = offset + serializedRecordSize;
+        }
       }
       tmpRecords[partitionId] += 1;
     }
@@ -286,18 +312,32 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       if (serializedRecordSize > PUSH_BUFFER_MAX_SIZE) {
         pushGiantRecord(partitionId, serBuffer.getBuf(), serializedRecordSize);
       } else {
-        int offset = getOrUpdateOffset(partitionId, serializedRecordSize);
-        byte[] buffer = getOrCreateBuffer(partitionId);
-        System.arraycopy(serBuffer.getBuf(), 0, buffer, offset, serializedRecordSize);
-        sendOffsets[partitionId] = offset + serializedRecordSize;
+        int offset = sortBased ? -1 : getOrUpdateOffset(partitionId, serializedRecordSize);
+        if (offset < 0) {
+          getSortBasedPusher()
+              .insertRecord(
+                  serBuffer.getBuf(),
+                  Platform.BYTE_ARRAY_OFFSET,
+                  serializedRecordSize,
+                  partitionId,
+                  false);
+        } else {
+          byte[] buffer = getOrCreateBuffer(partitionId);
+          System.arraycopy(serBuffer.getBuf(), 0, buffer, offset, serializedRecordSize);
+          sendOffsets[partitionId] = offset + serializedRecordSize;
+        }
       }
       tmpRecords[partitionId] += 1;
     }
   }
 
-  private byte[] getOrCreateBuffer(int partitionId) {
+  /** Returns null if the buffers were given up instead. */
+  private byte[] getOrCreateBuffer(int partitionId) throws IOException {
     byte[] buffer = sendBuffers[partitionId];
     if (buffer == null) {
+      if (!reserveSendBuffer(PUSH_BUFFER_INIT_SIZE)) {
+        return null;
+      }
       buffer = new byte[PUSH_BUFFER_INIT_SIZE];
       sendBuffers[partitionId] = buffer;
       peakMemoryUsedBytes += PUSH_BUFFER_INIT_SIZE;
@@ -325,13 +365,21 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
   }
 
+  /** Returns -1 if the buffers were given up, the record has to be pushed sort-based then. */
   private int getOrUpdateOffset(int partitionId, int serializedRecordSize) throws IOException {
     int offset = sendOffsets[partitionId];
     byte[] buffer = getOrCreateBuffer(partitionId);
+    if (buffer == null) {
+      return -1;
+    }
     while ((buffer.length - offset) < serializedRecordSize
         && buffer.length < PUSH_BUFFER_MAX_SIZE) {
 
-      byte[] newBuffer = new byte[Math.min(buffer.length * 2, PUSH_BUFFER_MAX_SIZE)];
+      int newSize = Math.min(buffer.length * 2, PUSH_BUFFER_MAX_SIZE);
+      if (!reserveSendBuffer(newSize - buffer.length)) {
+        return -1;
+      }
+      byte[] newBuffer = new byte[newSize];
       peakMemoryUsedBytes += newBuffer.length - buffer.length;
       System.arraycopy(buffer, 0, newBuffer, 0, offset);
       sendBuffers[partitionId] = newBuffer;
@@ -353,6 +401,70 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
   }
 
+  /** Gives the send buffers up if they may not grow by the bytes. */
+  private boolean reserveSendBuffer(int bytes) throws IOException {
+    if (sendBufferMemory.tryAcquire(bytes)) {
+      return true;
+    }
+    spillSendBuffers();
+    sendBufferMemory.releaseAll();
+    return false;
+  }
+
+  /**
+   * Merges the buffered data to push it with the following merged data, and continues sort-based,
+   * which keeps the records in memory of the TaskMemoryManager and pushes them when it runs short.
+   */
+  private void spillSendBuffers() throws IOException {
+    logger.info(
+        "Send buffers of map {} use {} bytes, continue sort-based.",
+        mapId,
+        sendBufferMemory.getUsed());
+    long pushStartTime = System.nanoTime();
+    for (int i = 0; i < numPartitions; i++) {
+      if (sendOffsets[i] > 0) {
+        int bytesWritten =
+            rssShuffleClient.mergeData(
+                appId,
+                shuffleId,
+                mapId,
+                taskContext.attemptNumber(),
+                i,
+                sendBuffers[i],
+                0,
+                sendOffsets[i],
+                numMappers,
+                numPartitions);
+        mapStatusLengths[i].add(bytesWritten);
+        writeMetrics.incBytesWritten(bytesWritten);
+        sendOffsets[i] = 0;
+      }
+      sendBuffers[i] = null;
+    }
+    sortBased = true;
+    writeMetrics.incWriteTime(System.nanoTime() - pushStartTime);
+  }
+
+  private SortBasedPusher getSortBasedPusher() throws IOException {
+    if (sortBasedPusher == null) {
+      sortBasedPusher =
+          new SortBasedPusher(
+              taskContext.taskMemoryManager(),
+              rssShuffleClient,
+              appId,
+              shuffleId,
+              mapId,
+              taskContext.attemptNumber(),
+              taskContext.taskAttemptId(),
+              numMappers,
+              numPartitions,
+              conf,
+              writeMetrics::incBytesWritten,
+              mapStatusLengths);
+    }
+    return sortBasedPusher;
+  }
+
   private void closeColumnarWrite() throws IOException {
     SQLMetric dataSize = SparkUtils.getDataSize((UnsafeRowSerializer) dep.serializer());
     for (int i = 0; i < numPartitions; i++) {
@@ -408,6 +520,7 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       }
     }
     sendBufferPool.returnBuffer(sendBuffers);
+    sendBufferMemory.releaseAll();
     sendBuffers = null;
     sendOffsets = null;
   }
@@ -416,6 +529,10 @@ public class HashBasedShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     // here we wait for all the in-flight batches to return which sent by dataPusher thread
     long pushMergedDataTime = System.nanoTime();
     dataPusher.waitOnTermination();
+    if (sortBasedPusher != null) {
+      sortBasedPusher.pushData();
+      sortBasedPusher.close();
+    }
     rssShuffleClient.prepareForMergeData(shuffleId, mapId, taskContext.attemptNumber());
     if (isColumnarShuffle) {
       closeColumnarWrite();
@@ -74,6 +74,9 @@ class RssShuffleReader[K, C](
 
       override def incReadTime(time: Long): Unit =
         metrics.incFetchWaitTime(time)
+
+      override def incPeakFetchMemory(bytes: Long): Unit =
+        context.taskMetrics().incPeakExecutionMemory(bytes)
     }
 
     val recordIter = (startPartition until endPartition).iterator.map(partitionId => {
@@ -45,6 +45,8 @@ import org.apache.spark.SparkEnv;
 import org.apache.spark.TaskContext;
 import org.apache.spark.executor.ShuffleWriteMetrics;
 import org.apache.spark.executor.TaskMetrics;
+import org.apache.spark.memory.TaskMemoryManager;
+import org.apache.spark.memory.UnifiedMemoryManager;
 import org.apache.spark.scheduler.MapStatus;
 import org.apache.spark.serializer.KryoSerializer;
 import org.apache.spark.serializer.Serializer;
@@ -97,6 +99,9 @@ public class RssShuffleWriterSuiteJ {
   private final SparkConf sparkConf = new SparkConf(false);
   private final BlockManagerId bmId = BlockManagerId.apply("execId", "host", 1, None$.empty());
 
+  private final UnifiedMemoryManager memoryManager = UnifiedMemoryManager.apply(sparkConf, 1);
+  private final TaskMemoryManager taskMemoryManager = new TaskMemoryManager(memoryManager, 0);
+
   @Mock(answer = Answers.RETURNS_SMART_NULLS)
   private TaskContext taskContext = null;
 
@@ -134,6 +139,7 @@ public class RssShuffleWriterSuiteJ {
     Mockito.doReturn(shuffleId).when(dependency).shuffleId();
 
     Mockito.doReturn(metrics).when(taskContext).taskMetrics();
+    Mockito.doReturn(taskMemoryManager).when(taskContext).taskMemoryManager();
 
     Mockito.doReturn(bmId).when(blockManager).shuffleServerId();
     Mockito.doReturn(blockManager).when(env).blockManager();
@@ -169,6 +175,51 @@ public class RssShuffleWriterSuiteJ {
     check(10000, conf, serializer);
   }
 
+  @Test
+  public void testSwitchToSortBased() throws Exception {
+    final KryoSerializer serializer = new KryoSerializer(sparkConf);
+    final CelebornConf conf =
+        new CelebornConf()
+            .set("celeborn.push.buffer.initial.size", "1k")
+            .set("celeborn.push.hashMemory.threshold", "4k");
+    check(100000, conf, serializer);
+  }
+
+  @Test
+  public void testSwitchToSortBasedWithFastWrite() throws Exception {
+    final UnsafeRowSerializer serializer = new UnsafeRowSerializer(2, null);
+    final CelebornConf conf =
+        new CelebornConf()
+            .set("celeborn.push.buffer.initial.size", "1k")
+            .set("celeborn.push.hashMemory.threshold", "4k");
+    check(100000, conf, serializer);
+  }
+
+  @Test
+  public void testSortPipeline() throws Exception {
+    final KryoSerializer serializer = new KryoSerializer(sparkConf);
+    check(1 << 20, sortPipelineConf(), serializer);
+  }
+
+  @Test
+  public void testSortPipelineWithFastWrite() throws Exception {
+    final UnsafeRowSerializer serializer = new UnsafeRowSerializer(2, null);
+    check(1 << 20, sortPipelineConf(), serializer);
+  }
+
+  private CelebornConf sortPipelineConf() {
+    // small pages, so that the records are handed to the background thread many times
+    SparkConf smallPageConf = sparkConf.clone().set("spark.buffer.pageSize", "64k");
+    Mockito.doReturn(new TaskMemoryManager(UnifiedMemoryManager.apply(smallPageConf, 1), 0))
+        .when(taskContext)
+        .taskMemoryManager();
+    return new CelebornConf()
+        .set("celeborn.push.buffer.initial.size", "1k")
+        .set("celeborn.push.hashMemory.threshold", "4k")
+        .set("celeborn.push.sortMemory.threshold", "64k")
+        .set("celeborn.push.sortPipeline.enabled", "true");
+  }
+
   @Test
   public void testGiantRecord() throws Exception {
     final KryoSerializer serializer = new KryoSerializer(sparkConf);
@@ -21,23 +21,37 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import scala.concurrent.Future;
 import scala.reflect.ClassTag;
 import scala.reflect.ClassTag$;
+import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
+import scala.util.Try;
 
+import com.google.common.annotations.VisibleForTesting;
+
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.celeborn.client.compress.Compressor;
+import org.apache.celeborn.client.compress.ZstdDictionary;
+import org.apache.celeborn.client.read.FetchHedger;
+import org.apache.celeborn.client.read.FetchMemoryManager;
 import org.apache.celeborn.client.read.RssInputStream;
 import org.apache.celeborn.client.write.DataBatches;
+import org.apache.celeborn.client.write.PushAggregator;
+import org.apache.celeborn.client.write.PushCongestionControl;
 import org.apache.celeborn.client.write.PushState;
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.haclient.RssHARetryClient;
@@ -50,6 +64,7 @@ import org.apache.celeborn.common.network.client.TransportClientFactory;
 import org.apache.celeborn.common.network.protocol.PushData;
 import org.apache.celeborn.common.network.protocol.PushMergedData;
 import org.apache.celeborn.common.network.server.BaseMessageHandler;
+import org.apache.celeborn.common.network.util.NettyUtils;
 import org.apache.celeborn.common.network.util.TransportConf;
 import org.apache.celeborn.common.protocol.*;
 import org.apache.celeborn.common.protocol.message.ControlMessages.*;
@@ -57,7 +72,6 @@ import org.apache.celeborn.common.protocol.message.StatusCode;
 import org.apache.celeborn.common.rpc.RpcAddress;
 import org.apache.celeborn.common.rpc.RpcEndpointRef;
 import org.apache.celeborn.common.rpc.RpcEnv;
-import org.apache.celeborn.common.unsafe.Platform;
 import org.apache.celeborn.common.util.PbSerDeUtils;
 import org.apache.celeborn.common.util.ThreadUtils;
 import org.apache.celeborn.common.util.Utils;
@@ -69,6 +83,10 @@ public class ShuffleClientImpl extends ShuffleClient {
 
   private static final Random rand = new Random();
 
+  private static final int BATCH_HEADER_SIZE = 4 * 4;
+  // the batch header is read with Platform.getInt, in native byte order
+  private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
   private final CelebornConf conf;
 
   private final UserIdentifier userIdentifier;
@@ -76,7 +94,13 @@ public class ShuffleClientImpl extends ShuffleClient {
   private final int registerShuffleMaxRetries;
   private final long registerShuffleRetryWait;
   private final int maxInFlight;
+  // null if the requests in flight of each task are limited instead
+  private final PushCongestionControl congestionControl;
+  private final PushAggregator pushAggregator;
+  private final FetchMemoryManager fetchMemoryManager;
+  private final FetchHedger fetchHedger;
   private final int pushBufferMaxSize;
+  private final long lingerTimeMs;
 
   private final RpcEnv rpcEnv;
 
@@ -108,13 +132,21 @@ public class ShuffleClientImpl extends ShuffleClient {
         }
       };
 
+  // null if shuffles are compressed without trained dictionaries
+  private final Map<Integer, ZstdDictionary.Sampler> dictionarySamplers;
+  // key: shuffleId, the dictionary the LifecycleManager accepted for the shuffle
+  private final Map<Integer, ZstdDictionary> shuffleDictionaries = new ConcurrentHashMap<>();
+
   private static class ReduceFileGroups {
     final PartitionLocation[][] partitionGroups;
     final int[] mapAttempts;
+    final ZstdDictionary dictionary;
 
-    ReduceFileGroups(PartitionLocation[][] partitionGroups, int[] mapAttempts) {
+    ReduceFileGroups(
+        PartitionLocation[][] partitionGroups, int[] mapAttempts, ZstdDictionary dictionary) {
       this.partitionGroups = partitionGroups;
       this.mapAttempts = mapAttempts;
+      this.dictionary = dictionary;
     }
   }
 
@@ -127,8 +159,21 @@ public class ShuffleClientImpl extends ShuffleClient {
     this.userIdentifier = userIdentifier;
     registerShuffleMaxRetries = conf.registerShuffleMaxRetry();
     registerShuffleRetryWait = conf.registerShuffleRetryWait();
+    if (conf.shuffleCompressionZstdDictionaryEnabled()
+        && conf.shuffleCompressionCodec() == CompressionCodec.ZSTD) {
+      dictionarySamplers = new ConcurrentHashMap<>();
+    } else {
+      dictionarySamplers = null;
+    }
     maxInFlight = conf.pushMaxReqsInFlight();
+    congestionControl =
+        conf.pushCongestionControlEnabled() ? new PushCongestionControl(conf) : null;
     pushBufferMaxSize = conf.pushBufferMaxSize();
+    lingerTimeMs = conf.pushLingerTimeMs();
+    pushAggregator =
+        conf.pushAggregatorEnabled() ? new PushAggregator(conf, this::pushFrame) : null;
+    fetchMemoryManager = conf.fetchMemoryBudget() > 0 ? new FetchMemoryManager(conf) : null;
+    fetchHedger = conf.fetchHedgeEnabled() ? new FetchHedger(conf) : null;
 
     // init rpc env and master endpointRef
     rpcEnv = RpcEnv.create("ShuffleClient", Utils.localHostName(), 0, conf);
@@ -155,7 +200,7 @@ public class ShuffleClientImpl extends ShuffleClient {
       int shuffleId,
       int mapId,
       int attemptId,
-      byte[] body,
+      ByteBuf body,
       int batchId,
       PartitionLocation loc,
       RpcResponseCallback callback,
@@ -168,14 +213,17 @@ public class ShuffleClientImpl extends ShuffleClient {
     } else if (mapperEnded(shuffleId, mapId, attemptId)) {
       logger.debug(
           "Retrying push data, but the mapper(map {} attempt {}) has ended.", mapId, attemptId);
-      pushState.inFlightBatches.remove(batchId);
+      pushState.removeBatch(batchId);
+      body.release();
     } else {
       PartitionLocation newLoc = reducePartitionMap.get(shuffleId).get(partitionId);
       logger.info("Revive success, new location for reduce {} is {}.", partitionId, newLoc);
       try {
         TransportClient client =
             dataClientFactory.createClient(newLoc.getHost(), newLoc.getPushPort(), partitionId);
-        NettyManagedBuffer newBuffer = new NettyManagedBuffer(Unpooled.wrappedBuffer(body));
+        acquirePushCredit(client, body.readableBytes());
+        // the sent message releases its own reference to the body
+        NettyManagedBuffer newBuffer = new NettyManagedBuffer(body.retain());
         String shuffleKey = Utils.makeShuffleKey(applicationId, shuffleId);
 
         PushData newPushData =
@@ -205,7 +253,8 @@ public class ShuffleClientImpl extends ShuffleClient {
       StatusCode cause,
       Integer oldGroupedBatchId) {
     HashMap<String, DataBatches> newDataBatchesMap = new HashMap<>();
-    for (DataBatches.DataBatch batch : batches) {
+    for (int i = 0; i < batches.size(); i++) {
+      DataBatches.DataBatch batch = batches.get(i);
       int partitionId = batch.loc.getId();
       if (!revive(
           applicationId,
@@ -219,10 +268,16 @@ public class ShuffleClientImpl extends ShuffleClient {
         pushState.exception.compareAndSet(
             null,
             new IOException("Revive Failed in retry push merged data for location: " + batch.loc));
+        // the batches before this one are either released or taken by the new batches
+        for (DataBatches newDataBatches : newDataBatchesMap.values()) {
+          newDataBatches.releaseBatches();
+        }
+        releaseBatches(batches.subList(i, batches.size()));
         return;
       } else if (mapperEnded(shuffleId, mapId, attemptId)) {
         logger.debug(
             "Retrying push data, but the mapper(map {} attempt {}) has ended.", mapId, attemptId);
+        batch.body.release();
       } else {
         PartitionLocation newLoc = reducePartitionMap.get(shuffleId).get(partitionId);
         logger.info("Revive success, new location for reduce {} is {}.", partitionId, newLoc);
@@ -246,7 +301,13 @@ public class ShuffleClientImpl extends ShuffleClient {
           pushState,
           true);
     }
-    pushState.inFlightBatches.remove(oldGroupedBatchId);
+    pushState.removeBatch(oldGroupedBatchId);
+  }
+
+  private void releaseBatches(List<DataBatches.DataBatch> batches) {
+    for (DataBatches.DataBatch batch : batches) {
+      batch.body.release();
+    }
   }
 
   private String genAddressPair(PartitionLocation loc) {
@@ -259,6 +320,95 @@ public class ShuffleClientImpl extends ShuffleClient {
     return addressPair;
   }
 
+  /**
+   * Returns the dictionary to compress the batches of the shuffle with, null until one is trained.
+   * The batches before are sampled, the executor sampling enough of them first trains a dictionary
+   * and reports it to the LifecycleManager, which replies the dictionary every executor uses.
+   */
+  private ZstdDictionary getDictionary(
+      String applicationId, int shuffleId, byte[] data, int offset, int length) {
+    if (dictionarySamplers == null) {
+      return null;
+    }
+    ZstdDictionary dictionary = shuffleDictionaries.get(shuffleId);
+    if (dictionary != null) {
+      return dictionary;
+    }
+    ZstdDictionary.Sampler sampler =
+        dictionarySamplers.computeIfAbsent(
+            shuffleId,
+            (id) ->
+                new ZstdDictionary.Sampler(
+                    conf.shuffleCompressionZstdDictionarySampleSize(),
+                    conf.shuffleCompressionZstdDictionarySize()));
+    byte[] trained = sampler.sample(data, offset, length);
+    if (trained != null) {
+      reportDictionary(applicationId, shuffleId, trained, sampler);
+    }
+    // the batches until the LifecycleManager replies are compressed without a dictionary
+    return shuffleDictionaries.get(shuffleId);
+  }
+
+  /** Reports a trained dictionary, the shuffle switches to the one replied once it arrives. */
+  private void reportDictionary(
+      String applicationId, int shuffleId, byte[] trained, ZstdDictionary.Sampler sampler) {
+    Future<PbReportShuffleDictionaryResponse> future;
+    try {
+      future =
+          driverRssMetaService.ask(
+              ReportShuffleDictionary$.MODULE$.apply(applicationId, shuffleId, trained),
+              ClassTag$.MODULE$.apply(PbReportShuffleDictionaryResponse.class));
+    } catch (Exception e) {
+      logger.warn("Report dictionary of shuffle {} failed, compress without it.", shuffleId, e);
+      sampler.reset();
+      return;
+    }
+    future.onComplete(
+        new AbstractFunction1<Try<PbReportShuffleDictionaryResponse>, BoxedUnit>() {
+          @Override
+          public BoxedUnit apply(Try<PbReportShuffleDictionaryResponse> result) {
+            // the shuffle may have been unregistered meanwhile
+            if (dictionarySamplers.get(shuffleId) != sampler) {
+              return BoxedUnit.UNIT;
+            }
+            if (result.isFailure()) {
+              logger.warn(
+                  "Report dictionary of shuffle {} failed, compress without it.",
+                  shuffleId,
+                  result.failed().get());
+              sampler.reset();
+            } else if (Utils.toStatusCode(result.get().getStatus()) != StatusCode.SUCCESS) {
+              logger.warn(
+                  "Report dictionary of shuffle {} returned {}, compress without it.",
+                  shuffleId,
+                  Utils.toStatusCode(result.get().getStatus()));
+              sampler.reset();
+            } else {
+              setDictionary(shuffleId, result.get().getCompressionDictionary().toByteArray());
+            }
+            return BoxedUnit.UNIT;
+          }
+        },
+        ThreadUtils.sameThread());
+  }
+
+  @VisibleForTesting
+  public ZstdDictionary getShuffleDictionary(int shuffleId) {
+    return shuffleDictionaries.get(shuffleId);
+  }
+
+  private void setDictionary(int shuffleId, byte[] bytes) {
+    if (bytes.length > 0) {
+      shuffleDictionaries.computeIfAbsent(
+          shuffleId,
+          (id) -> {
+            logger.info("Compress shuffle {} with a dictionary of {} bytes.", id, bytes.length);
+            return new ZstdDictionary(bytes, conf.shuffleCompressionZstdCompressLevel());
+          });
+      dictionarySamplers.remove(shuffleId);
+    }
+  }
+
   private ConcurrentHashMap<Integer, PartitionLocation> registerShuffle(
       String appId, int shuffleId, int numMappers, int numPartitions) {
     int numRetries = registerShuffleMaxRetries;
@@ -276,6 +426,9 @@ public class ShuffleClientImpl extends ShuffleClient {
                 PbSerDeUtils.fromPbPartitionLocation(response.getPartitionLocationsList().get(i));
             result.put(partitionLoc.getId(), partitionLoc);
           }
+          if (dictionarySamplers != null) {
+            setDictionary(shuffleId, response.getCompressionDictionary().toByteArray());
+          }
           return result;
         } else if (StatusCode.SLOT_NOT_AVAILABLE.equals(respStatus)) {
           logger.warn(
@@ -317,23 +470,26 @@ public class ShuffleClientImpl extends ShuffleClient {
     ConcurrentHashMap<Integer, PartitionLocation> inFlightBatches = pushState.inFlightBatches;
     long timeoutMs = conf.pushLimitInFlightTimeoutMs();
     long delta = conf.pushLimitInFlightSleepDeltaMs();
-    long times = timeoutMs / delta;
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    boolean timedOut = false;
     try {
-      while (times > 0) {
-        if (inFlightBatches.size() <= limit) {
-          break;
-        }
+      // woken up by finished batches, failures are checked at least every delta
+      while (inFlightBatches.size() > limit) {
         if (pushState.exception.get() != null) {
           throw pushState.exception.get();
         }
-        Thread.sleep(delta);
-        times--;
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          timedOut = true;
+          break;
+        }
+        pushState.awaitBatchFinished(limit, Math.min(delta, remaining));
       }
     } catch (InterruptedException e) {
       pushState.exception.set(new IOException(e));
     }
 
-    if (times <= 0) {
+    if (timedOut) {
       logger.error(
           "After waiting for {} ms, there are still {} batches in flight for map {}, "
               + "which exceeds the limit {}.",
@@ -349,6 +505,88 @@ public class ShuffleClientImpl extends ShuffleClient {
     }
   }
 
+  private void limitInFlight(String mapKey, PushState pushState, String worker, int bytes)
+      throws IOException {
+    if (congestionControl == null) {
+      limitMaxInFlight(mapKey, pushState, maxInFlight);
+      return;
+    }
+    if (pushState.exception.get() != null) {
+      throw pushState.exception.get();
+    }
+    try {
+      acquireWindow(worker, bytes, pushState, "task " + mapKey);
+    } catch (InterruptedException e) {
+      pushState.exception.set(new IOException(e));
+      throw pushState.exception.get();
+    }
+  }
+
+  /** Waits for the bytes to fit in the window of the worker, pushState may be null. */
+  private void acquireWindow(String worker, int bytes, PushState pushState, String pusher)
+      throws IOException, InterruptedException {
+    long timeoutMs = conf.pushLimitInFlightTimeoutMs();
+    long delta = conf.pushLimitInFlightSleepDeltaMs();
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!congestionControl.tryAcquire(
+        worker, bytes, Math.min(delta, deadline - System.currentTimeMillis()))) {
+      if (pushState != null && pushState.exception.get() != null) {
+        throw pushState.exception.get();
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        logger.error(
+            "After waiting for {} ms, there are still {} bytes in flight to worker {} for {}, "
+                + "which exceeds the window {}.",
+            timeoutMs,
+            congestionControl.getInFlightBytes(worker),
+            worker,
+            pusher,
+            congestionControl.getWindow(worker));
+        throw new IOException("wait timeout for " + pusher);
+      }
+    }
+  }
+
+  /** Updates the window of the worker when the push acquired in limitInFlight is done. */
+  private RpcResponseCallback trackInFlight(
+      String worker, int bytes, RpcResponseCallback callback) {
+    if (congestionControl == null) {
+      return callback;
+    }
+    final long startNs = System.nanoTime();
+    return new RpcResponseCallback() {
+      @Override
+      public void onSuccess(ByteBuffer response) {
+        if (response.remaining() > 0
+            && (response.get(response.position()) == StatusCode.SOFT_SPLIT.getValue()
+                || response.get(response.position()) == StatusCode.HARD_SPLIT.getValue())) {
+          congestionControl.onCongested(worker, bytes);
+        } else {
+          congestionControl.onAcked(worker, bytes, System.nanoTime() - startNs);
+        }
+        callback.onSuccess(response);
+      }
+
+      @Override
+      public void onFailure(Throwable e) {
+        congestionControl.onCongested(worker, bytes);
+        callback.onFailure(e);
+      }
+    };
+  }
+
+  private void acquirePushCredit(TransportClient client, long bytes) throws IOException {
+    try {
+      if (!client.acquirePushCredit(bytes, conf.pushLimitInFlightTimeoutMs())) {
+        throw new IOException(
+            "Wait push credit timeout for " + NettyUtils.getRemoteAddress(client.getChannel()));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+
   private boolean waitRevivedLocation(
       ConcurrentHashMap<Integer, PartitionLocation> map, int partitionId, int epoch) {
     PartitionLocation currentLocation = map.get(partitionId);
@@ -519,21 +757,54 @@ public class ShuffleClientImpl extends ShuffleClient {
     // increment batchId
     final int nextBatchId = pushState.batchId.addAndGet(1);
 
+    final boolean pushDirectly = pushAggregator == null && doPush;
+    if (pushDirectly && congestionControl == null) {
+      // waits before compressing, so no pooled body is held while the task is blocked
+      limitMaxInFlight(mapKey, pushState, maxInFlight);
+    }
+
     // compress data
     final Compressor compressor = compressorThreadLocal.get();
-    compressor.compress(data, offset, length);
-
-    final int compressedTotalSize = compressor.getCompressedTotalSize();
-    final int BATCH_HEADER_SIZE = 4 * 4;
-    final byte[] body = new byte[BATCH_HEADER_SIZE + compressedTotalSize];
-    Platform.putInt(body, Platform.BYTE_ARRAY_OFFSET, mapId);
-    Platform.putInt(body, Platform.BYTE_ARRAY_OFFSET + 4, attemptId);
-    Platform.putInt(body, Platform.BYTE_ARRAY_OFFSET + 8, nextBatchId);
-    Platform.putInt(body, Platform.BYTE_ARRAY_OFFSET + 12, compressedTotalSize);
-    System.arraycopy(
-        compressor.getCompressedBuffer(), 0, body, BATCH_HEADER_SIZE, compressedTotalSize);
-
-    if (doPush) {
+    compressor.setDictionary(getDictionary(applicationId, shuffleId, data, offset, length));
+    // the compressor writes behind the room left for the batch header, the body is released once
+    // the batch is acknowledged or given up
+    final ByteBuf body;
+    if (pushState.shouldStore(partitionId)) {
+      body =
+          compressor.store(data, offset, length, BATCH_HEADER_SIZE, PooledByteBufAllocator.DEFAULT);
+    } else {
+      body =
+          compressor.compress(
+              data, offset, length, BATCH_HEADER_SIZE, PooledByteBufAllocator.DEFAULT);
+      pushState.onCompressed(partitionId, length, compressor.getCompressedTotalSize());
+    }
+    final int bodySize = body.readableBytes();
+    putHeaderInt(body, 0, mapId);
+    putHeaderInt(body, 4, attemptId);
+    putHeaderInt(body, 8, nextBatchId);
+    putHeaderInt(body, 12, bodySize - BATCH_HEADER_SIZE);
+
+    if (pushAggregator != null) {
+      logger.debug("Add batch {} to the push aggregator.", nextBatchId);
+      if (pushState.exception.get() != null) {
+        body.release();
+        throw pushState.exception.get();
+      }
+      try {
+        pushAggregator.add(
+            applicationId,
+            shuffleId,
+            mapId,
+            attemptId,
+            pushState,
+            shuffleKey,
+            genAddressPair(loc),
+            new DataBatches.DataBatch(loc, nextBatchId, body));
+      } catch (IOException e) {
+        body.release();
+        throw e;
+      }
+    } else if (pushDirectly) {
       logger.debug(
           "Do push data for app {} shuffle {} map {} attempt {} reduce {} batch {}.",
           applicationId,
@@ -542,22 +813,28 @@ public class ShuffleClientImpl extends ShuffleClient {
           attemptId,
           partitionId,
           nextBatchId);
-      // check limit
-      limitMaxInFlight(mapKey, pushState, maxInFlight);
+      // check limit, the window of the worker is sized in bytes so it is acquired once the body
+      // size is known
+      final String worker = loc.hostAndPushPort();
+      if (congestionControl != null) {
+        try {
+          limitInFlight(mapKey, pushState, worker, bodySize);
+        } catch (IOException e) {
+          body.release();
+          throw e;
+        }
+      }
 
       // add inFlight requests
       pushState.inFlightBatches.put(nextBatchId, loc);
 
-      // build PushData request
-      NettyManagedBuffer buffer = new NettyManagedBuffer(Unpooled.wrappedBuffer(body));
-      PushData pushData = new PushData(MASTER_MODE, shuffleKey, loc.getUniqueId(), buffer);
-
       // build callback
       RpcResponseCallback callback =
           new RpcResponseCallback() {
             @Override
             public void onSuccess(ByteBuffer response) {
-              pushState.inFlightBatches.remove(nextBatchId);
+              body.release();
+              pushState.removeBatch(nextBatchId);
               if (response.remaining() > 0 && response.get() == StatusCode.STAGE_ENDED.getValue()) {
                 mapperEndMap
                     .computeIfAbsent(shuffleId, (id) -> ConcurrentHashMap.newKeySet())
@@ -575,6 +852,7 @@ public class ShuffleClientImpl extends ShuffleClient {
 
             @Override
             public void onFailure(Throwable e) {
+              body.release();
               pushState.exception.compareAndSet(
                   null, new IOException("Revived PushData failed!", e));
               pushState.removeFuture(nextBatchId);
@@ -634,6 +912,7 @@ public class ShuffleClientImpl extends ShuffleClient {
             @Override
             public void onFailure(Throwable e) {
               if (pushState.exception.get() != null) {
+                body.release();
                 return;
               }
               logger.error(
@@ -660,7 +939,8 @@ public class ShuffleClientImpl extends ShuffleClient {
                             pushState,
                             getPushDataFailCause(e.getMessage())));
               } else {
-                pushState.inFlightBatches.remove(nextBatchId);
+                body.release();
+                pushState.removeBatch(nextBatchId);
                 logger.info(
                     "Mapper shuffleId:{} mapId:{} attempt:{} already ended, remove batchId:{}.",
                     shuffleId,
@@ -672,15 +952,19 @@ public class ShuffleClientImpl extends ShuffleClient {
           };
 
       // do push data
+      RpcResponseCallback sendCallback = trackInFlight(worker, bodySize, wrappedCallback);
       try {
         TransportClient client =
             dataClientFactory.createClient(loc.getHost(), loc.getPushPort(), partitionId);
-        ChannelFuture future = client.pushData(pushData, wrappedCallback);
+        acquirePushCredit(client, bodySize);
+        // the sent message releases its own reference to the body
+        NettyManagedBuffer buffer = new NettyManagedBuffer(body.retain());
+        PushData pushData = new PushData(MASTER_MODE, shuffleKey, loc.getUniqueId(), buffer);
+        ChannelFuture future = client.pushData(pushData, sendCallback);
         pushState.addFuture(nextBatchId, future);
       } catch (Exception e) {
         logger.warn("PushData failed", e);
-        wrappedCallback.onFailure(
-            new Exception(getPushDataFailCause(e.getMessage()).toString(), e));
+        sendCallback.onFailure(new Exception(getPushDataFailCause(e.getMessage()).toString(), e));
       }
     } else {
       // add batch data
@@ -688,21 +972,49 @@ public class ShuffleClientImpl extends ShuffleClient {
       String addressPair = genAddressPair(loc);
       boolean shoudPush = pushState.addBatchData(addressPair, loc, nextBatchId, body);
       if (shoudPush) {
-        limitMaxInFlight(mapKey, pushState, maxInFlight);
-        DataBatches dataBatches = pushState.takeDataBatches(addressPair);
-        doPushMergedData(
-            addressPair.split("-")[0],
-            applicationId,
-            shuffleId,
-            mapId,
-            attemptId,
-            dataBatches.requireBatches(),
-            pushState,
-            false);
+        pushDataBatches(applicationId, shuffleId, mapId, attemptId, pushState, addressPair);
+      }
+      if (lingerTimeMs > 0) {
+        for (String lingered : pushState.getLingeredAddressPairs(lingerTimeMs)) {
+          pushDataBatches(applicationId, shuffleId, mapId, attemptId, pushState, lingered);
+        }
       }
     }
 
-    return body.length;
+    return bodySize;
+  }
+
+  /** Pushes the merged batches of the task to the address pair as one PushMergedData. */
+  private void pushDataBatches(
+      String applicationId,
+      int shuffleId,
+      int mapId,
+      int attemptId,
+      PushState pushState,
+      String addressPair)
+      throws IOException {
+    DataBatches dataBatches = pushState.takeDataBatches(addressPair);
+    if (dataBatches == null) {
+      return;
+    }
+    String worker = addressPair.split("-")[0];
+    int totalSize = dataBatches.getTotalSize();
+    ArrayList<DataBatches.DataBatch> batches = dataBatches.requireBatches();
+    try {
+      limitInFlight(Utils.makeMapKey(shuffleId, mapId, attemptId), pushState, worker, totalSize);
+    } catch (IOException e) {
+      releaseBatches(batches);
+      throw e;
+    }
+    doPushMergedData(worker, applicationId, shuffleId, mapId, attemptId, batches, pushState, false);
+  }
+
+  private static void putHeaderInt(ByteBuf body, int index, int value) {
+    if (LITTLE_ENDIAN) {
+      body.setIntLE(index, value);
+    } else {
+      body.setInt(index, value);
+    }
   }
 
   private void splitPartition(
@@ -801,18 +1113,28 @@ public class ShuffleClientImpl extends ShuffleClient {
     if (pushState == null) {
       return;
     }
+    if (pushAggregator != null) {
+      pushAggregator.flush(pushState);
+      return;
+    }
     ArrayList<Map.Entry<String, DataBatches>> batchesArr =
         new ArrayList<>(pushState.batchesMap.entrySet());
     while (!batchesArr.isEmpty()) {
-      limitMaxInFlight(mapKey, pushState, maxInFlight);
       Map.Entry<String, DataBatches> entry = batchesArr.get(rand.nextInt(batchesArr.size()));
+      int totalSize = entry.getValue().getTotalSize();
       ArrayList<DataBatches.DataBatch> batches = entry.getValue().requireBatches(pushBufferMaxSize);
       if (entry.getValue().getTotalSize() == 0) {
         batchesArr.remove(entry);
       }
-      String[] tokens = entry.getKey().split("-");
+      String worker = entry.getKey().split("-")[0];
+      try {
+        limitInFlight(mapKey, pushState, worker, totalSize - entry.getValue().getTotalSize());
+      } catch (IOException e) {
+        releaseBatches(batches);
+        throw e;
+      }
       doPushMergedData(
-          tokens[0], applicationId, shuffleId, mapId, attemptId, batches, pushState, false);
+          worker, applicationId, shuffleId, mapId, attemptId, batches, pushState, false);
     }
   }
 
@@ -837,30 +1159,26 @@ public class ShuffleClientImpl extends ShuffleClient {
     final int[] offsets = new int[numBatches];
     final int[] batchIds = new int[numBatches];
     int currentSize = 0;
-    CompositeByteBuf byteBuf = Unpooled.compositeBuffer();
     for (int i = 0; i < numBatches; i++) {
       DataBatches.DataBatch batch = batches.get(i);
       partitionUniqueIds[i] = batch.loc.getUniqueId();
       offsets[i] = currentSize;
       batchIds[i] = batch.batchId;
-      currentSize += batch.body.length;
-      byteBuf.addComponent(true, Unpooled.wrappedBuffer(batch.body));
+      currentSize += batch.body.readableBytes();
     }
-    NettyManagedBuffer buffer = new NettyManagedBuffer(byteBuf);
     String shuffleKey = Utils.makeShuffleKey(applicationId, shuffleId);
-    PushMergedData mergedData =
-        new PushMergedData(MASTER_MODE, shuffleKey, partitionUniqueIds, offsets, buffer);
 
     RpcResponseCallback callback =
         new RpcResponseCallback() {
           @Override
           public void onSuccess(ByteBuffer response) {
+            releaseBatches(batches);
             logger.debug(
                 "Push data success for map {} attempt {} grouped batch {}.",
                 mapId,
                 attemptId,
                 groupedBatchId);
-            pushState.inFlightBatches.remove(groupedBatchId);
+            pushState.removeBatch(groupedBatchId);
             if (response.remaining() > 0 && response.get() == StatusCode.STAGE_ENDED.getValue()) {
               mapperEndMap
                   .computeIfAbsent(shuffleId, (id) -> ConcurrentHashMap.newKeySet())
@@ -870,6 +1188,7 @@ public class ShuffleClientImpl extends ShuffleClient {
 
           @Override
           public void onFailure(Throwable e) {
+            releaseBatches(batches);
             String errorMsg =
                 (revived ? "Revived push" : "Push")
                     + " merged data to "
@@ -903,6 +1222,7 @@ public class ShuffleClientImpl extends ShuffleClient {
           @Override
           public void onFailure(Throwable e) {
             if (pushState.exception.get() != null) {
+              releaseBatches(batches);
               return;
             }
             if (revived) {
@@ -935,18 +1255,140 @@ public class ShuffleClientImpl extends ShuffleClient {
                           batches,
                           getPushDataFailCause(e.getMessage()),
                           groupedBatchId));
+            } else {
+              releaseBatches(batches);
+            }
+          }
+        };
+
+    // do push merged data, revived pushes are not limited by the windows of the workers
+    RpcResponseCallback sendCallback =
+        revived ? wrappedCallback : trackInFlight(hostPort, currentSize, wrappedCallback);
+    try {
+      TransportClient client = dataClientFactory.createClient(host, port);
+      acquirePushCredit(client, currentSize);
+      // the sent message releases the references the composite holds on the bodies
+      CompositeByteBuf byteBuf = Unpooled.compositeBuffer(numBatches);
+      for (DataBatches.DataBatch batch : batches) {
+        byteBuf.addComponent(true, batch.body.retain());
+      }
+      NettyManagedBuffer buffer = new NettyManagedBuffer(byteBuf);
+      PushMergedData mergedData =
+          new PushMergedData(MASTER_MODE, shuffleKey, partitionUniqueIds, offsets, buffer);
+      client.pushMergedData(mergedData, sendCallback);
+    } catch (Exception e) {
+      logger.warn("PushMergedData failed", e);
+      sendCallback.onFailure(new Exception(getPushDataFailCause(e.getMessage()).toString(), e));
+    }
+  }
+
+  /**
+   * Pushes a frame of the push aggregator. A failed frame is retried separately for each task, a
+   * STAGE_ENDED reply ends all tasks of the frame.
+   */
+  private void pushFrame(PushAggregator.Frame frame) {
+    final String hostPort = frame.addressPair.split("-")[0];
+    final String[] splits = hostPort.split(":");
+    final String host = splits[0];
+    final int port = Integer.parseInt(splits[1]);
+    final int frameSize = frame.getSize();
+    final ArrayList<PushAggregator.TaskBatches> tasks = new ArrayList<>(frame.getTasks());
+
+    int numBatches = 0;
+    for (PushAggregator.TaskBatches task : tasks) {
+      numBatches += task.batches.size();
+    }
+    final String[] partitionUniqueIds = new String[numBatches];
+    final int[] offsets = new int[numBatches];
+    int index = 0;
+    int currentSize = 0;
+    for (PushAggregator.TaskBatches task : tasks) {
+      for (DataBatches.DataBatch batch : task.batches) {
+        partitionUniqueIds[index] = batch.loc.getUniqueId();
+        offsets[index] = currentSize;
+        currentSize += batch.body.readableBytes();
+        index++;
+      }
+    }
+
+    RpcResponseCallback callback =
+        new RpcResponseCallback() {
+          @Override
+          public void onSuccess(ByteBuffer response) {
+            frame.finished();
+            boolean stageEnded =
+                response.remaining() > 0 && response.get() == StatusCode.STAGE_ENDED.getValue();
+            // the tasks of a frame share the shuffle key, the worker answers STAGE_ENDED once the
+            // files of the shuffle are committed, so the stage ended for every task of the frame
+            for (PushAggregator.TaskBatches task : tasks) {
+              releaseBatches(task.batches);
+              task.pushState.removeBatch(task.groupedBatchId);
+              if (stageEnded) {
+                mapperEndMap
+                    .computeIfAbsent(task.shuffleId, (id) -> ConcurrentHashMap.newKeySet())
+                    .add(Utils.makeMapKey(task.shuffleId, task.mapId, task.attemptId));
+              }
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable e) {
+            frame.finished();
+            logger.error(
+                "Push merged data of {} tasks to {}:{} failed.", tasks.size(), host, port, e);
+            StatusCode cause = getPushDataFailCause(e.getMessage());
+            for (PushAggregator.TaskBatches task : tasks) {
+              retryTaskBatches(task, cause);
             }
           }
         };
 
-    // do push merged data
+    if (congestionControl != null) {
+      try {
+        acquireWindow(hostPort, frameSize, null, "push aggregator");
+      } catch (IOException | InterruptedException e) {
+        callback.onFailure(e);
+        return;
+      }
+    }
+    RpcResponseCallback sendCallback = trackInFlight(hostPort, frameSize, callback);
     try {
       TransportClient client = dataClientFactory.createClient(host, port);
-      client.pushMergedData(mergedData, wrappedCallback);
+      acquirePushCredit(client, frameSize);
+      // the sent message releases the references the composite holds on the bodies
+      CompositeByteBuf byteBuf = Unpooled.compositeBuffer(numBatches);
+      for (PushAggregator.TaskBatches task : tasks) {
+        for (DataBatches.DataBatch batch : task.batches) {
+          byteBuf.addComponent(true, batch.body.retain());
+        }
+      }
+      NettyManagedBuffer buffer = new NettyManagedBuffer(byteBuf);
+      PushMergedData mergedData =
+          new PushMergedData(MASTER_MODE, frame.shuffleKey, partitionUniqueIds, offsets, buffer);
+      client.pushMergedData(mergedData, sendCallback);
     } catch (Exception e) {
       logger.warn("PushMergedData failed", e);
-      wrappedCallback.onFailure(new Exception(getPushDataFailCause(e.getMessage()).toString(), e));
+      sendCallback.onFailure(new Exception(getPushDataFailCause(e.getMessage()).toString(), e));
+    }
+  }
+
+  private void retryTaskBatches(PushAggregator.TaskBatches task, StatusCode cause) {
+    if (task.pushState.exception.get() != null
+        || mapperEnded(task.shuffleId, task.mapId, task.attemptId)) {
+      releaseBatches(task.batches);
+      return;
     }
+    pushDataRetryPool.submit(
+        () ->
+            submitRetryPushMergedData(
+                task.pushState,
+                task.applicationId,
+                task.shuffleId,
+                task.mapId,
+                task.attemptId,
+                task.batches,
+                cause,
+                task.groupedBatchId));
   }
 
   @Override
@@ -978,6 +1420,10 @@ public class ShuffleClientImpl extends ShuffleClient {
     if (pushState != null) {
       pushState.exception.compareAndSet(null, new IOException("Cleaned Up"));
       pushState.cancelFutures();
+      pushState.releaseDataBatches();
+      if (pushAggregator != null) {
+        pushAggregator.discard(pushState);
+      }
     }
   }
 
@@ -1000,6 +1446,10 @@ public class ShuffleClientImpl extends ShuffleClient {
     reduceFileGroupsMap.remove(shuffleId);
     mapperEndMap.remove(shuffleId);
     splitting.remove(shuffleId);
+    shuffleDictionaries.remove(shuffleId);
+    if (dictionarySamplers != null) {
+      dictionarySamplers.remove(shuffleId);
+    }
 
     logger.info("Unregistered shuffle {}.", shuffleId);
     return true;
@@ -1047,7 +1497,15 @@ public class ShuffleClientImpl extends ShuffleClient {
                       "Shuffle {} request reducer file group success using time:{} ms",
                       shuffleId,
                       (System.nanoTime() - getReducerFileGroupStartTime) / 1000_000);
-                  return new ReduceFileGroups(response.fileGroup(), response.attempts());
+                  byte[] dictionaryBytes = response.compressionDictionary();
+                  ZstdDictionary dictionary = null;
+                  if (dictionaryBytes.length > 0) {
+                    dictionary =
+                        new ZstdDictionary(
+                            dictionaryBytes, conf.shuffleCompressionZstdCompressLevel());
+                  }
+                  return new ReduceFileGroups(
+                      response.fileGroup(), response.attempts(), dictionary);
                 } else if (response.status() == StatusCode.STAGE_END_TIME_OUT) {
                   logger.warn(
                       "Request {} return {} for {}",
@@ -1082,9 +1540,12 @@ public class ShuffleClientImpl extends ShuffleClient {
           shuffleKey,
           fileGroups.partitionGroups[partitionId],
           fileGroups.mapAttempts,
+          fileGroups.dictionary,
           attemptNumber,
           startMapIndex,
-          endMapIndex);
+          endMapIndex,
+          fetchMemoryManager,
+          fetchHedger);
     }
   }
 
@@ -1102,6 +1563,12 @@ public class ShuffleClientImpl extends ShuffleClient {
     if (null != partitionSplitPool) {
       partitionSplitPool.shutdown();
     }
+    if (null != pushAggregator) {
+      pushAggregator.close();
+    }
+    if (null != fetchHedger) {
+      fetchHedger.close();
+    }
     if (null != driverRssMetaService) {
       driverRssMetaService = null;
     }
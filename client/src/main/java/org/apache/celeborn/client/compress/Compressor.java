@@ -17,6 +17,9 @@
 
 package org.apache.celeborn.client.compress;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.protocol.CompressionCodec;
 import org.apache.celeborn.common.protocol.CompressionCodec.*;
@@ -31,6 +34,34 @@ public interface Compressor {
 
   byte[] getCompressedBuffer();
 
+  /**
+   * Compresses the data into a direct buffer from the allocator, leaving {@code headroom} bytes in
+   * front of the compressed block for the caller to fill in. The returned buffer is readable from
+   * index 0 to the end of the block, and the caller owns it.
+   */
+  default ByteBuf compress(
+      byte[] data, int offset, int length, int headroom, ByteBufAllocator allocator) {
+    compress(data, offset, length);
+    int compressedTotalSize = getCompressedTotalSize();
+    ByteBuf buf = allocator.directBuffer(headroom + compressedTotalSize);
+    buf.writerIndex(headroom);
+    buf.writeBytes(getCompressedBuffer(), 0, compressedTotalSize);
+    return buf;
+  }
+
+  /**
+   * Writes the data as a raw block without trying to compress it, laid out like {@link
+   * #compress(byte[], int, int, int, ByteBufAllocator)}. Decompressors copy raw blocks as they are,
+   * so this saves the CPU of both sides for data that does not compress.
+   */
+  ByteBuf store(byte[] data, int offset, int length, int headroom, ByteBufAllocator allocator);
+
+  /**
+   * Compresses the following data with the dictionary of its shuffle, or without a dictionary if it
+   * is null. Codecs without dictionaries ignore it.
+   */
+  default void setDictionary(ZstdDictionary dictionary) {}
+
   default void writeIntLE(int i, byte[] buf, int off) {
     buf[off++] = (byte) i;
     buf[off++] = (byte) (i >>> 8);
@@ -17,6 +17,8 @@
 
 package org.apache.celeborn.client.compress;
 
+import java.nio.ByteBuffer;
+
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.protocol.CompressionCodec;
 import org.apache.celeborn.common.protocol.CompressionCodec.*;
@@ -27,6 +29,18 @@ public interface Decompressor {
 
   int getOriginalLen(byte[] src);
 
+  /**
+   * Decompresses the block at {@code srcOff} of {@code src} into {@code dst} at {@code dstOff}, so
+   * a block in fetched memory is read without staging it in a byte array. Both buffers must be
+   * direct, their positions and limits are left unchanged.
+   */
+  int decompress(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff);
+
+  int getOriginalLen(ByteBuffer src, int srcOff);
+
+  /** Sets the dictionary of the shuffle read, codecs without dictionaries ignore it. */
+  default void setDictionary(ZstdDictionary dictionary) {}
+
   default int readIntLE(byte[] buf, int i) {
     return (buf[i] & 0xFF)
         | ((buf[i + 1] & 0xFF) << 8)
@@ -34,6 +48,23 @@ public interface Decompressor {
         | ((buf[i + 3] & 0xFF) << 24);
   }
 
+  default int readIntLE(ByteBuffer buf, int i) {
+    return (buf.get(i) & 0xFF)
+        | ((buf.get(i + 1) & 0xFF) << 8)
+        | ((buf.get(i + 2) & 0xFF) << 16)
+        | ((buf.get(i + 3) & 0xFF) << 24);
+  }
+
+  default void copy(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff, int length) {
+    ByteBuffer from = src.duplicate();
+    from.limit(srcOff + length);
+    from.position(srcOff);
+    ByteBuffer to = dst.duplicate();
+    to.limit(dstOff + length);
+    to.position(dstOff);
+    to.put(from);
+  }
+
   static Decompressor getDecompressor(CelebornConf conf) {
     CompressionCodec codec = conf.shuffleCompressionCodec();
     switch (codec) {
@@ -17,8 +17,11 @@
 
 package org.apache.celeborn.client.compress;
 
+import java.nio.ByteBuffer;
 import java.util.zip.Checksum;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.xxhash.XXHashFactory;
@@ -28,6 +31,8 @@ public class RssLz4Compressor extends RssLz4Trait implements Compressor {
   private final Checksum checksum;
   private byte[] compressedBuffer;
   private int compressedTotalSize;
+  // wrapper of the last source array, pushers keep compressing the same array
+  private ByteBuffer srcBuffer;
 
   public RssLz4Compressor(int blockSize) {
     this.compressor = LZ4Factory.fastestInstance().fastCompressor();
@@ -70,6 +75,68 @@ public class RssLz4Compressor extends RssLz4Trait implements Compressor {
     compressedTotalSize = HEADER_LENGTH + compressedLength;
   }
 
+  @Override
+  public ByteBuf compress(
+      byte[] data, int offset, int length, int headroom, ByteBufAllocator allocator) {
+    checksum.reset();
+    checksum.update(data, offset, length);
+    final int check = (int) checksum.getValue();
+    int maxDestLength = compressor.maxCompressedLength(length);
+    int blockOffset = headroom + HEADER_LENGTH;
+    ByteBuf buf = allocator.directBuffer(blockOffset + maxDestLength);
+    try {
+      if (srcBuffer == null || srcBuffer.array() != data) {
+        srcBuffer = ByteBuffer.wrap(data);
+      }
+      int compressedLength =
+          compressor.compress(
+              srcBuffer,
+              offset,
+              length,
+              buf.nioBuffer(blockOffset, maxDestLength),
+              0,
+              maxDestLength);
+      final int compressMethod;
+      if (compressedLength >= length) {
+        compressMethod = COMPRESSION_METHOD_RAW;
+        compressedLength = length;
+        buf.setBytes(blockOffset, data, offset, length);
+      } else {
+        compressMethod = COMPRESSION_METHOD_LZ4;
+      }
+
+      buf.setBytes(headroom, MAGIC);
+      buf.setByte(headroom + MAGIC_LENGTH, compressMethod);
+      buf.setIntLE(headroom + MAGIC_LENGTH + 1, compressedLength);
+      buf.setIntLE(headroom + MAGIC_LENGTH + 5, length);
+      buf.setIntLE(headroom + MAGIC_LENGTH + 9, check);
+      buf.writerIndex(blockOffset + compressedLength);
+
+      compressedTotalSize = HEADER_LENGTH + compressedLength;
+      return buf;
+    } catch (RuntimeException e) {
+      buf.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public ByteBuf store(
+      byte[] data, int offset, int length, int headroom, ByteBufAllocator allocator) {
+    checksum.reset();
+    checksum.update(data, offset, length);
+    ByteBuf buf = allocator.directBuffer(headroom + HEADER_LENGTH + length);
+    buf.writerIndex(headroom);
+    buf.writeBytes(MAGIC);
+    buf.writeByte(COMPRESSION_METHOD_RAW);
+    buf.writeIntLE(length);
+    buf.writeIntLE(length);
+    buf.writeIntLE((int) checksum.getValue());
+    buf.writeBytes(data, offset, length);
+    compressedTotalSize = HEADER_LENGTH + length;
+    return buf;
+  }
+
   @Override
   public int getCompressedTotalSize() {
     return compressedTotalSize;
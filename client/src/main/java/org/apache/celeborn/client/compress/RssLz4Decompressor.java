@@ -17,10 +17,12 @@
 
 package org.apache.celeborn.client.compress;
 
+import java.nio.ByteBuffer;
 import java.util.zip.Checksum;
 
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4FastDecompressor;
+import net.jpountz.xxhash.XXHash32;
 import net.jpountz.xxhash.XXHashFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,10 +31,12 @@ public class RssLz4Decompressor extends RssLz4Trait implements Decompressor {
   private static final Logger logger = LoggerFactory.getLogger(RssLz4Decompressor.class);
   private final LZ4FastDecompressor decompressor;
   private final Checksum checksum;
+  private final XXHash32 hash;
 
   public RssLz4Decompressor() {
     decompressor = LZ4Factory.fastestInstance().fastDecompressor();
     checksum = XXHashFactory.fastestInstance().newStreamingHash32(DEFAULT_SEED).asChecksum();
+    hash = XXHashFactory.fastestInstance().hash32();
   }
 
   @Override
@@ -71,4 +75,42 @@ public class RssLz4Decompressor extends RssLz4Trait implements Decompressor {
 
     return originalLen;
   }
+
+  @Override
+  public int getOriginalLen(ByteBuffer src, int srcOff) {
+    return readIntLE(src, srcOff + MAGIC_LENGTH + 5);
+  }
+
+  @Override
+  public int decompress(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff) {
+    int compressionMethod = src.get(srcOff + MAGIC_LENGTH) & 0xFF;
+    int compressedLen = readIntLE(src, srcOff + MAGIC_LENGTH + 1);
+    int originalLen = readIntLE(src, srcOff + MAGIC_LENGTH + 5);
+    int check = readIntLE(src, srcOff + MAGIC_LENGTH + 9);
+
+    switch (compressionMethod) {
+      case COMPRESSION_METHOD_RAW:
+        copy(src, srcOff + HEADER_LENGTH, dst, dstOff, originalLen);
+        break;
+      case COMPRESSION_METHOD_LZ4:
+        int compressedLen2 =
+            decompressor.decompress(src, srcOff + HEADER_LENGTH, dst, dstOff, originalLen);
+        if (compressedLen != compressedLen2) {
+          logger.error(
+              "Compressed length corrupted! expected: {}, actual: {}.",
+              compressedLen,
+              compressedLen2);
+          return -1;
+        }
+    }
+
+    // the same value as the streaming checksum, which keeps the low 28 bits of the hash
+    int check2 = hash.hash(dst, dstOff, originalLen, DEFAULT_SEED) & 0xFFFFFFF;
+    if (check2 != check) {
+      logger.error("Checksum not equal! expected: {}, actual: {}.", check, check2);
+      return -1;
+    }
+
+    return originalLen;
+  }
 }
@@ -21,12 +21,15 @@ import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
 import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 public class RssZstdCompressor extends RssZstdTrait implements Compressor {
   private final int compressionLevel;
   private final Checksum checksum;
   private byte[] compressedBuffer;
   private int compressedTotalSize;
+  private ZstdDictionary dictionary;
 
   public RssZstdCompressor(int blockSize, int level) {
     compressionLevel = level;
@@ -41,32 +44,51 @@ public class RssZstdCompressor extends RssZstdTrait implements Compressor {
     System.arraycopy(MAGIC, 0, compressedBuffer, 0, MAGIC_LENGTH);
   }
 
+  @Override
+  public void setDictionary(ZstdDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
   @Override
   public void compress(byte[] data, int offset, int length) {
     checksum.reset();
     checksum.update(data, offset, length);
     final int check = (int) checksum.getValue();
-    int maxDestLength = (int) Zstd.compressBound(length);
+    int maxDestLength = (int) Zstd.compressBound(length) + DICTIONARY_ID_LENGTH;
     if (compressedBuffer.length - HEADER_LENGTH < maxDestLength) {
       initCompressBuffer(maxDestLength);
     }
-    int compressedLength =
-        (int)
-            Zstd.compressByteArray(
-                compressedBuffer,
-                HEADER_LENGTH,
-                maxDestLength - HEADER_LENGTH,
-                data,
-                offset,
-                length,
-                compressionLevel);
-    final int compressMethod;
+    int compressedLength;
+    int compressMethod;
+    if (dictionary != null) {
+      writeIntLE(dictionary.getId(), compressedBuffer, HEADER_LENGTH);
+      long size =
+          Zstd.compressFastDict(
+              compressedBuffer,
+              HEADER_LENGTH + DICTIONARY_ID_LENGTH,
+              data,
+              offset,
+              length,
+              dictionary.getCompressDict());
+      compressedLength = Zstd.isError(size) ? length : DICTIONARY_ID_LENGTH + (int) size;
+      compressMethod = COMPRESSION_METHOD_ZSTD_DICT;
+    } else {
+      compressedLength =
+          (int)
+              Zstd.compressByteArray(
+                  compressedBuffer,
+                  HEADER_LENGTH,
+                  maxDestLength - HEADER_LENGTH,
+                  data,
+                  offset,
+                  length,
+                  compressionLevel);
+      compressMethod = COMPRESSION_METHOD_ZSTD;
+    }
     if (compressedLength >= length) {
       compressMethod = COMPRESSION_METHOD_RAW;
       compressedLength = length;
       System.arraycopy(data, offset, compressedBuffer, HEADER_LENGTH, length);
-    } else {
-      compressMethod = COMPRESSION_METHOD_ZSTD;
     }
 
     compressedBuffer[MAGIC_LENGTH] = (byte) compressMethod;
@@ -77,6 +99,23 @@ public class RssZstdCompressor extends RssZstdTrait implements Compressor {
     compressedTotalSize = HEADER_LENGTH + compressedLength;
   }
 
+  @Override
+  public ByteBuf store(
+      byte[] data, int offset, int length, int headroom, ByteBufAllocator allocator) {
+    checksum.reset();
+    checksum.update(data, offset, length);
+    ByteBuf buf = allocator.directBuffer(headroom + HEADER_LENGTH + length);
+    buf.writerIndex(headroom);
+    buf.writeBytes(MAGIC);
+    buf.writeByte(COMPRESSION_METHOD_RAW);
+    buf.writeIntLE(length);
+    buf.writeIntLE(length);
+    buf.writeIntLE((int) checksum.getValue());
+    buf.writeBytes(data, offset, length);
+    compressedTotalSize = HEADER_LENGTH + length;
+    return buf;
+  }
+
   @Override
   public int getCompressedTotalSize() {
     return compressedTotalSize;
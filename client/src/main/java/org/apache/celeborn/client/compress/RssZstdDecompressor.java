@@ -17,8 +17,8 @@
 
 package org.apache.celeborn.client.compress;
 
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
-import java.util.zip.Checksum;
 
 import com.github.luben.zstd.Zstd;
 import org.slf4j.Logger;
@@ -26,12 +26,18 @@ import org.slf4j.LoggerFactory;
 
 public class RssZstdDecompressor extends RssZstdTrait implements Decompressor {
   private static final Logger logger = LoggerFactory.getLogger(RssZstdDecompressor.class);
-  private final Checksum checksum;
+  private final CRC32 checksum;
+  private ZstdDictionary dictionary;
 
   public RssZstdDecompressor() {
     checksum = new CRC32();
   }
 
+  @Override
+  public void setDictionary(ZstdDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
   @Override
   public int getOriginalLen(byte[] src) {
     return readIntLE(src, MAGIC_LENGTH + 5);
@@ -59,6 +65,27 @@ public class RssZstdDecompressor extends RssZstdTrait implements Decompressor {
           return -1;
         }
         break;
+      case COMPRESSION_METHOD_ZSTD_DICT:
+        int dictionaryId = readIntLE(src, HEADER_LENGTH);
+        if (dictionary == null || dictionary.getId() != dictionaryId) {
+          logger.error("Unknown dictionary {} of the compressed block.", dictionaryId);
+          return -1;
+        }
+        int originalLen3 =
+            (int)
+                Zstd.decompressFastDict(
+                    dst,
+                    dstOff,
+                    src,
+                    HEADER_LENGTH + DICTIONARY_ID_LENGTH,
+                    compressedLen - DICTIONARY_ID_LENGTH,
+                    dictionary.getDecompressDict());
+        if (originalLen != originalLen3) {
+          logger.error(
+              "Original length corrupted! expected: {}, actual: {}.", originalLen, originalLen3);
+          return -1;
+        }
+        break;
       default:
         logger.error("Unknown compression method whose decimal number is {} .", compressionMethod);
         return -1;
@@ -72,4 +99,70 @@ public class RssZstdDecompressor extends RssZstdTrait implements Decompressor {
     }
     return originalLen;
   }
+
+  @Override
+  public int getOriginalLen(ByteBuffer src, int srcOff) {
+    return readIntLE(src, srcOff + MAGIC_LENGTH + 5);
+  }
+
+  @Override
+  public int decompress(ByteBuffer src, int srcOff, ByteBuffer dst, int dstOff) {
+    int compressionMethod = src.get(srcOff + MAGIC_LENGTH) & 0xFF;
+    int compressedLen = readIntLE(src, srcOff + MAGIC_LENGTH + 1);
+    int originalLen = readIntLE(src, srcOff + MAGIC_LENGTH + 5);
+    int check = readIntLE(src, srcOff + MAGIC_LENGTH + 9);
+
+    switch (compressionMethod) {
+      case COMPRESSION_METHOD_RAW:
+        copy(src, srcOff + HEADER_LENGTH, dst, dstOff, originalLen);
+        break;
+      case COMPRESSION_METHOD_ZSTD:
+        int originalLen2 =
+            (int)
+                Zstd.decompressDirectByteBuffer(
+                    dst, dstOff, originalLen, src, srcOff + HEADER_LENGTH, compressedLen);
+        if (originalLen != originalLen2) {
+          logger.error(
+              "Original length corrupted! expected: {}, actual: {}.", originalLen, originalLen2);
+          return -1;
+        }
+        break;
+      case COMPRESSION_METHOD_ZSTD_DICT:
+        int dictionaryId = readIntLE(src, srcOff + HEADER_LENGTH);
+        if (dictionary == null || dictionary.getId() != dictionaryId) {
+          logger.error("Unknown dictionary {} of the compressed block.", dictionaryId);
+          return -1;
+        }
+        int originalLen3 =
+            (int)
+                Zstd.decompressDirectByteBufferFastDict(
+                    dst,
+                    dstOff,
+                    originalLen,
+                    src,
+                    srcOff + HEADER_LENGTH + DICTIONARY_ID_LENGTH,
+                    compressedLen - DICTIONARY_ID_LENGTH,
+                    dictionary.getDecompressDict());
+        if (originalLen != originalLen3) {
+          logger.error(
+              "Original length corrupted! expected: {}, actual: {}.", originalLen, originalLen3);
+          return -1;
+        }
+        break;
+      default:
+        logger.error("Unknown compression method whose decimal number is {} .", compressionMethod);
+        return -1;
+    }
+
+    ByteBuffer decompressed = dst.duplicate();
+    decompressed.limit(dstOff + originalLen);
+    decompressed.position(dstOff);
+    checksum.reset();
+    checksum.update(decompressed);
+    if ((int) checksum.getValue() != check) {
+      logger.error("Checksum not equal! expected: {}, actual: {}.", check, checksum.getValue());
+      return -1;
+    }
+    return originalLen;
+  }
 }
@@ -30,4 +30,7 @@ public abstract class RssZstdTrait {
 
   protected static final int COMPRESSION_METHOD_RAW = 0x10;
   protected static final int COMPRESSION_METHOD_ZSTD = 0x30;
+  // the compressed block starts with the id of the dictionary it is compressed with
+  protected static final int COMPRESSION_METHOD_ZSTD_DICT = 0x40;
+  protected static final int DICTIONARY_ID_LENGTH = 4;
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.compress;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A zstd dictionary trained for a shuffle, which its mappers and reducers share. */
+public class ZstdDictionary {
+  private static final Logger logger = LoggerFactory.getLogger(ZstdDictionary.class);
+
+  private final byte[] bytes;
+  private final int id;
+  private final ZstdDictCompress compressDict;
+  private final ZstdDictDecompress decompressDict;
+
+  public ZstdDictionary(byte[] bytes, int level) {
+    this.bytes = bytes;
+    this.id = (int) Zstd.getDictIdFromDict(bytes);
+    this.compressDict = new ZstdDictCompress(bytes, level);
+    this.decompressDict = new ZstdDictDecompress(bytes);
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public ZstdDictCompress getCompressDict() {
+    return compressDict;
+  }
+
+  public ZstdDictDecompress getDecompressDict() {
+    return decompressDict;
+  }
+
+  /** Collects samples of the first batches of a shuffle and trains a dictionary from them. */
+  public static class Sampler {
+    // the shuffle is compressed without a dictionary after as many failed trainings
+    private static final int MAX_TRAININGS = 3;
+
+    private final int sampleSize;
+    private final int dictionarySize;
+    private List<byte[]> samples = new ArrayList<>();
+    private int sampledBytes = 0;
+    private int trainings = 0;
+
+    public Sampler(int sampleSize, int dictionarySize) {
+      this.sampleSize = sampleSize;
+      this.dictionarySize = dictionarySize;
+    }
+
+    /**
+     * Samples the data of a batch. The caller adding the last sample trains the dictionary, every
+     * other caller gets null.
+     *
+     * @return the trained dictionary, or null if it is not trained by this call or zstd could not
+     *     train one from the samples
+     */
+    public byte[] sample(byte[] data, int offset, int length) {
+      List<byte[]> trainSamples;
+      synchronized (this) {
+        if (samples == null) {
+          return null;
+        }
+        int sampleLength = Math.min(length, sampleSize - sampledBytes);
+        samples.add(Arrays.copyOfRange(data, offset, offset + sampleLength));
+        sampledBytes += sampleLength;
+        if (sampledBytes < sampleSize) {
+          return null;
+        }
+        trainSamples = samples;
+        samples = null;
+        trainings++;
+      }
+      byte[] dictBuffer = new byte[dictionarySize];
+      long size = Zstd.trainFromBuffer(trainSamples.toArray(new byte[0][]), dictBuffer);
+      if (Zstd.isError(size)) {
+        logger.warn(
+            "Train zstd dictionary from {} samples failed: {}.",
+            trainSamples.size(),
+            Zstd.getErrorName(size));
+        reset();
+        return null;
+      }
+      return Arrays.copyOf(dictBuffer, (int) size);
+    }
+
+    /**
+     * Samples the following batches for another training, after the last one failed or its
+     * dictionary could not be reported. Does nothing after MAX_TRAININGS trainings.
+     */
+    public synchronized void reset() {
+      if (samples == null && trainings < MAX_TRAININGS) {
+        samples = new ArrayList<>();
+        sampledBytes = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the batches read of each map, as a bitset per map indexed by batch id. The batch ids of a
+ * map attempt count up from 1, so the bitsets stay dense, and checking a batch neither boxes nor
+ * allocates once the bitset of its map has grown.
+ */
+final class BatchIdSet {
+  private static final int INITIAL_WORDS = 4;
+
+  private final long[][] bitsets;
+
+  BatchIdSet(int numMaps) {
+    bitsets = new long[numMaps][];
+  }
+
+  /** Adds the batch, false if it has been added before. */
+  boolean add(int mapId, int batchId) {
+    if (batchId < 0) {
+      throw new IllegalArgumentException("Invalid batch id " + batchId + " of map " + mapId);
+    }
+    int word = batchId >>> 6;
+    long[] bits = bitsets[mapId];
+    if (bits == null || word >= bits.length) {
+      bits = grow(mapId, word);
+    }
+    long mask = 1L << batchId;
+    if ((bits[word] & mask) != 0) {
+      return false;
+    }
+    bits[word] |= mask;
+    return true;
+  }
+
+  private long[] grow(int mapId, int word) {
+    long[] bits = bitsets[mapId];
+    int length = bits == null ? INITIAL_WORDS : bits.length;
+    while (length <= word) {
+      length *= 2;
+    }
+    bits = bits == null ? new long[length] : Arrays.copyOf(bits, length);
+    bitsets[mapId] = bits;
+    return bits;
+  }
+}
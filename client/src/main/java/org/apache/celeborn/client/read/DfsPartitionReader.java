@@ -40,7 +40,7 @@ import org.apache.celeborn.common.network.client.TransportClientFactory;
 import org.apache.celeborn.common.network.protocol.Message;
 import org.apache.celeborn.common.network.protocol.OpenStream;
 import org.apache.celeborn.common.protocol.PartitionLocation;
-import org.apache.celeborn.common.util.ShuffleBlockInfoUtils;
+import org.apache.celeborn.common.util.ShuffleBlockIndex;
 import org.apache.celeborn.common.util.Utils;
 
 public class DfsPartitionReader implements PartitionReader {
@@ -53,6 +53,11 @@ public class DfsPartitionReader implements PartitionReader {
   private final FSDataInputStream hdfsInputStream;
   private int numChunks = 0;
   private final AtomicInteger currentChunkIndex = new AtomicInteger(0);
+  // null if the fetch memory is unlimited
+  private final FetchMemoryManager.StreamMemory memory;
+  // bytes this reader has reserved, and those of the chunk returned last
+  private long reservedBytes = 0;
+  private long returnedBytes = 0;
 
   public DfsPartitionReader(
       CelebornConf conf,
@@ -60,8 +65,10 @@ public class DfsPartitionReader implements PartitionReader {
       PartitionLocation location,
       TransportClientFactory clientFactory,
       int startMapIndex,
-      int endMapIndex)
+      int endMapIndex,
+      FetchMemoryManager.StreamMemory memory)
       throws IOException {
+    this.memory = memory;
     shuffleChunkSize = (int) conf.shuffleChunkSize();
     fetchMaxReqsInFlight = conf.fetchMaxReqsInFlight();
     results = new LinkedBlockingQueue<>();
@@ -105,6 +112,9 @@ public class DfsPartitionReader implements PartitionReader {
                     }
                     long offset = chunkOffsets.get(currentChunkIndex.get());
                     long length = chunkOffsets.get(currentChunkIndex.get() + 1) - offset;
+                    if (!reserve(length)) {
+                      break;
+                    }
                     ByteBuffer buffer = ByteBuffer.allocate((int) length);
                     hdfsInputStream.readFully(offset, buffer);
                     results.add(Unpooled.wrappedBuffer(buffer));
@@ -141,17 +151,42 @@ public class DfsPartitionReader implements PartitionReader {
     FSDataInputStream indexInputStream = ShuffleClient.getHdfsFs(conf).open(new Path(indexPath));
     long indexSize = ShuffleClient.getHdfsFs(conf).getFileStatus(new Path(indexPath)).getLen();
     // Index size won't be large, so it's safe to do the conversion.
-    ByteBuffer indexBuffer = ByteBuffer.allocate((int) indexSize);
-    indexInputStream.readFully(0L, indexBuffer);
-    List<Long> offsets =
-        new ArrayList<>(
-            ShuffleBlockInfoUtils.getChunkOffsetsFromShuffleBlockInfos(
-                startMapIndex,
-                endMapIndex,
-                shuffleChunkSize,
-                ShuffleBlockInfoUtils.parseShuffleBlockInfosFromByteBuffer(indexBuffer)));
+    byte[] indexBytes = new byte[(int) indexSize];
+    indexInputStream.readFully(0L, indexBytes);
     indexInputStream.close();
-    return offsets;
+    return ShuffleBlockIndex.parse(ByteBuffer.wrap(indexBytes))
+        .getChunkOffsets(startMapIndex, endMapIndex, shuffleChunkSize);
+  }
+
+  /**
+   * Reserves fetch memory for a chunk. Waits in turn for it when the reader has nothing else to
+   * return, otherwise retries until it fits or the reader is closed.
+   *
+   * @return false if the reader has been closed.
+   */
+  private boolean reserve(long bytes) throws InterruptedException {
+    if (memory == null) {
+      return true;
+    }
+    boolean reserved = false;
+    while (!closed && !(reserved = memory.tryReserve(bytes))) {
+      if (results.isEmpty()) {
+        memory.reserve(bytes);
+        reserved = true;
+        break;
+      }
+      Thread.sleep(50);
+    }
+    synchronized (this) {
+      if (closed) {
+        if (reserved) {
+          memory.release(bytes);
+        }
+        return false;
+      }
+      reservedBytes += bytes;
+      return true;
+    }
   }
 
   @Override
@@ -162,6 +197,15 @@ public class DfsPartitionReader implements PartitionReader {
   @Override
   public ByteBuf next() throws IOException {
     checkException();
+    if (returnedBytes > 0) {
+      synchronized (this) {
+        if (!closed) {
+          memory.release(returnedBytes);
+          reservedBytes -= returnedBytes;
+        }
+      }
+      returnedBytes = 0;
+    }
     ByteBuf chunk = null;
     try {
       while (chunk == null) {
@@ -174,6 +218,9 @@ public class DfsPartitionReader implements PartitionReader {
       exception.set(ioe);
       throw ioe;
     }
+    if (memory != null) {
+      returnedBytes = chunk.readableBytes();
+    }
     return chunk;
   }
 
@@ -186,7 +233,13 @@ public class DfsPartitionReader implements PartitionReader {
 
   @Override
   public void close() {
-    closed = true;
+    synchronized (this) {
+      closed = true;
+      if (memory != null) {
+        memory.release(reservedBytes);
+        reservedBytes = 0;
+      }
+    }
     fetchThread.interrupt();
     IOUtils.closeQuietly(hdfsInputStream, null);
     if (results.size() > 0) {
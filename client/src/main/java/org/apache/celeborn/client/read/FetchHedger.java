@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.util.ThreadUtils;
+
+/**
+ * Decides when a chunk of a replicated partition is requested from the other replica too, shared by
+ * all readers of an executor. A chunk is hedged once it has been waited for longer than a
+ * percentile of the recent chunk fetch times. Each chunk request earns maxRatio of a hedge, so that
+ * no more than that share of the requests is sent twice.
+ */
+public class FetchHedger {
+  // recent fetch times the delay is computed from
+  private static final int SAMPLES = 1024;
+  // no chunk is hedged before this many fetch times are known
+  private static final int MIN_SAMPLES = 32;
+  // the delay is computed again after this many new fetch times
+  private static final int UPDATE_INTERVAL = 64;
+  // hedges saved up while fetches are fast
+  private static final double MAX_CREDITS = 10;
+
+  private final double percentile;
+  private final long minDelayNs;
+  private final double maxRatio;
+  private final ScheduledExecutorService timer =
+      ThreadUtils.newDaemonSingleThreadScheduledExecutor("celeborn-fetch-hedge");
+
+  private final long[] samples = new long[SAMPLES];
+  private long sampleCount = 0;
+  private volatile long delayNs = -1;
+  private double credits = 0;
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+
+  public FetchHedger(CelebornConf conf) {
+    this(conf.fetchHedgePercentile(), conf.fetchHedgeMinDelayMs(), conf.fetchHedgeMaxRatio());
+  }
+
+  FetchHedger(double percentile, long minDelayMs, double maxRatio) {
+    this.percentile = percentile;
+    this.minDelayNs = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+    this.maxRatio = maxRatio;
+  }
+
+  /** Time after which a chunk requested now is hedged, -1 if too few fetch times are known. */
+  public long getDelayNs() {
+    return delayNs;
+  }
+
+  /** A chunk has been requested, earning a share of a hedge. */
+  public synchronized void onRequest() {
+    credits = Math.min(credits + maxRatio, MAX_CREDITS);
+  }
+
+  /** A chunk arrived from the replica it was first requested from after fetchNs. */
+  public synchronized void onFetched(long fetchNs) {
+    samples[(int) (sampleCount % SAMPLES)] = fetchNs;
+    sampleCount++;
+    if (sampleCount >= MIN_SAMPLES && (sampleCount - MIN_SAMPLES) % UPDATE_INTERVAL == 0) {
+      long[] sorted = Arrays.copyOf(samples, (int) Math.min(sampleCount, SAMPLES));
+      Arrays.sort(sorted);
+      long fetchTimeNs = sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)];
+      delayNs = Math.max(fetchTimeNs, minDelayNs);
+    }
+  }
+
+  /** Takes a hedge if the requests earned one, returns false if the hedge rate is used up. */
+  public synchronized boolean tryHedge() {
+    if (credits < 1) {
+      return false;
+    }
+    credits -= 1;
+    hedges.increment();
+    return true;
+  }
+
+  /** A hedged chunk arrived from the other replica first. */
+  public void onHedgeWon() {
+    hedgeWins.increment();
+  }
+
+  public long getHedgeCount() {
+    return hedges.sum();
+  }
+
+  public long getHedgeWinCount() {
+    return hedgeWins.sum();
+  }
+
+  void schedule(Runnable check, long delayNs) {
+    timer.schedule(check, delayNs, TimeUnit.NANOSECONDS);
+  }
+
+  public void close() {
+    timer.shutdownNow();
+  }
+}
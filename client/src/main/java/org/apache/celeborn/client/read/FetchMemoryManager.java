@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.celeborn.common.CelebornConf;
+
+/**
+ * Limits the bytes of fetched chunks held by all readers of an executor. A reader reserves the
+ * bytes of a chunk before requesting it and releases them once the chunk is consumed. Readers that
+ * have to wait for the budget are served in arrival order, and a reservation made while others are
+ * waiting has to wait behind them. A reader is never held longer than maxWait, after that it
+ * reserves beyond the budget so that the readers holding the budget can not starve it forever.
+ */
+public class FetchMemoryManager {
+  private static final Logger logger = LoggerFactory.getLogger(FetchMemoryManager.class);
+
+  private final long budget;
+  private final long maxWaitNs;
+  // waiting reservations in arrival order, the first one is served next
+  private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+  private long reservedBytes = 0;
+
+  public FetchMemoryManager(CelebornConf conf) {
+    this(conf.fetchMemoryBudget(), conf.fetchMemoryMaxWaitMs());
+  }
+
+  FetchMemoryManager(long budget, long maxWaitMs) {
+    this.budget = budget;
+    this.maxWaitNs = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+  }
+
+  /** Accounts the chunks of one stream, all readers of the stream share it. */
+  public StreamMemory newStreamMemory() {
+    return new StreamMemory();
+  }
+
+  /** Reserves the bytes if they fit and nobody is waiting, returns false otherwise. */
+  public synchronized boolean tryReserve(long bytes) {
+    if (!waiters.isEmpty() || !fits(bytes, 0)) {
+      return false;
+    }
+    reservedBytes += bytes;
+    return true;
+  }
+
+  /** Reserves the bytes, waiting in turn for them to fit for at most maxWait. */
+  public void reserve(long bytes) throws InterruptedException {
+    reserve(bytes, 0);
+  }
+
+  /**
+   * Reserves the bytes, waiting in turn for them to fit for at most maxWait. ownBytes of the
+   * reserved bytes are held by the caller itself and can not be released while it waits, they do
+   * not count against the budget.
+   */
+  private synchronized void reserve(long bytes, long ownBytes) throws InterruptedException {
+    if (waiters.isEmpty() && fits(bytes, ownBytes)) {
+      reservedBytes += bytes;
+      return;
+    }
+    Object waiter = new Object();
+    waiters.addLast(waiter);
+    try {
+      long deadline = System.nanoTime() + maxWaitNs;
+      while (waiters.peekFirst() != waiter || !fits(bytes, ownBytes)) {
+        long remainingNs = deadline - System.nanoTime();
+        if (remainingNs <= 0) {
+          logger.warn(
+              "Waited {} ms for {} bytes of fetch memory, reserving beyond the budget of {}"
+                  + " bytes, {} bytes are reserved.",
+              TimeUnit.NANOSECONDS.toMillis(maxWaitNs),
+              bytes,
+              budget,
+              reservedBytes);
+          break;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remainingNs);
+      }
+      reservedBytes += bytes;
+    } finally {
+      waiters.remove(waiter);
+      notifyAll();
+    }
+  }
+
+  public synchronized void release(long bytes) {
+    reservedBytes -= bytes;
+    if (!waiters.isEmpty()) {
+      notifyAll();
+    }
+  }
+
+  public synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+
+  // a chunk larger than the budget fits when nothing else is reserved
+  private boolean fits(long bytes, long ownBytes) {
+    long othersBytes = reservedBytes - ownBytes;
+    return othersBytes <= 0 || othersBytes + bytes <= budget;
+  }
+
+  /** The bytes reserved by the readers of one stream, and the most of them held at once. */
+  public class StreamMemory {
+    private long reservedBytes = 0;
+    private long peakBytes = 0;
+
+    public boolean tryReserve(long bytes) {
+      if (FetchMemoryManager.this.tryReserve(bytes)) {
+        add(bytes);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Waits only for the bytes of other streams, the chunks held by the readers of this stream
+     * opened ahead are released after the reader waiting here.
+     */
+    public void reserve(long bytes) throws InterruptedException {
+      FetchMemoryManager.this.reserve(bytes, getReservedBytes());
+      add(bytes);
+    }
+
+    /**
+     * Corrects a reservation by the difference between the actual and the reserved bytes of a
+     * chunk, without waiting.
+     */
+    public void adjust(long bytes) {
+      if (bytes > 0) {
+        synchronized (FetchMemoryManager.this) {
+          FetchMemoryManager.this.reservedBytes += bytes;
+        }
+      } else if (bytes < 0) {
+        FetchMemoryManager.this.release(-bytes);
+      }
+      add(bytes);
+    }
+
+    public void release(long bytes) {
+      FetchMemoryManager.this.release(bytes);
+      add(-bytes);
+    }
+
+    public synchronized long getReservedBytes() {
+      return reservedBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+      return peakBytes;
+    }
+
+    private synchronized void add(long bytes) {
+      reservedBytes += bytes;
+      peakBytes = Math.max(peakBytes, reservedBytes);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.meta.FileInfo;
+import org.apache.celeborn.common.meta.FileManagedBuffers;
+import org.apache.celeborn.common.meta.FileSegments;
+import org.apache.celeborn.common.network.buffer.FileSegmentManagedBuffer;
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.client.TransportClient;
+import org.apache.celeborn.common.network.client.TransportClientFactory;
+import org.apache.celeborn.common.network.protocol.LocalStreamHandle;
+import org.apache.celeborn.common.network.protocol.Message;
+import org.apache.celeborn.common.network.protocol.OpenLocalStream;
+import org.apache.celeborn.common.network.util.JavaUtils;
+import org.apache.celeborn.common.protocol.PartitionLocation;
+import org.apache.celeborn.common.protocol.StorageInfo;
+import org.apache.celeborn.common.protocol.TransportModuleConstants;
+import org.apache.celeborn.common.util.Utils;
+
+/**
+ * Reads the files of locations on a worker of this host from the disk. The worker only tells where
+ * the chunks of the files are, the chunks are then read here one at a time into pooled memory,
+ * without going through the network or the worker. Chunks are not memory mapped, a mapping would
+ * hold the memory and the disk space of a deleted shuffle file until it is garbage collected.
+ */
+public class LocalPartitionReader implements PartitionReader {
+  private static final Logger logger = LoggerFactory.getLogger(LocalPartitionReader.class);
+  // workers which do not allow short-circuit reads, they are not asked again
+  private static final Set<String> refusingWorkers = ConcurrentHashMap.newKeySet();
+
+  private final FileManagedBuffers buffers;
+  private final int numChunks;
+  private int chunkIndex = 0;
+  // channels of the files read so far, closed with the reader
+  private final Map<File, FileChannel> channels = new HashMap<>();
+
+  /**
+   * Returns the locations of the group, or of their peers, if they are on a worker of this host
+   * which may allow short-circuit reads, null otherwise.
+   */
+  static PartitionLocation[] localLocations(PartitionLocation[] group) {
+    String localHost = Utils.localHostName();
+    if (isLocal(group[0], localHost)) {
+      return group;
+    }
+    PartitionLocation peer = group[0].getPeer();
+    if (peer != null && isLocal(peer, localHost)) {
+      PartitionLocation[] peers = new PartitionLocation[group.length];
+      for (int i = 0; i < group.length; i++) {
+        peers[i] = group[i].getPeer();
+      }
+      return peers;
+    }
+    return null;
+  }
+
+  private static boolean isLocal(PartitionLocation location, String localHost) {
+    StorageInfo.Type type = location.getStorageInfo().getType();
+    return (type == StorageInfo.Type.HDD || type == StorageInfo.Type.SSD)
+        && location.getHost().equals(localHost)
+        && !refusingWorkers.contains(workerAddress(location));
+  }
+
+  private static String workerAddress(PartitionLocation location) {
+    return location.getHost() + ":" + location.getFetchPort();
+  }
+
+  LocalPartitionReader(
+      CelebornConf conf,
+      String shuffleKey,
+      PartitionLocation[] locations,
+      TransportClientFactory clientFactory,
+      int startMapIndex,
+      int endMapIndex)
+      throws IOException {
+    PartitionLocation location = locations[0];
+    String[] fileNames = new String[locations.length];
+    for (int i = 0; i < locations.length; i++) {
+      fileNames[i] = locations[i].getFileName();
+    }
+    LocalStreamHandle handle;
+    try {
+      TransportClient client =
+          clientFactory.createClient(location.getHost(), location.getFetchPort());
+      OpenLocalStream request =
+          new OpenLocalStream(shuffleKey, fileNames, startMapIndex, endMapIndex);
+      ByteBuffer response = client.sendRpcSync(request.toByteBuffer(), conf.fetchTimeoutMs());
+      handle = (LocalStreamHandle) Message.decode(response);
+    } catch (Exception e) {
+      if (e.getMessage() != null && e.getMessage().contains("Short-circuit read is not enabled")) {
+        logger.info("Worker {} does not allow short-circuit reads.", workerAddress(location));
+        refusingWorkers.add(workerAddress(location));
+      }
+      throw new IOException("Open local stream of " + location + " failed.", e);
+    }
+
+    List<FileInfo> fileInfos = new ArrayList<>(handle.filePaths.length);
+    for (int i = 0; i < handle.filePaths.length; i++) {
+      File file = new File(handle.filePaths[i]);
+      if (!file.canRead()) {
+        throw new IOException("Can not read " + file + " of " + location + ".");
+      }
+      List<Long> chunkOffsets = new ArrayList<>(handle.chunkOffsets[i].length);
+      for (long offset : handle.chunkOffsets[i]) {
+        chunkOffsets.add(offset);
+      }
+      FileSegments segments =
+          handle.segmentPositions[i] == null
+              ? null
+              : new FileSegments(handle.segmentPositions[i], handle.segmentFileOffsets[i]);
+      fileInfos.add(new FileInfo(handle.filePaths[i], chunkOffsets, segments, null));
+    }
+    buffers =
+        new FileManagedBuffers(
+            fileInfos, Utils.fromCelebornConf(conf, TransportModuleConstants.DATA_MODULE, 0));
+    numChunks = buffers.numChunks();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return chunkIndex < numChunks;
+  }
+
+  @Override
+  public ByteBuf next() throws IOException {
+    ManagedBuffer chunk = buffers.chunk(chunkIndex, 0, Integer.MAX_VALUE);
+    chunkIndex++;
+    int size = Math.toIntExact(chunk.size());
+    ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(size, size);
+    try {
+      if (chunk instanceof FileSegmentManagedBuffer) {
+        FileSegmentManagedBuffer segment = (FileSegmentManagedBuffer) chunk;
+        FileChannel channel = channel(segment.getFile());
+        long position = segment.getOffset();
+        while (buf.isWritable()) {
+          int read = buf.writeBytes(channel, position, buf.writableBytes());
+          if (read == -1) {
+            throw new EOFException("Reached EOF before reading " + segment + ".");
+          }
+          position += read;
+        }
+      } else {
+        // a chunk spread over several segments of the file
+        try (InputStream input = chunk.createInputStream()) {
+          while (buf.isWritable()) {
+            if (buf.writeBytes(input, buf.writableBytes()) == -1) {
+              throw new EOFException("Reached EOF before reading " + chunk + ".");
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      buf.release();
+      throw e;
+    } finally {
+      chunk.release();
+    }
+    return buf;
+  }
+
+  private FileChannel channel(File file) throws IOException {
+    FileChannel channel = channels.get(file);
+    if (channel == null) {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      channels.put(file, channel);
+    }
+    return channel;
+  }
+
+  @Override
+  public void close() {
+    for (FileChannel channel : channels.values()) {
+      JavaUtils.closeQuietly(channel);
+    }
+    channels.clear();
+  }
+}
@@ -21,4 +21,7 @@ public interface MetricsCallback {
   void incBytesRead(long bytesRead);
 
   void incReadTime(long time);
+
+  /** The most bytes of fetched chunks the stream held at once within the fetch memory budget. */
+  default void incPeakFetchMemory(long bytes) {}
 }
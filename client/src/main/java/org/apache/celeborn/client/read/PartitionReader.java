@@ -27,4 +27,14 @@ public interface PartitionReader {
   ByteBuf next() throws IOException;
 
   void close();
+
+  /**
+   * Starts fetching the first chunks before they are asked for, so that the reader has data ready
+   * when it becomes the current one. Must be called before {@link #next()}.
+   *
+   * @return the number of chunks requested, at most maxChunks.
+   */
+  default int prefetch(int maxChunks) {
+    return 0;
+  }
 }
@@ -21,24 +21,34 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import org.apache.celeborn.common.network.client.RpcResponseCallback;
 import org.apache.celeborn.common.network.client.TransportClient;
 import org.apache.celeborn.common.network.client.TransportClientFactory;
+import org.apache.celeborn.common.network.protocol.CloseStream;
 import org.apache.celeborn.common.network.protocol.Message;
+import org.apache.celeborn.common.network.protocol.OpenMultiFileStream;
 import org.apache.celeborn.common.network.protocol.OpenStream;
 import org.apache.celeborn.common.network.protocol.StreamHandle;
 import org.apache.celeborn.common.protocol.PartitionLocation;
 
 class Replica {
+  private static final Logger logger = LoggerFactory.getLogger(Replica.class);
+
   private final long timeoutMs;
   private final String shuffleKey;
   private final PartitionLocation location;
+  // files read as one stream, all on the worker of location
+  private final PartitionLocation[] locations;
   private final TransportClientFactory clientFactory;
 
   private StreamHandle streamHandle;
   private TransportClient client;
   private final int startMapIndex;
   private final int endMapIndex;
+  private boolean closed = false;
 
   Replica(
       long timeoutMs,
@@ -47,26 +57,79 @@ class Replica {
       TransportClientFactory clientFactory,
       int startMapIndex,
       int endMapIndex) {
+    this(
+        timeoutMs,
+        shuffleKey,
+        new PartitionLocation[] {location},
+        clientFactory,
+        startMapIndex,
+        endMapIndex);
+  }
+
+  Replica(
+      long timeoutMs,
+      String shuffleKey,
+      PartitionLocation[] locations,
+      TransportClientFactory clientFactory,
+      int startMapIndex,
+      int endMapIndex) {
     this.timeoutMs = timeoutMs;
     this.shuffleKey = shuffleKey;
-    this.location = location;
+    this.location = locations[0];
+    this.locations = locations;
     this.clientFactory = clientFactory;
     this.startMapIndex = startMapIndex;
     this.endMapIndex = endMapIndex;
   }
 
   public synchronized TransportClient getOrOpenStream() throws IOException, InterruptedException {
+    if (closed) {
+      throw new IOException("Stream of " + this + " is closed.");
+    }
     if (client == null || !client.isActive()) {
       client = clientFactory.createClient(location.getHost(), location.getFetchPort());
 
-      OpenStream openBlocks =
-          new OpenStream(shuffleKey, location.getFileName(), startMapIndex, endMapIndex);
-      ByteBuffer response = client.sendRpcSync(openBlocks.toByteBuffer(), timeoutMs);
+      ByteBuffer request;
+      if (locations.length == 1) {
+        request =
+            new OpenStream(shuffleKey, location.getFileName(), startMapIndex, endMapIndex)
+                .toByteBuffer();
+      } else {
+        String[] fileNames = new String[locations.length];
+        for (int i = 0; i < locations.length; i++) {
+          fileNames[i] = locations[i].getFileName();
+        }
+        request =
+            new OpenMultiFileStream(shuffleKey, fileNames, startMapIndex, endMapIndex)
+                .toByteBuffer();
+      }
+      ByteBuffer response = client.sendRpcSync(request, timeoutMs);
       streamHandle = (StreamHandle) Message.decode(response);
     }
     return client;
   }
 
+  /**
+   * Asks the worker to remove the stream, which may not have been read to its end, and keeps it
+   * from being opened again.
+   */
+  public synchronized void closeStream() {
+    closed = true;
+    if (streamHandle != null && client.isActive()) {
+      client.sendRpc(
+          new CloseStream(streamHandle.streamId).toByteBuffer(),
+          new RpcResponseCallback() {
+            @Override
+            public void onSuccess(ByteBuffer response) {}
+
+            @Override
+            public void onFailure(Throwable e) {
+              logger.debug("Close stream of {} failed.", Replica.this, e);
+            }
+          });
+    }
+  }
+
   public long getStreamId() {
     return streamHandle.streamId;
   }
@@ -75,6 +138,11 @@ class Replica {
     return streamHandle.numChunks;
   }
 
+  /** Null if the worker did not send the chunk lengths. */
+  public int[] getChunkLengths() {
+    return streamHandle.chunkLengths;
+  }
+
   @Override
   public String toString() {
     String shufflePartition =
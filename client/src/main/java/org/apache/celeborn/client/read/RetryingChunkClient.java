@@ -18,6 +18,10 @@
 package org.apache.celeborn.client.read;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -57,10 +61,23 @@ public class RetryingChunkClient {
 
   private final ChunkReceivedCallback callback;
   private final Replica[] replicas;
+  // late chunks are fetched on streams of their own, which are not read to their end
+  private final Replica[] hedgeReplicas;
   private final long retryWaitMs;
   private final int maxTries;
 
   private volatile int numTries = 0;
+  private int[] chunkLengths;
+
+  // null if chunks are not requested from the other replica when they are late
+  private final FetchHedger hedger;
+  // when each chunk was requested last, whether it has arrived and whether it has been hedged
+  private long[] requestNanos;
+  private BitSet arrived;
+  private BitSet hedged;
+  // whether both replicas have the same chunks, null until a chunk is hedged
+  private Boolean sameChunks;
+  private volatile boolean closed = false;
 
   public RetryingChunkClient(
       CelebornConf conf,
@@ -79,6 +96,42 @@ public class RetryingChunkClient {
       TransportClientFactory clientFactory,
       int startMapIndex,
       int endMapIndex) {
+    this(
+        conf,
+        shuffleKey,
+        location == null ? null : new PartitionLocation[] {location},
+        callback,
+        clientFactory,
+        startMapIndex,
+        endMapIndex);
+  }
+
+  public RetryingChunkClient(
+      CelebornConf conf,
+      String shuffleKey,
+      PartitionLocation[] locations,
+      ChunkReceivedCallback callback,
+      TransportClientFactory clientFactory,
+      int startMapIndex,
+      int endMapIndex) {
+    this(conf, shuffleKey, locations, callback, clientFactory, startMapIndex, endMapIndex, null);
+  }
+
+  /**
+   * Reads the files of several locations on one worker as one stream. Either all the locations have
+   * a peer, and all the peers are on one worker, or none of them has.
+   *
+   * @param hedger decides when late chunks are requested from the peers too, null to never do so.
+   */
+  public RetryingChunkClient(
+      CelebornConf conf,
+      String shuffleKey,
+      PartitionLocation[] locations,
+      ChunkReceivedCallback callback,
+      TransportClientFactory clientFactory,
+      int startMapIndex,
+      int endMapIndex,
+      FetchHedger hedger) {
     TransportConf transportConf =
         Utils.fromCelebornConf(conf, TransportModuleConstants.DATA_MODULE, 0);
 
@@ -87,24 +140,48 @@ public class RetryingChunkClient {
 
     long fetchTimeoutMs = conf.fetchTimeoutMs();
 
-    if (location == null) {
+    if (locations == null || locations.length == 0 || locations[0] == null) {
       throw new IllegalArgumentException("Must contain at least one available PartitionLocation.");
+    }
+    PartitionLocation[][] replicaLocations;
+    if (locations[0].getPeer() == null) {
+      replicaLocations = new PartitionLocation[][] {locations};
     } else {
-      Replica main =
-          new Replica(
-              fetchTimeoutMs, shuffleKey, location, clientFactory, startMapIndex, endMapIndex);
-      PartitionLocation peerLoc = location.getPeer();
-      if (peerLoc == null) {
-        replicas = new Replica[] {main};
-      } else {
-        Replica peer =
-            new Replica(
-                fetchTimeoutMs, shuffleKey, peerLoc, clientFactory, startMapIndex, endMapIndex);
-        replicas = new Replica[] {main, peer};
+      PartitionLocation[] peerLocs = new PartitionLocation[locations.length];
+      for (int i = 0; i < locations.length; i++) {
+        peerLocs[i] = locations[i].getPeer();
       }
+      replicaLocations = new PartitionLocation[][] {locations, peerLocs};
+    }
+    replicas = new Replica[replicaLocations.length];
+    for (int i = 0; i < replicas.length; i++) {
+      replicas[i] =
+          new Replica(
+              fetchTimeoutMs,
+              shuffleKey,
+              replicaLocations[i],
+              clientFactory,
+              startMapIndex,
+              endMapIndex);
     }
 
     this.maxTries = (transportConf.maxIORetries() + 1) * replicas.length;
+    this.hedger = replicas.length > 1 ? hedger : null;
+    if (this.hedger != null) {
+      hedgeReplicas = new Replica[replicas.length];
+      for (int i = 0; i < replicas.length; i++) {
+        hedgeReplicas[i] =
+            new Replica(
+                fetchTimeoutMs,
+                shuffleKey,
+                replicaLocations[i],
+                clientFactory,
+                startMapIndex,
+                endMapIndex);
+      }
+    } else {
+      hedgeReplicas = null;
+    }
   }
 
   /**
@@ -158,9 +235,20 @@ public class RetryingChunkClient {
                 "Could not open chunks from %s after %d tries.", currentReplica, numTries));
       }
     }
+    chunkLengths = currentReplica.getChunkLengths();
+    if (hedger != null) {
+      requestNanos = new long[numChunks];
+      arrived = new BitSet(numChunks);
+      hedged = new BitSet(numChunks);
+    }
     return numChunks;
   }
 
+  /** Byte length of each chunk, null if unknown. Valid after {@link #openChunks()}. */
+  public int[] getChunkLengths() {
+    return chunkLengths;
+  }
+
   /**
    * Fetch for a chunk. It can be retried multiple times, so there is no guarantee that the order
    * will arrive on the server side, nor can it guarantee an orderly return. Therefore, the chunks
@@ -177,6 +265,7 @@ public class RetryingChunkClient {
     }
     try {
       TransportClient client = replica.getOrOpenStream();
+      onRequested(chunkIndex, 1);
       client.fetchChunk(replica.getStreamId(), chunkIndex, callback);
     } catch (Exception e) {
       logger.error(
@@ -193,6 +282,162 @@ public class RetryingChunkClient {
     }
   }
 
+  /**
+   * Fetch for a contiguous range of chunks in one request. If the range fails, each of its chunks
+   * is retried on its own through {@link #fetchChunk(int)}.
+   *
+   * @param startChunkIndex the index of the first chunk to be fetched.
+   * @param numChunks the number of chunks to be fetched.
+   */
+  public void fetchChunks(int startChunkIndex, int numChunks) {
+    Replica replica;
+    RetryingChunkReceiveCallback callback;
+    synchronized (this) {
+      replica = getCurrentReplica();
+      callback = new RetryingChunkReceiveCallback(numTries);
+    }
+    try {
+      TransportClient client = replica.getOrOpenStream();
+      onRequested(startChunkIndex, numChunks);
+      client.fetchChunkRange(replica.getStreamId(), startChunkIndex, numChunks, callback);
+    } catch (Exception e) {
+      logger.error(
+          "Exception raised while beginning fetch chunks {}-{}{}.",
+          startChunkIndex,
+          startChunkIndex + numChunks - 1,
+          numTries > 0 ? " (after " + numTries + " retries)" : "",
+          e);
+
+      for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+        if (shouldRetry(e)) {
+          initiateRetry(i, callback.currentNumTries);
+        } else {
+          callback.onFailure(i, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops requesting late chunks from the other replica, and closes the streams they were fetched
+   * from.
+   */
+  public void close() {
+    closed = true;
+    if (hedgeReplicas != null) {
+      for (Replica replica : hedgeReplicas) {
+        replica.closeStream();
+      }
+    }
+  }
+
+  private void onRequested(int startChunkIndex, int numChunks) {
+    if (hedger == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    synchronized (this) {
+      for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+        requestNanos[i] = now;
+        hedger.onRequest();
+      }
+    }
+    long delayNs = hedger.getDelayNs();
+    if (delayNs >= 0) {
+      hedger.schedule(() -> hedge(startChunkIndex, numChunks, delayNs), delayNs);
+    }
+  }
+
+  /**
+   * Requests the chunks of a request which have not arrived after delayNs from the other replica.
+   */
+  private void hedge(int startChunkIndex, int numChunks, long delayNs) {
+    if (closed) {
+      return;
+    }
+    long now = System.nanoTime();
+    List<Integer> lateChunks = new ArrayList<>();
+    Replica replica;
+    synchronized (this) {
+      if (Boolean.FALSE.equals(sameChunks)) {
+        return;
+      }
+      for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+        // requested again by a retry since, which hedges it when it is late
+        if (arrived.get(i) || hedged.get(i) || now - requestNanos[i] < delayNs) {
+          continue;
+        }
+        if (!hedger.tryHedge()) {
+          break;
+        }
+        hedged.set(i);
+        lateChunks.add(i);
+      }
+      replica = hedgeReplicas[(numTries + 1) % replicas.length];
+    }
+    if (!lateChunks.isEmpty()) {
+      executorService.submit(() -> fetchHedged(replica, lateChunks));
+    }
+  }
+
+  private void fetchHedged(Replica replica, List<Integer> chunkIndexes) {
+    try {
+      TransportClient client = replica.getOrOpenStream();
+      if (!hasSameChunks(replica)) {
+        return;
+      }
+      logger.debug("Fetching late chunks {} from {}.", chunkIndexes, replica);
+      ChunkReceivedCallback hedgeCallback = new HedgeChunkReceiveCallback(replica);
+      for (int chunkIndex : chunkIndexes) {
+        client.fetchChunk(replica.getStreamId(), chunkIndex, hedgeCallback);
+      }
+    } catch (Exception e) {
+      logger.warn(
+          "Exception raised while fetching late chunks {} from {}.", chunkIndexes, replica, e);
+    }
+  }
+
+  // chunks with the same index are the same data only if the replicas are split the same way
+  private synchronized boolean hasSameChunks(Replica replica) {
+    if (sameChunks == null) {
+      sameChunks = chunkLengths != null && Arrays.equals(chunkLengths, replica.getChunkLengths());
+      if (!sameChunks) {
+        logger.info(
+            "Not fetching late chunks from {}, the replicas have different chunks.", replica);
+      }
+    }
+    return sameChunks;
+  }
+
+  /**
+   * Passes a chunk on unless it already arrived from the other replica.
+   *
+   * @return false if the chunk was dropped.
+   */
+  private boolean onArrived(int chunkIndex, ManagedBuffer buffer, boolean fromHedge) {
+    if (hedger != null) {
+      long fetchNs;
+      synchronized (this) {
+        if (arrived.get(chunkIndex)) {
+          return false;
+        }
+        arrived.set(chunkIndex);
+        fetchNs = System.nanoTime() - requestNanos[chunkIndex];
+      }
+      if (fromHedge) {
+        hedger.onHedgeWon();
+      } else {
+        hedger.onFetched(fetchNs);
+      }
+    }
+    callback.onSuccess(chunkIndex, buffer);
+    return true;
+  }
+
+  private synchronized boolean hasArrived(int chunkIndex) {
+    return arrived != null && arrived.get(chunkIndex);
+  }
+
   @VisibleForTesting
   Replica getCurrentReplica() {
     int currentReplicaIndex = numTries % replicas.length;
@@ -247,12 +492,14 @@ public class RetryingChunkClient {
 
     @Override
     public void onSuccess(int chunkIndex, ManagedBuffer buffer) {
-      callback.onSuccess(chunkIndex, buffer);
+      onArrived(chunkIndex, buffer, false);
     }
 
     @Override
     public void onFailure(int chunkIndex, Throwable e) {
-      if (shouldRetry(e)) {
+      if (hasArrived(chunkIndex)) {
+        logger.debug("Fetch of chunk {} failed, it arrived from the other replica.", chunkIndex, e);
+      } else if (shouldRetry(e)) {
         initiateRetry(chunkIndex, this.currentNumTries);
       } else {
         logger.error("Abandon to fetch chunk {} after {} tries.", chunkIndex, this.currentNumTries);
@@ -260,4 +507,25 @@ public class RetryingChunkClient {
       }
     }
   }
+
+  private class HedgeChunkReceiveCallback implements ChunkReceivedCallback {
+    private final Replica replica;
+
+    HedgeChunkReceiveCallback(Replica replica) {
+      this.replica = replica;
+    }
+
+    @Override
+    public void onSuccess(int chunkIndex, ManagedBuffer buffer) {
+      if (onArrived(chunkIndex, buffer, true)) {
+        logger.debug("Late chunk {} arrived from {} first.", chunkIndex, replica);
+      }
+    }
+
+    @Override
+    public void onFailure(int chunkIndex, Throwable e) {
+      // the chunk is still expected from the replica it was first requested from
+      logger.warn("Fetch of late chunk {} from {} failed.", chunkIndex, replica, e);
+    }
+  }
 }
@@ -19,20 +19,35 @@ package org.apache.celeborn.client.read;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.celeborn.client.compress.Decompressor;
+import org.apache.celeborn.client.compress.ZstdDictionary;
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.network.client.TransportClientFactory;
 import org.apache.celeborn.common.protocol.PartitionLocation;
 import org.apache.celeborn.common.protocol.StorageInfo;
 import org.apache.celeborn.common.unsafe.Platform;
+import org.apache.celeborn.common.util.ThreadUtils;
 import org.apache.celeborn.common.util.Utils;
 
 public abstract class RssInputStream extends InputStream {
@@ -44,9 +59,12 @@ public abstract class RssInputStream extends InputStream {
       String shuffleKey,
       PartitionLocation[] locations,
       int[] attempts,
+      ZstdDictionary dictionary,
       int attemptNumber,
       int startMapIndex,
-      int endMapIndex)
+      int endMapIndex,
+      FetchMemoryManager fetchMemoryManager,
+      FetchHedger fetchHedger)
       throws IOException {
     if (locations == null || locations.length == 0) {
       return emptyInputStream;
@@ -57,18 +75,60 @@ public abstract class RssInputStream extends InputStream {
           shuffleKey,
           locations,
           attempts,
+          dictionary,
           attemptNumber,
           startMapIndex,
-          endMapIndex);
+          endMapIndex,
+          fetchMemoryManager,
+          fetchHedger,
+          null);
     }
   }
 
+  /** Creates the readers of the locations of a stream. */
+  @VisibleForTesting
+  interface ReaderFactory {
+    PartitionReader createReader(PartitionLocation[] group) throws IOException;
+  }
+
+  /** A stream whose readers are created by readerFactory instead of connecting to workers. */
+  @VisibleForTesting
+  static RssInputStream create(
+      CelebornConf conf,
+      PartitionLocation[] locations,
+      int[] attempts,
+      int startMapIndex,
+      int endMapIndex,
+      ReaderFactory readerFactory)
+      throws IOException {
+    return new RssInputStreamImpl(
+        conf,
+        null,
+        "test-shuffle",
+        locations,
+        attempts,
+        null,
+        0,
+        startMapIndex,
+        endMapIndex,
+        null,
+        null,
+        readerFactory);
+  }
+
   public static RssInputStream empty() {
     return emptyInputStream;
   }
 
   public abstract void setCallback(MetricsCallback callback);
 
+  /**
+   * Returns the bytes left of the current batch and moves past them, decompressing the next batch
+   * if the current one has been read up. The returned buffer shares memory with the stream and is
+   * only valid until the next read or close, null at the end of the stream.
+   */
+  public abstract ByteBuffer readBatch() throws IOException;
+
   private static final RssInputStream emptyInputStream =
       new RssInputStream() {
         @Override
@@ -83,10 +143,24 @@ public abstract class RssInputStream extends InputStream {
 
         @Override
         public void setCallback(MetricsCallback callback) {}
+
+        @Override
+        public ByteBuffer readBatch() throws IOException {
+          return null;
+        }
       };
 
-  private static final class RssInputStreamImpl extends RssInputStream {
+  @VisibleForTesting
+  static final class RssInputStreamImpl extends RssInputStream {
     private static final Random RAND = new Random();
+    // prefetches queue up when all threads are busy opening streams
+    private static final ExecutorService prefetchExecutor =
+        ThreadUtils.newDaemonCachedThreadPool(
+            "reader-prefetch", Math.max(Runtime.getRuntime().availableProcessors(), 8), 60);
+    // created for the first stream decoding ahead, each thread decodes one stream until its end
+    private static ExecutorService decodeExecutor;
+    private static Semaphore decodeThreads;
+    private static final DecodedBatch END_OF_BATCHES = new DecodedBatch();
 
     private final CelebornConf conf;
     private final TransportClientFactory clientFactory;
@@ -96,12 +170,46 @@ public abstract class RssInputStream extends InputStream {
     private final int attemptNumber;
     private final int startMapIndex;
     private final int endMapIndex;
-
-    private final Map<Integer, Set<Integer>> batchesRead = new HashMap<>();
-
-    private byte[] compressedBuf;
-    private byte[] decompressedBuf;
+    private final ReaderFactory readerFactory;
+
+    // locations to read, each element is read by one reader
+    private final List<PartitionLocation[]> readGroups;
+
+    // readers of the next locations, opened ahead of the current reader in read order
+    private final LinkedList<CompletableFuture<PrefetchedReader>> prefetchedReaders =
+        new LinkedList<>();
+    private final int prefetchReaders;
+    private final long prefetchBudget;
+    private final long chunkSize;
+    private final int maxChunksInFlight;
+    // bytes of chunks requested by readers which are not the current reader yet
+    private final AtomicLong prefetchedBytes = new AtomicLong();
+    // fetched chunks held by the readers of this stream, null if the fetch memory is unlimited
+    private final FetchMemoryManager.StreamMemory fetchMemory;
+    // null if late chunks are not requested from the other replica
+    private final FetchHedger fetchHedger;
+
+    private final BatchIdSet batchesRead;
+
+    // compressed batches are decompressed straight from the chunks, this only stages the batches
+    // of chunks which are not a single direct buffer
+    private ByteBuf compressedBuf;
+    private final int blockSize;
     private final Decompressor decompressor;
+    // the batch being read
+    private DecodedBatch currentBatch;
+
+    // With decode-ahead, the chunks are read and decompressed by a decoder in the background,
+    // which takes free batches, fills them and passes them on in read order. The decoder owns
+    // the readers, chunks and decompressor until it has stopped.
+    private final boolean decodingAhead;
+    private final BlockingQueue<DecodedBatch> freeBatches = new LinkedBlockingQueue<>();
+    private final BlockingQueue<DecodedBatch> decodedBatches = new LinkedBlockingQueue<>();
+    private final CountDownLatch decoderStopped = new CountDownLatch(1);
+    private final Object decoderLock = new Object();
+    private Thread decoderThread;
+    private boolean closed = false;
+    private volatile Throwable decodeError;
 
     private ByteBuf currentChunk;
     private PartitionReader currentReader;
@@ -123,28 +231,70 @@ public abstract class RssInputStream extends InputStream {
         String shuffleKey,
         PartitionLocation[] locations,
         int[] attempts,
+        ZstdDictionary dictionary,
         int attemptNumber,
         int startMapIndex,
-        int endMapIndex)
+        int endMapIndex,
+        FetchMemoryManager fetchMemoryManager,
+        FetchHedger fetchHedger,
+        ReaderFactory readerFactory)
         throws IOException {
       this.conf = conf;
       this.clientFactory = clientFactory;
       this.shuffleKey = shuffleKey;
       this.locations = (PartitionLocation[]) Utils.randomizeInPlace(locations, RAND);
       this.attempts = attempts;
+      this.batchesRead = new BatchIdSet(attempts.length);
       this.attemptNumber = attemptNumber;
       this.startMapIndex = startMapIndex;
       this.endMapIndex = endMapIndex;
       this.rangeReadFilter = conf.shuffleRangeReadFilterEnabled();
+      this.prefetchReaders = conf.fetchPrefetchReaders();
+      this.prefetchBudget = conf.fetchPrefetchBudget();
+      this.chunkSize = conf.shuffleChunkSize();
+      this.maxChunksInFlight = conf.fetchMaxReqsInFlight() * conf.fetchChunksPerRequest();
+      this.fetchMemory = fetchMemoryManager == null ? null : fetchMemoryManager.newStreamMemory();
+      this.fetchHedger = fetchHedger;
+      this.readerFactory = readerFactory == null ? this::createReader : readerFactory;
 
       int headerLen = Decompressor.getCompressionHeaderLength(conf);
-      int blockSize = conf.pushBufferMaxSize() + headerLen;
-      compressedBuf = new byte[blockSize];
-      decompressedBuf = new byte[blockSize];
+      this.blockSize = conf.pushBufferMaxSize() + headerLen;
 
       decompressor = Decompressor.getDecompressor(conf);
+      decompressor.setDictionary(dictionary);
+
+      readGroups = groupLocations(conf.fetchMultiFileStreamEnabled());
 
       moveToNextReader();
+
+      int decodeAheadBatches = conf.fetchDecodeAheadBatches();
+      if (decodeAheadBatches > 0
+          && currentChunk != null
+          && tryAcquireDecodeThread(conf.fetchDecodeAheadThreads())) {
+        // one more batch than decoded ahead, which is the one being read
+        for (int i = 0; i <= decodeAheadBatches; i++) {
+          freeBatches.add(new DecodedBatch());
+        }
+        decodingAhead = true;
+        decodeExecutor.execute(this::runDecoder);
+      } else {
+        decodingAhead = false;
+        currentBatch = new DecodedBatch();
+        decoderStopped.countDown();
+      }
+    }
+
+    /**
+     * Reserves a thread of the decode pool. The pool does not queue decoders, which would keep
+     * their streams waiting until other streams end, the stream decodes on the task thread instead.
+     */
+    private static synchronized boolean tryAcquireDecodeThread(int maxThreads) {
+      if (decodeExecutor == null) {
+        decodeExecutor =
+            ThreadUtils.newDaemonCachedThreadPool("celeborn-reader-decode", maxThreads, 60);
+        decodeThreads = new Semaphore(maxThreads);
+      }
+      return decodeThreads.tryAcquire();
     }
 
     private boolean skipLocation(int startMapIndex, int endMapIndex, PartitionLocation location) {
@@ -166,21 +316,60 @@ public abstract class RssInputStream extends InputStream {
       return true;
     }
 
-    private PartitionLocation nextReadableLocation() {
-      int locationCount = locations.length;
-      if (fileIndex >= locationCount) {
+    /**
+     * Drops the locations without data of the map range and picks the replica of each location to
+     * read. With multi-file streams, the locations of local files on the same worker, whose peers
+     * are on the same worker too, are read as one stream.
+     */
+    private List<PartitionLocation[]> groupLocations(boolean multiFileStream) {
+      List<List<PartitionLocation>> groups = new ArrayList<>();
+      Map<String, List<PartitionLocation>> workerGroups = new HashMap<>();
+      for (PartitionLocation location : locations) {
+        if (skipLocation(startMapIndex, endMapIndex, location)) {
+          skipCount.increment();
+          continue;
+        }
+        if (location.getPeer() == null) {
+          logger.debug("Partition {} has only one partition replica.", location);
+        }
+        if (location.getPeer() != null && attemptNumber % 2 == 1) {
+          location = location.getPeer();
+          logger.debug("Read peer {} for attempt {}.", location, attemptNumber);
+        }
+        String groupKey = multiFileStream ? streamGroupKey(location) : null;
+        List<PartitionLocation> group = groupKey == null ? null : workerGroups.get(groupKey);
+        if (group == null) {
+          group = new ArrayList<>();
+          groups.add(group);
+          if (groupKey != null) {
+            workerGroups.put(groupKey, group);
+          }
+        }
+        group.add(location);
+      }
+      List<PartitionLocation[]> readGroups = new ArrayList<>(groups.size());
+      for (List<PartitionLocation> group : groups) {
+        readGroups.add(group.toArray(new PartitionLocation[0]));
+      }
+      return readGroups;
+    }
+
+    /** Null if the location can not be read together with other locations. */
+    private String streamGroupKey(PartitionLocation location) {
+      PartitionLocation peer = location.getPeer();
+      if (!isLocal(location) || (peer != null && !isLocal(peer))) {
         return null;
       }
-      PartitionLocation currentLocation = locations[fileIndex];
-      while (skipLocation(startMapIndex, endMapIndex, currentLocation)) {
-        skipCount.increment();
-        fileIndex++;
-        if (fileIndex == locationCount) {
-          return null;
-        }
-        currentLocation = locations[fileIndex];
+      String key = location.getHost() + ":" + location.getFetchPort();
+      if (peer != null) {
+        key += "/" + peer.getHost() + ":" + peer.getFetchPort();
       }
-      return currentLocation;
+      return key;
+    }
+
+    private boolean isLocal(PartitionLocation location) {
+      StorageInfo.Type type = location.getStorageInfo().getType();
+      return type == StorageInfo.Type.HDD || type == StorageInfo.Type.SSD;
     }
 
     private void moveToNextReader() throws IOException {
@@ -188,43 +377,152 @@ public abstract class RssInputStream extends InputStream {
         currentReader.close();
         currentReader = null;
       }
-      PartitionLocation currentLocation = nextReadableLocation();
-      if (currentLocation == null) {
-        return;
-      }
-      currentReader = createReader(currentLocation);
-      fileIndex++;
-      while (!currentReader.hasNext()) {
+      currentReader = nextReader();
+      while (currentReader != null && !currentReader.hasNext()) {
         currentReader.close();
-        currentReader = null;
-        currentLocation = nextReadableLocation();
-        if (currentLocation == null) {
-          return;
+        currentReader = nextReader();
+      }
+      if (currentReader != null) {
+        currentChunk = currentReader.next();
+      }
+    }
+
+    private boolean hasMoreReaders() {
+      return fileIndex < readGroups.size() || !prefetchedReaders.isEmpty();
+    }
+
+    /**
+     * Returns the reader of the next locations in read order, null if there is none. Readers are
+     * always consumed in order, so the de-duplication of batches sees the same sequence with or
+     * without prefetching.
+     */
+    private PartitionReader nextReader() throws IOException {
+      if (prefetchReaders <= 0) {
+        if (fileIndex >= readGroups.size()) {
+          return null;
         }
-        currentReader = createReader(currentLocation);
-        fileIndex++;
+        return readerFactory.createReader(readGroups.get(fileIndex++));
       }
-      currentChunk = currentReader.next();
+      schedulePrefetch();
+      CompletableFuture<PrefetchedReader> future = prefetchedReaders.poll();
+      if (future == null) {
+        return null;
+      }
+      PrefetchedReader prefetched;
+      try {
+        prefetched = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+          cause = cause.getCause();
+        }
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      }
+      prefetchedBytes.addAndGet(-prefetched.reservedBytes);
+      // keep the next prefetchReaders locations opening while this one is read
+      schedulePrefetch();
+      return prefetched.reader;
     }
 
-    private PartitionReader createReader(PartitionLocation location) throws IOException {
-      if (location.getPeer() == null) {
-        logger.debug("Partition {} has only one partition replica.", location);
+    private void schedulePrefetch() {
+      while (prefetchedReaders.size() < prefetchReaders && fileIndex < readGroups.size()) {
+        PartitionLocation[] group = readGroups.get(fileIndex++);
+        prefetchedReaders.add(
+            CompletableFuture.supplyAsync(() -> prefetch(group), prefetchExecutor));
       }
-      if (location.getPeer() != null && attemptNumber % 2 == 1) {
-        location = location.getPeer();
-        logger.debug("Read peer {} for attempt {}.", location, attemptNumber);
+    }
+
+    private PrefetchedReader prefetch(PartitionLocation[] group) {
+      PartitionReader reader;
+      try {
+        reader = readerFactory.createReader(group);
+      } catch (IOException e) {
+        throw new CompletionException(e);
       }
+      int reservedChunks = reserveChunks(maxChunksInFlight);
+      int fetchedChunks = reader.prefetch(reservedChunks);
+      prefetchedBytes.addAndGet(-(reservedChunks - fetchedChunks) * chunkSize);
+      return new PrefetchedReader(reader, fetchedChunks * chunkSize);
+    }
+
+    /** Reserves budget for up to maxChunks chunks, each estimated at the shuffle chunk size. */
+    private int reserveChunks(int maxChunks) {
+      while (true) {
+        long reserved = prefetchedBytes.get();
+        int chunks = (int) Math.min(maxChunks, (prefetchBudget - reserved) / chunkSize);
+        if (chunks <= 0) {
+          return 0;
+        }
+        if (prefetchedBytes.compareAndSet(reserved, reserved + chunks * chunkSize)) {
+          return chunks;
+        }
+      }
+    }
+
+    /** Decompressed bytes of a batch, the buffer is reused for the following batches. */
+    private static final class DecodedBatch {
+      ByteBuf buf;
+      int length;
+      int bytesRead;
+    }
+
+    private static final class PrefetchedReader {
+      final PartitionReader reader;
+      final long reservedBytes;
 
+      PrefetchedReader(PartitionReader reader, long reservedBytes) {
+        this.reader = reader;
+        this.reservedBytes = reservedBytes;
+      }
+    }
+
+    private PartitionReader createReader(PartitionLocation[] group) throws IOException {
+      if (conf.fetchShortCircuitEnabled()) {
+        PartitionLocation[] localGroup = LocalPartitionReader.localLocations(group);
+        if (localGroup != null) {
+          try {
+            return new LocalPartitionReader(
+                conf, shuffleKey, localGroup, clientFactory, startMapIndex, endMapIndex);
+          } catch (IOException e) {
+            logger.warn(
+                "Short-circuit read of {} failed, fetching it from the worker.", localGroup[0], e);
+          }
+        }
+      }
+      if (group.length > 1) {
+        return new WorkerPartitionReader(
+            conf,
+            shuffleKey,
+            group,
+            clientFactory,
+            startMapIndex,
+            endMapIndex,
+            fetchMemory,
+            fetchHedger);
+      }
+      PartitionLocation location = group[0];
       StorageInfo storageInfo = location.getStorageInfo();
       if (storageInfo.getType() == StorageInfo.Type.HDD
           || storageInfo.getType() == StorageInfo.Type.SSD) {
         return new WorkerPartitionReader(
-            conf, shuffleKey, location, clientFactory, startMapIndex, endMapIndex);
+            conf,
+            shuffleKey,
+            location,
+            clientFactory,
+            startMapIndex,
+            endMapIndex,
+            fetchMemory,
+            fetchHedger);
       }
       if (storageInfo.getType() == StorageInfo.Type.HDFS) {
         return new DfsPartitionReader(
-            conf, shuffleKey, location, clientFactory, startMapIndex, endMapIndex);
+            conf, shuffleKey, location, clientFactory, startMapIndex, endMapIndex, fetchMemory);
       }
 
       throw new IOException(
@@ -239,7 +537,7 @@ public abstract class RssInputStream extends InputStream {
     @Override
     public int read() throws IOException {
       if (position < limit) {
-        int b = decompressedBuf[position];
+        int b = currentBatch.buf.getByte(position);
         position++;
         return b & 0xFF;
       }
@@ -251,7 +549,7 @@ public abstract class RssInputStream extends InputStream {
       if (position >= limit) {
         return read();
       } else {
-        int b = decompressedBuf[position];
+        int b = currentBatch.buf.getByte(position);
         position++;
         return b & 0xFF;
       }
@@ -276,7 +574,7 @@ public abstract class RssInputStream extends InputStream {
         }
 
         int bytesToRead = Math.min(limit - position, len - readBytes);
-        System.arraycopy(decompressedBuf, position, b, off + readBytes, bytesToRead);
+        currentBatch.buf.getBytes(position, b, off + readBytes, bytesToRead);
         position += bytesToRead;
         readBytes += bytesToRead;
       }
@@ -284,6 +582,18 @@ public abstract class RssInputStream extends InputStream {
       return readBytes;
     }
 
+    @Override
+    public ByteBuffer readBatch() throws IOException {
+      while (position >= limit) {
+        if (!fillBuffer()) {
+          return null;
+        }
+      }
+      ByteBuffer batch = currentBatch.buf.nioBuffer(position, limit - position);
+      position = limit;
+      return batch;
+    }
+
     @Override
     public void close() {
       int locationsCount = locations.length;
@@ -292,6 +602,27 @@ public abstract class RssInputStream extends InputStream {
           locationsCount,
           locationsCount - skipCount.sum(),
           skipCount.sum());
+      boolean alreadyClosed;
+      synchronized (decoderLock) {
+        alreadyClosed = closed;
+        closed = true;
+        // The interrupt stops the decoder waiting for a free batch or in reader.next(), where the
+        // readers only wait for fetched chunks, or read a local chunk through a channel of its own.
+        if (decoderThread != null) {
+          decoderThread.interrupt();
+        }
+      }
+      Uninterruptibles.awaitUninterruptibly(decoderStopped);
+      releaseBatch(currentBatch);
+      currentBatch = null;
+      for (DecodedBatch batch : freeBatches) {
+        releaseBatch(batch);
+      }
+      freeBatches.clear();
+      for (DecodedBatch batch : decodedBatches) {
+        releaseBatch(batch);
+      }
+      decodedBatches.clear();
       if (currentChunk != null) {
         logger.debug("Release chunk {}", currentChunk);
         currentChunk.release();
@@ -302,6 +633,33 @@ public abstract class RssInputStream extends InputStream {
         currentReader.close();
         currentReader = null;
       }
+      for (CompletableFuture<PrefetchedReader> future : prefetchedReaders) {
+        future.thenAccept(
+            prefetched -> {
+              prefetchedBytes.addAndGet(-prefetched.reservedBytes);
+              prefetched.reader.close();
+            });
+      }
+      prefetchedReaders.clear();
+      if (compressedBuf != null) {
+        compressedBuf.release();
+        compressedBuf = null;
+      }
+      if (!alreadyClosed && fetchMemory != null && callback != null) {
+        callback.incPeakFetchMemory(fetchMemory.getPeakBytes());
+      }
+    }
+
+    @VisibleForTesting
+    long getPrefetchedBytes() {
+      return prefetchedBytes.get();
+    }
+
+    private void releaseBatch(DecodedBatch batch) {
+      if (batch != null && batch.buf != null) {
+        batch.buf.release();
+        batch.buf = null;
+      }
     }
 
     private boolean moveToNextChunk() throws IOException {
@@ -312,7 +670,7 @@ public abstract class RssInputStream extends InputStream {
       if (currentReader.hasNext()) {
         currentChunk = currentReader.next();
         return true;
-      } else if (fileIndex < locations.length) {
+      } else if (hasMoreReaders()) {
         moveToNextReader();
         return currentReader != null;
       }
@@ -324,46 +682,144 @@ public abstract class RssInputStream extends InputStream {
     }
 
     private boolean fillBuffer() throws IOException {
+      if (decodingAhead) {
+        return takeDecodedBatch();
+      }
       if (currentChunk == null) {
         return false;
       }
 
       long startTime = System.currentTimeMillis();
+      boolean hasData = decodeBatch(currentBatch);
+      if (hasData) {
+        position = 0;
+        limit = currentBatch.length;
+        if (callback != null) {
+          callback.incBytesRead(currentBatch.bytesRead);
+        }
+      }
+
+      if (callback != null) {
+        callback.incReadTime(System.currentTimeMillis() - startTime);
+      }
+      return hasData;
+    }
+
+    /** Moves to the next batch of the decoder, the read time is the time waiting for it. */
+    private boolean takeDecodedBatch() throws IOException {
+      if (currentBatch == END_OF_BATCHES) {
+        return false;
+      }
+      if (currentBatch != null) {
+        freeBatches.add(currentBatch);
+        currentBatch = null;
+      }
+
+      long startTime = System.currentTimeMillis();
+      DecodedBatch batch;
+      try {
+        batch = decodedBatches.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      if (callback != null) {
+        callback.incReadTime(System.currentTimeMillis() - startTime);
+      }
+
+      currentBatch = batch;
+      if (batch == END_OF_BATCHES) {
+        Throwable error = decodeError;
+        if (error instanceof IOException) {
+          throw (IOException) error;
+        } else if (error != null) {
+          throw new IOException(error);
+        }
+        return false;
+      }
+      position = 0;
+      limit = batch.length;
+      if (callback != null) {
+        callback.incBytesRead(batch.bytesRead);
+      }
+      return true;
+    }
 
-      boolean hasData = false;
+    /** Reads and decompresses the batches ahead of the task until the end or close. */
+    private void runDecoder() {
+      synchronized (decoderLock) {
+        if (closed) {
+          decodeThreads.release();
+          decoderStopped.countDown();
+          return;
+        }
+        decoderThread = Thread.currentThread();
+      }
+      DecodedBatch batch = null;
+      try {
+        while (true) {
+          batch = freeBatches.take();
+          if (!decodeBatch(batch)) {
+            break;
+          }
+          decodedBatches.add(batch);
+          batch = null;
+        }
+      } catch (InterruptedException e) {
+        logger.debug("Decoder is interrupted by close.");
+      } catch (Throwable e) {
+        synchronized (decoderLock) {
+          if (closed) {
+            // a read interrupted by close fails, e.g. with ClosedByInterruptException
+            logger.debug("Decoder is stopped by close.", e);
+          } else {
+            decodeError = e;
+          }
+        }
+      } finally {
+        if (batch != null) {
+          freeBatches.add(batch);
+        }
+        decodedBatches.add(END_OF_BATCHES);
+        synchronized (decoderLock) {
+          decoderThread = null;
+        }
+        // do not leave an interrupt of close to the next task of the pool thread
+        Thread.interrupted();
+        decodeThreads.release();
+        decoderStopped.countDown();
+      }
+    }
+
+    /** Decompresses the next batch which is not a duplicate into the batch, false at the end. */
+    private boolean decodeBatch(DecodedBatch batch) throws IOException {
+      if (currentChunk == null) {
+        return false;
+      }
       while (currentChunk.isReadable() || moveToNextChunk()) {
         currentChunk.readBytes(sizeBuf);
         int mapId = Platform.getInt(sizeBuf, Platform.BYTE_ARRAY_OFFSET);
         int attemptId = Platform.getInt(sizeBuf, Platform.BYTE_ARRAY_OFFSET + 4);
         int batchId = Platform.getInt(sizeBuf, Platform.BYTE_ARRAY_OFFSET + 8);
         int size = Platform.getInt(sizeBuf, Platform.BYTE_ARRAY_OFFSET + 12);
-        if (size > compressedBuf.length) {
-          compressedBuf = new byte[size];
-        }
-
-        currentChunk.readBytes(compressedBuf, 0, size);
 
         // de-duplicate
         if (attemptId == attempts[mapId]) {
-          if (!batchesRead.containsKey(mapId)) {
-            Set<Integer> batchSet = new HashSet<>();
-            batchesRead.put(mapId, batchSet);
-          }
-          Set<Integer> batchSet = batchesRead.get(mapId);
-          if (!batchSet.contains(batchId)) {
-            batchSet.add(batchId);
-            if (callback != null) {
-              callback.incBytesRead(BATCH_HEADER_SIZE + size);
-            }
+          if (batchesRead.add(mapId, batchId)) {
             // decompress data
-            int originalLength = decompressor.getOriginalLen(compressedBuf);
-            if (decompressedBuf.length < originalLength) {
-              decompressedBuf = new byte[originalLength];
+            ByteBuffer compressed = readCompressedBatch(size);
+            int originalLength = decompressor.getOriginalLen(compressed, compressed.position());
+            if (batch.buf == null || batch.buf.capacity() < originalLength) {
+              releaseBatch(batch);
+              batch.buf =
+                  PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(blockSize, originalLength));
             }
-            limit = decompressor.decompress(compressedBuf, decompressedBuf, 0);
-            position = 0;
-            hasData = true;
-            break;
+            ByteBuffer decompressed = batch.buf.nioBuffer(0, originalLength);
+            batch.length =
+                decompressor.decompress(
+                    compressed, compressed.position(), decompressed, decompressed.position());
+            batch.bytesRead = BATCH_HEADER_SIZE + size;
+            return true;
           } else {
             logger.debug(
                 "Skip duplicated batch: mapId {}, attemptId {}, batchId {}.",
@@ -372,12 +828,28 @@ public abstract class RssInputStream extends InputStream {
                 batchId);
           }
         }
+        currentChunk.skipBytes(size);
       }
+      return false;
+    }
 
-      if (callback != null) {
-        callback.incReadTime(System.currentTimeMillis() - startTime);
+    private ByteBuffer readCompressedBatch(int size) {
+      ByteBuffer compressed;
+      if (currentChunk.isDirect() && currentChunk.nioBufferCount() == 1) {
+        compressed = currentChunk.nioBuffer(currentChunk.readerIndex(), size);
+        currentChunk.skipBytes(size);
+      } else {
+        if (compressedBuf == null || compressedBuf.capacity() < size) {
+          if (compressedBuf != null) {
+            compressedBuf.release();
+          }
+          compressedBuf = PooledByteBufAllocator.DEFAULT.directBuffer(size);
+        }
+        compressedBuf.clear();
+        currentChunk.readBytes(compressedBuf, size);
+        compressed = compressedBuf.nioBuffer(0, size);
       }
-      return hasData;
+      return compressed;
     }
   }
 }
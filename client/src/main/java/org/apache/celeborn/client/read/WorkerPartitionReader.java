@@ -46,17 +46,53 @@ public class WorkerPartitionReader implements PartitionReader {
 
   private final AtomicReference<IOException> exception = new AtomicReference<>();
   private final int fetchMaxReqsInFlight;
+  private final int fetchChunksPerRequest;
   private boolean closed = false;
 
+  // null if the fetch memory is unlimited
+  private final FetchMemoryManager.StreamMemory memory;
+  private final long chunkSize;
+  private int[] chunkLengths;
+  // bytes this reader has reserved, and those of the chunk returned last
+  private long reservedBytes = 0;
+  private long returnedBytes = 0;
+
   WorkerPartitionReader(
       CelebornConf conf,
       String shuffleKey,
       PartitionLocation location,
       TransportClientFactory clientFactory,
       int startMapIndex,
-      int endMapIndex)
+      int endMapIndex,
+      FetchMemoryManager.StreamMemory memory,
+      FetchHedger hedger)
+      throws IOException {
+    this(
+        conf,
+        shuffleKey,
+        new PartitionLocation[] {location},
+        clientFactory,
+        startMapIndex,
+        endMapIndex,
+        memory,
+        hedger);
+  }
+
+  /** Reads the files of locations on one worker as one stream. */
+  WorkerPartitionReader(
+      CelebornConf conf,
+      String shuffleKey,
+      PartitionLocation[] locations,
+      TransportClientFactory clientFactory,
+      int startMapIndex,
+      int endMapIndex,
+      FetchMemoryManager.StreamMemory memory,
+      FetchHedger hedger)
       throws IOException {
+    this.memory = memory;
+    chunkSize = conf.shuffleChunkSize();
     fetchMaxReqsInFlight = conf.fetchMaxReqsInFlight();
+    fetchChunksPerRequest = conf.fetchChunksPerRequest();
     results = new LinkedBlockingQueue<>();
     // only add the buffer to results queue if this reader is not closed.
     ChunkReceivedCallback callback =
@@ -64,9 +100,14 @@ public class WorkerPartitionReader implements PartitionReader {
           @Override
           public void onSuccess(int chunkIndex, ManagedBuffer buffer) {
             // only add the buffer to results queue if this reader is not closed.
-            synchronized (this) {
+            synchronized (WorkerPartitionReader.this) {
               ByteBuf buf = ((NettyManagedBuffer) buffer).getBuf();
               if (!closed) {
+                if (memory != null) {
+                  long delta = buf.readableBytes() - chunkBytes(chunkIndex);
+                  memory.adjust(delta);
+                  reservedBytes += delta;
+                }
                 buf.retain();
                 results.add(buf);
               }
@@ -82,8 +123,16 @@ public class WorkerPartitionReader implements PartitionReader {
         };
     client =
         new RetryingChunkClient(
-            conf, shuffleKey, location, callback, clientFactory, startMapIndex, endMapIndex);
+            conf,
+            shuffleKey,
+            locations,
+            callback,
+            clientFactory,
+            startMapIndex,
+            endMapIndex,
+            hedger);
     numChunks = client.openChunks();
+    chunkLengths = client.getChunkLengths();
   }
 
   public boolean hasNext() {
@@ -92,6 +141,7 @@ public class WorkerPartitionReader implements PartitionReader {
 
   public ByteBuf next() throws IOException {
     checkException();
+    releaseReturnedChunk();
     if (chunkIndex < numChunks) {
       fetchChunks();
     }
@@ -108,12 +158,20 @@ public class WorkerPartitionReader implements PartitionReader {
       throw ioe;
     }
     returnedChunks++;
+    if (memory != null) {
+      returnedBytes = chunk.readableBytes();
+    }
     return chunk;
   }
 
   public void close() {
+    client.close();
     synchronized (this) {
       closed = true;
+      if (memory != null) {
+        memory.release(reservedBytes);
+        reservedBytes = 0;
+      }
     }
     if (results.size() > 0) {
       results.forEach(ReferenceCounted::release);
@@ -121,13 +179,97 @@ public class WorkerPartitionReader implements PartitionReader {
     results.clear();
   }
 
-  private void fetchChunks() {
+  @Override
+  public int prefetch(int maxChunks) {
+    int toFetch = reserveChunks(Math.min(maxChunks, numChunks - chunkIndex));
+    fetchChunks(toFetch);
+    return toFetch;
+  }
+
+  private void fetchChunks() throws IOException {
     final int inFlight = chunkIndex - returnedChunks;
-    if (inFlight < fetchMaxReqsInFlight) {
-      final int toFetch = Math.min(fetchMaxReqsInFlight - inFlight + 1, numChunks - chunkIndex);
-      for (int i = 0; i < toFetch; i++) {
-        client.fetchChunk(chunkIndex++);
+    final int maxChunksInFlight = fetchMaxReqsInFlight * fetchChunksPerRequest;
+    if (inFlight < maxChunksInFlight) {
+      int toFetch =
+          reserveChunks(Math.min(maxChunksInFlight - inFlight + 1, numChunks - chunkIndex));
+      if (toFetch == 0 && inFlight == 0) {
+        // nothing else to return, wait in turn for the next chunk
+        waitForChunk();
+        toFetch = 1;
+      }
+      fetchChunks(toFetch);
+    }
+  }
+
+  /**
+   * Reserves fetch memory for up to maxChunks chunks from chunkIndex as far as it is available
+   * without waiting.
+   *
+   * @return the number of chunks reserved.
+   */
+  private int reserveChunks(int maxChunks) {
+    if (memory == null) {
+      return maxChunks;
+    }
+    int reserved = 0;
+    while (reserved < maxChunks) {
+      long bytes = chunkBytes(chunkIndex + reserved);
+      if (!memory.tryReserve(bytes) || !addReserved(bytes)) {
+        break;
+      }
+      reserved++;
+    }
+    return reserved;
+  }
+
+  private void waitForChunk() throws IOException {
+    long bytes = chunkBytes(chunkIndex);
+    try {
+      memory.reserve(bytes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    addReserved(bytes);
+  }
+
+  // returns false and gives the bytes back if the reader has been closed
+  private synchronized boolean addReserved(long bytes) {
+    if (closed) {
+      memory.release(bytes);
+      return false;
+    }
+    reservedBytes += bytes;
+    return true;
+  }
+
+  private void releaseReturnedChunk() {
+    if (returnedBytes > 0) {
+      synchronized (this) {
+        if (!closed) {
+          memory.release(returnedBytes);
+          reservedBytes -= returnedBytes;
+        }
+      }
+      returnedBytes = 0;
+    }
+  }
+
+  // bytes reserved for a chunk, its length if the worker told it
+  private long chunkBytes(int index) {
+    return chunkLengths != null ? chunkLengths[index] : chunkSize;
+  }
+
+  private void fetchChunks(int toFetch) {
+    while (toFetch > 0) {
+      int batch = Math.min(toFetch, fetchChunksPerRequest);
+      if (batch == 1) {
+        client.fetchChunk(chunkIndex);
+      } else {
+        client.fetchChunks(chunkIndex, batch);
       }
+      chunkIndex += batch;
+      toFetch -= batch;
     }
   }
 
@@ -19,34 +19,42 @@ package org.apache.celeborn.client.write;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 import org.apache.celeborn.common.protocol.PartitionLocation;
 
 public class DataBatches {
   private int totalSize = 0;
   private ArrayList<DataBatch> batches = new ArrayList<>();
+  private final long createTime = System.currentTimeMillis();
 
   public static class DataBatch {
     public final PartitionLocation loc;
     public final int batchId;
-    public final byte[] body;
+    public final ByteBuf body;
 
-    public DataBatch(PartitionLocation loc, int batchId, byte[] body) {
+    public DataBatch(PartitionLocation loc, int batchId, ByteBuf body) {
       this.loc = loc;
       this.batchId = batchId;
       this.body = body;
     }
   }
 
-  public synchronized void addDataBatch(PartitionLocation loc, int batchId, byte[] body) {
+  public synchronized void addDataBatch(PartitionLocation loc, int batchId, ByteBuf body) {
     DataBatch dataBatch = new DataBatch(loc, batchId, body);
     batches.add(dataBatch);
-    totalSize += body.length;
+    totalSize += body.readableBytes();
   }
 
   public int getTotalSize() {
     return totalSize;
   }
 
+  /** The time the first of the batches was added. */
+  public long getCreateTime() {
+    return createTime;
+  }
+
   public ArrayList<DataBatch> requireBatches() {
     totalSize = 0;
     ArrayList<DataBatch> allBatches = batches;
@@ -57,16 +65,28 @@ public class DataBatches {
   public ArrayList<DataBatch> requireBatches(int requestSize) {
     if (requestSize >= totalSize) {
       totalSize = 0;
-      return batches;
+      ArrayList<DataBatch> allBatches = batches;
+      batches = new ArrayList<>();
+      return allBatches;
     }
     ArrayList<DataBatch> retBatches = new ArrayList<>();
     int currentSize = 0;
     while (currentSize < requestSize) {
       DataBatch elem = batches.remove(0);
       retBatches.add(elem);
-      currentSize += elem.body.length;
-      totalSize -= elem.body.length;
+      currentSize += elem.body.readableBytes();
+      totalSize -= elem.body.readableBytes();
     }
     return retBatches;
   }
+
+  public synchronized void releaseBatches() {
+    if (batches != null) {
+      for (DataBatch batch : batches) {
+        batch.body.release();
+      }
+      batches = null;
+    }
+    totalSize = 0;
+  }
 }
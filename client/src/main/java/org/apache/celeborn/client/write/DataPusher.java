@@ -127,15 +127,36 @@ public class DataPusher {
   }
 
   public void addTask(int partitionId, byte[] buffer, int size) throws IOException {
+    PushTask task = takeIdleTask();
+    task.setSize(size);
+    System.arraycopy(buffer, 0, task.getBuffer(), 0, size);
+    submitTask(task, partitionId, size);
+  }
+
+  /**
+   * Takes an idle task, whose buffer the caller fills in place and then hands to {@link
+   * #submitTask}.
+   */
+  public PushTask takeIdleTask() throws IOException {
     try {
       PushTask task = null;
       while (task == null) {
         checkException();
         task = idleQueue.poll(WAIT_TIME_NANOS, TimeUnit.NANOSECONDS);
       }
-      task.setSize(size);
-      task.setPartitionId(partitionId);
-      System.arraycopy(buffer, 0, task.getBuffer(), 0, size);
+      return task;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      IOException ioe = new IOException(e);
+      exceptionRef.set(ioe);
+      throw ioe;
+    }
+  }
+
+  public void submitTask(PushTask task, int partitionId, int size) throws IOException {
+    task.setSize(size);
+    task.setPartitionId(partitionId);
+    try {
       while (!workingQueue.offer(task, WAIT_TIME_NANOS, TimeUnit.NANOSECONDS)) {
         checkException();
       }
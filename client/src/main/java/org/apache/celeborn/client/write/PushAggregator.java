@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.write;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.util.ThreadUtils;
+
+/**
+ * Coalesces the batches of all tasks of the executor into frames, one frame per shuffle and worker
+ * address pair, so that the tasks pushing to the same workers share large PushMergedData requests.
+ * A frame is pushed by a small pool of pusher threads when it is full, when it has waited for the
+ * linger time, or when a task flushes the frames holding its batches. The bytes held in frames not
+ * acknowledged yet are limited by a memory budget shared by all tasks.
+ */
+public class PushAggregator {
+  private static final Logger logger = LoggerFactory.getLogger(PushAggregator.class);
+
+  /** Pushes a frame, calling {@link Frame#finished()} once the push is acknowledged or failed. */
+  public interface FrameSender {
+    void send(Frame frame);
+  }
+
+  /** The batches of one task in a frame, registered in flight as one grouped batch. */
+  public static class TaskBatches {
+    public final String applicationId;
+    public final int shuffleId;
+    public final int mapId;
+    public final int attemptId;
+    public final PushState pushState;
+    public final int groupedBatchId;
+    public final ArrayList<DataBatches.DataBatch> batches = new ArrayList<>();
+
+    TaskBatches(
+        String applicationId,
+        int shuffleId,
+        int mapId,
+        int attemptId,
+        PushState pushState,
+        DataBatches.DataBatch firstBatch) {
+      this.applicationId = applicationId;
+      this.shuffleId = shuffleId;
+      this.mapId = mapId;
+      this.attemptId = attemptId;
+      this.pushState = pushState;
+      this.groupedBatchId = pushState.batchId.addAndGet(1);
+      pushState.inFlightBatches.put(groupedBatchId, firstBatch.loc);
+    }
+  }
+
+  /** The batches of the tasks of one shuffle pushed to one address pair in a PushMergedData. */
+  public class Frame {
+    public final String shuffleKey;
+    public final String addressPair;
+    private final LinkedHashMap<PushState, TaskBatches> tasks = new LinkedHashMap<>();
+    private final long createTime = System.currentTimeMillis();
+    private int size = 0;
+    private boolean finished = false;
+
+    Frame(String shuffleKey, String addressPair) {
+      this.shuffleKey = shuffleKey;
+      this.addressPair = addressPair;
+    }
+
+    public Collection<TaskBatches> getTasks() {
+      return tasks.values();
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    /** Returns the bytes of the frame to the memory budget. */
+    public void finished() {
+      synchronized (PushAggregator.this) {
+        if (!finished) {
+          finished = true;
+          usedBytes -= size;
+          PushAggregator.this.notifyAll();
+        }
+      }
+    }
+  }
+
+  private final FrameSender sender;
+  private final int frameSize;
+  private final long memoryBudget;
+  private final long waitTimeoutMs;
+  private final long waitDeltaMs;
+  private final ExecutorService pusherPool;
+  private final ScheduledExecutorService lingerChecker;
+  // key: ${shuffleKey}/${addressPair}, guarded by this
+  private final HashMap<String, Frame> pendingFrames = new HashMap<>();
+  private long usedBytes = 0;
+
+  public PushAggregator(CelebornConf conf, FrameSender sender) {
+    this.sender = sender;
+    this.frameSize = conf.pushAggregatorFrameSize();
+    this.memoryBudget = conf.pushAggregatorMemory();
+    this.waitTimeoutMs = conf.pushLimitInFlightTimeoutMs();
+    this.waitDeltaMs = conf.pushLimitInFlightSleepDeltaMs();
+    this.pusherPool =
+        ThreadUtils.newDaemonFixedThreadPool(conf.pushAggregatorThreads(), "celeborn-pusher");
+    long lingerTimeMs = conf.pushLingerTimeMs();
+    if (lingerTimeMs > 0) {
+      // frames are pushed at most half the linger time late
+      long interval = Math.max(lingerTimeMs / 2, 1);
+      lingerChecker =
+          ThreadUtils.newDaemonSingleThreadScheduledExecutor("celeborn-push-linger-checker");
+      lingerChecker.scheduleWithFixedDelay(
+          () -> flushLingered(lingerTimeMs), interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      lingerChecker = null;
+    }
+  }
+
+  /**
+   * Adds a batch of a task to the frame of its shuffle and address pair, waiting for pushed frames
+   * to finish while the memory budget is used up. The batch belongs to the aggregator unless an
+   * IOException is thrown.
+   */
+  public synchronized void add(
+      String applicationId,
+      int shuffleId,
+      int mapId,
+      int attemptId,
+      PushState pushState,
+      String shuffleKey,
+      String addressPair,
+      DataBatches.DataBatch batch)
+      throws IOException {
+    int bytes = batch.body.readableBytes();
+    long deadline = System.currentTimeMillis() + waitTimeoutMs;
+    try {
+      while (usedBytes > 0 && usedBytes + bytes > memoryBudget) {
+        if (pushState.exception.get() != null) {
+          throw pushState.exception.get();
+        }
+        // only pushed frames give memory back
+        flushAll();
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          logger.error(
+              "After waiting for {} ms, {} bytes of pushed batches are not finished, which "
+                  + "exceeds the budget {}.",
+              waitTimeoutMs,
+              usedBytes,
+              memoryBudget);
+          throw new IOException("wait timeout for push memory of map " + mapId);
+        }
+        wait(Math.min(waitDeltaMs, remaining));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    usedBytes += bytes;
+
+    String key = shuffleKey + "/" + addressPair;
+    Frame frame = pendingFrames.computeIfAbsent(key, k -> new Frame(shuffleKey, addressPair));
+    TaskBatches taskBatches = frame.tasks.get(pushState);
+    if (taskBatches == null) {
+      taskBatches = new TaskBatches(applicationId, shuffleId, mapId, attemptId, pushState, batch);
+      frame.tasks.put(pushState, taskBatches);
+    }
+    taskBatches.batches.add(batch);
+    frame.size += bytes;
+    if (frame.size >= frameSize) {
+      pendingFrames.remove(key);
+      push(frame);
+    }
+  }
+
+  /** Pushes the frames holding batches of the task. */
+  public synchronized void flush(PushState pushState) {
+    Iterator<Frame> iterator = pendingFrames.values().iterator();
+    while (iterator.hasNext()) {
+      Frame frame = iterator.next();
+      if (frame.tasks.containsKey(pushState)) {
+        iterator.remove();
+        push(frame);
+      }
+    }
+  }
+
+  /** Pushes the frames created at least lingerMs ago. */
+  public synchronized void flushLingered(long lingerMs) {
+    long now = System.currentTimeMillis();
+    Iterator<Frame> iterator = pendingFrames.values().iterator();
+    while (iterator.hasNext()) {
+      Frame frame = iterator.next();
+      if (now - frame.createTime >= lingerMs) {
+        iterator.remove();
+        push(frame);
+      }
+    }
+  }
+
+  /** Removes the batches of the task not pushed yet, releasing their bodies. */
+  public synchronized void discard(PushState pushState) {
+    Iterator<Frame> iterator = pendingFrames.values().iterator();
+    while (iterator.hasNext()) {
+      Frame frame = iterator.next();
+      TaskBatches taskBatches = frame.tasks.remove(pushState);
+      if (taskBatches != null) {
+        for (DataBatches.DataBatch batch : taskBatches.batches) {
+          frame.size -= batch.body.readableBytes();
+          usedBytes -= batch.body.readableBytes();
+          batch.body.release();
+        }
+        if (frame.tasks.isEmpty()) {
+          iterator.remove();
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public synchronized int getPendingFrameCount() {
+    return pendingFrames.size();
+  }
+
+  public void close() {
+    if (lingerChecker != null) {
+      lingerChecker.shutdownNow();
+    }
+    pusherPool.shutdown();
+    synchronized (this) {
+      for (Frame frame : pendingFrames.values()) {
+        for (TaskBatches taskBatches : frame.tasks.values()) {
+          for (DataBatches.DataBatch batch : taskBatches.batches) {
+            batch.body.release();
+          }
+        }
+      }
+      pendingFrames.clear();
+    }
+  }
+
+  private void flushAll() {
+    for (Frame frame : pendingFrames.values()) {
+      push(frame);
+    }
+    pendingFrames.clear();
+  }
+
+  private void push(Frame frame) {
+    pusherPool.submit(() -> sender.send(frame));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.write;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.celeborn.common.CelebornConf;
+
+/**
+ * Limits the bytes in flight to each worker with a window per worker, shared by the pushes of all
+ * tasks. A window grows by one push buffer for each window of bytes acknowledged in time, and is
+ * halved, at most once per round trip, when a push fails, a partition of the worker has to be
+ * split, or a push takes much longer than the fastest recent one.
+ */
+public class PushCongestionControl {
+  // the lowest RTT is forgotten after this long, the worker may have become slower for good
+  private static final long MIN_RTT_LIFETIME_NS = TimeUnit.SECONDS.toNanos(30);
+
+  private final long initialWindow;
+  private final long minWindow;
+  private final long maxWindow;
+  private final double rttTolerance;
+  private final ConcurrentHashMap<String, WorkerWindow> windows = new ConcurrentHashMap<>();
+
+  public PushCongestionControl(CelebornConf conf) {
+    this.minWindow = conf.pushBufferMaxSize();
+    this.maxWindow = Math.max(conf.pushCongestionControlMaxWindow(), minWindow);
+    this.initialWindow =
+        Math.min(Math.max(conf.pushCongestionControlInitialWindow(), minWindow), maxWindow);
+    this.rttTolerance = conf.pushCongestionControlRttTolerance();
+  }
+
+  /**
+   * Adds the bytes to the bytes in flight to the worker if they fit in its window, waiting at most
+   * maxWaitMs for pushes to the worker to finish. Nothing in flight always fits. Returns false if
+   * the bytes did not fit.
+   */
+  public boolean tryAcquire(String worker, long bytes, long maxWaitMs) throws InterruptedException {
+    WorkerWindow window = windows.computeIfAbsent(worker, w -> new WorkerWindow());
+    synchronized (window) {
+      if (!window.fits(bytes) && maxWaitMs > 0) {
+        window.wait(maxWaitMs);
+      }
+      if (window.fits(bytes)) {
+        window.inFlightBytes += bytes;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /** The acquired bytes were acknowledged after rttNs. */
+  public void onAcked(String worker, long bytes, long rttNs) {
+    WorkerWindow window = windows.get(worker);
+    synchronized (window) {
+      window.inFlightBytes -= bytes;
+      window.lastRttNs = rttNs;
+      long now = System.nanoTime();
+      if (window.minRttNs == 0 || rttNs < window.minRttNs || now > window.minRttExpireNs) {
+        window.minRttNs = Math.max(rttNs, 1);
+        window.minRttExpireNs = now + MIN_RTT_LIFETIME_NS;
+      }
+      if (rttNs > window.minRttNs * rttTolerance) {
+        window.decrease(now, rttNs);
+      } else {
+        window.size = Math.min(window.size + (double) minWindow * bytes / window.size, maxWindow);
+      }
+      window.notifyAll();
+    }
+  }
+
+  /** The push of the acquired bytes failed or asked for a partition split. */
+  public void onCongested(String worker, long bytes) {
+    WorkerWindow window = windows.get(worker);
+    synchronized (window) {
+      window.inFlightBytes -= bytes;
+      window.decrease(System.nanoTime(), window.lastRttNs);
+      window.notifyAll();
+    }
+  }
+
+  public long getWindow(String worker) {
+    WorkerWindow window = windows.get(worker);
+    if (window == null) {
+      return initialWindow;
+    }
+    synchronized (window) {
+      return (long) window.size;
+    }
+  }
+
+  public long getInFlightBytes(String worker) {
+    WorkerWindow window = windows.get(worker);
+    if (window == null) {
+      return 0;
+    }
+    synchronized (window) {
+      return window.inFlightBytes;
+    }
+  }
+
+  private class WorkerWindow {
+    double size = initialWindow;
+    long inFlightBytes = 0;
+    long minRttNs = 0;
+    long minRttExpireNs = 0;
+    long lastRttNs = 0;
+    long lastDecreaseNs = 0;
+
+    boolean fits(long bytes) {
+      return inFlightBytes == 0 || inFlightBytes + bytes <= size;
+    }
+
+    void decrease(long now, long rttNs) {
+      // the pushes in flight when the window was halved may still report the same congestion
+      if (lastDecreaseNs == 0 || now - lastDecreaseNs > rttNs) {
+        size = Math.max(size / 2, minWindow);
+        lastDecreaseNs = now;
+      }
+    }
+  }
+}
@@ -18,12 +18,16 @@
 package org.apache.celeborn.client.write;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +45,59 @@ public class PushState {
       new ConcurrentHashMap<>();
   public final ConcurrentHashMap<Integer, ChannelFuture> futures = new ConcurrentHashMap<>();
   public AtomicReference<IOException> exception = new AtomicReference<>();
+  private final Object batchFinished = new Object();
+
+  private final int compressionProbeInterval;
+  private final double incompressibleRatio;
+  // partition id -> count of its following batches to store uncompressed
+  private final ConcurrentHashMap<Integer, Integer> batchesToStore = new ConcurrentHashMap<>();
 
   public PushState(CelebornConf conf) {
     pushBufferMaxSize = conf.pushBufferMaxSize();
+    compressionProbeInterval = conf.shuffleCompressionProbeInterval();
+    incompressibleRatio = conf.shuffleCompressionIncompressibleRatio();
+  }
+
+  public void removeBatch(int batchId) {
+    if (inFlightBatches.remove(batchId) != null) {
+      synchronized (batchFinished) {
+        batchFinished.notifyAll();
+      }
+    }
+  }
+
+  /** Waits at most maxWaitMs for a batch to finish if more than limit batches are in flight. */
+  public void awaitBatchFinished(int limit, long maxWaitMs) throws InterruptedException {
+    synchronized (batchFinished) {
+      if (inFlightBatches.size() > limit) {
+        batchFinished.wait(maxWaitMs);
+      }
+    }
+  }
+
+  /**
+   * Whether the next batch of the partition should be stored uncompressed, because a recent batch
+   * of it did not compress. Otherwise the batch is compressed and reported to {@link
+   * #onCompressed}, which probes the data again.
+   */
+  public boolean shouldStore(int partitionId) {
+    if (!batchesToStore.containsKey(partitionId)) {
+      return false;
+    }
+    batchesToStore.computeIfPresent(partitionId, (id, count) -> count > 1 ? count - 1 : null);
+    return true;
+  }
+
+  public void onCompressed(int partitionId, int length, int compressedLength) {
+    if (compressionProbeInterval > 0 && compressedLength > length * incompressibleRatio) {
+      logger.debug(
+          "Partition {} compressed {} bytes to {}, store the next {} batches.",
+          partitionId,
+          length,
+          compressedLength,
+          compressionProbeInterval);
+      batchesToStore.put(partitionId, compressionProbeInterval);
+    }
   }
 
   public void addFuture(int batchId, ChannelFuture future) {
@@ -79,7 +133,8 @@ public class PushState {
    * @param body
    * @return
    */
-  public boolean addBatchData(String addressPair, PartitionLocation loc, int batchId, byte[] body) {
+  public boolean addBatchData(
+      String addressPair, PartitionLocation loc, int batchId, ByteBuf body) {
     DataBatches batches = batchesMap.computeIfAbsent(addressPair, (s) -> new DataBatches());
     batches.addDataBatch(loc, batchId, body);
     return batches.getTotalSize() > pushBufferMaxSize;
@@ -88,4 +143,26 @@ public class PushState {
   public DataBatches takeDataBatches(String addressPair) {
     return batchesMap.remove(addressPair);
   }
+
+  /** Returns the address pairs whose batches have waited at least lingerMs. */
+  public List<String> getLingeredAddressPairs(long lingerMs) {
+    List<String> addressPairs = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, DataBatches> entry : batchesMap.entrySet()) {
+      if (now - entry.getValue().getCreateTime() >= lingerMs) {
+        addressPairs.add(entry.getKey());
+      }
+    }
+    return addressPairs;
+  }
+
+  /** Releases the bodies of the batches not pushed yet. */
+  public void releaseDataBatches() {
+    for (String addressPair : batchesMap.keySet()) {
+      DataBatches batches = batchesMap.remove(addressPair);
+      if (batches != null) {
+        batches.releaseBatches();
+      }
+    }
+  }
 }
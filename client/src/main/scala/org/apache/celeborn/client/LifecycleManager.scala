@@ -65,6 +65,8 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
   private val reducerFileGroupsMap =
     new ConcurrentHashMap[Int, Array[Array[PartitionLocation]]]()
   private val dataLostShuffleSet = ConcurrentHashMap.newKeySet[Int]()
+  // shuffleId -> the zstd dictionary of the shuffle, the first one reported by an executor
+  private val shuffleDictionaries = new ConcurrentHashMap[Int, Array[Byte]]()
   private val stageEndShuffleSet = ConcurrentHashMap.newKeySet[Int]()
   private val inProcessStageEndShuffleSet = ConcurrentHashMap.newKeySet[Int]()
   // maintain each shuffle's map relation of WorkerInfo and partition location
@@ -359,6 +361,12 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
       logDebug(s"Received GetShuffleFileGroup request," +
         s"${Utils.makeShuffleKey(applicationId, shuffleId)}.")
       handleGetReducerFileGroup(context, shuffleId)
+
+    case pb: PbReportShuffleDictionary =>
+      val shuffleId = pb.getShuffleId
+      logDebug(s"Received ReportShuffleDictionary request, " +
+        s"${Utils.makeShuffleKey(pb.getApplicationId, shuffleId)}.")
+      handleReportShuffleDictionary(context, shuffleId, pb.getCompressionDictionary.toByteArray)
   }
 
   /* ========================================================== *
@@ -388,7 +396,10 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
             .flatMap(_.getAllMasterLocationsWithMinEpoch(shuffleId.toString).asScala)
             .filter(_.getEpoch == 0)
             .toArray
-          context.reply(RegisterShuffleResponse(StatusCode.SUCCESS, initialLocs))
+          context.reply(RegisterShuffleResponse(
+            StatusCode.SUCCESS,
+            initialLocs,
+            shuffleDictionaries.getOrDefault(shuffleId, Array.empty[Byte])))
           return
         }
         logInfo(s"New shuffle request, shuffleId $shuffleId, partitionType: $partitionType " +
@@ -810,7 +821,8 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
         context.reply(GetReducerFileGroupResponse(
           StatusCode.SUCCESS,
           reducerFileGroupsMap.getOrDefault(shuffleId, Array.empty),
-          shuffleMapperAttempts.getOrDefault(shuffleId, Array.empty)))
+          shuffleMapperAttempts.getOrDefault(shuffleId, Array.empty),
+          shuffleDictionaries.getOrDefault(shuffleId, Array.empty[Byte])))
       } else {
         val cachedMsg = getReducerFileGroupRpcCache.get(
           shuffleId,
@@ -819,7 +831,8 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
               val returnedMsg = GetReducerFileGroupResponse(
                 StatusCode.SUCCESS,
                 reducerFileGroupsMap.getOrDefault(shuffleId, Array.empty),
-                shuffleMapperAttempts.getOrDefault(shuffleId, Array.empty))
+                shuffleMapperAttempts.getOrDefault(shuffleId, Array.empty),
+                shuffleDictionaries.getOrDefault(shuffleId, Array.empty[Byte]))
               context.asInstanceOf[RemoteNettyRpcCallContext].nettyEnv.serialize(returnedMsg)
             }
           })
@@ -828,6 +841,19 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
     }
   }
 
+  private def handleReportShuffleDictionary(
+      context: RpcCallContext,
+      shuffleId: Int,
+      dictionary: Array[Byte]): Unit = {
+    val accepted = shuffleDictionaries.putIfAbsent(shuffleId, dictionary)
+    if (accepted == null) {
+      logInfo(s"Shuffle $shuffleId uses a compression dictionary of ${dictionary.length} bytes.")
+      context.reply(ReportShuffleDictionaryResponse(StatusCode.SUCCESS, dictionary))
+    } else {
+      context.reply(ReportShuffleDictionaryResponse(StatusCode.SUCCESS, accepted))
+    }
+  }
+
   private def handleStageEnd(applicationId: String, shuffleId: Int): Unit = {
     // check whether shuffle has registered
     if (!registeredShuffle.contains(shuffleId)) {
@@ -1435,6 +1461,7 @@ class LifecycleManager(appId: String, val conf: CelebornConf) extends RpcEndpoin
         registeringShuffleRequest.remove(shuffleId)
         reducerFileGroupsMap.remove(shuffleId)
         dataLostShuffleSet.remove(shuffleId)
+        shuffleDictionaries.remove(shuffleId)
         shuffleMapperAttempts.remove(shuffleId)
         stageEndShuffleSet.remove(shuffleId)
         changePartitionRequests.remove(shuffleId)
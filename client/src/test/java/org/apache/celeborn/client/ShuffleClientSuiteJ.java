@@ -31,6 +31,7 @@ import java.util.concurrent.TimeoutException;
 
 import scala.reflect.ClassTag$;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.util.concurrent.Future;
@@ -170,8 +171,9 @@ public class ShuffleClientSuiteJ {
               1,
               1);
 
+      // "hello world" did not compress, so the following batches of the partition are stored
       compressor = Compressor.getCompressor(conf);
-      compressor.compress(buf1k, 0, buf1k.length);
+      compressor.store(buf1k, 0, buf1k.length, 0, UnpooledByteBufAllocator.DEFAULT).release();
       int compressedTotalSize1 = compressor.getCompressedTotalSize();
 
       assert (largeMergeSize == compressedTotalSize1 + BATCH_HEADER_SIZE);
@@ -17,8 +17,11 @@
 
 package org.apache.celeborn.client.compress;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -64,4 +67,169 @@ public class CodecSuiteJ {
       Assert.assertArrayEquals(data, dst);
     }
   }
+
+  @Test
+  public void testCompressToByteBuf() {
+    int blockSize = (new CelebornConf()).pushBufferMaxSize();
+    Compressor[] compressors =
+        new Compressor[] {new RssLz4Compressor(blockSize), new RssZstdCompressor(blockSize, 1)};
+    Decompressor[] decompressors =
+        new Decompressor[] {new RssLz4Decompressor(), new RssZstdDecompressor()};
+    byte[] random = RandomStringUtils.random(1024).getBytes(StandardCharsets.UTF_8);
+    byte[] repeated = new byte[4096];
+    for (int i = 0; i < compressors.length; i++) {
+      // random bytes are stored raw, repeated bytes are compressed
+      for (byte[] data : new byte[][] {random, repeated}) {
+        ByteBuf buf =
+            compressors[i].compress(data, 0, data.length, 16, PooledByteBufAllocator.DEFAULT);
+        try {
+          Assert.assertTrue(buf.isDirect());
+          Assert.assertEquals(16 + compressors[i].getCompressedTotalSize(), buf.readableBytes());
+          byte[] block = new byte[buf.readableBytes() - 16];
+          buf.getBytes(16, block);
+          byte[] dst = new byte[data.length];
+          Assert.assertEquals(data.length, decompressors[i].decompress(block, dst, 0));
+          Assert.assertArrayEquals(data, dst);
+        } finally {
+          buf.release();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDecompressByteBuffer() {
+    int blockSize = (new CelebornConf()).pushBufferMaxSize();
+    Compressor[] compressors =
+        new Compressor[] {new RssLz4Compressor(blockSize), new RssZstdCompressor(blockSize, 1)};
+    Decompressor[] decompressors =
+        new Decompressor[] {new RssLz4Decompressor(), new RssZstdDecompressor()};
+    int[] headerLengths = new int[] {RssLz4Trait.HEADER_LENGTH, RssZstdTrait.HEADER_LENGTH};
+    byte[] random = RandomStringUtils.random(1024).getBytes(StandardCharsets.UTF_8);
+    byte[] repeated = new byte[4096];
+    for (int i = 0; i < compressors.length; i++) {
+      for (byte[] data : new byte[][] {random, repeated}) {
+        ByteBuf compressed =
+            compressors[i].compress(data, 0, data.length, 16, PooledByteBufAllocator.DEFAULT);
+        ByteBuf decompressed = PooledByteBufAllocator.DEFAULT.directBuffer(8 + data.length);
+        try {
+          // the block is read where it is, like a batch in the middle of a fetched chunk
+          ByteBuffer src = compressed.nioBuffer(0, compressed.readableBytes());
+          ByteBuffer dst = decompressed.nioBuffer(0, decompressed.capacity());
+          Assert.assertEquals(data.length, decompressors[i].getOriginalLen(src, 16));
+          Assert.assertEquals(data.length, decompressors[i].decompress(src, 16, dst, 8));
+          Assert.assertEquals(0, src.position());
+          Assert.assertEquals(0, dst.position());
+          byte[] dstBytes = new byte[data.length];
+          decompressed.getBytes(8, dstBytes);
+          Assert.assertArrayEquals(data, dstBytes);
+
+          // the checksum is verified, it is the last 4 bytes of the header
+          int checksumIndex = 16 + headerLengths[i] - 1;
+          compressed.setByte(checksumIndex, compressed.getByte(checksumIndex) + 1);
+          Assert.assertEquals(-1, decompressors[i].decompress(src, 16, dst, 8));
+        } finally {
+          compressed.release();
+          decompressed.release();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testStore() {
+    int blockSize = (new CelebornConf()).pushBufferMaxSize();
+    Compressor[] compressors =
+        new Compressor[] {new RssLz4Compressor(blockSize), new RssZstdCompressor(blockSize, 1)};
+    Decompressor[] decompressors =
+        new Decompressor[] {new RssLz4Decompressor(), new RssZstdDecompressor()};
+    int[] headerLengths = new int[] {RssLz4Trait.HEADER_LENGTH, RssZstdTrait.HEADER_LENGTH};
+    byte[] repeated = new byte[4096];
+    for (int i = 0; i < compressors.length; i++) {
+      int blockLength = headerLengths[i] + repeated.length;
+      ByteBuf buf =
+          compressors[i].store(repeated, 0, repeated.length, 16, PooledByteBufAllocator.DEFAULT);
+      try {
+        // stored as it is, although it would compress
+        Assert.assertEquals(16 + blockLength, buf.readableBytes());
+        Assert.assertEquals(blockLength, compressors[i].getCompressedTotalSize());
+        byte[] block = new byte[buf.readableBytes() - 16];
+        buf.getBytes(16, block);
+        Assert.assertEquals(repeated.length, decompressors[i].getOriginalLen(block));
+        byte[] dst = new byte[repeated.length];
+        Assert.assertEquals(repeated.length, decompressors[i].decompress(block, dst, 0));
+        Assert.assertArrayEquals(repeated, dst);
+      } finally {
+        buf.release();
+      }
+    }
+  }
+
+  @Test
+  public void testZstdDictionary() {
+    ZstdDictionary.Sampler sampler = new ZstdDictionary.Sampler(64 * 1024, 4 * 1024);
+    byte[] trained = null;
+    int batches = 0;
+    while (trained == null) {
+      byte[] batch = smallBatch(batches++);
+      trained = sampler.sample(batch, 0, batch.length);
+    }
+    // the samples are complete, later batches are not sampled
+    Assert.assertNull(sampler.sample(smallBatch(0), 0, 100));
+    ZstdDictionary dictionary = new ZstdDictionary(trained, 1);
+    Assert.assertTrue(trained.length <= 4 * 1024);
+
+    int blockSize = (new CelebornConf()).pushBufferMaxSize();
+    RssZstdCompressor compressor = new RssZstdCompressor(blockSize, 1);
+    byte[] data = smallBatch(batches);
+    compressor.compress(data, 0, data.length);
+    int sizeWithoutDictionary = compressor.getCompressedTotalSize();
+    compressor.setDictionary(dictionary);
+    compressor.compress(data, 0, data.length);
+    Assert.assertTrue(compressor.getCompressedTotalSize() < sizeWithoutDictionary);
+
+    RssZstdDecompressor decompressor = new RssZstdDecompressor();
+    byte[] dst = new byte[data.length];
+    Assert.assertEquals(-1, decompressor.decompress(compressor.getCompressedBuffer(), dst, 0));
+    decompressor.setDictionary(dictionary);
+    Assert.assertEquals(
+        data.length, decompressor.decompress(compressor.getCompressedBuffer(), dst, 0));
+    Assert.assertArrayEquals(data, dst);
+  }
+
+  @Test
+  public void testZstdDictionaryResampling() {
+    ZstdDictionary.Sampler sampler = new ZstdDictionary.Sampler(64 * 1024, 4 * 1024);
+    int batches = 0;
+    // a dictionary which could not be used is trained again from the next batches, 3 times at most
+    for (int training = 0; training < 3; training++) {
+      byte[] trained = null;
+      while (trained == null) {
+        byte[] batch = smallBatch(batches++);
+        trained = sampler.sample(batch, 0, batch.length);
+      }
+      sampler.reset();
+    }
+    for (int i = 0; i < 100; i++) {
+      byte[] batch = smallBatch(batches++);
+      Assert.assertNull(sampler.sample(batch, 0, batch.length));
+    }
+
+    // a failed training resets the samples, the sampler gives up after 3 of them
+    ZstdDictionary.Sampler tooSmall = new ZstdDictionary.Sampler(16, 4 * 1024);
+    for (int i = 0; i < 10; i++) {
+      byte[] batch = smallBatch(i);
+      Assert.assertNull(tooSmall.sample(batch, 0, batch.length));
+    }
+  }
+
+  private byte[] smallBatch(int seed) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      int key = seed * 20 + i;
+      builder.append("{\"key\": ").append(key).append(", \"name\": \"user-").append(key % 97);
+      builder.append("\", \"city\": \"city-").append(key % 13).append("\"}\n");
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
 }
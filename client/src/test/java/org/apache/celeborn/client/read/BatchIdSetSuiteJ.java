@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchIdSetSuiteJ {
+
+  @Test
+  public void testAdd() {
+    BatchIdSet batches = new BatchIdSet(3);
+    for (int batchId = 1; batchId <= 1000; batchId++) {
+      Assert.assertTrue(batches.add(0, batchId));
+    }
+    for (int batchId = 1; batchId <= 1000; batchId++) {
+      Assert.assertFalse(batches.add(0, batchId));
+    }
+    // maps are tracked separately
+    Assert.assertTrue(batches.add(2, 1));
+    Assert.assertFalse(batches.add(2, 1));
+    Assert.assertTrue(batches.add(1, 64));
+    Assert.assertTrue(batches.add(1, 0));
+    Assert.assertTrue(batches.add(1, 1 << 20));
+    Assert.assertFalse(batches.add(1, 64));
+    Assert.assertFalse(batches.add(1, 1 << 20));
+    try {
+      batches.add(1, -1);
+      Assert.fail("Negative batch ids are invalid.");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
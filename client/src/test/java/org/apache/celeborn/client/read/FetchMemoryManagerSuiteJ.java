@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FetchMemoryManagerSuiteJ {
+
+  @Test
+  public void testBudget() throws Exception {
+    FetchMemoryManager manager = new FetchMemoryManager(100, 10000);
+    FetchMemoryManager.StreamMemory stream = manager.newStreamMemory();
+    Assert.assertTrue(stream.tryReserve(60));
+    Assert.assertTrue(stream.tryReserve(40));
+    Assert.assertFalse(stream.tryReserve(1));
+    stream.release(60);
+    Assert.assertFalse(stream.tryReserve(70));
+    // a chunk turned out smaller than estimated
+    stream.adjust(-30);
+    Assert.assertTrue(stream.tryReserve(70));
+    Assert.assertEquals(80, manager.getReservedBytes());
+    Assert.assertEquals(100, stream.getPeakBytes());
+    stream.release(80);
+
+    // a chunk larger than the budget fits when nothing else is reserved
+    Assert.assertTrue(manager.tryReserve(200));
+    Assert.assertFalse(manager.tryReserve(1));
+    manager.release(200);
+    Assert.assertEquals(0, manager.getReservedBytes());
+  }
+
+  @Test
+  public void testWaitInTurn() throws Exception {
+    FetchMemoryManager manager = new FetchMemoryManager(100, 10000);
+    Assert.assertTrue(manager.tryReserve(100));
+    CountDownLatch reserved = new CountDownLatch(1);
+    Thread waiter =
+        new Thread(
+            () -> {
+              try {
+                manager.reserve(50);
+                reserved.countDown();
+              } catch (InterruptedException e) {
+                // the test failed anyway
+              }
+            });
+    waiter.start();
+    while (waiter.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(1);
+    }
+    manager.release(60);
+    Assert.assertTrue(reserved.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(90, manager.getReservedBytes());
+
+    // nobody is waiting but the bytes do not fit
+    Assert.assertFalse(manager.tryReserve(20));
+    manager.release(90);
+  }
+
+  @Test
+  public void testNoOvertaking() throws Exception {
+    FetchMemoryManager manager = new FetchMemoryManager(100, 10000);
+    Assert.assertTrue(manager.tryReserve(90));
+    Thread waiter =
+        new Thread(
+            () -> {
+              try {
+                manager.reserve(50);
+              } catch (InterruptedException e) {
+                // interrupted by the test
+              }
+            });
+    waiter.start();
+    while (waiter.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(1);
+    }
+    // fits the budget, but the waiting reservation goes first
+    Assert.assertFalse(manager.tryReserve(10));
+    waiter.interrupt();
+    waiter.join();
+    Assert.assertEquals(90, manager.getReservedBytes());
+    Assert.assertTrue(manager.tryReserve(10));
+  }
+
+  @Test
+  public void testOwnBytes() throws Exception {
+    FetchMemoryManager manager = new FetchMemoryManager(100, 10000);
+    FetchMemoryManager.StreamMemory stream = manager.newStreamMemory();
+    FetchMemoryManager.StreamMemory other = manager.newStreamMemory();
+    Assert.assertTrue(stream.tryReserve(60));
+    Assert.assertTrue(other.tryReserve(30));
+    // only the 30 bytes of the other stream count
+    stream.reserve(50);
+    Assert.assertEquals(140, manager.getReservedBytes());
+    Assert.assertEquals(110, stream.getReservedBytes());
+  }
+
+  @Test
+  public void testMaxWait() throws Exception {
+    FetchMemoryManager manager = new FetchMemoryManager(100, 10);
+    Assert.assertTrue(manager.tryReserve(100));
+    manager.reserve(50);
+    Assert.assertEquals(150, manager.getReservedBytes());
+  }
+}
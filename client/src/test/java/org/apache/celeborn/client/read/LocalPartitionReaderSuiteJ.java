@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.network.client.TransportClient;
+import org.apache.celeborn.common.network.client.TransportClientFactory;
+import org.apache.celeborn.common.network.protocol.LocalStreamHandle;
+import org.apache.celeborn.common.protocol.PartitionLocation;
+import org.apache.celeborn.common.protocol.StorageInfo;
+import org.apache.celeborn.common.util.Utils;
+
+public class LocalPartitionReaderSuiteJ {
+
+  private PartitionLocation location(String host, int fetchPort, PartitionLocation peer) {
+    return new PartitionLocation(
+        0,
+        0,
+        host,
+        1,
+        2,
+        fetchPort,
+        3,
+        PartitionLocation.Mode.MASTER,
+        peer,
+        new StorageInfo(StorageInfo.Type.HDD, "/mnt/disk1", true),
+        null);
+  }
+
+  private TransportClientFactory clientFactory(ByteBuffer response) throws Exception {
+    TransportClient client = mock(TransportClient.class);
+    when(client.sendRpcSync(any(ByteBuffer.class), anyLong())).thenReturn(response);
+    TransportClientFactory factory = mock(TransportClientFactory.class);
+    when(factory.createClient(any(String.class), anyInt())).thenReturn(client);
+    return factory;
+  }
+
+  @Test
+  public void testLocalLocations() {
+    PartitionLocation remote = location("remote-host-of-test", 10001, null);
+    Assert.assertNull(LocalPartitionReader.localLocations(new PartitionLocation[] {remote}));
+
+    PartitionLocation local = location(Utils.localHostName(), 10002, null);
+    PartitionLocation[] group = new PartitionLocation[] {local};
+    Assert.assertSame(group, LocalPartitionReader.localLocations(group));
+
+    PartitionLocation withLocalPeer = location("remote-host-of-test", 10001, local);
+    PartitionLocation[] peers =
+        LocalPartitionReader.localLocations(new PartitionLocation[] {withLocalPeer});
+    Assert.assertNotNull(peers);
+    Assert.assertSame(local, peers[0]);
+  }
+
+  @Test
+  public void testReadSegments() throws Exception {
+    File file = File.createTempFile("celeborn", ".data");
+    try {
+      byte[] data = new byte[1000];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) (i / 100);
+      }
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(data);
+      }
+      // two chunks made of the bytes [100, 300) and [600, 700) of the file
+      LocalStreamHandle handle =
+          new LocalStreamHandle(
+              new String[] {file.getAbsolutePath()},
+              new long[][] {{0, 200, 300}},
+              new long[][] {{0, 200, 300}},
+              new long[][] {{100, 600}});
+      LocalPartitionReader reader =
+          new LocalPartitionReader(
+              new CelebornConf(),
+              "app-1",
+              new PartitionLocation[] {location(Utils.localHostName(), 10003, null)},
+              clientFactory(handle.toByteBuffer()),
+              0,
+              Integer.MAX_VALUE);
+
+      Assert.assertTrue(reader.hasNext());
+      ByteBuf first = reader.next();
+      Assert.assertEquals(200, first.readableBytes());
+      Assert.assertEquals(1, first.getByte(0));
+      Assert.assertEquals(2, first.getByte(199));
+      ByteBuf second = reader.next();
+      Assert.assertEquals(100, second.readableBytes());
+      Assert.assertEquals(6, second.getByte(0));
+      Assert.assertFalse(reader.hasNext());
+      reader.close();
+      // copies in pooled memory, nothing holds the file once they are released
+      Assert.assertTrue(first.isDirect());
+      Assert.assertTrue(first.release());
+      Assert.assertTrue(second.release());
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testReadChunkAcrossSegments() throws Exception {
+    File file = File.createTempFile("celeborn", ".data");
+    try {
+      byte[] data = new byte[1000];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) (i / 100);
+      }
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(data);
+      }
+      // one chunk made of the bytes [100, 300) and [600, 700) of the file
+      LocalStreamHandle handle =
+          new LocalStreamHandle(
+              new String[] {file.getAbsolutePath()},
+              new long[][] {{0, 300}},
+              new long[][] {{0, 200, 300}},
+              new long[][] {{100, 600}});
+      LocalPartitionReader reader =
+          new LocalPartitionReader(
+              new CelebornConf(),
+              "app-1",
+              new PartitionLocation[] {location(Utils.localHostName(), 10005, null)},
+              clientFactory(handle.toByteBuffer()),
+              0,
+              Integer.MAX_VALUE);
+
+      ByteBuf chunk = reader.next();
+      Assert.assertEquals(300, chunk.readableBytes());
+      Assert.assertEquals(1, chunk.getByte(0));
+      Assert.assertEquals(2, chunk.getByte(199));
+      Assert.assertEquals(6, chunk.getByte(200));
+      Assert.assertEquals(6, chunk.getByte(299));
+      Assert.assertFalse(reader.hasNext());
+      reader.close();
+      Assert.assertTrue(chunk.release());
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testOpenFailure() throws Exception {
+    LocalStreamHandle handle =
+        new LocalStreamHandle(
+            new String[] {"/non-existent/celeborn.data"},
+            new long[][] {{0, 100}},
+            new long[][] {null},
+            new long[][] {null});
+    try {
+      new LocalPartitionReader(
+          new CelebornConf(),
+          "app-1",
+          new PartitionLocation[] {location(Utils.localHostName(), 10004, null)},
+          clientFactory(handle.toByteBuffer()),
+          0,
+          Integer.MAX_VALUE);
+      Assert.fail("Reading a file which can not be read should fail.");
+    } catch (IOException e) {
+      // falls back to fetching from the worker
+    }
+  }
+}
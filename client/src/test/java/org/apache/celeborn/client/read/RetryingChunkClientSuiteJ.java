@@ -34,11 +34,14 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
@@ -51,13 +54,20 @@ import org.junit.Test;
 import org.mockito.stubbing.Answer;
 
 import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.meta.FileInfo;
+import org.apache.celeborn.common.meta.FileManagedBuffers;
 import org.apache.celeborn.common.network.buffer.ManagedBuffer;
 import org.apache.celeborn.common.network.buffer.NioManagedBuffer;
 import org.apache.celeborn.common.network.client.ChunkReceivedCallback;
+import org.apache.celeborn.common.network.client.RpcResponseCallback;
 import org.apache.celeborn.common.network.client.TransportClient;
 import org.apache.celeborn.common.network.client.TransportClientFactory;
 import org.apache.celeborn.common.network.client.TransportResponseHandler;
+import org.apache.celeborn.common.network.protocol.CloseStream;
+import org.apache.celeborn.common.network.protocol.Message;
 import org.apache.celeborn.common.network.protocol.StreamHandle;
+import org.apache.celeborn.common.network.server.OneForOneStreamManager;
+import org.apache.celeborn.common.network.util.TransportConf;
 import org.apache.celeborn.common.protocol.PartitionLocation;
 import org.apache.celeborn.common.util.ThreadUtils;
 
@@ -342,9 +352,171 @@ public class RetryingChunkClientSuiteJ {
     assertEquals(chunk2, result.get(2));
   }
 
+  @Test
+  public void testRangeFailureRetriesEachChunk() throws IOException, InterruptedException {
+    ChunkReceivedCallback callback = mock(ChunkReceivedCallback.class);
+    // the range request fails as a whole, the chunks are then fetched one by one
+    Map<Integer, List<Object>> interactions =
+        ImmutableMap.<Integer, List<Object>>builder()
+            .put(0, Arrays.asList(chunk0))
+            .put(1, Arrays.asList(chunk1))
+            .put(2, Arrays.asList(chunk2))
+            .build();
+
+    RetryingChunkClient client = performInteractions(interactions, callback, true);
+
+    verify(callback, timeout(5000)).onSuccess(eq(0), eq(chunk0));
+    verify(callback, timeout(5000)).onSuccess(eq(1), eq(chunk1));
+    verify(callback, timeout(5000)).onSuccess(eq(2), eq(chunk2));
+    verifyNoMoreInteractions(callback);
+
+    assertEquals(1, client.getNumTries());
+    assertEquals(slaveLocation, client.getCurrentReplica().getLocation());
+  }
+
+  @Test
+  public void testHedgeLateChunk() throws IOException, InterruptedException {
+    FetchHedger hedger = new FetchHedger(0.5, 10, 1.0);
+    assertEquals(-1, hedger.getDelayNs());
+    for (int i = 0; i < 32; i++) {
+      hedger.onFetched(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), hedger.getDelayNs());
+
+    // the master never sends chunk 1
+    ChunkReceivedCallback callback = mock(ChunkReceivedCallback.class);
+    RetryingChunkClient client =
+        openReplicas(
+            new StubTransportClient(new int[] {13, 7}, 1),
+            new StubTransportClient(new int[] {13, 7}, -1),
+            callback,
+            hedger);
+    client.fetchChunk(0);
+    client.fetchChunk(1);
+    verify(callback, timeout(5000)).onSuccess(eq(0), any());
+    verify(callback, timeout(5000)).onSuccess(eq(1), any());
+    Thread.sleep(100);
+    verifyNoMoreInteractions(callback);
+    assertEquals(1, hedger.getHedgeCount());
+    assertEquals(1, hedger.getHedgeWinCount());
+    assertEquals(0, client.getNumTries());
+    client.close();
+    hedger.close();
+  }
+
+  @Test
+  public void testNoHedgeWithDifferentChunks() throws IOException, InterruptedException {
+    FetchHedger hedger = new FetchHedger(0.5, 10, 1.0);
+    for (int i = 0; i < 32; i++) {
+      hedger.onFetched(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    // the replicas were flushed at different points, chunk 1 of the slave is other data
+    ChunkReceivedCallback callback = mock(ChunkReceivedCallback.class);
+    RetryingChunkClient client =
+        openReplicas(
+            new StubTransportClient(new int[] {13, 7}, 1),
+            new StubTransportClient(new int[] {15, 5}, -1),
+            callback,
+            hedger);
+    client.fetchChunk(0);
+    client.fetchChunk(1);
+    verify(callback, timeout(5000)).onSuccess(eq(0), any());
+    Thread.sleep(500);
+    verifyNoMoreInteractions(callback);
+    assertEquals(0, hedger.getHedgeWinCount());
+    client.close();
+    hedger.close();
+  }
+
+  @Test
+  public void testHedgeOnOwnStream() throws IOException, InterruptedException {
+    FetchHedger hedger = new FetchHedger(0.5, 10, 1.0);
+    for (int i = 0; i < 32; i++) {
+      hedger.onFetched(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.data.io.retryWait", "0");
+
+    // The master fails chunks 1 and 2 after they were hedged. The hedge of chunk 1 wins, the
+    // slave sends chunk 2 for the hedge too but it gets lost, so chunk 2 is retried on the
+    // slave, which serves it again on the stream of the retry.
+    ChunkReceivedCallback callback = mock(ChunkReceivedCallback.class);
+    StreamManagerTransportClient slave =
+        new StreamManagerTransportClient(
+            new int[] {13, 7, 11, 5}, Collections.emptySet(), Sets.newHashSet(2));
+    RetryingChunkClient client =
+        openReplicas(
+            conf,
+            new StreamManagerTransportClient(
+                new int[] {13, 7, 11, 5}, Sets.newHashSet(1, 2), Collections.emptySet()),
+            slave,
+            callback,
+            hedger,
+            4);
+    for (int i = 0; i < 4; i++) {
+      client.fetchChunk(i);
+    }
+    for (int i = 0; i < 4; i++) {
+      verify(callback, timeout(5000)).onSuccess(eq(i), any());
+    }
+    Thread.sleep(500);
+    verifyNoMoreInteractions(callback);
+    assertEquals(1, hedger.getHedgeWinCount());
+    assertEquals(1, client.getNumTries());
+    // the stream of the retry and the stream of the hedges, neither read to its end
+    assertEquals(2, slave.numStreams());
+    client.close();
+    assertEquals(1, slave.numStreams());
+    hedger.close();
+  }
+
+  private static RetryingChunkClient openReplicas(
+      TransportClient master,
+      TransportClient slave,
+      ChunkReceivedCallback callback,
+      FetchHedger hedger)
+      throws IOException, InterruptedException {
+    return openReplicas(new CelebornConf(), master, slave, callback, hedger, 2);
+  }
+
+  private static RetryingChunkClient openReplicas(
+      CelebornConf conf,
+      TransportClient master,
+      TransportClient slave,
+      ChunkReceivedCallback callback,
+      FetchHedger hedger,
+      int numChunks)
+      throws IOException, InterruptedException {
+    TransportClientFactory clientFactory = mock(TransportClientFactory.class);
+    doAnswer(invocation -> master)
+        .when(clientFactory)
+        .createClient(anyString(), eq(MASTER_FETCH_PORT));
+    doAnswer(invocation -> slave)
+        .when(clientFactory)
+        .createClient(anyString(), eq(SLAVE_FETCH_PORT));
+    RetryingChunkClient client =
+        new RetryingChunkClient(
+            conf,
+            "test",
+            new PartitionLocation[] {masterLocation},
+            callback,
+            clientFactory,
+            0,
+            Integer.MAX_VALUE,
+            hedger);
+    assertEquals(numChunks, client.openChunks());
+    return client;
+  }
+
   private static RetryingChunkClient performInteractions(
       Map<Integer, List<Object>> interactions, ChunkReceivedCallback callback)
       throws IOException, InterruptedException {
+    return performInteractions(interactions, callback, false);
+  }
+
+  private static RetryingChunkClient performInteractions(
+      Map<Integer, List<Object>> interactions, ChunkReceivedCallback callback, boolean fetchAsRange)
+      throws IOException, InterruptedException {
     CelebornConf conf = new CelebornConf();
     conf.set("celeborn.data.io.maxRetries", "1");
     conf.set("celeborn.data.io.retryWait", "0");
@@ -358,7 +530,11 @@ public class RetryingChunkClientSuiteJ {
 
     RetryingChunkClient retryingChunkClient =
         new RetryingChunkClient(conf, "test", masterLocation, callback, clientFactory);
-    chunkIds.stream().sorted().forEach(retryingChunkClient::fetchChunk);
+    if (fetchAsRange) {
+      retryingChunkClient.fetchChunks(0, chunkIds.size());
+    } else {
+      chunkIds.stream().sorted().forEach(retryingChunkClient::fetchChunk);
+    }
     return retryingChunkClient;
   }
 
@@ -408,6 +584,19 @@ public class RetryingChunkClientSuiteJ {
           TimeUnit.MILLISECONDS);
     }
 
+    @Override
+    public void fetchChunkRange(
+        long streamId, int startChunkIndex, int numChunks, ChunkReceivedCallback callback) {
+      schedule.schedule(
+          () -> {
+            for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+              callback.onFailure(i, new IOException("Range fetch failed."));
+            }
+          },
+          500,
+          TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public ByteBuffer sendRpcSync(ByteBuffer message, long timeoutMs) {
       StreamHandle handle = new StreamHandle(streamId, numChunks);
@@ -420,4 +609,115 @@ public class RetryingChunkClientSuiteJ {
       schedule.shutdownNow();
     }
   }
+
+  /** Answers every chunk at once, except one it never answers. */
+  private static class StubTransportClient extends TransportClient {
+    private final int[] chunkLengths;
+    private final int lostChunk;
+
+    StubTransportClient(int[] chunkLengths, int lostChunk) {
+      super(mock(Channel.class), mock(TransportResponseHandler.class));
+      this.chunkLengths = chunkLengths;
+      this.lostChunk = lostChunk;
+    }
+
+    @Override
+    public boolean isActive() {
+      return true;
+    }
+
+    @Override
+    public void fetchChunk(long streamId, int chunkId, ChunkReceivedCallback callback) {
+      if (chunkId != lostChunk) {
+        callback.onSuccess(
+            chunkId, new NioManagedBuffer(ByteBuffer.wrap(new byte[chunkLengths[chunkId]])));
+      }
+    }
+
+    @Override
+    public ByteBuffer sendRpcSync(ByteBuffer message, long timeoutMs) {
+      return new StreamHandle(1, chunkLengths.length, chunkLengths).toByteBuffer();
+    }
+  }
+
+  /**
+   * Serves chunks from a worker's stream manager, which registers a stream for each open and marks
+   * each chunk read once it is sent. Failed chunks fail after a while instead. The first answer of
+   * a lost chunk is sent by the worker but never arrives.
+   */
+  private static class StreamManagerTransportClient extends TransportClient {
+    private final OneForOneStreamManager manager = new OneForOneStreamManager();
+    private final Channel channel = mock(Channel.class);
+    private final int[] chunkLengths;
+    private final List<Long> offsets = new ArrayList<>();
+    private final Set<Integer> failedChunks;
+    private final Set<Integer> lostChunks = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService schedule =
+        ThreadUtils.newDaemonThreadPoolScheduledExecutor("test-fetch-failure", 1);
+
+    StreamManagerTransportClient(
+        int[] chunkLengths, Set<Integer> failedChunks, Set<Integer> lostChunks) {
+      super(mock(Channel.class), mock(TransportResponseHandler.class));
+      this.chunkLengths = chunkLengths;
+      this.failedChunks = failedChunks;
+      this.lostChunks.addAll(lostChunks);
+      long offset = 0;
+      offsets.add(offset);
+      for (int chunkLength : chunkLengths) {
+        offset += chunkLength;
+        offsets.add(offset);
+      }
+    }
+
+    int numStreams() {
+      return manager.numStreamStates();
+    }
+
+    @Override
+    public boolean isActive() {
+      return true;
+    }
+
+    @Override
+    public void fetchChunk(long streamId, int chunkId, ChunkReceivedCallback callback) {
+      if (failedChunks.contains(chunkId)) {
+        schedule.schedule(
+            () -> callback.onFailure(chunkId, new IOException("Fetch failed.")),
+            200,
+            TimeUnit.MILLISECONDS);
+        return;
+      }
+      ManagedBuffer buffer;
+      try {
+        buffer = manager.getChunk(streamId, chunkId, 0, Integer.MAX_VALUE);
+      } catch (Exception e) {
+        callback.onFailure(chunkId, e);
+        return;
+      }
+      manager.chunkRead(streamId, chunkId, 0, Integer.MAX_VALUE);
+      if (!lostChunks.remove(chunkId)) {
+        callback.onSuccess(chunkId, buffer);
+      }
+    }
+
+    @Override
+    public ByteBuffer sendRpcSync(ByteBuffer message, long timeoutMs) {
+      long streamId =
+          manager.registerStream(
+              new FileManagedBuffers(
+                  new FileInfo("/mnt/disk1/app/0/0-0-0", offsets, null),
+                  new TransportConf("shuffle", new CelebornConf())),
+              channel);
+      return new StreamHandle(streamId, chunkLengths.length, chunkLengths).toByteBuffer();
+    }
+
+    @Override
+    public long sendRpc(ByteBuffer message, RpcResponseCallback callback) {
+      CloseStream closeStream = (CloseStream) Message.decode(message);
+      manager.closeStream(closeStream.streamId, channel);
+      callback.onSuccess(ByteBuffer.allocate(0));
+      return 0;
+    }
+  }
 }
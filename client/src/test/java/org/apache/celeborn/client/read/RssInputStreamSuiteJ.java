@@ -0,0 +1,575 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.read;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.client.compress.Compressor;
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.protocol.PartitionLocation;
+import org.apache.celeborn.common.protocol.StorageInfo;
+import org.apache.celeborn.common.unsafe.Platform;
+
+public class RssInputStreamSuiteJ {
+  private static final int CHUNKS_PER_LOCATION = 2;
+  private static final int BATCHES_PER_CHUNK = 3;
+  private static final int BATCH_SIZE = 200;
+
+  // buffers which were not released before they were collected
+  private static final List<String> LEAKS = new CopyOnWriteArrayList<>();
+  private static final AtomicInteger leakCanaries = new AtomicInteger();
+
+  static {
+    // before any buffer class creates its leak detector
+    ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    ResourceLeakDetectorFactory.setResourceLeakDetectorFactory(
+        new ResourceLeakDetectorFactory() {
+          @Override
+          @SuppressWarnings("deprecation")
+          public <T> ResourceLeakDetector<T> newResourceLeakDetector(
+              Class<T> resource, int samplingInterval, long maxActive) {
+            return new ResourceLeakDetector<T>(resource, samplingInterval) {
+              @Override
+              protected void reportTracedLeak(String resourceType, String records) {
+                LEAKS.add(records);
+              }
+
+              @Override
+              protected void reportUntracedLeak(String resourceType) {
+                LEAKS.add(resourceType);
+              }
+            };
+          }
+        });
+  }
+
+  /** Returns the chunks of a location from memory, the chunks are made by {@link #chunk}. */
+  private static class TestReader implements PartitionReader {
+    final int locationId;
+    final List<ByteBuf> chunks;
+    int chunkIndex = 0;
+    volatile int prefetchedChunks = -1;
+    volatile boolean closed = false;
+
+    TestReader(int locationId, List<ByteBuf> chunks) {
+      this.locationId = locationId;
+      this.chunks = chunks;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return chunkIndex < chunks.size();
+    }
+
+    @Override
+    public ByteBuf next() throws IOException {
+      return chunks.get(chunkIndex++);
+    }
+
+    @Override
+    public void close() {
+      // the chunks not returned are still owned by the reader
+      if (!closed) {
+        for (int i = chunkIndex; i < chunks.size(); i++) {
+          chunks.get(i).release();
+        }
+      }
+      closed = true;
+    }
+
+    @Override
+    public int prefetch(int maxChunks) {
+      prefetchedChunks = Math.min(maxChunks, chunks.size());
+      return prefetchedChunks;
+    }
+  }
+
+  /** Creates the readers of the locations, optionally after a delay chosen per location. */
+  private static class TestReaderFactory implements RssInputStream.ReaderFactory {
+    final CelebornConf conf;
+    final List<TestReader> readers = new CopyOnWriteArrayList<>();
+
+    TestReaderFactory(CelebornConf conf) {
+      this.conf = conf;
+    }
+
+    @Override
+    public PartitionReader createReader(PartitionLocation[] group) throws IOException {
+      beforeCreate(group[0]);
+      List<ByteBuf> chunks = new ArrayList<>();
+      for (int c = 0; c < CHUNKS_PER_LOCATION; c++) {
+        chunks.add(chunk(conf, group[0].getId(), c));
+      }
+      TestReader reader = newReader(group[0].getId(), chunks);
+      readers.add(reader);
+      return reader;
+    }
+
+    void beforeCreate(PartitionLocation location) throws IOException {}
+
+    TestReader newReader(int locationId, List<ByteBuf> chunks) {
+      return new TestReader(locationId, chunks);
+    }
+
+    void assertAllClosed() throws InterruptedException {
+      for (TestReader reader : readers) {
+        for (int i = 0; i < 100 && !reader.closed; i++) {
+          Thread.sleep(100);
+        }
+        Assert.assertTrue(reader.closed);
+      }
+    }
+  }
+
+  private static byte[] batchData(int locationId, int chunkIndex, int batchIndex) {
+    byte[] data = new byte[BATCH_SIZE];
+    Arrays.fill(data, (byte) (locationId * 16 + chunkIndex * BATCHES_PER_CHUNK + batchIndex));
+    return data;
+  }
+
+  private static ByteBuf chunk(CelebornConf conf, int locationId, int chunkIndex) {
+    Compressor compressor = Compressor.getCompressor(conf);
+    ByteBuf chunk = Unpooled.directBuffer();
+    for (int b = 0; b < BATCHES_PER_CHUNK; b++) {
+      byte[] data = batchData(locationId, chunkIndex, b);
+      compressor.compress(data, 0, data.length);
+      int size = compressor.getCompressedTotalSize();
+      byte[] header = new byte[16];
+      Platform.putInt(header, Platform.BYTE_ARRAY_OFFSET, 0);
+      Platform.putInt(header, Platform.BYTE_ARRAY_OFFSET + 4, 0);
+      Platform.putInt(
+          header, Platform.BYTE_ARRAY_OFFSET + 8, locationId * 1000 + chunkIndex * 100 + b);
+      Platform.putInt(header, Platform.BYTE_ARRAY_OFFSET + 12, size);
+      chunk.writeBytes(header);
+      chunk.writeBytes(compressor.getCompressedBuffer(), 0, size);
+    }
+    return chunk;
+  }
+
+  private static PartitionLocation[] locations(int count) {
+    PartitionLocation[] locations = new PartitionLocation[count];
+    for (int i = 0; i < count; i++) {
+      locations[i] =
+          new PartitionLocation(
+              i,
+              0,
+              "host-" + i,
+              1,
+              2,
+              3,
+              4,
+              PartitionLocation.Mode.MASTER,
+              null,
+              new StorageInfo(StorageInfo.Type.HDD, "/mnt/disk1", true),
+              null);
+    }
+    return locations;
+  }
+
+  /** The bytes of the locations in the order the stream reads them. */
+  private static byte[] expected(PartitionLocation[] locations) {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (PartitionLocation location : locations) {
+      for (int c = 0; c < CHUNKS_PER_LOCATION; c++) {
+        for (int b = 0; b < BATCHES_PER_CHUNK; b++) {
+          byte[] data = batchData(location.getId(), c, b);
+          expected.write(data, 0, data.length);
+        }
+      }
+    }
+    return expected.toByteArray();
+  }
+
+  /** The batches of the locations in the order the stream reads them. */
+  private static List<byte[]> expectedBatches(PartitionLocation[] locations) {
+    List<byte[]> batches = new ArrayList<>();
+    for (PartitionLocation location : locations) {
+      for (int c = 0; c < CHUNKS_PER_LOCATION; c++) {
+        for (int b = 0; b < BATCHES_PER_CHUNK; b++) {
+          batches.add(batchData(location.getId(), c, b));
+        }
+      }
+    }
+    return batches;
+  }
+
+  private static byte[] readBatch(RssInputStream stream) throws IOException {
+    ByteBuffer batch = stream.readBatch();
+    if (batch == null) {
+      return null;
+    }
+    byte[] bytes = new byte[batch.remaining()];
+    batch.get(bytes);
+    return bytes;
+  }
+
+  private static byte[] readAll(RssInputStream stream) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buf = new byte[150];
+    int read;
+    while ((read = stream.read(buf, 0, buf.length)) != -1) {
+      output.write(buf, 0, read);
+    }
+    return output.toByteArray();
+  }
+
+  @Test
+  public void testPrefetchKeepsReadOrder() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.fetch.prefetch.readers", "3");
+    Random random = new Random();
+    TestReaderFactory factory =
+        new TestReaderFactory(conf) {
+          @Override
+          void beforeCreate(PartitionLocation location) {
+            // prefetches finish out of order
+            try {
+              Thread.sleep(random.nextInt(20));
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+    // the stream shuffles the locations in place into its read order
+    PartitionLocation[] locations = locations(8);
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertArrayEquals(expected(locations), readAll(stream));
+    stream.close();
+    Assert.assertEquals(8, factory.readers.size());
+    factory.assertAllClosed();
+    Assert.assertEquals(0, ((RssInputStream.RssInputStreamImpl) stream).getPrefetchedBytes());
+  }
+
+  @Test
+  public void testPrefetchBudget() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.fetch.prefetch.readers", "4");
+    conf.set("celeborn.shuffle.chuck.size", "1k");
+    conf.set("celeborn.fetch.prefetch.budget", "3k");
+    conf.set("celeborn.fetch.maxReqsInFlight", "2");
+    conf.set("celeborn.fetch.chunksPerRequest", "1");
+    TestReaderFactory factory = new TestReaderFactory(conf);
+    PartitionLocation[] locations = locations(6);
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    RssInputStream.RssInputStreamImpl impl = (RssInputStream.RssInputStreamImpl) stream;
+
+    // the current location and the 4 opened ahead of it
+    for (int i = 0; i < 100 && !allPrefetched(factory, 5); i++) {
+      Thread.sleep(100);
+    }
+    Assert.assertTrue(allPrefetched(factory, 5));
+    // each reader asks for up to 2 chunks, those opened ahead share the budget of 3 chunks
+    int aheadChunks = 0;
+    for (TestReader reader : factory.readers) {
+      Assert.assertTrue(reader.prefetchedChunks <= 2);
+      if (reader.locationId != locations[0].getId()) {
+        aheadChunks += reader.prefetchedChunks;
+      }
+    }
+    Assert.assertEquals(3, aheadChunks);
+    Assert.assertEquals(3 * 1024, impl.getPrefetchedBytes());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteBuffer batch;
+    while ((batch = stream.readBatch()) != null) {
+      Assert.assertTrue(impl.getPrefetchedBytes() <= 3 * 1024);
+      byte[] bytes = new byte[batch.remaining()];
+      batch.get(bytes);
+      output.write(bytes, 0, bytes.length);
+    }
+    Assert.assertArrayEquals(expected(locations), output.toByteArray());
+    Assert.assertEquals(0, impl.getPrefetchedBytes());
+    stream.close();
+  }
+
+  private static boolean allPrefetched(TestReaderFactory factory, int count) {
+    if (factory.readers.size() < count) {
+      return false;
+    }
+    for (TestReader reader : factory.readers) {
+      if (reader.prefetchedChunks < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void testCloseWithPrefetchesInFlight() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.fetch.prefetch.readers", "3");
+    CountDownLatch opened = new CountDownLatch(1);
+    PartitionLocation[] locations = locations(5);
+    TestReaderFactory factory =
+        new TestReaderFactory(conf) {
+          @Override
+          void beforeCreate(PartitionLocation location) throws IOException {
+            // only the first location in read order opens before the stream is closed
+            if (location != locations[0]) {
+              try {
+                opened.await();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+            }
+          }
+        };
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertNotNull(stream.readBatch());
+    stream.close();
+    opened.countDown();
+
+    // the first location and the 3 opened ahead of it
+    for (int i = 0; i < 100 && factory.readers.size() < 4; i++) {
+      Thread.sleep(100);
+    }
+    Assert.assertEquals(4, factory.readers.size());
+    factory.assertAllClosed();
+    RssInputStream.RssInputStreamImpl impl = (RssInputStream.RssInputStreamImpl) stream;
+    for (int i = 0; i < 100 && impl.getPrefetchedBytes() != 0; i++) {
+      Thread.sleep(100);
+    }
+    Assert.assertEquals(0, impl.getPrefetchedBytes());
+  }
+
+  private static CelebornConf decodeAheadConf(int batches) {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.fetch.decodeAhead.batches", String.valueOf(batches));
+    return conf;
+  }
+
+  @Test
+  public void testDecodeAheadKeepsBatchOrder() throws Exception {
+    for (int decodeAhead : new int[] {0, 1, 3}) {
+      CelebornConf conf = decodeAheadConf(decodeAhead);
+      TestReaderFactory factory = new TestReaderFactory(conf);
+      PartitionLocation[] locations = locations(4);
+      RssInputStream stream =
+          RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+      List<byte[]> expected = expectedBatches(locations);
+      for (int i = 0; i < expected.size(); i++) {
+        Assert.assertArrayEquals("batch " + i, expected.get(i), readBatch(stream));
+      }
+      Assert.assertNull(readBatch(stream));
+      Assert.assertNull(readBatch(stream));
+      stream.close();
+      factory.assertAllClosed();
+    }
+  }
+
+  /** Fails to return the chunk at failedChunk. */
+  private static class FailingReaderFactory extends TestReaderFactory {
+    final int failedChunk;
+
+    FailingReaderFactory(CelebornConf conf, int failedChunk) {
+      super(conf);
+      this.failedChunk = failedChunk;
+    }
+
+    @Override
+    TestReader newReader(int locationId, List<ByteBuf> chunks) {
+      return new TestReader(locationId, chunks) {
+        @Override
+        public ByteBuf next() throws IOException {
+          if (chunkIndex == failedChunk) {
+            throw new IOException("Chunk " + failedChunk + " is lost.");
+          }
+          return super.next();
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testDecodeAheadFailsAtBatch() throws Exception {
+    for (int decodeAhead : new int[] {0, 2}) {
+      CelebornConf conf = decodeAheadConf(decodeAhead);
+      TestReaderFactory factory = new FailingReaderFactory(conf, 1);
+      PartitionLocation[] locations = locations(1);
+      RssInputStream stream =
+          RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+      // the batches of the chunk before the failed one are all read, then the error is raised
+      List<byte[]> expected = expectedBatches(locations);
+      for (int i = 0; i < BATCHES_PER_CHUNK; i++) {
+        Assert.assertArrayEquals(expected.get(i), readBatch(stream));
+      }
+      try {
+        readBatch(stream);
+        Assert.fail("Chunk 1 is lost.");
+      } catch (IOException e) {
+        Assert.assertEquals("Chunk 1 is lost.", e.getMessage());
+      }
+      stream.close();
+      factory.assertAllClosed();
+    }
+  }
+
+  /** Blocks on returning the chunk at blockedChunk until the read is interrupted. */
+  private static class BlockingReaderFactory extends TestReaderFactory {
+    final int blockedChunk;
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+
+    BlockingReaderFactory(CelebornConf conf, int blockedChunk) {
+      super(conf);
+      this.blockedChunk = blockedChunk;
+    }
+
+    @Override
+    TestReader newReader(int locationId, List<ByteBuf> chunks) {
+      return new TestReader(locationId, chunks) {
+        @Override
+        public ByteBuf next() throws IOException {
+          if (chunkIndex == blockedChunk) {
+            blocked.countDown();
+            try {
+              new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+              // as a local chunk read by an interrupted thread fails
+              throw new ClosedByInterruptException();
+            }
+          }
+          return super.next();
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testCloseStopsDecoderInNext() throws Exception {
+    // more batches ahead than a chunk has, so the decoder asks for the next chunk
+    CelebornConf conf = decodeAheadConf(BATCHES_PER_CHUNK + 1);
+    BlockingReaderFactory factory = new BlockingReaderFactory(conf, 1);
+    PartitionLocation[] locations = locations(1);
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertNotNull(readBatch(stream));
+    Assert.assertTrue(factory.blocked.await(10, TimeUnit.SECONDS));
+
+    Thread closer = new Thread(stream::close);
+    closer.start();
+    closer.join(10000);
+    Assert.assertFalse(closer.isAlive());
+    Assert.assertTrue(factory.interrupted.await(0, TimeUnit.SECONDS));
+    factory.assertAllClosed();
+  }
+
+  @Test(timeout = 60000)
+  public void testDecodeOnTaskThreadWhenDecodeThreadsBusy() throws Exception {
+    // more batches ahead than a chunk has, so the decoders wait in the next chunk
+    CelebornConf conf = decodeAheadConf(BATCHES_PER_CHUNK + 1);
+    List<RssInputStream> busyStreams = new ArrayList<>();
+    for (int i = 0; i < conf.fetchDecodeAheadThreads(); i++) {
+      BlockingReaderFactory factory = new BlockingReaderFactory(conf, 1);
+      busyStreams.add(
+          RssInputStream.create(conf, locations(1), new int[] {0}, 0, Integer.MAX_VALUE, factory));
+      Assert.assertTrue(factory.blocked.await(10, TimeUnit.SECONDS));
+    }
+
+    // a decoder queued behind the busy ones would never return a batch
+    TestReaderFactory factory = new TestReaderFactory(conf);
+    PartitionLocation[] locations = locations(2);
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertArrayEquals(expected(locations), readAll(stream));
+    stream.close();
+    factory.assertAllClosed();
+
+    for (RssInputStream busyStream : busyStreams) {
+      busyStream.close();
+    }
+  }
+
+  @Test
+  public void testDecodeAheadDoesNotLeak() throws Exception {
+    CelebornConf conf = decodeAheadConf(2);
+    // read up
+    TestReaderFactory factory = new TestReaderFactory(conf);
+    PartitionLocation[] locations = locations(3);
+    RssInputStream stream =
+        RssInputStream.create(conf, locations, new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertArrayEquals(expected(locations), readAll(stream));
+    stream.close();
+    // closed with batches decoded ahead
+    stream =
+        RssInputStream.create(conf, locations(3), new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    Assert.assertNotNull(readBatch(stream));
+    stream.close();
+    // failed
+    factory = new FailingReaderFactory(conf, 1);
+    stream =
+        RssInputStream.create(conf, locations(2), new int[] {0}, 0, Integer.MAX_VALUE, factory);
+    try {
+      readAll(stream);
+      Assert.fail("Chunk 1 is lost.");
+    } catch (IOException e) {
+      // expected
+    }
+    stream.close();
+    // closed with the decoder in reader.next()
+    conf = decodeAheadConf(BATCHES_PER_CHUNK + 1);
+    BlockingReaderFactory blockingFactory = new BlockingReaderFactory(conf, 1);
+    stream =
+        RssInputStream.create(
+            conf, locations(2), new int[] {0}, 0, Integer.MAX_VALUE, blockingFactory);
+    Assert.assertTrue(blockingFactory.blocked.await(10, TimeUnit.SECONDS));
+    stream.close();
+
+    assertNoLeaks();
+  }
+
+  /** Collects the buffers leaked so far, with a canary leak to know when they are reported. */
+  private static void assertNoLeaks() throws InterruptedException {
+    String canary = "leak-canary-" + leakCanaries.incrementAndGet();
+    PooledByteBufAllocator.DEFAULT.directBuffer(1).touch(canary);
+    boolean canaryReported = false;
+    for (int i = 0; i < 100 && !canaryReported; i++) {
+      System.gc();
+      Thread.sleep(50);
+      // a leak is reported on the next allocation
+      PooledByteBufAllocator.DEFAULT.directBuffer(1).release();
+      canaryReported = LEAKS.removeIf(records -> records.contains(canary));
+    }
+    Assert.assertTrue("The canary leak is not reported.", canaryReported);
+    Assert.assertEquals(Collections.emptyList(), LEAKS);
+  }
+}
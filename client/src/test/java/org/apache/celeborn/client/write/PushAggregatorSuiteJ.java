@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.write;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.protocol.PartitionLocation;
+
+public class PushAggregatorSuiteJ {
+  private static final String SHUFFLE_KEY = "app-1";
+  private static final PartitionLocation LOCATION =
+      new PartitionLocation(0, 0, "worker1", 1, 2, 3, 4, PartitionLocation.Mode.MASTER);
+
+  private final LinkedBlockingQueue<PushAggregator.Frame> sentFrames = new LinkedBlockingQueue<>();
+
+  private PushAggregator newAggregator(CelebornConf conf) {
+    conf.set("celeborn.push.aggregator.frameSize", "300");
+    conf.set("celeborn.push.aggregator.memory", "1000");
+    conf.set("celeborn.push.limit.inFlight.timeout", "10s");
+    return new PushAggregator(conf, sentFrames::add);
+  }
+
+  private ByteBuf add(PushAggregator aggregator, PushState pushState, String worker, int size)
+      throws IOException {
+    return add(aggregator, pushState, SHUFFLE_KEY, worker, size);
+  }
+
+  private ByteBuf add(
+      PushAggregator aggregator, PushState pushState, String shuffleKey, String worker, int size)
+      throws IOException {
+    ByteBuf body = Unpooled.buffer(size);
+    body.writerIndex(size);
+    aggregator.add(
+        "app",
+        1,
+        0,
+        0,
+        pushState,
+        shuffleKey,
+        worker,
+        new DataBatches.DataBatch(LOCATION, pushState.batchId.addAndGet(1), body));
+    return body;
+  }
+
+  @Test
+  public void testCoalesceTasks() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    PushAggregator aggregator = newAggregator(conf);
+    PushState task1 = new PushState(conf);
+    PushState task2 = new PushState(conf);
+    try {
+      add(aggregator, task1, "worker1:2", 100);
+      add(aggregator, task2, "worker1:2", 100);
+      add(aggregator, task1, "worker2:2", 100);
+      Assert.assertEquals(2, aggregator.getPendingFrameCount());
+      // each task has one grouped batch in flight per frame
+      Assert.assertEquals(2, task1.inFlightBatches.size());
+      Assert.assertEquals(1, task2.inFlightBatches.size());
+      Assert.assertNull(sentFrames.poll());
+
+      // the frame of worker1 is full
+      add(aggregator, task2, "worker1:2", 100);
+      PushAggregator.Frame frame = sentFrames.poll(10, TimeUnit.SECONDS);
+      Assert.assertEquals("worker1:2", frame.addressPair);
+      Assert.assertEquals(300, frame.getSize());
+      ArrayList<PushAggregator.TaskBatches> tasks = new ArrayList<>(frame.getTasks());
+      Assert.assertEquals(2, tasks.size());
+      Assert.assertEquals(1, tasks.get(0).batches.size());
+      Assert.assertEquals(2, tasks.get(1).batches.size());
+
+      aggregator.flush(task1);
+      frame = sentFrames.poll(10, TimeUnit.SECONDS);
+      Assert.assertEquals("worker2:2", frame.addressPair);
+      Assert.assertEquals(0, aggregator.getPendingFrameCount());
+      Assert.assertEquals(400, aggregator.getUsedBytes());
+      frame.finished();
+      frame.finished();
+      Assert.assertEquals(300, aggregator.getUsedBytes());
+    } finally {
+      aggregator.close();
+    }
+  }
+
+  @Test
+  public void testFramePerShuffle() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    PushAggregator aggregator = newAggregator(conf);
+    PushState task1 = new PushState(conf);
+    PushState task2 = new PushState(conf);
+    try {
+      // a STAGE_ENDED reply to a frame ends all its tasks, so only tasks of one shuffle share it
+      add(aggregator, task1, "app-1", "worker1:2", 100);
+      add(aggregator, task2, "app-2", "worker1:2", 100);
+      Assert.assertEquals(2, aggregator.getPendingFrameCount());
+
+      aggregator.flush(task1);
+      PushAggregator.Frame frame = sentFrames.poll(10, TimeUnit.SECONDS);
+      Assert.assertEquals("app-1", frame.shuffleKey);
+      Assert.assertEquals(1, frame.getTasks().size());
+      Assert.assertEquals(1, aggregator.getPendingFrameCount());
+    } finally {
+      aggregator.close();
+    }
+  }
+
+  @Test
+  public void testLinger() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.push.lingerTime", "50ms");
+    PushAggregator aggregator = newAggregator(conf);
+    try {
+      long start = System.currentTimeMillis();
+      add(aggregator, new PushState(conf), "worker1:2", 100);
+      PushAggregator.Frame frame = sentFrames.poll(10, TimeUnit.SECONDS);
+      Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+      Assert.assertEquals(100, frame.getSize());
+      Assert.assertEquals(0, aggregator.getPendingFrameCount());
+    } finally {
+      aggregator.close();
+    }
+  }
+
+  @Test
+  public void testMemoryBudget() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    PushAggregator aggregator = newAggregator(conf);
+    PushState task1 = new PushState(conf);
+    PushState task2 = new PushState(conf);
+    try {
+      add(aggregator, task1, "worker1:2", 600);
+      PushAggregator.Frame frame = sentFrames.poll(10, TimeUnit.SECONDS);
+      ByteBuf pending = add(aggregator, task2, "worker2:2", 200);
+
+      Thread finisher =
+          new Thread(
+              () -> {
+                try {
+                  Thread.sleep(50);
+                } catch (InterruptedException e) {
+                  return;
+                }
+                frame.finished();
+              });
+      finisher.start();
+      // waits for the first frame, the pending one is pushed to give memory back sooner
+      long start = System.currentTimeMillis();
+      ByteBuf discarded = add(aggregator, task1, "worker1:2", 250);
+      Assert.assertTrue(System.currentTimeMillis() - start >= 40);
+      finisher.join();
+      Assert.assertEquals("worker2:2", sentFrames.poll(10, TimeUnit.SECONDS).addressPair);
+      Assert.assertEquals(1, pending.refCnt());
+      Assert.assertEquals(450, aggregator.getUsedBytes());
+
+      aggregator.discard(task1);
+      Assert.assertEquals(0, discarded.refCnt());
+      Assert.assertEquals(200, aggregator.getUsedBytes());
+      Assert.assertEquals(0, aggregator.getPendingFrameCount());
+
+      task2.exception.set(new IOException("failed"));
+      add(aggregator, task2, "worker1:2", 800);
+      try {
+        add(aggregator, task2, "worker1:2", 100);
+        Assert.fail("The failure of the task should be thrown while waiting for memory.");
+      } catch (IOException e) {
+        Assert.assertEquals("failed", e.getMessage());
+      }
+    } finally {
+      aggregator.close();
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.write;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.CelebornConf;
+
+public class PushCongestionControlSuiteJ {
+  private static final String WORKER = "worker1:9092";
+  private static final String OTHER_WORKER = "worker2:9092";
+  private static final long RTT_NS = 1000000;
+
+  private PushCongestionControl newCongestionControl() {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.push.buffer.max.size", "100");
+    conf.set("celeborn.push.congestionControl.initialWindow", "400");
+    conf.set("celeborn.push.congestionControl.maxWindow", "1000");
+    conf.set("celeborn.push.congestionControl.rttTolerance", "2");
+    return new PushCongestionControl(conf);
+  }
+
+  @Test
+  public void testWindowPerWorker() throws InterruptedException {
+    PushCongestionControl congestionControl = newCongestionControl();
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+    }
+    Assert.assertFalse(congestionControl.tryAcquire(WORKER, 100, 10));
+    // a full window of one worker does not hold back pushes to the others
+    Assert.assertTrue(congestionControl.tryAcquire(OTHER_WORKER, 100, 0));
+    // a batch larger than the window is pushed once nothing else is in flight
+    Assert.assertTrue(congestionControl.tryAcquire("worker3:9092", 5000, 0));
+
+    Thread acker =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                return;
+              }
+              congestionControl.onAcked(WORKER, 100, RTT_NS);
+            });
+    acker.start();
+    Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 10000));
+    acker.join();
+  }
+
+  @Test
+  public void testGrowAndShrink() throws InterruptedException {
+    PushCongestionControl congestionControl = newCongestionControl();
+    // grows by one push buffer per window acknowledged in time
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+      congestionControl.onAcked(WORKER, 100, RTT_NS);
+    }
+    long window = congestionControl.getWindow(WORKER);
+    Assert.assertTrue(window > 480 && window < 500);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+      congestionControl.onAcked(WORKER, 100, RTT_NS);
+    }
+    Assert.assertEquals(1000, congestionControl.getWindow(WORKER));
+
+    // a slow push halves the window, the pushes reporting the same congestion do not
+    Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+    Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+    congestionControl.onAcked(WORKER, 100, 5 * RTT_NS);
+    Assert.assertEquals(500, congestionControl.getWindow(WORKER));
+    congestionControl.onCongested(WORKER, 100);
+    Assert.assertEquals(500, congestionControl.getWindow(WORKER));
+    Assert.assertEquals(0, congestionControl.getInFlightBytes(WORKER));
+
+    // at most once per round trip
+    for (int i = 0; i < 5; i++) {
+      Thread.sleep(10);
+      Assert.assertTrue(congestionControl.tryAcquire(WORKER, 100, 0));
+      congestionControl.onCongested(WORKER, 100);
+    }
+    // never below one push buffer
+    Assert.assertEquals(100, congestionControl.getWindow(WORKER));
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.client.write;
+
+import java.util.Collections;
+
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.protocol.PartitionLocation;
+
+public class PushStateSuiteJ {
+
+  @Test
+  public void testLingeredAddressPairs() throws InterruptedException {
+    PushState pushState = new PushState(new CelebornConf());
+    PartitionLocation loc =
+        new PartitionLocation(0, 0, "worker1", 1, 2, 3, 4, PartitionLocation.Mode.MASTER);
+    pushState.addBatchData("worker1:2", loc, 1, Unpooled.buffer(10).writerIndex(10));
+    Thread.sleep(50);
+    pushState.addBatchData("worker2:2", loc, 2, Unpooled.buffer(10).writerIndex(10));
+    // the linger of the address pair starts with its first batch
+    pushState.addBatchData("worker1:2", loc, 3, Unpooled.buffer(10).writerIndex(10));
+
+    Assert.assertEquals(
+        Collections.singletonList("worker1:2"), pushState.getLingeredAddressPairs(50));
+    Assert.assertEquals(20, pushState.takeDataBatches("worker1:2").getTotalSize());
+    Assert.assertTrue(pushState.getLingeredAddressPairs(50).isEmpty());
+    pushState.releaseDataBatches();
+  }
+
+  @Test
+  public void testCompressionProbe() {
+    PushState pushState =
+        new PushState(new CelebornConf().set("celeborn.shuffle.compression.probeInterval", "2"));
+    Assert.assertFalse(pushState.shouldStore(0));
+    pushState.onCompressed(0, 100, 95);
+    pushState.onCompressed(1, 100, 50);
+    // two batches of partition 0 are stored, then it is probed again
+    Assert.assertTrue(pushState.shouldStore(0));
+    Assert.assertTrue(pushState.shouldStore(0));
+    Assert.assertFalse(pushState.shouldStore(0));
+    Assert.assertFalse(pushState.shouldStore(1));
+
+    pushState =
+        new PushState(new CelebornConf().set("celeborn.shuffle.compression.probeInterval", "0"));
+    pushState.onCompressed(0, 100, 100);
+    Assert.assertFalse(pushState.shouldStore(0));
+  }
+}
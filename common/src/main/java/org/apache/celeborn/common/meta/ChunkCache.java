@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.buffer.NettyManagedBuffer;
+import org.apache.celeborn.common.network.server.MemoryTracker;
+import org.apache.celeborn.common.protocol.TransportModuleConstants;
+
+/**
+ * Keeps the most recently flushed chunks of local shuffle files in memory, so that reducers which
+ * start reading right after the files are committed do not go back to disk. Each mount point has
+ * its own LRU budget. The cached buffers are copies of the flushed bytes, since the flusher
+ * recycles its buffers. Writers only copy chunks the cache {@link #admits}, nothing is admitted
+ * while push data is paused, and everything is dropped when {@link MemoryTracker} asks to trim.
+ */
+public class ChunkCache implements MemoryTracker.MemoryTrackerListener {
+  private static final Logger logger = LoggerFactory.getLogger(ChunkCache.class);
+  private static volatile ChunkCache _INSTANCE = null;
+
+  private final long capacityPerDisk;
+  private final Set<String> mountPoints;
+  private final Map<String, DiskCache> diskCaches = new ConcurrentHashMap<>();
+  // set while direct memory is under pressure
+  private volatile boolean paused = false;
+
+  public static synchronized ChunkCache initialize(long capacityPerDisk, Set<String> mountPoints) {
+    if (_INSTANCE == null) {
+      _INSTANCE = new ChunkCache(capacityPerDisk, mountPoints);
+    }
+    return _INSTANCE;
+  }
+
+  /** Null if the chunk cache is disabled. */
+  public static ChunkCache instance() {
+    return _INSTANCE;
+  }
+
+  private ChunkCache(long capacityPerDisk, Set<String> mountPoints) {
+    this.capacityPerDisk = capacityPerDisk;
+    this.mountPoints = mountPoints;
+    for (String mountPoint : mountPoints) {
+      diskCaches.put(mountPoint, new DiskCache());
+    }
+    logger.info("Chunk cache initialized with {} bytes per disk.", capacityPerDisk);
+  }
+
+  /**
+   * Caches a chunk which has been handed to the flusher, the cache takes over the reference of
+   * {@code chunk}.
+   */
+  public void put(String filePath, int chunkIndex, long chunkOffset, ByteBuf chunk) {
+    DiskCache diskCache = diskCache(filePath);
+    if (diskCache == null || chunk.readableBytes() > capacityPerDisk) {
+      chunk.release();
+      return;
+    }
+    diskCache.put(new Entry(key(filePath, chunkIndex), filePath, chunkOffset, chunk));
+  }
+
+  /** Whether a chunk of the file of the given size would be kept if it was put now. */
+  public boolean admits(String filePath, long chunkSize) {
+    return !paused && chunkSize <= capacityPerDisk && diskCache(filePath) != null;
+  }
+
+  /**
+   * Returns the bytes [offset, offset + length) of the chunk, or null if the chunk is not cached.
+   */
+  public ManagedBuffer get(
+      String filePath,
+      int chunkIndex,
+      long chunkOffset,
+      long chunkLength,
+      long offset,
+      long length) {
+    DiskCache diskCache = diskCache(filePath);
+    if (diskCache == null) {
+      return null;
+    }
+    return diskCache.get(key(filePath, chunkIndex), chunkOffset, chunkLength, offset, length);
+  }
+
+  public void invalidate(String filePath) {
+    DiskCache diskCache = diskCache(filePath);
+    if (diskCache != null) {
+      diskCache.invalidate(filePath);
+    }
+  }
+
+  public long getHitCount(String mountPoint) {
+    DiskCache diskCache = diskCaches.get(mountPoint);
+    return diskCache == null ? 0 : diskCache.hits.sum();
+  }
+
+  public long getMissCount(String mountPoint) {
+    DiskCache diskCache = diskCaches.get(mountPoint);
+    return diskCache == null ? 0 : diskCache.misses.sum();
+  }
+
+  public long getUsedBytes() {
+    long usedBytes = 0;
+    for (DiskCache diskCache : diskCaches.values()) {
+      usedBytes += diskCache.usedBytes;
+    }
+    return usedBytes;
+  }
+
+  @Override
+  public void onPause(String moduleName) {
+    if (TransportModuleConstants.PUSH_MODULE.equals(moduleName)) {
+      paused = true;
+    }
+  }
+
+  @Override
+  public void onResume(String moduleName) {
+    if (moduleName.equalsIgnoreCase("all")
+        || TransportModuleConstants.PUSH_MODULE.equals(moduleName)) {
+      paused = false;
+    }
+  }
+
+  @Override
+  public void onTrim() {
+    for (DiskCache diskCache : diskCaches.values()) {
+      diskCache.clear();
+    }
+  }
+
+  private DiskCache diskCache(String filePath) {
+    return diskCaches.get(DeviceInfo.getMountPoint(filePath, mountPoints));
+  }
+
+  private static String key(String filePath, int chunkIndex) {
+    return filePath + "#" + chunkIndex;
+  }
+
+  private static class Entry {
+    final String key;
+    final String filePath;
+    final long chunkOffset;
+    final ByteBuf buf;
+
+    Entry(String key, String filePath, long chunkOffset, ByteBuf buf) {
+      this.key = key;
+      this.filePath = filePath;
+      this.chunkOffset = chunkOffset;
+      this.buf = buf;
+    }
+  }
+
+  private class DiskCache {
+    // access ordered, the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // keys of the cached chunks of each file
+    private final Map<String, Set<String>> fileKeys = new HashMap<>();
+    private volatile long usedBytes = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    synchronized void put(Entry entry) {
+      Entry old = entries.put(entry.key, entry);
+      if (old != null) {
+        release(old);
+      }
+      fileKeys.computeIfAbsent(entry.filePath, k -> new HashSet<>()).add(entry.key);
+      usedBytes += entry.buf.readableBytes();
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (usedBytes > capacityPerDisk && iterator.hasNext()) {
+        Entry eldest = iterator.next();
+        iterator.remove();
+        removeFileKey(eldest);
+        release(eldest);
+      }
+    }
+
+    synchronized ManagedBuffer get(
+        String key, long chunkOffset, long chunkLength, long offset, long length) {
+      Entry entry = entries.get(key);
+      if (entry == null
+          || entry.chunkOffset != chunkOffset
+          || entry.buf.readableBytes() != chunkLength) {
+        misses.increment();
+        return null;
+      }
+      hits.increment();
+      // Slices share the reference count of the cached buffer, so eviction does not free the
+      // bytes of chunks being sent.
+      return new NettyManagedBuffer(entry.buf.retainedSlice((int) offset, (int) length));
+    }
+
+    synchronized void invalidate(String filePath) {
+      Set<String> keys = fileKeys.remove(filePath);
+      if (keys == null) {
+        return;
+      }
+      for (String key : keys) {
+        release(entries.remove(key));
+      }
+    }
+
+    synchronized void clear() {
+      entries.values().forEach(this::release);
+      entries.clear();
+      fileKeys.clear();
+    }
+
+    private void removeFileKey(Entry entry) {
+      Set<String> keys = fileKeys.get(entry.filePath);
+      if (keys != null && keys.remove(entry.key) && keys.isEmpty()) {
+        fileKeys.remove(entry.filePath);
+      }
+    }
+
+    private void release(Entry entry) {
+      usedBytes -= entry.buf.readableBytes();
+      entry.buf.release();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.util.ThreadUtils;
+
+/**
+ * Makes concurrent fetches of the same file segment share one read. The first fetch reads the
+ * segment into a direct buffer, fetches of the same (file, offset, length) arriving before every
+ * sender of that buffer has released it get the same bytes instead of reading the disk again. Reads
+ * never run in the calling thread, which is usually a netty event loop.
+ */
+public class ChunkReadCoalescer {
+  private static volatile ChunkReadCoalescer _INSTANCE = null;
+  // threads reading segments if no reader is given
+  private static final int DEFAULT_READ_THREADS =
+      Math.max(Runtime.getRuntime().availableProcessors(), 8);
+
+  /** Reads a file segment into a buffer owned by the caller. */
+  public interface SegmentReader {
+    CompletableFuture<ByteBuf> read(File file, long offset, int length);
+  }
+
+  private final SegmentReader reader;
+  private final ConcurrentHashMap<String, SharedRead> reads = new ConcurrentHashMap<>();
+  private final LongAdder diskReads = new LongAdder();
+  private final LongAdder coalescedReads = new LongAdder();
+
+  public static ChunkReadCoalescer initialize() {
+    return initialize(null);
+  }
+
+  /** @param reader reads the segments, null to read them on a dedicated thread pool */
+  public static synchronized ChunkReadCoalescer initialize(SegmentReader reader) {
+    if (_INSTANCE == null) {
+      _INSTANCE = new ChunkReadCoalescer(reader);
+    }
+    return _INSTANCE;
+  }
+
+  /** Null if read coalescing is disabled. */
+  public static ChunkReadCoalescer instance() {
+    return _INSTANCE;
+  }
+
+  private ChunkReadCoalescer(SegmentReader reader) {
+    if (reader == null) {
+      ExecutorService readExecutor =
+          ThreadUtils.newDaemonCachedThreadPool("worker-chunk-reader", DEFAULT_READ_THREADS, 60);
+      this.reader =
+          (file, offset, length) -> {
+            CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+            readExecutor.execute(
+                () -> {
+                  try {
+                    future.complete(readFully(file, offset, length));
+                  } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                  }
+                });
+            return future;
+          };
+    } else {
+      this.reader = reader;
+    }
+  }
+
+  /** The returned buffer must be released even if the caller no longer needs it. */
+  public CompletableFuture<ManagedBuffer> readAsync(File file, long offset, long length) {
+    String key = file.getPath() + "#" + offset + "#" + length;
+    while (true) {
+      SharedRead read = new SharedRead(key);
+      SharedRead existing = reads.putIfAbsent(key, read);
+      if (existing == null) {
+        diskReads.increment();
+        reader
+            .read(file, offset, (int) length)
+            .whenComplete(
+                (buf, throwable) -> {
+                  if (throwable != null) {
+                    reads.remove(key, read);
+                    read.future.completeExceptionally(throwable);
+                  } else {
+                    read.future.complete(buf);
+                  }
+                });
+        return read.future.thenApply(buf -> new SharedChunkBuffer(read, buf));
+      }
+      // The last holder of a read may be releasing it, retry until it is gone from the map.
+      if (existing.acquire()) {
+        coalescedReads.increment();
+        return existing.future.handle(
+            (buf, throwable) -> {
+              if (throwable != null) {
+                existing.release();
+                throw new CompletionException(throwable);
+              }
+              return new SharedChunkBuffer(existing, buf);
+            });
+      }
+    }
+  }
+
+  public long getDiskReadCount() {
+    return diskReads.sum();
+  }
+
+  public long getCoalescedReadCount() {
+    return coalescedReads.sum();
+  }
+
+  public int getInFlightReadCount() {
+    return reads.size();
+  }
+
+  public static ByteBuf readFully(File file, long offset, int length) throws IOException {
+    ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(length, length);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (buf.isWritable()) {
+        if (buf.writeBytes(channel, offset + buf.writerIndex(), buf.writableBytes()) < 0) {
+          throw new IOException(
+              String.format(
+                  "Reached EOF before filling buffer, offset=%s, file=%s, remaining=%s",
+                  offset, file.getAbsolutePath(), buf.writableBytes()));
+        }
+      }
+      return buf;
+    } catch (IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
+  }
+
+  private class SharedRead {
+    private final String key;
+    private final CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+    // count of SharedChunkBuffers not released yet, the creator holds the first one
+    private int refCount = 1;
+
+    SharedRead(String key) {
+      this.key = key;
+    }
+
+    synchronized boolean acquire() {
+      if (refCount == 0) {
+        return false;
+      }
+      refCount++;
+      return true;
+    }
+
+    void release() {
+      synchronized (this) {
+        if (--refCount > 0) {
+          return;
+        }
+      }
+      reads.remove(key, this);
+      if (future.isDone() && !future.isCompletedExceptionally()) {
+        future.join().release();
+      }
+    }
+  }
+
+  /** A view of a shared read, the bytes are freed when every view has been released. */
+  private static class SharedChunkBuffer extends ManagedBuffer {
+    private final SharedRead read;
+    private final ByteBuf buf;
+
+    SharedChunkBuffer(SharedRead read, ByteBuf buf) {
+      this.read = read;
+      this.buf = buf;
+    }
+
+    @Override
+    public long size() {
+      return buf.readableBytes();
+    }
+
+    @Override
+    public ByteBuffer nioByteBuffer() {
+      return buf.nioBuffer();
+    }
+
+    @Override
+    public InputStream createInputStream() {
+      return new ByteBufInputStream(buf.duplicate());
+    }
+
+    @Override
+    public ManagedBuffer retain() {
+      read.acquire();
+      return this;
+    }
+
+    @Override
+    public ManagedBuffer release() {
+      read.release();
+      return this;
+    }
+
+    @Override
+    public Object convertToNetty() {
+      return buf.retainedDuplicate();
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this).add("read", read.key).add("buf", buf).toString();
+    }
+  }
+}
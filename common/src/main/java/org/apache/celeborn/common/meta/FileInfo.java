@@ -34,10 +34,22 @@ public class FileInfo {
   private final String filePath;
   private final List<Long> chunkOffsets;
   private final UserIdentifier userIdentifier;
+  // Non-null when chunk offsets are positions in a map range view of the file rather than in
+  // the file itself.
+  private final FileSegments segments;
 
   public FileInfo(String filePath, List<Long> chunkOffsets, UserIdentifier userIdentifier) {
+    this(filePath, chunkOffsets, null, userIdentifier);
+  }
+
+  public FileInfo(
+      String filePath,
+      List<Long> chunkOffsets,
+      FileSegments segments,
+      UserIdentifier userIdentifier) {
     this.filePath = filePath;
     this.chunkOffsets = chunkOffsets;
+    this.segments = segments;
     this.userIdentifier = userIdentifier;
   }
 
@@ -45,6 +57,7 @@ public class FileInfo {
     this.filePath = filePath;
     this.chunkOffsets = new ArrayList<>();
     chunkOffsets.add(0L);
+    this.segments = null;
     this.userIdentifier = userIdentifier;
   }
 
@@ -53,6 +66,7 @@ public class FileInfo {
     this.filePath = file.getAbsolutePath();
     this.chunkOffsets = new ArrayList<>();
     chunkOffsets.add(0L);
+    this.segments = null;
     this.userIdentifier = userIdentifier;
   }
 
@@ -92,6 +106,14 @@ public class FileInfo {
     return Utils.getIndexFilePath(filePath);
   }
 
+  public String getMapIndexPath() {
+    return Utils.getMapIndexFilePath(filePath);
+  }
+
+  public FileSegments getSegments() {
+    return segments;
+  }
+
   public Path getHdfsPath() {
     return new Path(filePath);
   }
@@ -126,6 +148,11 @@ public class FileInfo {
       getFile().delete();
       new File(getIndexPath()).delete();
       new File(getSortedPath()).delete();
+      new File(getMapIndexPath()).delete();
+      ChunkCache chunkCache = ChunkCache.instance();
+      if (chunkCache != null) {
+        chunkCache.invalidate(filePath);
+      }
     }
   }
 
@@ -18,16 +18,29 @@
 package org.apache.celeborn.common.meta;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.celeborn.common.network.buffer.CompositeFileSegmentManagedBuffer;
 import org.apache.celeborn.common.network.buffer.FileSegmentManagedBuffer;
 import org.apache.celeborn.common.network.buffer.ManagedBuffer;
 import org.apache.celeborn.common.network.util.TransportConf;
 
+/**
+ * The chunks of a stream over one or more files. The chunks of a multi-file stream are the chunks
+ * of each file, one file after another.
+ */
 public class FileManagedBuffers {
-  private final File file;
-  private final long[] offsets;
+  private final File[] files;
+  private final FileSegments[] segments;
+  // index of the first chunk of each file, the last element is the number of chunks
+  private final int[] firstChunks;
+  // index of the file each chunk belongs to
+  private final int[] chunkFiles;
+  // offset of each chunk in its file, followed by the end of the last chunk of that file
+  private final long[][] offsets;
   private final int numChunks;
 
   private final BitSet chunkTracker;
@@ -36,17 +49,40 @@ public class FileManagedBuffers {
   private volatile boolean fullyRead = false;
 
   public FileManagedBuffers(FileInfo fileInfo, TransportConf conf) {
-    file = fileInfo.getFile();
-    numChunks = fileInfo.numChunks();
-    if (numChunks > 0) {
-      offsets = new long[numChunks + 1];
-      List<Long> chunkOffsets = fileInfo.getChunkOffsets();
-      for (int i = 0; i <= numChunks; i++) {
-        offsets[i] = chunkOffsets.get(i);
+    this(Collections.singletonList(fileInfo), conf);
+  }
+
+  public FileManagedBuffers(List<FileInfo> fileInfos, TransportConf conf) {
+    int numFiles = fileInfos.size();
+    files = new File[numFiles];
+    segments = new FileSegments[numFiles];
+    firstChunks = new int[numFiles + 1];
+    offsets = new long[numFiles][];
+    int totalChunks = 0;
+    for (int i = 0; i < numFiles; i++) {
+      FileInfo fileInfo = fileInfos.get(i);
+      files[i] = fileInfo.getFile();
+      segments[i] = fileInfo.getSegments();
+      firstChunks[i] = totalChunks;
+      int fileChunks = fileInfo.numChunks();
+      if (fileChunks > 0) {
+        offsets[i] = new long[fileChunks + 1];
+        List<Long> chunkOffsets = fileInfo.getChunkOffsets();
+        for (int j = 0; j <= fileChunks; j++) {
+          offsets[i][j] = chunkOffsets.get(j);
+        }
+      } else {
+        offsets[i] = new long[] {0};
+      }
+      totalChunks += fileChunks;
+    }
+    firstChunks[numFiles] = totalChunks;
+    numChunks = totalChunks;
+    chunkFiles = new int[numChunks];
+    for (int i = 0; i < numFiles; i++) {
+      for (int j = firstChunks[i]; j < firstChunks[i + 1]; j++) {
+        chunkFiles[j] = i;
       }
-    } else {
-      offsets = new long[1];
-      offsets[0] = 0;
     }
     chunkTracker = new BitSet(numChunks);
     chunkTracker.clear();
@@ -63,16 +99,16 @@ public class FileManagedBuffers {
     }
   }
 
-  public ManagedBuffer chunk(int chunkIndex, int offset, int len) {
-    synchronized (chunkTracker) {
-      chunkTracker.set(chunkIndex, true);
-    }
-    // offset of the beginning of the chunk in the file
-    final long chunkOffset = offsets[chunkIndex];
-    final long chunkLength = offsets[chunkIndex + 1] - chunkOffset;
-    assert offset < chunkLength;
-    long length = Math.min(chunkLength - offset, len);
-    if (len + offset >= chunkLength) {
+  /**
+   * Records that the bytes [offset, offset + len) of a chunk have been sent. The chunk counts as
+   * read once its end has been sent.
+   */
+  public void markRead(int chunkIndex, int offset, int len) {
+    int fileIndex = chunkFiles[chunkIndex];
+    int fileChunkIndex = chunkIndex - firstChunks[fileIndex];
+    long chunkLength =
+        offsets[fileIndex][fileChunkIndex + 1] - offsets[fileIndex][fileChunkIndex];
+    if ((long) len + offset >= chunkLength) {
       synchronized (chunkTracker) {
         chunkTracker.set(chunkIndex);
       }
@@ -80,9 +116,83 @@ public class FileManagedBuffers {
         fullyRead = true;
       }
     }
+  }
+
+  /** Records that the chunks [startChunkIndex, startChunkIndex + rangeChunks) have been sent. */
+  public void markRead(int startChunkIndex, int rangeChunks) {
+    int endChunkIndex = startChunkIndex + rangeChunks;
+    synchronized (chunkTracker) {
+      chunkTracker.set(startChunkIndex, endChunkIndex);
+    }
+    if (endChunkIndex == numChunks) {
+      fullyRead = true;
+    }
+  }
+
+  /**
+   * Returns a slice of a chunk. The chunk is not marked as read, a send that fails can be retried
+   * through {@link #chunkRange(int, int)} or this method.
+   */
+  public ManagedBuffer chunk(int chunkIndex, int offset, int len) {
+    int fileIndex = chunkFiles[chunkIndex];
+    File file = files[fileIndex];
+    int fileChunkIndex = chunkIndex - firstChunks[fileIndex];
+    // offset of the beginning of the chunk in the file
+    final long chunkOffset = offsets[fileIndex][fileChunkIndex];
+    final long chunkLength = offsets[fileIndex][fileChunkIndex + 1] - chunkOffset;
+    assert offset < chunkLength;
+    long length = Math.min(chunkLength - offset, len);
+    if (segments[fileIndex] != null) {
+      return segments[fileIndex].slice(conf, file, chunkOffset + offset, length);
+    }
+    ChunkCache chunkCache = ChunkCache.instance();
+    if (chunkCache != null) {
+      ManagedBuffer cached =
+          chunkCache.get(file.getPath(), fileChunkIndex, chunkOffset, chunkLength, offset, length);
+      if (cached != null) {
+        return cached;
+      }
+    }
     return new FileSegmentManagedBuffer(conf, file, chunkOffset + offset, length);
   }
 
+  /** Lengths of the whole chunks [startChunkIndex, startChunkIndex + rangeChunks). */
+  public int[] chunkLengths(int startChunkIndex, int rangeChunks) {
+    int[] lengths = new int[rangeChunks];
+    for (int i = 0; i < rangeChunks; i++) {
+      int fileIndex = chunkFiles[startChunkIndex + i];
+      int fileChunkIndex = startChunkIndex + i - firstChunks[fileIndex];
+      lengths[i] =
+          (int) (offsets[fileIndex][fileChunkIndex + 1] - offsets[fileIndex][fileChunkIndex]);
+    }
+    return lengths;
+  }
+
+  /**
+   * Returns the whole chunks [startChunkIndex, startChunkIndex + rangeChunks) as one buffer. The
+   * chunks are adjacent in the stream, so local files are sent as a single file region and the
+   * chunk cache is not consulted. The chunks are not marked as read.
+   */
+  public ManagedBuffer chunkRange(int startChunkIndex, int rangeChunks) {
+    int endChunkIndex = startChunkIndex + rangeChunks;
+    List<ManagedBuffer> parts = new ArrayList<>();
+    int chunkIndex = startChunkIndex;
+    while (chunkIndex < endChunkIndex) {
+      int fileIndex = chunkFiles[chunkIndex];
+      int fileEndChunkIndex = Math.min(endChunkIndex, firstChunks[fileIndex + 1]);
+      long rangeOffset = offsets[fileIndex][chunkIndex - firstChunks[fileIndex]];
+      long rangeLength =
+          offsets[fileIndex][fileEndChunkIndex - firstChunks[fileIndex]] - rangeOffset;
+      if (segments[fileIndex] != null) {
+        parts.add(segments[fileIndex].slice(conf, files[fileIndex], rangeOffset, rangeLength));
+      } else {
+        parts.add(new FileSegmentManagedBuffer(conf, files[fileIndex], rangeOffset, rangeLength));
+      }
+      chunkIndex = fileEndChunkIndex;
+    }
+    return CompositeFileSegmentManagedBuffer.concat(conf, parts);
+  }
+
   public boolean isFullyRead() {
     return fullyRead;
   }
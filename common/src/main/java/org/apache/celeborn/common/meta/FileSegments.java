@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.celeborn.common.network.buffer.CompositeFileSegmentManagedBuffer;
+import org.apache.celeborn.common.network.buffer.FileSegmentManagedBuffer;
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.util.TransportConf;
+import org.apache.celeborn.common.util.ShuffleBlockInfoUtils.ShuffleBlockInfo;
+
+/**
+ * Maps a logical stream onto the regions of a partition file it is made of. A map range read of an
+ * unsorted file is the concatenation of the blocks of those maps, so chunk offsets of such a stream
+ * are logical positions which are translated to file positions here.
+ */
+public class FileSegments {
+  // logical start of each segment, the last element is the total length of the stream
+  private final long[] positions;
+  // file offset of each segment
+  private final long[] fileOffsets;
+
+  /** @param blocks blocks in file order, physically adjacent blocks are coalesced. */
+  public FileSegments(List<ShuffleBlockInfo> blocks) {
+    long[] positions = new long[blocks.size() + 1];
+    long[] fileOffsets = new long[blocks.size()];
+    int numSegments = 0;
+    long position = 0;
+    for (ShuffleBlockInfo block : blocks) {
+      if (numSegments > 0
+          && fileOffsets[numSegments - 1] + position - positions[numSegments - 1] == block.offset) {
+        position += block.length;
+        continue;
+      }
+      positions[numSegments] = position;
+      fileOffsets[numSegments] = block.offset;
+      numSegments++;
+      position += block.length;
+    }
+    positions[numSegments] = position;
+    this.positions = Arrays.copyOf(positions, numSegments + 1);
+    this.fileOffsets = Arrays.copyOf(fileOffsets, numSegments);
+  }
+
+  /**
+   * @param positions logical start of each segment followed by the length of the stream
+   * @param fileOffsets file offset of each segment
+   */
+  public FileSegments(long[] positions, long[] fileOffsets) {
+    this.positions = positions;
+    this.fileOffsets = fileOffsets;
+  }
+
+  public long[] getPositions() {
+    return positions;
+  }
+
+  public long[] getFileOffsets() {
+    return fileOffsets;
+  }
+
+  public int numSegments() {
+    return fileOffsets.length;
+  }
+
+  public long length() {
+    return positions[positions.length - 1];
+  }
+
+  /** Returns a buffer over the file regions backing [position, position + length). */
+  public ManagedBuffer slice(TransportConf conf, File file, long position, long length) {
+    int index = segmentIndex(position);
+    long segmentRemaining = positions[index + 1] - position;
+    long fileOffset = fileOffsets[index] + position - positions[index];
+    if (length <= segmentRemaining) {
+      return new FileSegmentManagedBuffer(conf, file, fileOffset, length);
+    }
+
+    int last = segmentIndex(position + length - 1);
+    long[] offsets = new long[last - index + 1];
+    long[] lengths = new long[last - index + 1];
+    offsets[0] = fileOffset;
+    lengths[0] = segmentRemaining;
+    long remaining = length - segmentRemaining;
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] = fileOffsets[index + i];
+      lengths[i] = Math.min(remaining, positions[index + i + 1] - positions[index + i]);
+      remaining -= lengths[i];
+    }
+    return new CompositeFileSegmentManagedBuffer(conf, file, offsets, lengths);
+  }
+
+  private int segmentIndex(long position) {
+    int index = Arrays.binarySearch(positions, 0, fileOffsets.length, position);
+    return index >= 0 ? index : -index - 2;
+  }
+}
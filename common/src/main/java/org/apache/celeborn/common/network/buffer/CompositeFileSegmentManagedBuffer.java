@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import org.apache.celeborn.common.network.util.AbstractFileRegion;
+import org.apache.celeborn.common.network.util.JavaUtils;
+import org.apache.celeborn.common.network.util.TransportConf;
+
+/**
+ * A {@link ManagedBuffer} backed by several file segments, which are exposed as if they were one
+ * contiguous segment. The segments usually belong to the same file.
+ */
+public final class CompositeFileSegmentManagedBuffer extends ManagedBuffer {
+  private final TransportConf conf;
+  private final File[] files;
+  private final long[] offsets;
+  private final long[] lengths;
+  private final long length;
+
+  public CompositeFileSegmentManagedBuffer(
+      TransportConf conf, File file, long[] offsets, long[] lengths) {
+    this(conf, sameFile(file, offsets.length), offsets, lengths);
+  }
+
+  public CompositeFileSegmentManagedBuffer(
+      TransportConf conf, File[] files, long[] offsets, long[] lengths) {
+    Preconditions.checkArgument(offsets.length == lengths.length);
+    Preconditions.checkArgument(files.length == offsets.length);
+    this.conf = conf;
+    this.files = files;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    long totalLength = 0;
+    for (long segmentLength : lengths) {
+      totalLength += segmentLength;
+    }
+    this.length = totalLength;
+  }
+
+  private static File[] sameFile(File file, int numSegments) {
+    File[] files = new File[numSegments];
+    Arrays.fill(files, file);
+    return files;
+  }
+
+  /**
+   * Concatenates file segment buffers into one buffer, sent as a single file region.
+   *
+   * @param buffers {@link FileSegmentManagedBuffer}s or {@link CompositeFileSegmentManagedBuffer}s
+   */
+  public static ManagedBuffer concat(TransportConf conf, List<ManagedBuffer> buffers) {
+    if (buffers.size() == 1) {
+      return buffers.get(0);
+    }
+    List<File> files = new ArrayList<>();
+    List<Long> offsets = new ArrayList<>();
+    List<Long> lengths = new ArrayList<>();
+    for (ManagedBuffer buffer : buffers) {
+      if (buffer instanceof FileSegmentManagedBuffer) {
+        FileSegmentManagedBuffer segment = (FileSegmentManagedBuffer) buffer;
+        files.add(segment.getFile());
+        offsets.add(segment.getOffset());
+        lengths.add(segment.getLength());
+      } else if (buffer instanceof CompositeFileSegmentManagedBuffer) {
+        CompositeFileSegmentManagedBuffer composite = (CompositeFileSegmentManagedBuffer) buffer;
+        for (int i = 0; i < composite.offsets.length; i++) {
+          files.add(composite.files[i]);
+          offsets.add(composite.offsets[i]);
+          lengths.add(composite.lengths[i]);
+        }
+      } else {
+        throw new IllegalArgumentException("Cannot concatenate " + buffer);
+      }
+    }
+    return new CompositeFileSegmentManagedBuffer(
+        conf,
+        files.toArray(new File[0]),
+        offsets.stream().mapToLong(Long::longValue).toArray(),
+        lengths.stream().mapToLong(Long::longValue).toArray());
+  }
+
+  @Override
+  public long size() {
+    return length;
+  }
+
+  @Override
+  public ByteBuffer nioByteBuffer() throws IOException {
+    FileChannel channel = null;
+    File channelFile = null;
+    try {
+      ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(length));
+      for (int i = 0; i < offsets.length; i++) {
+        if (!files[i].equals(channelFile)) {
+          JavaUtils.closeQuietly(channel);
+          channel = FileChannel.open(files[i].toPath(), StandardOpenOption.READ);
+          channelFile = files[i];
+        }
+        buf.limit(buf.position() + (int) lengths[i]);
+        long position = offsets[i];
+        while (buf.hasRemaining()) {
+          int read = channel.read(buf, position);
+          if (read == -1) {
+            throw new IOException(
+                String.format(
+                    "Reached EOF before filling buffer\n" + "offset=%s\nfile=%s\nbuf.remaining=%s",
+                    position, files[i].getAbsoluteFile(), buf.remaining()));
+          }
+          position += read;
+        }
+      }
+      buf.flip();
+      return buf;
+    } catch (IOException e) {
+      throw new IOException("Error in reading " + this, e);
+    } finally {
+      JavaUtils.closeQuietly(channel);
+    }
+  }
+
+  @Override
+  public InputStream createInputStream() throws IOException {
+    List<InputStream> streams = new ArrayList<>(offsets.length);
+    try {
+      for (int i = 0; i < offsets.length; i++) {
+        streams.add(
+            new FileSegmentManagedBuffer(conf, files[i], offsets[i], lengths[i])
+                .createInputStream());
+      }
+    } catch (IOException e) {
+      streams.forEach(JavaUtils::closeQuietly);
+      throw e;
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  @Override
+  public ManagedBuffer retain() {
+    return this;
+  }
+
+  @Override
+  public ManagedBuffer release() {
+    return this;
+  }
+
+  @Override
+  public Object convertToNetty() throws IOException {
+    FileChannel channel = null;
+    if (!conf.lazyFileDescriptor()) {
+      channel = FileChannel.open(files[0].toPath(), StandardOpenOption.READ);
+    }
+    return new SegmentsFileRegion(channel);
+  }
+
+  /** The file of the first segment. */
+  public File getFile() {
+    return files[0];
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("files", Arrays.toString(files))
+        .add("offsets", Arrays.toString(offsets))
+        .add("lengths", Arrays.toString(lengths))
+        .toString();
+  }
+
+  /** Transfers the segments one after another, each file is opened once per run of segments. */
+  private class SegmentsFileRegion extends AbstractFileRegion {
+    private FileChannel channel;
+    // file of the segment the channel is opened for
+    private int channelSegment = 0;
+    private long transferred;
+    private int segment;
+    private long segmentTransferred;
+
+    SegmentsFileRegion(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public long position() {
+      return 0;
+    }
+
+    @Override
+    public long count() {
+      return length;
+    }
+
+    @Override
+    public long transferred() {
+      return transferred;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+      Preconditions.checkArgument(position == transferred, "Invalid position.");
+      long written = 0;
+      while (segment < offsets.length) {
+        if (channel == null || !files[segment].equals(files[channelSegment])) {
+          JavaUtils.closeQuietly(channel);
+          channel = FileChannel.open(files[segment].toPath(), StandardOpenOption.READ);
+          channelSegment = segment;
+        }
+        long remaining = lengths[segment] - segmentTransferred;
+        long w = channel.transferTo(offsets[segment] + segmentTransferred, remaining, target);
+        written += w;
+        segmentTransferred += w;
+        if (w < remaining) {
+          break;
+        }
+        segment++;
+        segmentTransferred = 0;
+      }
+      transferred += written;
+      return written;
+    }
+
+    @Override
+    protected void deallocate() {
+      JavaUtils.closeQuietly(channel);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Push credits of a connection, in bytes. Pushes are not limited until the worker grants the first
+ * credits, workers that do not grant credits are pushed to as before. A push may overdraw the
+ * credits, the next one waits until the worker grants enough to cover it.
+ */
+public class PushCredits {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition granted = lock.newCondition();
+  private boolean enabled = false;
+  private long credits = 0;
+
+  public void grant(long bytes) {
+    lock.lock();
+    try {
+      enabled = true;
+      credits += bytes;
+      granted.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns false if no credits were granted within the timeout. */
+  public boolean acquire(long bytes, long timeoutMs) throws InterruptedException {
+    lock.lock();
+    try {
+      long remainingNs = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (enabled && credits <= 0) {
+        if (remainingNs <= 0) {
+          return false;
+        }
+        remainingNs = granted.awaitNanos(remainingNs);
+      }
+      if (enabled) {
+        credits -= bytes;
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long available() {
+    lock.lock();
+    try {
+      return enabled ? credits : Long.MAX_VALUE;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Releases the waiters once the connection is closed, their pushes fail on the connection. */
+  public void close() {
+    lock.lock();
+    try {
+      enabled = false;
+      granted.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -134,6 +134,42 @@ public class TransportClient implements Closeable {
     channel.writeAndFlush(new ChunkFetchRequest(streamChunkSlice)).addListener(listener);
   }
 
+  /**
+   * Requests a contiguous range of chunks from the remote side in a single round trip. The callback
+   * is invoked once per chunk, in chunk order on success. If the range cannot be fetched, every
+   * chunk of it fails, so that the caller can retry them individually.
+   *
+   * @param streamId Identifier that refers to a stream in the remote StreamManager.
+   * @param startChunkIndex 0-based index of the first chunk to fetch
+   * @param numChunks number of chunks to fetch
+   * @param callback Callback invoked upon successful receipt of each chunk, or upon any failure.
+   */
+  public void fetchChunkRange(
+      long streamId, int startChunkIndex, int numChunks, ChunkReceivedCallback callback) {
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Sending fetch chunk range request {}-{} to {}.",
+          startChunkIndex,
+          startChunkIndex + numChunks - 1,
+          NettyUtils.getRemoteAddress(channel));
+    }
+
+    StreamChunkRange streamChunkRange = new StreamChunkRange(streamId, startChunkIndex, numChunks);
+    StdChannelListener listener =
+        new StdChannelListener(streamChunkRange) {
+          @Override
+          protected void handleFailure(String errorMsg, Throwable cause) {
+            handler.removeRangeFetchRequest(streamChunkRange);
+            for (int i = 0; i < numChunks; i++) {
+              callback.onFailure(startChunkIndex + i, new IOException(errorMsg, cause));
+            }
+          }
+        };
+    handler.addRangeFetchRequest(streamChunkRange, callback);
+
+    channel.writeAndFlush(new ChunkRangeFetchRequest(streamChunkRange)).addListener(listener);
+  }
+
   /**
    * Sends an opaque message to the RpcHandler on the server-side. The callback will be invoked with
    * the server's response or upon any failure.
@@ -239,6 +275,14 @@ public class TransportClient implements Closeable {
     handler.removeRpcRequest(requestId);
   }
 
+  /**
+   * Waits until the worker has granted credits for pushing the given bytes over this connection.
+   * Returns false if no credits were granted within the timeout.
+   */
+  public boolean acquirePushCredit(long bytes, long timeoutMs) throws InterruptedException {
+    return handler.getPushCredits().acquire(bytes, timeoutMs);
+  }
+
   /** Mark this channel as having timed out. */
   public void timeOut() {
     this.timedOut = true;
@@ -22,10 +22,12 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.celeborn.common.network.buffer.NettyManagedBuffer;
 import org.apache.celeborn.common.network.protocol.*;
 import org.apache.celeborn.common.network.server.MessageHandler;
 import org.apache.celeborn.common.network.util.NettyUtils;
@@ -43,14 +45,19 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
 
   private final Map<StreamChunkSlice, ChunkReceivedCallback> outstandingFetches;
 
+  private final Map<StreamChunkRange, ChunkReceivedCallback> outstandingRangeFetches;
+
   private final Map<Long, RpcResponseCallback> outstandingRpcs;
 
+  private final PushCredits pushCredits = new PushCredits();
+
   /** Records the time (in system nanoseconds) that the last fetch or RPC request was sent. */
   private final AtomicLong timeOfLastRequestNs;
 
   public TransportResponseHandler(Channel channel) {
     this.channel = channel;
     this.outstandingFetches = new ConcurrentHashMap<>();
+    this.outstandingRangeFetches = new ConcurrentHashMap<>();
     this.outstandingRpcs = new ConcurrentHashMap<>();
     this.timeOfLastRequestNs = new AtomicLong(0);
   }
@@ -67,6 +74,19 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
     outstandingFetches.remove(streamChunkSlice);
   }
 
+  public void addRangeFetchRequest(
+      StreamChunkRange streamChunkRange, ChunkReceivedCallback callback) {
+    updateTimeOfLastRequest();
+    if (outstandingRangeFetches.containsKey(streamChunkRange)) {
+      logger.warn("[addRangeFetchRequest] streamChunkRange {} already exists!", streamChunkRange);
+    }
+    outstandingRangeFetches.put(streamChunkRange, callback);
+  }
+
+  public void removeRangeFetchRequest(StreamChunkRange streamChunkRange) {
+    outstandingRangeFetches.remove(streamChunkRange);
+  }
+
   public void addRpcRequest(long requestId, RpcResponseCallback callback) {
     updateTimeOfLastRequest();
     if (outstandingRpcs.containsKey(requestId)) {
@@ -91,6 +111,10 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
         logger.warn("ChunkReceivedCallback.onFailure throws exception", e);
       }
     }
+    for (Map.Entry<StreamChunkRange, ChunkReceivedCallback> entry :
+        outstandingRangeFetches.entrySet()) {
+      failRange(entry.getKey(), entry.getValue(), cause);
+    }
     for (Map.Entry<Long, RpcResponseCallback> entry : outstandingRpcs.entrySet()) {
       try {
         entry.getValue().onFailure(cause);
@@ -101,14 +125,28 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
 
     // It's OK if new fetches appear, as they will fail immediately.
     outstandingFetches.clear();
+    outstandingRangeFetches.clear();
     outstandingRpcs.clear();
   }
 
+  /** Every chunk of a range fails on its own, so that the callback can retry them one by one. */
+  private void failRange(
+      StreamChunkRange streamChunkRange, ChunkReceivedCallback callback, Throwable cause) {
+    for (int i = 0; i < streamChunkRange.numChunks; i++) {
+      try {
+        callback.onFailure(streamChunkRange.startChunkIndex + i, cause);
+      } catch (Exception e) {
+        logger.warn("ChunkReceivedCallback.onFailure throws exception", e);
+      }
+    }
+  }
+
   @Override
   public void channelActive() {}
 
   @Override
   public void channelInactive() {
+    pushCredits.close();
     if (numOutstandingRequests() > 0) {
       String remoteAddress = NettyUtils.getRemoteAddress(channel);
       logger.error(
@@ -164,6 +202,48 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
             new ChunkFetchFailureException(
                 "Failure while fetching " + resp.streamChunkSlice + ": " + resp.errorString));
       }
+    } else if (message instanceof ChunkRangeFetchSuccess) {
+      ChunkRangeFetchSuccess resp = (ChunkRangeFetchSuccess) message;
+      ChunkReceivedCallback listener = outstandingRangeFetches.remove(resp.streamChunkRange);
+      if (listener == null) {
+        logger.warn(
+            "Ignoring response for chunks {} from {} since it is not outstanding",
+            resp.streamChunkRange,
+            NettyUtils.getRemoteAddress(channel));
+        resp.body().release();
+      } else {
+        ByteBuf buf = (ByteBuf) resp.body().convertToNetty();
+        try {
+          // Each chunk is a slice of the response body, the listener retains what it keeps.
+          int position = buf.readerIndex();
+          for (int i = 0; i < resp.chunkLengths.length; i++) {
+            ByteBuf chunk = buf.slice(position, resp.chunkLengths[i]);
+            position += resp.chunkLengths[i];
+            listener.onSuccess(
+                resp.streamChunkRange.startChunkIndex + i, new NettyManagedBuffer(chunk));
+          }
+        } finally {
+          buf.release();
+          resp.body().release();
+        }
+      }
+    } else if (message instanceof ChunkRangeFetchFailure) {
+      ChunkRangeFetchFailure resp = (ChunkRangeFetchFailure) message;
+      ChunkReceivedCallback listener = outstandingRangeFetches.remove(resp.streamChunkRange);
+      if (listener == null) {
+        logger.warn(
+            "Ignoring response for chunks {} from {} ({}) since it is not outstanding",
+            resp.streamChunkRange,
+            NettyUtils.getRemoteAddress(channel),
+            resp.errorString);
+      } else {
+        logger.warn("Receive ChunkRangeFetchFailure, errorMsg {}", resp.errorString);
+        failRange(
+            resp.streamChunkRange,
+            listener,
+            new ChunkFetchFailureException(
+                "Failure while fetching " + resp.streamChunkRange + ": " + resp.errorString));
+      }
     } else if (message instanceof RpcResponse) {
       RpcResponse resp = (RpcResponse) message;
       RpcResponseCallback listener = outstandingRpcs.get(resp.requestId);
@@ -195,14 +275,20 @@ public class TransportResponseHandler extends MessageHandler<ResponseMessage> {
         outstandingRpcs.remove(resp.requestId);
         listener.onFailure(new RuntimeException(resp.errorString));
       }
+    } else if (message instanceof PushCredit) {
+      pushCredits.grant(((PushCredit) message).credit);
     } else {
       throw new IllegalStateException("Unknown response type: " + message.type());
     }
   }
 
+  public PushCredits getPushCredits() {
+    return pushCredits;
+  }
+
   /** Returns total number of outstanding requests (fetch requests + rpcs) */
   public int numOutstandingRequests() {
-    return outstandingFetches.size() + outstandingRpcs.size();
+    return outstandingFetches.size() + outstandingRangeFetches.size() + outstandingRpcs.size();
   }
 
   /** Returns the time in nanoseconds of when the last request was sent out. */
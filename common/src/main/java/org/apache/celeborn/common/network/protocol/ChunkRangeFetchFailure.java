@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/** Response to {@link ChunkRangeFetchRequest} when there is an error fetching the range. */
+public final class ChunkRangeFetchFailure extends ResponseMessage {
+  public final StreamChunkRange streamChunkRange;
+  public final String errorString;
+
+  public ChunkRangeFetchFailure(StreamChunkRange streamChunkRange, String errorString) {
+    this.streamChunkRange = streamChunkRange;
+    this.errorString = errorString;
+  }
+
+  @Override
+  public Type type() {
+    return Type.CHUNK_RANGE_FETCH_FAILURE;
+  }
+
+  @Override
+  public int encodedLength() {
+    return streamChunkRange.encodedLength() + Encoders.Strings.encodedLength(errorString);
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    streamChunkRange.encode(buf);
+    Encoders.Strings.encode(buf, errorString);
+  }
+
+  public static ChunkRangeFetchFailure decode(ByteBuf buf) {
+    StreamChunkRange streamChunkRange = StreamChunkRange.decode(buf);
+    String errorString = Encoders.Strings.decode(buf);
+    return new ChunkRangeFetchFailure(streamChunkRange, errorString);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(streamChunkRange, errorString);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof ChunkRangeFetchFailure) {
+      ChunkRangeFetchFailure o = (ChunkRangeFetchFailure) other;
+      return streamChunkRange.equals(o.streamChunkRange) && errorString.equals(o.errorString);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("streamChunkRange", streamChunkRange)
+        .add("errorString", errorString)
+        .toString();
+  }
+}
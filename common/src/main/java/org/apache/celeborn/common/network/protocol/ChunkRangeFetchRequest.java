@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Request to fetch a contiguous range of chunks of a stream in one round trip. This will correspond
+ * to a single {@link ResponseMessage} (either success or failure) covering every chunk of the
+ * range.
+ */
+public final class ChunkRangeFetchRequest extends RequestMessage {
+  public final StreamChunkRange streamChunkRange;
+
+  public ChunkRangeFetchRequest(StreamChunkRange streamChunkRange) {
+    this.streamChunkRange = streamChunkRange;
+  }
+
+  @Override
+  public Type type() {
+    return Type.CHUNK_RANGE_FETCH_REQUEST;
+  }
+
+  @Override
+  public int encodedLength() {
+    return streamChunkRange.encodedLength();
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    streamChunkRange.encode(buf);
+  }
+
+  public static ChunkRangeFetchRequest decode(ByteBuf buf) {
+    return new ChunkRangeFetchRequest(StreamChunkRange.decode(buf));
+  }
+
+  @Override
+  public int hashCode() {
+    return streamChunkRange.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof ChunkRangeFetchRequest) {
+      ChunkRangeFetchRequest o = (ChunkRangeFetchRequest) other;
+      return streamChunkRange.equals(o.streamChunkRange);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("streamChunkRange", streamChunkRange).toString();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.buffer.NettyManagedBuffer;
+
+/**
+ * Response to {@link ChunkRangeFetchRequest} when every chunk of the range has been fetched. The
+ * body is the chunks back to back, the client splits it by the chunk lengths carried in the header.
+ *
+ * <p>As with {@link ChunkFetchSuccess}, the server-side encoding does NOT include the buffer, so
+ * that a file backed range is written as a single zero-copy region.
+ */
+public final class ChunkRangeFetchSuccess extends ResponseMessage {
+  public final StreamChunkRange streamChunkRange;
+  public final int[] chunkLengths;
+
+  public ChunkRangeFetchSuccess(
+      StreamChunkRange streamChunkRange, int[] chunkLengths, ManagedBuffer buffer) {
+    super(buffer);
+    this.streamChunkRange = streamChunkRange;
+    this.chunkLengths = chunkLengths;
+  }
+
+  @Override
+  public Type type() {
+    return Type.CHUNK_RANGE_FETCH_SUCCESS;
+  }
+
+  @Override
+  public int encodedLength() {
+    return streamChunkRange.encodedLength() + Encoders.IntArrays.encodedLength(chunkLengths);
+  }
+
+  /** Encoding does NOT include 'buffer' itself. See {@link MessageEncoder}. */
+  @Override
+  public void encode(ByteBuf buf) {
+    streamChunkRange.encode(buf);
+    Encoders.IntArrays.encode(buf, chunkLengths);
+  }
+
+  @Override
+  public ResponseMessage createFailureResponse(String error) {
+    return new ChunkRangeFetchFailure(streamChunkRange, error);
+  }
+
+  public static ChunkRangeFetchSuccess decode(ByteBuf buf) {
+    return decode(buf, true);
+  }
+
+  public static ChunkRangeFetchSuccess decode(ByteBuf buf, boolean decodeBody) {
+    StreamChunkRange streamChunkRange = StreamChunkRange.decode(buf);
+    int[] chunkLengths = Encoders.IntArrays.decode(buf);
+    if (decodeBody) {
+      NettyManagedBuffer managedBuf = new NettyManagedBuffer(buf);
+      return new ChunkRangeFetchSuccess(streamChunkRange, chunkLengths, managedBuf);
+    } else {
+      return new ChunkRangeFetchSuccess(
+          streamChunkRange, chunkLengths, NettyManagedBuffer.EmptyBuffer);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(streamChunkRange, Arrays.hashCode(chunkLengths), body());
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof ChunkRangeFetchSuccess) {
+      ChunkRangeFetchSuccess o = (ChunkRangeFetchSuccess) other;
+      return streamChunkRange.equals(o.streamChunkRange)
+          && Arrays.equals(chunkLengths, o.chunkLengths)
+          && super.equals(o);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("streamChunkRange", streamChunkRange)
+        .add("chunkLengths", Arrays.toString(chunkLengths))
+        .add("buffer", body())
+        .toString();
+  }
+}
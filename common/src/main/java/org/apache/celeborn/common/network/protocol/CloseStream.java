@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.celeborn.common.network.protocol;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Request to remove a stream opened by the same connection before all its chunks are read, e.g.
+ * the stream a reader fetched late chunks from. Replied with an empty response.
+ */
+public final class CloseStream extends RequestMessage {
+  public final long streamId;
+
+  public CloseStream(long streamId) {
+    this.streamId = streamId;
+  }
+
+  @Override
+  public Type type() {
+    return Type.CLOSE_STREAM;
+  }
+
+  @Override
+  public int encodedLength() {
+    return 8;
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    buf.writeLong(streamId);
+  }
+
+  public static CloseStream decode(ByteBuf buf) {
+    return new CloseStream(buf.readLong());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(streamId);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof CloseStream) {
+      return streamId == ((CloseStream) other).streamId;
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("streamId", streamId).toString();
+  }
+}
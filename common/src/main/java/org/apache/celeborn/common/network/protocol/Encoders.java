@@ -67,6 +67,29 @@ public class Encoders {
     }
   }
 
+  /** Long arrays are encoded with their length followed by longs. */
+  public static class LongArrays {
+    public static int encodedLength(long[] longs) {
+      return 4 + 8 * longs.length;
+    }
+
+    public static void encode(ByteBuf buf, long[] longs) {
+      buf.writeInt(longs.length);
+      for (long l : longs) {
+        buf.writeLong(l);
+      }
+    }
+
+    public static long[] decode(ByteBuf buf) {
+      int length = buf.readInt();
+      long[] longs = new long[length];
+      for (int i = 0; i < longs.length; i++) {
+        longs[i] = buf.readLong();
+      }
+      return longs;
+    }
+  }
+
   /** String arrays are encoded with the number of strings followed by per-String encoding. */
   public static class StringArrays {
     public static int encodedLength(String[] strings) {
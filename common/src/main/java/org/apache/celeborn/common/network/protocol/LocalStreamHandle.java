@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Where the chunks of the files opened by {@link OpenLocalStream} are on the disk of the worker.
+ * For each file, its path and chunk offsets, and, when the chunk offsets are positions in a map
+ * range view of the file, the logical positions and file offsets of the regions the view is made
+ * of.
+ */
+public final class LocalStreamHandle extends RequestMessage {
+  public final String[] filePaths;
+  public final long[][] chunkOffsets;
+  // null elements for the files whose chunk offsets are file offsets
+  public final long[][] segmentPositions;
+  public final long[][] segmentFileOffsets;
+
+  public LocalStreamHandle(
+      String[] filePaths,
+      long[][] chunkOffsets,
+      long[][] segmentPositions,
+      long[][] segmentFileOffsets) {
+    this.filePaths = filePaths;
+    this.chunkOffsets = chunkOffsets;
+    this.segmentPositions = segmentPositions;
+    this.segmentFileOffsets = segmentFileOffsets;
+  }
+
+  @Override
+  public Type type() {
+    return Type.LOCAL_STREAM_HANDLE;
+  }
+
+  @Override
+  public int encodedLength() {
+    int length = 4;
+    for (int i = 0; i < filePaths.length; i++) {
+      length += Encoders.Strings.encodedLength(filePaths[i]);
+      length += Encoders.LongArrays.encodedLength(chunkOffsets[i]);
+      length += 1;
+      if (segmentPositions[i] != null) {
+        length += Encoders.LongArrays.encodedLength(segmentPositions[i]);
+        length += Encoders.LongArrays.encodedLength(segmentFileOffsets[i]);
+      }
+    }
+    return length;
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    buf.writeInt(filePaths.length);
+    for (int i = 0; i < filePaths.length; i++) {
+      Encoders.Strings.encode(buf, filePaths[i]);
+      Encoders.LongArrays.encode(buf, chunkOffsets[i]);
+      if (segmentPositions[i] == null) {
+        buf.writeByte(0);
+      } else {
+        buf.writeByte(1);
+        Encoders.LongArrays.encode(buf, segmentPositions[i]);
+        Encoders.LongArrays.encode(buf, segmentFileOffsets[i]);
+      }
+    }
+  }
+
+  public static LocalStreamHandle decode(ByteBuf buf) {
+    int numFiles = buf.readInt();
+    String[] filePaths = new String[numFiles];
+    long[][] chunkOffsets = new long[numFiles][];
+    long[][] segmentPositions = new long[numFiles][];
+    long[][] segmentFileOffsets = new long[numFiles][];
+    for (int i = 0; i < numFiles; i++) {
+      filePaths[i] = Encoders.Strings.decode(buf);
+      chunkOffsets[i] = Encoders.LongArrays.decode(buf);
+      if (buf.readByte() != 0) {
+        segmentPositions[i] = Encoders.LongArrays.decode(buf);
+        segmentFileOffsets[i] = Encoders.LongArrays.decode(buf);
+      }
+    }
+    return new LocalStreamHandle(filePaths, chunkOffsets, segmentPositions, segmentFileOffsets);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        Arrays.hashCode(filePaths),
+        Arrays.deepHashCode(chunkOffsets),
+        Arrays.deepHashCode(segmentPositions),
+        Arrays.deepHashCode(segmentFileOffsets));
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof LocalStreamHandle) {
+      LocalStreamHandle o = (LocalStreamHandle) other;
+      return Arrays.equals(filePaths, o.filePaths)
+          && Arrays.deepEquals(chunkOffsets, o.chunkOffsets)
+          && Arrays.deepEquals(segmentPositions, o.segmentPositions)
+          && Arrays.deepEquals(segmentFileOffsets, o.segmentFileOffsets);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("filePaths", Arrays.toString(filePaths)).toString();
+  }
+}
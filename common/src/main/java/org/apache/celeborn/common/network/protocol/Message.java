@@ -81,7 +81,15 @@ public abstract class Message implements Encodable {
     STREAM_HANDLE(7),
     ONE_WAY_MESSAGE(9),
     PUSH_DATA(11),
-    PUSH_MERGED_DATA(12);
+    PUSH_MERGED_DATA(12),
+    CHUNK_RANGE_FETCH_REQUEST(13),
+    CHUNK_RANGE_FETCH_SUCCESS(14),
+    CHUNK_RANGE_FETCH_FAILURE(15),
+    OPEN_MULTI_FILE_STREAM(16),
+    PUSH_CREDIT(17),
+    OPEN_LOCAL_STREAM(18),
+    LOCAL_STREAM_HANDLE(19),
+    CLOSE_STREAM(20);
 
     private final byte id;
 
@@ -129,6 +137,22 @@ public abstract class Message implements Encodable {
           return PUSH_DATA;
         case 12:
           return PUSH_MERGED_DATA;
+        case 13:
+          return CHUNK_RANGE_FETCH_REQUEST;
+        case 14:
+          return CHUNK_RANGE_FETCH_SUCCESS;
+        case 15:
+          return CHUNK_RANGE_FETCH_FAILURE;
+        case 16:
+          return OPEN_MULTI_FILE_STREAM;
+        case 17:
+          return PUSH_CREDIT;
+        case 18:
+          return OPEN_LOCAL_STREAM;
+        case 19:
+          return LOCAL_STREAM_HANDLE;
+        case 20:
+          return CLOSE_STREAM;
         case -1:
           throw new IllegalArgumentException("User type messages cannot be decoded.");
         default:
@@ -176,6 +200,30 @@ public abstract class Message implements Encodable {
       case PUSH_MERGED_DATA:
         return PushMergedData.decode(in, decodeBody);
 
+      case CHUNK_RANGE_FETCH_REQUEST:
+        return ChunkRangeFetchRequest.decode(in);
+
+      case CHUNK_RANGE_FETCH_SUCCESS:
+        return ChunkRangeFetchSuccess.decode(in, decodeBody);
+
+      case CHUNK_RANGE_FETCH_FAILURE:
+        return ChunkRangeFetchFailure.decode(in);
+
+      case OPEN_MULTI_FILE_STREAM:
+        return OpenMultiFileStream.decode(in);
+
+      case PUSH_CREDIT:
+        return PushCredit.decode(in);
+
+      case OPEN_LOCAL_STREAM:
+        return OpenLocalStream.decode(in);
+
+      case LOCAL_STREAM_HANDLE:
+        return LocalStreamHandle.decode(in);
+
+      case CLOSE_STREAM:
+        return CloseStream.decode(in);
+
       default:
         throw new IllegalArgumentException("Unexpected message type: " + msgType);
     }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Request to read several files of a shuffle on one worker as a single stream, whose chunks are the
+ * chunks of the files in the given order. Returns {@link StreamHandle}.
+ */
+public final class OpenMultiFileStream extends RequestMessage {
+  public byte[] shuffleKey;
+  public String[] fileNames;
+  public int startMapIndex;
+  public int endMapIndex;
+
+  public OpenMultiFileStream(
+      String shuffleKey, String[] fileNames, int startMapIndex, int endMapIndex) {
+    this(shuffleKey.getBytes(StandardCharsets.UTF_8), fileNames, startMapIndex, endMapIndex);
+  }
+
+  public OpenMultiFileStream(
+      byte[] shuffleKey, String[] fileNames, int startMapIndex, int endMapIndex) {
+    this.shuffleKey = shuffleKey;
+    this.fileNames = fileNames;
+    this.startMapIndex = startMapIndex;
+    this.endMapIndex = endMapIndex;
+  }
+
+  @Override
+  public Type type() {
+    return Type.OPEN_MULTI_FILE_STREAM;
+  }
+
+  @Override
+  public int encodedLength() {
+    return 4 + shuffleKey.length + Encoders.StringArrays.encodedLength(fileNames) + 4 + 4;
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    buf.writeInt(shuffleKey.length);
+    buf.writeBytes(shuffleKey);
+    Encoders.StringArrays.encode(buf, fileNames);
+    buf.writeInt(startMapIndex);
+    buf.writeInt(endMapIndex);
+  }
+
+  public static OpenMultiFileStream decode(ByteBuf buf) {
+    int shuffleKeySize = buf.readInt();
+    byte[] shuffleKey = new byte[shuffleKeySize];
+    buf.readBytes(shuffleKey);
+    String[] fileNames = Encoders.StringArrays.decode(buf);
+    return new OpenMultiFileStream(shuffleKey, fileNames, buf.readInt(), buf.readInt());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        Arrays.hashCode(shuffleKey), Arrays.hashCode(fileNames), startMapIndex, endMapIndex);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof OpenMultiFileStream) {
+      OpenMultiFileStream o = (OpenMultiFileStream) other;
+      return startMapIndex == o.startMapIndex
+          && endMapIndex == o.endMapIndex
+          && Arrays.equals(shuffleKey, o.shuffleKey)
+          && Arrays.equals(fileNames, o.fileNames);
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("shuffleKey", new String(shuffleKey, StandardCharsets.UTF_8))
+        .add("fileNames", Arrays.toString(fileNames))
+        .add("startMapIndex", startMapIndex)
+        .add("endMapIndex", endMapIndex)
+        .toString();
+  }
+}
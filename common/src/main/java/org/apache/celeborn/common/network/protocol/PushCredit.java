@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sent by a worker that grants push credits, the client may push as many more bytes to the worker
+ * over the connection.
+ */
+public final class PushCredit extends ResponseMessage {
+  public final long credit;
+
+  public PushCredit(long credit) {
+    this.credit = credit;
+  }
+
+  @Override
+  public Type type() {
+    return Type.PUSH_CREDIT;
+  }
+
+  @Override
+  public int encodedLength() {
+    return 8;
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    buf.writeLong(credit);
+  }
+
+  public static PushCredit decode(ByteBuf buf) {
+    return new PushCredit(buf.readLong());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(credit);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof PushCredit) {
+      return credit == ((PushCredit) other).credit;
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).add("credit", credit).toString();
+  }
+}
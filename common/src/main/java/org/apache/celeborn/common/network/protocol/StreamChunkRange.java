@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.network.protocol;
+
+import com.google.common.base.Objects;
+import io.netty.buffer.ByteBuf;
+
+/** Encapsulates a request for a contiguous range of whole chunks of a stream. */
+public final class StreamChunkRange implements Encodable {
+  public final long streamId;
+  public final int startChunkIndex;
+  public final int numChunks;
+
+  public StreamChunkRange(long streamId, int startChunkIndex, int numChunks) {
+    this.streamId = streamId;
+    this.startChunkIndex = startChunkIndex;
+    this.numChunks = numChunks;
+  }
+
+  @Override
+  public int encodedLength() {
+    return 16;
+  }
+
+  public void encode(ByteBuf buffer) {
+    buffer.writeLong(streamId);
+    buffer.writeInt(startChunkIndex);
+    buffer.writeInt(numChunks);
+  }
+
+  public static StreamChunkRange decode(ByteBuf buffer) {
+    assert buffer.readableBytes() >= 16;
+    long streamId = buffer.readLong();
+    int startChunkIndex = buffer.readInt();
+    int numChunks = buffer.readInt();
+    return new StreamChunkRange(streamId, startChunkIndex, numChunks);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(streamId, startChunkIndex, numChunks);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof StreamChunkRange) {
+      StreamChunkRange o = (StreamChunkRange) other;
+      return streamId == o.streamId
+          && startChunkIndex == o.startChunkIndex
+          && numChunks == o.numChunks;
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("streamId", streamId)
+        .add("startChunkIndex", startChunkIndex)
+        .add("numChunks", numChunks)
+        .toString();
+  }
+}
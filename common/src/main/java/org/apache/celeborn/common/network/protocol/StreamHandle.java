@@ -17,6 +17,8 @@
 
 package org.apache.celeborn.common.network.protocol;
 
+import java.util.Arrays;
+
 import com.google.common.base.Objects;
 import io.netty.buffer.ByteBuf;
 
@@ -27,10 +29,17 @@ import io.netty.buffer.ByteBuf;
 public final class StreamHandle extends RequestMessage {
   public final long streamId;
   public final int numChunks;
+  // byte length of each chunk, null if the sender did not tell them
+  public final int[] chunkLengths;
 
   public StreamHandle(long streamId, int numChunks) {
+    this(streamId, numChunks, null);
+  }
+
+  public StreamHandle(long streamId, int numChunks, int[] chunkLengths) {
     this.streamId = streamId;
     this.numChunks = numChunks;
+    this.chunkLengths = chunkLengths;
   }
 
   @Override
@@ -40,29 +49,46 @@ public final class StreamHandle extends RequestMessage {
 
   @Override
   public int encodedLength() {
-    return 8 + 4;
+    return 8 + 4 + (chunkLengths == null ? 0 : 4 * chunkLengths.length);
   }
 
   @Override
   public void encode(ByteBuf buf) {
     buf.writeLong(streamId);
     buf.writeInt(numChunks);
+    if (chunkLengths != null) {
+      for (int length : chunkLengths) {
+        buf.writeInt(length);
+      }
+    }
   }
 
   public static StreamHandle decode(ByteBuf buf) {
-    return new StreamHandle(buf.readLong(), buf.readInt());
+    long streamId = buf.readLong();
+    int numChunks = buf.readInt();
+    // handles of older workers end after numChunks
+    int[] chunkLengths = null;
+    if (numChunks > 0 && buf.readableBytes() >= 4L * numChunks) {
+      chunkLengths = new int[numChunks];
+      for (int i = 0; i < numChunks; i++) {
+        chunkLengths[i] = buf.readInt();
+      }
+    }
+    return new StreamHandle(streamId, numChunks, chunkLengths);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(streamId, numChunks);
+    return Objects.hashCode(streamId, numChunks, Arrays.hashCode(chunkLengths));
   }
 
   @Override
   public boolean equals(Object other) {
     if (other instanceof StreamHandle) {
       StreamHandle o = (StreamHandle) other;
-      return streamId == o.streamId && numChunks == o.numChunks;
+      return streamId == o.streamId
+          && numChunks == o.numChunks
+          && Arrays.equals(chunkLengths, o.chunkLengths);
     }
     return false;
   }
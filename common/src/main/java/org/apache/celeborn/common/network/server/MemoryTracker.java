@@ -20,6 +20,7 @@ package org.apache.celeborn.common.network.server;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +46,7 @@ public class MemoryTracker {
   private final long resumeThreshold;
   private final long maxSortMemory;
   private final List<MemoryTrackerListener> memoryTrackerListeners = new ArrayList<>();
+  private final List<SortMemoryListener> sortMemoryListeners = new CopyOnWriteArrayList<>();
 
   private final ScheduledExecutorService checkService =
       ThreadUtils.newDaemonSingleThreadScheduledExecutor("memory-tracker-check");
@@ -90,6 +92,10 @@ public class MemoryTracker {
     }
   }
 
+  public void registerSortMemoryListener(SortMemoryListener listener) {
+    sortMemoryListeners.add(listener);
+  }
+
   public static MemoryTracker instance() {
     return _INSTANCE;
   }
@@ -149,6 +155,7 @@ public class MemoryTracker {
                       memoryTrackerListeners.forEach(
                           memoryTrackerListener -> memoryTrackerListener.onResume("all"));
                     });
+                notifySortMemoryListeners();
               }
             } else {
               if (memoryTrackerStat != MemoryTrackerStat.resumeAll) {
@@ -247,6 +254,20 @@ public class MemoryTracker {
     void onTrim();
   }
 
+  public interface SortMemoryListener {
+    /**
+     * Sort memory or flushed disk buffers were released, or memory pressure dropped, so {@link
+     * #sortMemoryReady()} may hold. Called on hot paths, implementations must be cheap.
+     */
+    void onSortMemoryAvailable();
+  }
+
+  private void notifySortMemoryListeners() {
+    for (SortMemoryListener listener : sortMemoryListeners) {
+      listener.onSortMemoryAvailable();
+    }
+  }
+
   public void reserveSortMemory(long fileLen) {
     sortMemoryCounter.addAndGet(fileLen);
   }
@@ -264,6 +285,12 @@ public class MemoryTracker {
         sortMemoryCounter.addAndGet(-1L * size);
       }
     }
+    notifySortMemoryListeners();
+  }
+
+  /** Bytes the direct memory may still grow by before push data is paused. */
+  public long getPushDataHeadroom() {
+    return pausePushDataThreshold - nettyMemoryCounter.get() - sortMemoryCounter.get();
   }
 
   public void incrementDiskBuffer(int size) {
@@ -272,6 +299,8 @@ public class MemoryTracker {
 
   public void releaseDiskBuffer(int size) {
     diskBufferCounter.addAndGet(size * -1);
+    // the flushed buffer is direct memory, releasing it may make room for sorting
+    notifySortMemoryListeners();
   }
 
   public AtomicLong getNettyMemoryCounter() {
@@ -17,6 +17,8 @@
 
 package org.apache.celeborn.common.network.server;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
@@ -87,17 +89,90 @@ public class OneForOneStreamManager extends StreamManager {
       throw new IllegalStateException(
           String.format("Chunk %s for stream %s has already been read.", chunkIndex, streamId));
     }
-    ManagedBuffer nextChunk = buffers.chunk(chunkIndex, offset, len);
+    return buffers.chunk(chunkIndex, offset, len);
+  }
+
+  /**
+   * Returns the lengths of the chunks [startChunkIndex, startChunkIndex + numChunks) and a single
+   * buffer holding them back to back.
+   */
+  public Pair<int[], ManagedBuffer> getChunkRange(
+      long streamId, int startChunkIndex, int numChunks) {
+    FileManagedBuffers buffers = rangeBuffers(streamId, startChunkIndex, numChunks);
+    return ImmutablePair.of(
+        buffers.chunkLengths(startChunkIndex, numChunks),
+        buffers.chunkRange(startChunkIndex, numChunks));
+  }
 
+  /**
+   * Returns the lengths of the chunks [startChunkIndex, startChunkIndex + numChunks) and a buffer
+   * for each of them, as {@link #getChunk(long, int, int, int)} would return it.
+   */
+  public Pair<int[], List<ManagedBuffer>> getChunks(
+      long streamId, int startChunkIndex, int numChunks) {
+    FileManagedBuffers buffers = rangeBuffers(streamId, startChunkIndex, numChunks);
+    List<ManagedBuffer> chunks = new ArrayList<>(numChunks);
+    for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+      chunks.add(buffers.chunk(i, 0, Integer.MAX_VALUE));
+    }
+    return ImmutablePair.of(buffers.chunkLengths(startChunkIndex, numChunks), chunks);
+  }
+
+  private FileManagedBuffers rangeBuffers(long streamId, int startChunkIndex, int numChunks) {
+    StreamState state = streams.get(streamId);
+    if (state == null) {
+      throw new IllegalStateException(
+          String.format(
+              "Stream %s for chunks %s-%s is not registered(Maybe removed).",
+              streamId, startChunkIndex, startChunkIndex + numChunks - 1));
+    } else if (startChunkIndex < 0
+        || numChunks <= 0
+        || startChunkIndex + numChunks > state.buffers.numChunks()) {
+      throw new IllegalStateException(
+          String.format(
+              "Requested chunk range %s-%s beyond end %s",
+              startChunkIndex, startChunkIndex + numChunks - 1, state.buffers.numChunks()));
+    }
+
+    FileManagedBuffers buffers = state.buffers;
+    for (int i = startChunkIndex; i < startChunkIndex + numChunks; i++) {
+      if (buffers.hasAlreadyRead(i)) {
+        throw new IllegalStateException(
+            String.format("Chunk %s for stream %s has already been read.", i, streamId));
+      }
+    }
+    return buffers;
+  }
+
+  /**
+   * Called once a slice returned by {@link #getChunk(long, int, int, int)} has been sent. Chunks
+   * are only marked as read here, so a chunk whose send failed can be fetched again.
+   */
+  public void chunkRead(long streamId, int chunkIndex, int offset, int len) {
+    StreamState state = streams.get(streamId);
+    if (state != null) {
+      state.buffers.markRead(chunkIndex, offset, len);
+      removeIfFullyRead(streamId, state);
+    }
+  }
+
+  /** Called once the chunks [startChunkIndex, startChunkIndex + numChunks) have been sent. */
+  public void chunkRangeRead(long streamId, int startChunkIndex, int numChunks) {
+    StreamState state = streams.get(streamId);
+    if (state != null) {
+      state.buffers.markRead(startChunkIndex, numChunks);
+      removeIfFullyRead(streamId, state);
+    }
+  }
+
+  private void removeIfFullyRead(long streamId, StreamState state) {
     if (state.buffers.isFullyRead()) {
-      // Normally, when all chunks are returned to the client, the stream should be removed here.
+      // Normally, when all chunks are sent to the client, the stream should be removed here.
       // But if there is a switch on the client side, it will not go here at this time, so we need
       // to remove the stream when the connection is terminated, and release the unused buffer.
       logger.trace("Removing stream id {}", streamId);
       streams.remove(streamId);
     }
-
-    return nextChunk;
   }
 
   public static String genStreamChunkId(long streamId, int chunkId) {
@@ -114,6 +189,18 @@ public class OneForOneStreamManager extends StreamManager {
     return ImmutablePair.of(streamId, chunkIndex);
   }
 
+  /**
+   * Removes a stream before all its chunks are read. Only the connection the stream is associated
+   * with can close it.
+   */
+  public void closeStream(long streamId, Channel channel) {
+    StreamState state = streams.get(streamId);
+    if (state != null && state.associatedChannel == channel) {
+      logger.trace("Closing stream id {}", streamId);
+      streams.remove(streamId);
+    }
+  }
+
   @Override
   public void connectionTerminated(Channel channel) {
     // Close all streams which have been associated with the channel.
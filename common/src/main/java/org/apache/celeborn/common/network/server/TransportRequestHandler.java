@@ -87,6 +87,11 @@ public class TransportRequestHandler extends MessageHandler<RequestMessage> {
         respond(
             new ChunkFetchFailure(
                 ((ChunkFetchRequest) req).streamChunkSlice, Throwables.getStackTraceAsString(e)));
+      } else if (req instanceof ChunkRangeFetchRequest) {
+        respond(
+            new ChunkRangeFetchFailure(
+                ((ChunkRangeFetchRequest) req).streamChunkRange,
+                Throwables.getStackTraceAsString(e)));
       } else if (req instanceof OneWayMessage) {
         logger.warn("Ignore OneWayMessage since worker is not registered!");
       }
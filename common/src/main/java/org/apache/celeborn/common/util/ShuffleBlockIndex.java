@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.celeborn.common.util.ShuffleBlockInfoUtils.ShuffleBlockInfo;
+
+/**
+ * Index of the blocks of a shuffle file grouped by map id. The layout is
+ *
+ * <pre>
+ *   magic: int, numMaps: int, numBlocks: int
+ *   directory, sorted by map id: numMaps * (mapId: int, firstBlock: int)
+ *   blocks: numBlocks * (offset: long, length: long)
+ * </pre>
+ *
+ * so a map range is located by a binary search over the directory and read without deserializing
+ * the whole index. Local index files are memory mapped. Index files on HDFS are read by clients
+ * too, they are written in the legacy layout older clients understand and converted on load.
+ */
+public class ShuffleBlockIndex {
+  private static final int MAGIC = 0xCB1D0E01;
+  private static final int HEADER_SIZE = 12;
+  private static final int DIRECTORY_ENTRY_SIZE = 8;
+  private static final int BLOCK_SIZE = 16;
+
+  private final ByteBuffer buffer;
+  private final int numMaps;
+  private final int numBlocks;
+  private final int blocksOffset;
+
+  private ShuffleBlockIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.numMaps = buffer.getInt(4);
+    this.numBlocks = buffer.getInt(8);
+    this.blocksOffset = HEADER_SIZE + numMaps * DIRECTORY_ENTRY_SIZE;
+  }
+
+  /**
+   * Wraps an index read into memory. Indexes written before this layout existed are a sequence of
+   * (mapId, count, blocks), they are converted.
+   */
+  public static ShuffleBlockIndex parse(ByteBuffer buffer) {
+    if (buffer.remaining() >= HEADER_SIZE && buffer.getInt(buffer.position()) == MAGIC) {
+      return new ShuffleBlockIndex(buffer.slice());
+    }
+    return new ShuffleBlockIndex(
+        serialize(ShuffleBlockInfoUtils.parseShuffleBlockInfosFromByteBuffer(buffer)));
+  }
+
+  public static ShuffleBlockIndex mmap(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  public static ByteBuffer serialize(Map<Integer, List<ShuffleBlockInfo>> indexMap) {
+    int numMaps = indexMap.size();
+    int numBlocks = 0;
+    int[] mapIds = new int[numMaps];
+    int i = 0;
+    for (Map.Entry<Integer, List<ShuffleBlockInfo>> entry : indexMap.entrySet()) {
+      mapIds[i++] = entry.getKey();
+      numBlocks += entry.getValue().size();
+    }
+    Arrays.sort(mapIds);
+
+    int[] firstBlocks = new int[numMaps];
+    long[] offsets = new long[numBlocks];
+    long[] lengths = new long[numBlocks];
+    int block = 0;
+    for (i = 0; i < numMaps; i++) {
+      firstBlocks[i] = block;
+      for (ShuffleBlockInfo info : indexMap.get(mapIds[i])) {
+        offsets[block] = info.offset;
+        lengths[block] = info.length;
+        block++;
+      }
+    }
+    return serialize(mapIds, firstBlocks, numMaps, offsets, lengths, numBlocks);
+  }
+
+  /**
+   * @param mapIds ascending map ids
+   * @param firstBlocks index of the first block of each map, blocks of a map are contiguous
+   */
+  public static ByteBuffer serialize(
+      int[] mapIds, int[] firstBlocks, int numMaps, long[] offsets, long[] lengths, int numBlocks) {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_SIZE + numMaps * DIRECTORY_ENTRY_SIZE + numBlocks * BLOCK_SIZE);
+    buffer.putInt(MAGIC);
+    buffer.putInt(numMaps);
+    buffer.putInt(numBlocks);
+    for (int i = 0; i < numMaps; i++) {
+      buffer.putInt(mapIds[i]);
+      buffer.putInt(firstBlocks[i]);
+    }
+    for (int i = 0; i < numBlocks; i++) {
+      buffer.putLong(offsets[i]);
+      buffer.putLong(lengths[i]);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  public int numMaps() {
+    return numMaps;
+  }
+
+  public int numBlocks() {
+    return numBlocks;
+  }
+
+  public long sizeInBytes() {
+    return buffer.capacity();
+  }
+
+  /** Same chunking as a sequential read of the blocks of [startMapIndex, endMapIndex). */
+  public List<Long> getChunkOffsets(int startMapIndex, int endMapIndex, long fetchChunkSize) {
+    List<Long> chunkOffsets = new ArrayList<>();
+    int startBlock = firstBlock(startMapIndex);
+    int endBlock = firstBlock(endMapIndex);
+    long lastChunkOffset = -1;
+    for (int i = startBlock; i < endBlock; i++) {
+      long offset = blockOffset(i);
+      if (lastChunkOffset < 0 || offset - lastChunkOffset > fetchChunkSize) {
+        chunkOffsets.add(offset);
+        lastChunkOffset = offset;
+      }
+    }
+    if (startBlock < endBlock) {
+      long endChunkOffset = blockOffset(endBlock - 1) + blockLength(endBlock - 1);
+      if (endChunkOffset != lastChunkOffset) {
+        chunkOffsets.add(endChunkOffset);
+      }
+    }
+    return chunkOffsets;
+  }
+
+  /** Returns the blocks of [startMapIndex, endMapIndex) ordered by their offsets in the file. */
+  public List<ShuffleBlockInfo> getBlocksInFileOrder(int startMapIndex, int endMapIndex) {
+    int startBlock = firstBlock(startMapIndex);
+    int endBlock = firstBlock(endMapIndex);
+    List<ShuffleBlockInfo> blocks = new ArrayList<>(Math.max(endBlock - startBlock, 0));
+    for (int i = startBlock; i < endBlock; i++) {
+      ShuffleBlockInfo info = new ShuffleBlockInfo();
+      info.offset = blockOffset(i);
+      info.length = blockLength(i);
+      blocks.add(info);
+    }
+    blocks.sort(Comparator.comparingLong(info -> info.offset));
+    return blocks;
+  }
+
+  /** Index of the first block of the first map whose id is not less than mapId. */
+  private int firstBlock(int mapId) {
+    int low = 0;
+    int high = numMaps;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (buffer.getInt(HEADER_SIZE + mid * DIRECTORY_ENTRY_SIZE) < mapId) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low == numMaps ? numBlocks : buffer.getInt(HEADER_SIZE + low * DIRECTORY_ENTRY_SIZE + 4);
+  }
+
+  private long blockOffset(int block) {
+    return buffer.getLong(blocksOffset + block * BLOCK_SIZE);
+  }
+
+  private long blockLength(int block) {
+    return buffer.getLong(blocksOffset + block * BLOCK_SIZE + 8);
+  }
+}
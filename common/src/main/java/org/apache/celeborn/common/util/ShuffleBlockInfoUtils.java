@@ -30,34 +30,48 @@ public class ShuffleBlockInfoUtils {
     public long length;
   }
 
-  public static List<Long> getChunkOffsetsFromShuffleBlockInfos(
-      int startMapIndex,
-      int endMapIndex,
-      long fetchChunkSize,
-      Map<Integer, List<ShuffleBlockInfo>> indexMap) {
-    List<Long> sortedChunkOffset = new ArrayList<>();
-    ShuffleBlockInfo lastBlock = null;
-    for (int i = startMapIndex; i < endMapIndex; i++) {
-      List<ShuffleBlockInfo> blockInfos = indexMap.get(i);
-      if (blockInfos != null) {
-        for (ShuffleBlockInfo info : blockInfos) {
-          if (sortedChunkOffset.size() == 0) {
-            sortedChunkOffset.add(info.offset);
-          }
-          if (info.offset - sortedChunkOffset.get(sortedChunkOffset.size() - 1) > fetchChunkSize) {
-            sortedChunkOffset.add(info.offset);
-          }
-          lastBlock = info;
-        }
+  /**
+   * Splits the concatenation of the given blocks into chunks, the returned offsets are positions
+   * within that concatenation rather than within the file.
+   */
+  public static List<Long> getLogicalChunkOffsets(
+      List<ShuffleBlockInfo> blocks, long fetchChunkSize) {
+    List<Long> chunkOffsets = new ArrayList<>();
+    long position = 0;
+    for (ShuffleBlockInfo info : blocks) {
+      if (chunkOffsets.isEmpty()
+          || position - chunkOffsets.get(chunkOffsets.size() - 1) > fetchChunkSize) {
+        chunkOffsets.add(position);
       }
+      position += info.length;
+    }
+    if (!blocks.isEmpty()) {
+      chunkOffsets.add(position);
+    }
+    return chunkOffsets;
+  }
+
+  /**
+   * Serializes the blocks as a sequence of (mapId, count, blocks), the index layout every client
+   * version can read.
+   */
+  public static ByteBuffer serializeShuffleBlockInfos(
+      Map<Integer, List<ShuffleBlockInfo>> indexMap) {
+    int indexSize = 0;
+    for (List<ShuffleBlockInfo> blocks : indexMap.values()) {
+      indexSize += 8 + blocks.size() * 16;
     }
-    if (lastBlock != null) {
-      long endChunkOffset = lastBlock.length + lastBlock.offset;
-      if (!sortedChunkOffset.contains(endChunkOffset)) {
-        sortedChunkOffset.add(endChunkOffset);
+    ByteBuffer buffer = ByteBuffer.allocate(indexSize);
+    for (Map.Entry<Integer, List<ShuffleBlockInfo>> entry : indexMap.entrySet()) {
+      buffer.putInt(entry.getKey());
+      buffer.putInt(entry.getValue().size());
+      for (ShuffleBlockInfo info : entry.getValue()) {
+        buffer.putLong(info.offset);
+        buffer.putLong(info.length);
       }
     }
-    return sortedChunkOffset;
+    buffer.flip();
+    return buffer;
   }
 
   public static Map<Integer, List<ShuffleBlockInfo>> parseShuffleBlockInfosFromByteBuffer(
@@ -506,6 +506,24 @@ class CelebornConf(loadDefaults: Boolean) extends Cloneable with Logging with Se
   def partitionSorterSortPartitionTimeout: Long = get(PARTITION_SORTER_SORT_TIMEOUT)
   def partitionSorterReservedMemoryPerPartition: Long =
     get(PARTITION_SORTER_PER_PARTITION_RESERVED_MEMORY)
+  def partitionSorterIndexOnWriteEnabled: Boolean = get(PARTITION_SORTER_INDEX_ON_WRITE_ENABLED)
+  def partitionSorterMaxConcurrentSortsPerDisk: Int =
+    get(PARTITION_SORTER_MAX_CONCURRENT_SORTS_PER_DISK)
+  def partitionSorterIndexCacheMaxWeight: Long = get(PARTITION_SORTER_INDEX_CACHE_MAX_WEIGHT)
+  def partitionSorterSortMemoryRecheckInterval: Long =
+    get(PARTITION_SORTER_SORT_MEMORY_RECHECK_INTERVAL)
+  def workerChunkCacheEnabled: Boolean = get(WORKER_CHUNK_CACHE_ENABLED)
+  def workerChunkCacheCapacityPerDisk: Long = get(WORKER_CHUNK_CACHE_CAPACITY_PER_DISK)
+  def workerFetchCoalesceReadsEnabled: Boolean = get(WORKER_FETCH_COALESCE_READS_ENABLED)
+  def workerFetchSchedulerEnabled: Boolean = get(WORKER_FETCH_SCHEDULER_ENABLED)
+  def workerFetchSchedulerQueueCapacity: Int = get(WORKER_FETCH_SCHEDULER_QUEUE_CAPACITY)
+  def workerFetchSchedulerBatchSize: Int = get(WORKER_FETCH_SCHEDULER_BATCH_SIZE)
+  def workerFetchSchedulerReadsPerFlush: Int = get(WORKER_FETCH_SCHEDULER_READS_PER_FLUSH)
+  def workerFetchShortCircuitEnabled: Boolean = get(WORKER_FETCH_SHORT_CIRCUIT_ENABLED)
+  def workerPushCreditEnabled: Boolean = get(WORKER_PUSH_CREDIT_ENABLED)
+  def workerPushCreditWindow: Long = get(WORKER_PUSH_CREDIT_WINDOW)
+  def workerPushCreditMaxPendingFlushes: Int = get(WORKER_PUSH_CREDIT_MAX_PENDING_FLUSHES)
+  def workerPushCreditCheckInterval: Long = get(WORKER_PUSH_CREDIT_CHECK_INTERVAL)
 
   // //////////////////////////////////////////////////////
   //                      Client                         //
@@ -534,6 +552,15 @@ class CelebornConf(loadDefaults: Boolean) extends Cloneable with Logging with Se
   def shuffleCompressionCodec: CompressionCodec =
     CompressionCodec.valueOf(get(SHUFFLE_COMPRESSION_CODEC))
   def shuffleCompressionZstdCompressLevel: Int = get(SHUFFLE_COMPRESSION_ZSTD_LEVEL)
+  def shuffleCompressionZstdDictionaryEnabled: Boolean =
+    get(SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_ENABLED)
+  def shuffleCompressionZstdDictionarySize: Int =
+    get(SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_SIZE).toInt
+  def shuffleCompressionZstdDictionarySampleSize: Int =
+    get(SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_SAMPLE_SIZE).toInt
+  def shuffleCompressionProbeInterval: Int = get(SHUFFLE_COMPRESSION_PROBE_INTERVAL)
+  def shuffleCompressionIncompressibleRatio: Double =
+    get(SHUFFLE_COMPRESSION_INCOMPRESSIBLE_RATIO)
 
   // //////////////////////////////////////////////////////
   //               Address && HA && RATIS                //
@@ -638,6 +665,19 @@ class CelebornConf(loadDefaults: Boolean) extends Cloneable with Logging with Se
   // //////////////////////////////////////////////////////
   def fetchTimeoutMs: Long = get(FETCH_TIMEOUT)
   def fetchMaxReqsInFlight: Int = get(FETCH_MAX_REQS_IN_FLIGHT)
+  def fetchChunksPerRequest: Int = get(FETCH_CHUNKS_PER_REQUEST)
+  def fetchMultiFileStreamEnabled: Boolean = get(FETCH_MULTI_FILE_STREAM_ENABLED)
+  def fetchPrefetchReaders: Int = get(FETCH_PREFETCH_READERS)
+  def fetchPrefetchBudget: Long = get(FETCH_PREFETCH_BUDGET)
+  def fetchDecodeAheadBatches: Int = get(FETCH_DECODE_AHEAD_BATCHES)
+  def fetchDecodeAheadThreads: Int = get(FETCH_DECODE_AHEAD_THREADS)
+  def fetchMemoryBudget: Long = get(FETCH_MEMORY_BUDGET)
+  def fetchMemoryMaxWaitMs: Long = get(FETCH_MEMORY_MAX_WAIT)
+  def fetchHedgeEnabled: Boolean = get(FETCH_HEDGE_ENABLED)
+  def fetchHedgePercentile: Double = get(FETCH_HEDGE_PERCENTILE)
+  def fetchHedgeMinDelayMs: Long = get(FETCH_HEDGE_MIN_DELAY)
+  def fetchHedgeMaxRatio: Double = get(FETCH_HEDGE_MAX_RATIO)
+  def fetchShortCircuitEnabled: Boolean = get(FETCH_SHORT_CIRCUIT_ENABLED)
 
   // //////////////////////////////////////////////////////
   //               Shuffle Client Push                   //
@@ -645,9 +685,20 @@ class CelebornConf(loadDefaults: Boolean) extends Cloneable with Logging with Se
   def pushReplicateEnabled: Boolean = get(PUSH_REPLICATE_ENABLED)
   def pushBufferInitialSize: Int = get(PUSH_BUFFER_INITIAL_SIZE).toInt
   def pushBufferMaxSize: Int = get(PUSH_BUFFER_MAX_SIZE).toInt
+  def pushLingerTimeMs: Long = get(PUSH_LINGER_TIME)
   def pushQueueCapacity: Int = get(PUSH_QUEUE_CAPACITY)
   def pushMaxReqsInFlight: Int = get(PUSH_MAX_REQS_IN_FLIGHT)
+  def pushCongestionControlEnabled: Boolean = get(PUSH_CONGESTION_CONTROL_ENABLED)
+  def pushCongestionControlInitialWindow: Long = get(PUSH_CONGESTION_CONTROL_INITIAL_WINDOW)
+  def pushCongestionControlMaxWindow: Long = get(PUSH_CONGESTION_CONTROL_MAX_WINDOW)
+  def pushCongestionControlRttTolerance: Double = get(PUSH_CONGESTION_CONTROL_RTT_TOLERANCE)
+  def pushAggregatorEnabled: Boolean = get(PUSH_AGGREGATOR_ENABLED)
+  def pushAggregatorThreads: Int = get(PUSH_AGGREGATOR_THREADS)
+  def pushAggregatorFrameSize: Int = get(PUSH_AGGREGATOR_FRAME_SIZE).toInt
+  def pushAggregatorMemory: Long = get(PUSH_AGGREGATOR_MEMORY)
   def pushSortMemoryThreshold: Long = get(PUSH_SORT_MEMORY_THRESHOLD)
+  def pushHashMemoryThreshold: Long = get(PUSH_HASH_MEMORY_THRESHOLD)
+  def pushSortPipelineEnabled: Boolean = get(PUSH_SORT_PIPELINE_ENABLED)
   def pushRetryThreads: Int = get(PUSH_RETRY_THREADS)
   def pushStageEndTimeout: Long = get(PUSH_STAGE_END_TIMEOUT)
   def pushLimitInFlightTimeoutMs: Long = get(PUSH_LIMIT_IN_FLIGHT_TIMEOUT)
@@ -1223,6 +1274,92 @@ object CelebornConf extends Logging {
       .intConf
       .createWithDefault(32)
 
+  val PUSH_LINGER_TIME: ConfigEntry[Long] =
+    buildConf("celeborn.push.lingerTime")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max time merged batches wait for more batches to the same worker. Merged batches " +
+        "are pushed once they exceed `celeborn.push.buffer.max.size`, or, if this is " +
+        "positive, once the oldest of them has waited this long, instead of waiting for the " +
+        "task to end. With `celeborn.push.aggregator.enabled` it applies to the coalesced " +
+        "requests of the executor.")
+      .timeConf(TimeUnit.MILLISECONDS)
+      .createWithDefaultString("0ms")
+
+  val PUSH_CONGESTION_CONTROL_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.push.congestionControl.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Whether the bytes in flight to each worker are limited by a window of the worker " +
+        "shared by all tasks of the executor, instead of `celeborn.push.maxReqsInFlight` " +
+        "limiting the requests in flight of each task. A window grows while pushes to the " +
+        "worker are acknowledged in time, and is halved when they fail, ask for partition " +
+        "splits or slow down.")
+      .booleanConf
+      .createWithDefault(false)
+
+  val PUSH_CONGESTION_CONTROL_INITIAL_WINDOW: ConfigEntry[Long] =
+    buildConf("celeborn.push.congestionControl.initialWindow")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Initial window of bytes in flight to a worker.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("2m")
+
+  val PUSH_CONGESTION_CONTROL_MAX_WINDOW: ConfigEntry[Long] =
+    buildConf("celeborn.push.congestionControl.maxWindow")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max window of bytes in flight to a worker, the min window is one push buffer.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("64m")
+
+  val PUSH_CONGESTION_CONTROL_RTT_TOLERANCE: ConfigEntry[Double] =
+    buildConf("celeborn.push.congestionControl.rttTolerance")
+      .categories("client")
+      .version("0.2.0")
+      .doc("The window of a worker is halved when a push to it takes longer than this many " +
+        "times the lowest push round trip time seen recently.")
+      .doubleConf
+      .checkValue(v => v > 1, "Value must be greater than 1.")
+      .createWithDefault(4.0)
+
+  val PUSH_AGGREGATOR_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.push.aggregator.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Whether the batches of all tasks of the executor pushed to the same workers are " +
+        "coalesced into shared PushMergedData requests, which a pool of pusher threads pushes " +
+        "once they reach `celeborn.push.aggregator.frameSize` or a task ends.")
+      .booleanConf
+      .createWithDefault(false)
+
+  val PUSH_AGGREGATOR_THREADS: ConfigEntry[Int] =
+    buildConf("celeborn.push.aggregator.threads")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Amount of threads of the executor pushing the coalesced requests.")
+      .intConf
+      .checkValue(v => v > 0, "Value must be positive.")
+      .createWithDefault(4)
+
+  val PUSH_AGGREGATOR_FRAME_SIZE: ConfigEntry[Long] =
+    buildConf("celeborn.push.aggregator.frameSize")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Size of the batches coalesced into a request before it is pushed.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("1m")
+
+  val PUSH_AGGREGATOR_MEMORY: ConfigEntry[Long] =
+    buildConf("celeborn.push.aggregator.memory")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max bytes of the batches of the executor coalesced or pushed but not acknowledged " +
+        "yet, tasks adding batches beyond it wait for pushes to finish.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("64m")
+
   val FETCH_TIMEOUT: ConfigEntry[Long] =
     buildConf("celeborn.fetch.timeout")
       .withAlternative("rss.fetch.chunk.timeout")
@@ -1241,6 +1378,136 @@ object CelebornConf extends Logging {
       .intConf
       .createWithDefault(3)
 
+  val FETCH_CHUNKS_PER_REQUEST: ConfigEntry[Int] =
+    buildConf("celeborn.fetch.chunksPerRequest")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max number of adjacent chunks fetched by one request. When greater than 1, a " +
+        "request fetches a range of chunks which the worker sends in one response. Each " +
+        "in-flight request of `celeborn.fetch.maxReqsInFlight` may hold this many chunks.")
+      .intConf
+      .checkValue(v => v > 0, "chunks per request must be positive")
+      .createWithDefault(1)
+
+  val FETCH_MULTI_FILE_STREAM_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.fetch.multiFileStream.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("When true, the split files of a partition on the same worker are opened and read " +
+        "as one stream, with one open stream request per worker instead of one per file.")
+      .booleanConf
+      .createWithDefault(false)
+
+  val FETCH_PREFETCH_READERS: ConfigEntry[Int] =
+    buildConf("celeborn.fetch.prefetch.readers")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Number of partition locations a reducer opens ahead of the one it is reading, " +
+        "so that opening streams and fetching from several workers overlap. 0 disables " +
+        "prefetching.")
+      .intConf
+      .checkValue(v => v >= 0, "the number of prefetched readers can not be negative")
+      .createWithDefault(0)
+
+  val FETCH_PREFETCH_BUDGET: ConfigEntry[Long] =
+    buildConf("celeborn.fetch.prefetch.budget")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max bytes of chunks a reducer requests from the locations opened ahead, each " +
+        "chunk is counted as `celeborn.shuffle.chuck.size`.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("64m")
+
+  val FETCH_DECODE_AHEAD_BATCHES: ConfigEntry[Int] =
+    buildConf("celeborn.fetch.decodeAhead.batches")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Number of batches a reducer decompresses ahead of the one it is reading, on a " +
+        "background thread, so that decompression overlaps with deserialization. Each batch " +
+        "holds a buffer of `celeborn.push.buffer.max.size`. 0 decompresses on the task thread.")
+      .intConf
+      .checkValue(v => v >= 0, "the number of batches decoded ahead can not be negative")
+      .createWithDefault(0)
+
+  val FETCH_DECODE_AHEAD_THREADS: ConfigEntry[Int] =
+    buildConf("celeborn.fetch.decodeAhead.threads")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max number of threads of an executor decompressing batches ahead, each thread " +
+        "serves one reducer stream until its end. Streams opened while all threads are busy " +
+        "decompress on the task thread.")
+      .intConf
+      .checkValue(v => v > 0, "the number of decode threads must be positive")
+      .createWithDefault(8)
+
+  val FETCH_MEMORY_BUDGET: ConfigEntry[Long] =
+    buildConf("celeborn.fetch.memory.budget")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max bytes of fetched chunks not yet consumed, shared by all reducers of an " +
+        "executor. Readers reserve the bytes of a chunk before requesting it and wait in turn " +
+        "when the budget is used up. 0 means unlimited.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("0")
+
+  val FETCH_MEMORY_MAX_WAIT: ConfigEntry[Long] =
+    buildConf("celeborn.fetch.memory.maxWait")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max time a reader waits for `celeborn.fetch.memory.budget` before it fetches its " +
+        "next chunk beyond the budget.")
+      .timeConf(TimeUnit.MILLISECONDS)
+      .createWithDefaultString("10s")
+
+  val FETCH_HEDGE_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.fetch.hedge.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("When a chunk of a replicated partition takes longer than " +
+        "`celeborn.fetch.hedge.percentile` of the recent chunk fetches, also request it from " +
+        "the other replica and take whichever arrives first. Only done when both replicas " +
+        "have the same chunks.")
+      .booleanConf
+      .createWithDefault(false)
+
+  val FETCH_HEDGE_PERCENTILE: ConfigEntry[Double] =
+    buildConf("celeborn.fetch.hedge.percentile")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Percentile of the recent chunk fetch times of an executor after which a chunk is " +
+        "requested from the other replica.")
+      .doubleConf
+      .checkValue(v => v > 0 && v < 1, "Value must be between 0 and 1.")
+      .createWithDefault(0.95)
+
+  val FETCH_HEDGE_MIN_DELAY: ConfigEntry[Long] =
+    buildConf("celeborn.fetch.hedge.minDelay")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Min time a chunk is waited for before it is requested from the other replica.")
+      .timeConf(TimeUnit.MILLISECONDS)
+      .createWithDefaultString("50ms")
+
+  val FETCH_HEDGE_MAX_RATIO: ConfigEntry[Double] =
+    buildConf("celeborn.fetch.hedge.maxRatio")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max ratio of the chunk requests of an executor sent again to the other replica.")
+      .doubleConf
+      .checkValue(v => v > 0 && v <= 1, "Value must be between 0 and 1.")
+      .createWithDefault(0.05)
+
+  val FETCH_SHORT_CIRCUIT_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.fetch.shortCircuit.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Whether a reducer reads the local disk files of a worker on its own host directly " +
+        "from the disk, instead of fetching their chunks over the network. Only used if the " +
+        "worker allows it with `celeborn.worker.fetch.shortCircuit.enabled`, other files are " +
+        "fetched as usual.")
+      .booleanConf
+      .createWithDefault(false)
+
   val CLIENT_RPC_MAX_PARALLELISM: ConfigEntry[Int] =
     buildConf("celeborn.rpc.maxParallelism")
       .withAlternative("rss.rpc.max.parallelism")
@@ -1785,6 +2052,161 @@ object CelebornConf extends Logging {
       .bytesConf(ByteUnit.BYTE)
       .createWithDefaultString("1mb")
 
+  val PARTITION_SORTER_INDEX_ON_WRITE_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.partitionSorter.indexOnWrite.enabled")
+      .categories("worker")
+      .doc("When true, worker records the map id, offset and length of each batch while writing " +
+        "a local shuffle file and persists them next to the file on commit, so that map range " +
+        "reads are served from that index without sorting the file.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(true)
+
+  val PARTITION_SORTER_MAX_CONCURRENT_SORTS_PER_DISK: ConfigEntry[Int] =
+    buildConf("celeborn.worker.partitionSorter.maxConcurrentSortsPerDisk")
+      .categories("worker")
+      .doc("Max number of shuffle files sorted at the same time on one disk. Pending sorts are " +
+        "scheduled by the number of waiting readers and then by file size.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v > 0, "Value must be positive.")
+      .createWithDefault(2)
+
+  val PARTITION_SORTER_SORT_MEMORY_RECHECK_INTERVAL: ConfigEntry[Long] =
+    buildConf("celeborn.worker.partitionSorter.sortMemory.recheckInterval")
+      .categories("worker")
+      .doc("Pending sorts are scheduled as soon as sort memory or flushed buffers are released. " +
+        "As a safeguard against memory freed elsewhere, the sort scheduler also rechecks sort " +
+        "memory after this interval.")
+      .version("0.2.0")
+      .timeConf(TimeUnit.MILLISECONDS)
+      .createWithDefaultString("10s")
+
+  val PARTITION_SORTER_INDEX_CACHE_MAX_WEIGHT: ConfigEntry[Long] =
+    buildConf("celeborn.worker.partitionSorter.indexCache.maxWeight")
+      .categories("worker")
+      .doc("Max total size of the shuffle file indexes cached by worker, least recently used " +
+        "indexes are evicted first. Local indexes are memory mapped, so they are not held " +
+        "on heap.")
+      .version("0.2.0")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("128mb")
+
+  val WORKER_CHUNK_CACHE_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.chunkCache.enabled")
+      .categories("worker")
+      .doc("Whether to keep recently flushed chunks of local shuffle files in off-heap memory, " +
+        "so that chunk fetches right after commit are served without reading the disk.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val WORKER_CHUNK_CACHE_CAPACITY_PER_DISK: ConfigEntry[Long] =
+    buildConf("celeborn.worker.chunkCache.capacityPerDisk")
+      .categories("worker")
+      .doc("Max size of the cached chunks of each disk, least recently used chunks are " +
+        "evicted first. The whole cache is dropped when direct memory is under pressure.")
+      .version("0.2.0")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("256mb")
+
+  val WORKER_FETCH_COALESCE_READS_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.fetch.coalesceReads.enabled")
+      .categories("worker")
+      .doc("Whether concurrent fetches of the same chunk share one disk read. When enabled, " +
+        "chunks of local files are read into direct memory instead of being sent with " +
+        "zero-copy file transfer.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val WORKER_FETCH_SHORT_CIRCUIT_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.fetch.shortCircuit.enabled")
+      .categories("worker")
+      .doc("Whether reducers on the host of the worker may read its local shuffle files from " +
+        "the disk themselves, see `celeborn.fetch.shortCircuit.enabled`. The files must be " +
+        "readable by the users the reducers run as.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val WORKER_FETCH_SCHEDULER_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.fetch.scheduler.enabled")
+      .categories("worker")
+      .doc("Whether chunks of local files are read by a dedicated reader thread of each disk " +
+        "before being sent, instead of being transferred from the file by netty threads. " +
+        "Reads queued on a disk are served in file and offset order.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val WORKER_FETCH_SCHEDULER_QUEUE_CAPACITY: ConfigEntry[Int] =
+    buildConf("celeborn.worker.fetch.scheduler.queueCapacity")
+      .categories("worker")
+      .doc("Max count of chunk reads queued on a disk, fetches beyond it fail and are " +
+        "retried by the client.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v > 0, "Value must be positive.")
+      .createWithDefault(1024)
+
+  val WORKER_FETCH_SCHEDULER_BATCH_SIZE: ConfigEntry[Int] =
+    buildConf("celeborn.worker.fetch.scheduler.batchSize")
+      .categories("worker")
+      .doc("Max count of queued chunk reads of a disk ordered by file and offset together.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v > 0, "Value must be positive.")
+      .createWithDefault(32)
+
+  val WORKER_FETCH_SCHEDULER_READS_PER_FLUSH: ConfigEntry[Int] =
+    buildConf("celeborn.worker.fetch.scheduler.readsPerFlush")
+      .categories("worker")
+      .doc("Count of chunk reads a disk serves per finished flush while flushes of the disk " +
+        "are pending. Reads do not wait for flushes if it is 0.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v >= 0, "Value must be non-negative.")
+      .createWithDefault(4)
+
+  val WORKER_PUSH_CREDIT_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.worker.push.credit.enabled")
+      .categories("worker")
+      .doc("Whether the worker grants push credits to each push connection, clients wait for " +
+        "credits before pushing data to the worker. Credits are bounded by the direct memory " +
+        "left before push data is paused and by the pending flushes.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val WORKER_PUSH_CREDIT_WINDOW: ConfigEntry[Long] =
+    buildConf("celeborn.worker.push.credit.window")
+      .categories("worker")
+      .doc("Max push credits granted to a push connection and not used yet.")
+      .version("0.2.0")
+      .bytesConf(ByteUnit.BYTE)
+      .checkValue(v => v > 0, "Value must be positive.")
+      .createWithDefaultString("8m")
+
+  val WORKER_PUSH_CREDIT_MAX_PENDING_FLUSHES: ConfigEntry[Int] =
+    buildConf("celeborn.worker.push.credit.maxPendingFlushes")
+      .categories("worker")
+      .doc("Count of pending flushes per disk at which the worker stops granting push " +
+        "credits, fewer credits are granted as it is approached. Pending flushes do not " +
+        "limit the credits if it is 0.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v >= 0, "Value must be non-negative.")
+      .createWithDefault(64)
+
+  val WORKER_PUSH_CREDIT_CHECK_INTERVAL: ConfigEntry[Long] =
+    buildConf("celeborn.worker.push.credit.checkInterval")
+      .categories("worker")
+      .doc("Interval of granting push credits to the connections that ran out of them.")
+      .version("0.2.0")
+      .timeConf(TimeUnit.MILLISECONDS)
+      .createWithDefaultString("10ms")
+
   val WORKER_FLUSHER_BUFFER_SIZE: ConfigEntry[Long] =
     buildConf("celeborn.worker.flusher.buffer.size")
       .withAlternative("rss.worker.flush.buffer.size")
@@ -1967,7 +2389,8 @@ object CelebornConf extends Logging {
     buildConf("celeborn.push.limit.inFlight.sleepInterval")
       .withAlternative("rss.limit.inflight.sleep.delta")
       .categories("client")
-      .doc("Sleep interval when check netty in-flight requests to be done.")
+      .doc("Max interval between checks of push failures while waiting for netty in-flight " +
+        "requests to be done.")
       .version("0.2.0")
       .timeConf(TimeUnit.MILLISECONDS)
       .createWithDefaultString("50ms")
@@ -1981,6 +2404,28 @@ object CelebornConf extends Logging {
       .bytesConf(ByteUnit.BYTE)
       .createWithDefaultString("64m")
 
+  val PUSH_HASH_MEMORY_THRESHOLD: ConfigEntry[Long] =
+    buildConf("celeborn.push.hashMemory.threshold")
+      .categories("client")
+      .version("0.2.0")
+      .doc("Max memory of the send buffers of a task using the hash-based shuffle writer. The " +
+        "buffers are acquired from the execution memory of the task, when they would grow " +
+        "beyond this or the memory cannot be acquired, the buffered data is pushed and the " +
+        "writer continues sort-based, bounded by `celeborn.push.sortMemory.threshold`.")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("256m")
+
+  val PUSH_SORT_PIPELINE_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.push.sortPipeline.enabled")
+      .categories("client")
+      .version("0.2.0")
+      .doc("When true, SortBasedPusher keeps inserting records into a second set of pages while " +
+        "the records over `celeborn.push.sortMemory.threshold` are sorted and pushed by a " +
+        "background thread, instead of blocking the task until they are pushed. The task may " +
+        "use up to twice the threshold of execution memory.")
+      .booleanConf
+      .createWithDefault(false)
+
   val PUSH_RETRY_THREADS: ConfigEntry[Int] =
     buildConf("celeborn.push.retry.threads")
       .withAlternative("rss.pushdata.retry.thread.num")
@@ -2315,6 +2760,54 @@ object CelebornConf extends Logging {
         s"Compression level for Zstd compression codec should be an integer between -5 and 22.")
       .createWithDefault(1)
 
+  val SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_ENABLED: ConfigEntry[Boolean] =
+    buildConf("celeborn.shuffle.compression.zstd.dictionary.enabled")
+      .categories("client")
+      .doc("When true and the codec is zstd, each executor samples the first batches of a " +
+        "shuffle and trains a dictionary from them. The first dictionary reported to the " +
+        "LifecycleManager is used by every mapper and reducer of the shuffle, which improves " +
+        "the compression of small batches.")
+      .version("0.2.0")
+      .booleanConf
+      .createWithDefault(false)
+
+  val SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_SIZE: ConfigEntry[Long] =
+    buildConf("celeborn.shuffle.compression.zstd.dictionary.size")
+      .categories("client")
+      .doc("Max size of a trained zstd dictionary.")
+      .version("0.2.0")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("32k")
+
+  val SHUFFLE_COMPRESSION_ZSTD_DICTIONARY_SAMPLE_SIZE: ConfigEntry[Long] =
+    buildConf("celeborn.shuffle.compression.zstd.dictionary.sampleSize")
+      .categories("client")
+      .doc("Size of the batches sampled to train a zstd dictionary.")
+      .version("0.2.0")
+      .bytesConf(ByteUnit.BYTE)
+      .createWithDefaultString("1m")
+
+  val SHUFFLE_COMPRESSION_PROBE_INTERVAL: ConfigEntry[Int] =
+    buildConf("celeborn.shuffle.compression.probeInterval")
+      .categories("client")
+      .doc("Count of batches of a partition stored uncompressed after a batch of it did not " +
+        "compress better than `celeborn.shuffle.compression.incompressibleRatio`, the next " +
+        "batch is compressed again to probe the data. 0 means every batch is compressed.")
+      .version("0.2.0")
+      .intConf
+      .checkValue(v => v >= 0, "should be non-negative.")
+      .createWithDefault(64)
+
+  val SHUFFLE_COMPRESSION_INCOMPRESSIBLE_RATIO: ConfigEntry[Double] =
+    buildConf("celeborn.shuffle.compression.incompressibleRatio")
+      .categories("client")
+      .doc("Data of a partition is considered incompressible when a batch of it compresses to " +
+        "more than this ratio of its original size.")
+      .version("0.2.0")
+      .doubleConf
+      .checkValue(v => v > 0.0 && v <= 1.0, "should be in (0.0, 1.0].")
+      .createWithDefault(0.9)
+
   val PARTITION_SORTER_DIRECT_MEMORY_RATIO_THRESHOLD: ConfigEntry[Double] =
     buildConf("celeborn.worker.partitionSorter.directMemoryRatioThreshold")
       .withAlternative("rss.partition.sort.memory.max.ratio")
@@ -18,7 +18,7 @@
 package org.apache.celeborn.common.metrics.source
 
 import org.apache.celeborn.common.CelebornConf
-import org.apache.celeborn.common.network.protocol.{ChunkFetchRequest, PushData, PushMergedData}
+import org.apache.celeborn.common.network.protocol.{ChunkFetchRequest, ChunkRangeFetchRequest, PushData, PushMergedData}
 import org.apache.celeborn.common.protocol.{PbRegisterWorker, PbUnregisterShuffle}
 import org.apache.celeborn.common.protocol.message.ControlMessages._
 
@@ -72,6 +72,8 @@ class RPCSource(conf: CelebornConf, role: String) extends AbstractSource(conf, r
         incCounter(RPCPushMergedDataSize, messageLen)
       case _: ChunkFetchRequest =>
         incCounter(RPCChunkFetchRequestNum)
+      case _: ChunkRangeFetchRequest =>
+        incCounter(RPCChunkFetchRequestNum)
       case _: HeartbeatFromApplication =>
         incCounter(RPCHeartbeatFromApplicationNum)
       case _: HeartbeatFromWorker =>
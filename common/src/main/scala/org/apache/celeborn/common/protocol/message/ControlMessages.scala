@@ -22,6 +22,7 @@ import java.util.UUID
 
 import scala.collection.JavaConverters._
 
+import com.google.protobuf.ByteString
 import org.roaringbitmap.RoaringBitmap
 
 import org.apache.celeborn.common.identity.UserIdentifier
@@ -134,10 +135,39 @@ object ControlMessages extends Logging {
     def apply(
         status: StatusCode,
         partitionLocations: Array[PartitionLocation]): PbRegisterShuffleResponse =
+      apply(status, partitionLocations, Array.empty[Byte])
+
+    def apply(
+        status: StatusCode,
+        partitionLocations: Array[PartitionLocation],
+        compressionDictionary: Array[Byte]): PbRegisterShuffleResponse =
       PbRegisterShuffleResponse.newBuilder()
         .setStatus(status.getValue)
         .addAllPartitionLocations(
           partitionLocations.map(PbSerDeUtils.toPbPartitionLocation).toSeq.asJava)
+        .setCompressionDictionary(ByteString.copyFrom(compressionDictionary))
+        .build()
+  }
+
+  object ReportShuffleDictionary {
+    def apply(
+        appId: String,
+        shuffleId: Int,
+        compressionDictionary: Array[Byte]): PbReportShuffleDictionary =
+      PbReportShuffleDictionary.newBuilder()
+        .setApplicationId(appId)
+        .setShuffleId(shuffleId)
+        .setCompressionDictionary(ByteString.copyFrom(compressionDictionary))
+        .build()
+  }
+
+  object ReportShuffleDictionaryResponse {
+    def apply(
+        status: StatusCode,
+        compressionDictionary: Array[Byte]): PbReportShuffleDictionaryResponse =
+      PbReportShuffleDictionaryResponse.newBuilder()
+        .setStatus(status.getValue)
+        .setCompressionDictionary(ByteString.copyFrom(compressionDictionary))
         .build()
   }
 
@@ -235,7 +265,8 @@ object ControlMessages extends Logging {
   case class GetReducerFileGroupResponse(
       status: StatusCode,
       fileGroup: Array[Array[PartitionLocation]],
-      attempts: Array[Int])
+      attempts: Array[Int],
+      compressionDictionary: Array[Byte] = Array.empty)
     extends MasterMessage
 
   object WorkerLost {
@@ -447,6 +478,12 @@ object ControlMessages extends Logging {
     case pb: PbRegisterShuffleResponse =>
       new TransportMessage(MessageType.REGISTER_SHUFFLE_RESPONSE, pb.toByteArray)
 
+    case pb: PbReportShuffleDictionary =>
+      new TransportMessage(MessageType.REPORT_SHUFFLE_DICTIONARY, pb.toByteArray)
+
+    case pb: PbReportShuffleDictionaryResponse =>
+      new TransportMessage(MessageType.REPORT_SHUFFLE_DICTIONARY_RESPONSE, pb.toByteArray)
+
     case RequestSlots(
           applicationId,
           shuffleId,
@@ -521,10 +558,11 @@ object ControlMessages extends Logging {
         .build().toByteArray
       new TransportMessage(MessageType.GET_REDUCER_FILE_GROUP, payload)
 
-    case GetReducerFileGroupResponse(status, fileGroup, attempts) =>
+    case GetReducerFileGroupResponse(status, fileGroup, attempts, compressionDictionary) =>
       val builder = PbGetReducerFileGroupResponse
         .newBuilder()
         .setStatus(status.getValue)
+        .setCompressionDictionary(ByteString.copyFrom(compressionDictionary))
       builder.addAllFileGroup(
         fileGroup.map { arr =>
           PbFileGroup.newBuilder().addAllLocations(arr
@@ -788,6 +826,12 @@ object ControlMessages extends Logging {
       case REGISTER_SHUFFLE_RESPONSE =>
         PbRegisterShuffleResponse.parseFrom(message.getPayload)
 
+      case REPORT_SHUFFLE_DICTIONARY =>
+        PbReportShuffleDictionary.parseFrom(message.getPayload)
+
+      case REPORT_SHUFFLE_DICTIONARY_RESPONSE =>
+        PbReportShuffleDictionaryResponse.parseFrom(message.getPayload)
+
       case REQUEST_SLOTS =>
         val pbRequestSlots = PbRequestSlots.parseFrom(message.getPayload)
         val userIdentifier = PbSerDeUtils.fromPbUserIdentifier(pbRequestSlots.getUserIdentifier)
@@ -857,7 +901,8 @@ object ControlMessages extends Logging {
         GetReducerFileGroupResponse(
           Utils.toStatusCode(pbGetReducerFileGroupResponse.getStatus),
           fileGroup,
-          attempts)
+          attempts,
+          pbGetReducerFileGroupResponse.getCompressionDictionary.toByteArray)
 
       case UNREGISTER_SHUFFLE =>
         PbUnregisterShuffle.parseFrom(message.getPayload)
@@ -924,6 +924,7 @@ object Utils extends Logging {
 
   val SORTED_SUFFIX = ".sorted"
   val INDEX_SUFFIX = ".index"
+  val MAP_INDEX_SUFFIX = ".mapindex"
   val SUFFIX_HDFS_WRITE_SUCCESS = ".success"
 
   def isHdfsPath(path: String): Boolean = {
@@ -938,6 +939,10 @@ object Utils extends Logging {
     path + INDEX_SUFFIX
   }
 
+  def getMapIndexFilePath(path: String): String = {
+    path + MAP_INDEX_SUFFIX
+  }
+
   def getWriteSuccessFilePath(path: String): String = {
     path + SUFFIX_HDFS_WRITE_SUCCESS
   }
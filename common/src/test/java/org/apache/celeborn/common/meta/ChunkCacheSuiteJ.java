@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.protocol.TransportModuleConstants;
+
+public class ChunkCacheSuiteJ {
+  private static final String MOUNT_POINT = "/chunk-cache-suite";
+  private static final String FILE = MOUNT_POINT + "/app/0/0-0-0";
+
+  private ByteBuf chunk(int size, byte value) {
+    ByteBuf buf = Unpooled.directBuffer(size);
+    for (int i = 0; i < size; i++) {
+      buf.writeByte(value);
+    }
+    return buf;
+  }
+
+  @Test
+  public void testCacheAndEvict() throws IOException {
+    ChunkCache cache = ChunkCache.initialize(250, Collections.singleton(MOUNT_POINT));
+
+    ByteBuf first = chunk(100, (byte) 1);
+    cache.put(FILE, 0, 0, first);
+    ManagedBuffer slice = cache.get(FILE, 0, 0, 100, 10, 20);
+    Assert.assertNotNull(slice);
+    Assert.assertEquals(20, slice.size());
+
+    cache.put(FILE, 1, 100, chunk(100, (byte) 2));
+    cache.put(FILE, 2, 200, chunk(100, (byte) 3));
+    Assert.assertEquals(200, cache.getUsedBytes());
+    // the evicted chunk is still readable through the slice handed out before
+    Assert.assertEquals(1, first.refCnt());
+    ByteBuffer bytes = slice.nioByteBuffer();
+    Assert.assertEquals(1, bytes.get(0));
+    slice.release();
+    Assert.assertEquals(0, first.refCnt());
+
+    Assert.assertNull(cache.get(FILE, 0, 0, 100, 0, 100));
+    // offsets of a different view of the file do not match
+    Assert.assertNull(cache.get(FILE, 1, 0, 100, 0, 100));
+    ManagedBuffer hit = cache.get(FILE, 2, 200, 100, 0, 100);
+    Assert.assertEquals(3, hit.nioByteBuffer().get(99));
+    hit.release();
+    Assert.assertEquals(2, cache.getHitCount(MOUNT_POINT));
+    Assert.assertEquals(2, cache.getMissCount(MOUNT_POINT));
+
+    // evicts chunk 1 of FILE, invalidating FILE keeps the chunk of the other file
+    String otherFile = MOUNT_POINT + "/app/0/1-0-0";
+    cache.put(otherFile, 0, 0, chunk(100, (byte) 5));
+    cache.invalidate(FILE);
+    Assert.assertEquals(100, cache.getUsedBytes());
+    Assert.assertNull(cache.get(FILE, 2, 200, 100, 0, 100));
+    cache.invalidate(otherFile);
+    Assert.assertEquals(0, cache.getUsedBytes());
+
+    cache.put(FILE, 3, 300, chunk(100, (byte) 4));
+    cache.onTrim();
+    Assert.assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void testAdmits() {
+    ChunkCache cache = ChunkCache.initialize(250, Collections.singleton(MOUNT_POINT));
+    Assert.assertTrue(cache.admits(FILE, 250));
+    Assert.assertFalse(cache.admits(FILE, 251));
+    Assert.assertFalse(cache.admits("/other-disk/app/0/0-0-0", 100));
+
+    cache.onPause(TransportModuleConstants.PUSH_MODULE);
+    Assert.assertFalse(cache.admits(FILE, 100));
+    cache.onResume(TransportModuleConstants.REPLICATE_MODULE);
+    Assert.assertFalse(cache.admits(FILE, 100));
+    cache.onResume("all");
+    Assert.assertTrue(cache.admits(FILE, 100));
+  }
+}
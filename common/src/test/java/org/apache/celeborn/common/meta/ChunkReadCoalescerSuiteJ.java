@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+
+public class ChunkReadCoalescerSuiteJ {
+
+  private ManagedBuffer read(ChunkReadCoalescer coalescer, File file, long offset, long length)
+      throws Exception {
+    return coalescer.readAsync(file, offset, length).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testSharedRead() throws Exception {
+    File file = File.createTempFile("celeborn", ".data");
+    try {
+      byte[] data = new byte[1024];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) i;
+      }
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(data);
+      }
+      ChunkReadCoalescer coalescer = ChunkReadCoalescer.initialize();
+      long diskReads = coalescer.getDiskReadCount();
+      long coalescedReads = coalescer.getCoalescedReadCount();
+
+      ManagedBuffer first = read(coalescer, file, 100, 200);
+      ManagedBuffer second = read(coalescer, file, 100, 200);
+      ManagedBuffer other = read(coalescer, file, 300, 200);
+      Assert.assertEquals(diskReads + 2, coalescer.getDiskReadCount());
+      Assert.assertEquals(coalescedReads + 1, coalescer.getCoalescedReadCount());
+      Assert.assertEquals(2, coalescer.getInFlightReadCount());
+
+      ByteBuffer bytes = second.nioByteBuffer();
+      Assert.assertEquals(200, bytes.remaining());
+      Assert.assertEquals((byte) 100, bytes.get(0));
+      Assert.assertEquals((byte) 355, other.nioByteBuffer().get(55));
+
+      first.release();
+      Assert.assertEquals(2, coalescer.getInFlightReadCount());
+      second.release();
+      other.release();
+      Assert.assertEquals(0, coalescer.getInFlightReadCount());
+
+      // nothing in flight, the next fetch reads the disk again
+      read(coalescer, file, 100, 200).release();
+      Assert.assertEquals(diskReads + 3, coalescer.getDiskReadCount());
+
+      try {
+        read(coalescer, file, 1000, 200);
+        Assert.fail("Reading beyond the end of the file should fail.");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+        Assert.assertEquals(0, coalescer.getInFlightReadCount());
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.meta;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.identity.UserIdentifier;
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.util.TransportConf;
+
+public class FileManagedBuffersSuiteJ {
+  private final TransportConf conf = new TransportConf("shuffle", new CelebornConf());
+  private final UserIdentifier userIdentifier = new UserIdentifier("mock", "mock");
+
+  private File createFile(int size, byte value) throws IOException {
+    File file = File.createTempFile("celeborn", ".data");
+    byte[] data = new byte[size];
+    Arrays.fill(data, value);
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(data);
+    }
+    return file;
+  }
+
+  @Test
+  public void testMultiFileStream() throws IOException {
+    File first = createFile(300, (byte) 1);
+    File empty = createFile(0, (byte) 0);
+    File second = createFile(150, (byte) 2);
+    try {
+      FileManagedBuffers buffers =
+          new FileManagedBuffers(
+              Arrays.asList(
+                  new FileInfo(first.getPath(), Arrays.asList(0L, 100L, 300L), userIdentifier),
+                  new FileInfo(empty.getPath(), Arrays.asList(0L), userIdentifier),
+                  new FileInfo(second.getPath(), Arrays.asList(0L, 50L, 150L), userIdentifier)),
+              conf);
+      Assert.assertEquals(4, buffers.numChunks());
+      Assert.assertArrayEquals(new int[] {200, 50, 100}, buffers.chunkLengths(1, 3));
+
+      ManagedBuffer chunk = buffers.chunk(2, 10, Integer.MAX_VALUE);
+      Assert.assertEquals(40, chunk.size());
+      Assert.assertEquals(2, chunk.nioByteBuffer().get(0));
+      Assert.assertFalse(buffers.hasAlreadyRead(2));
+      buffers.markRead(2, 10, Integer.MAX_VALUE);
+      Assert.assertTrue(buffers.hasAlreadyRead(2));
+      Assert.assertFalse(buffers.isFullyRead());
+
+      // the range spans both files and is read as one buffer
+      ManagedBuffer range = buffers.chunkRange(0, 2);
+      ByteBuffer bytes = range.nioByteBuffer();
+      Assert.assertEquals(300, bytes.remaining());
+      Assert.assertEquals(1, bytes.get(299));
+      Assert.assertFalse(buffers.hasAlreadyRead(3));
+
+      ManagedBuffer last = buffers.chunkRange(1, 3);
+      bytes = last.nioByteBuffer();
+      Assert.assertEquals(350, bytes.remaining());
+      Assert.assertEquals(1, bytes.get(199));
+      Assert.assertEquals(2, bytes.get(200));
+      Assert.assertFalse(buffers.isFullyRead());
+      buffers.markRead(1, 3);
+      Assert.assertTrue(buffers.hasAlreadyRead(3));
+      Assert.assertTrue(buffers.isFullyRead());
+    } finally {
+      first.delete();
+      empty.delete();
+      second.delete();
+    }
+  }
+}
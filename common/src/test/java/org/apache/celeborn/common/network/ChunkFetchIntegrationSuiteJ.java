@@ -41,7 +41,11 @@ import org.apache.celeborn.common.network.client.TransportClient;
 import org.apache.celeborn.common.network.client.TransportClientFactory;
 import org.apache.celeborn.common.network.protocol.ChunkFetchRequest;
 import org.apache.celeborn.common.network.protocol.ChunkFetchSuccess;
+import org.apache.celeborn.common.network.protocol.ChunkRangeFetchFailure;
+import org.apache.celeborn.common.network.protocol.ChunkRangeFetchRequest;
+import org.apache.celeborn.common.network.protocol.ChunkRangeFetchSuccess;
 import org.apache.celeborn.common.network.protocol.RequestMessage;
+import org.apache.celeborn.common.network.protocol.StreamChunkRange;
 import org.apache.celeborn.common.network.protocol.StreamChunkSlice;
 import org.apache.celeborn.common.network.server.BaseMessageHandler;
 import org.apache.celeborn.common.network.server.StreamManager;
@@ -52,6 +56,9 @@ public class ChunkFetchIntegrationSuiteJ {
   static final long STREAM_ID = 1;
   static final int BUFFER_CHUNK_INDEX = 0;
   static final int FILE_CHUNK_INDEX = 1;
+  // the test file split into two chunks, only fetchable as a range
+  static final long RANGE_STREAM_ID = 2;
+  static final int[] RANGE_CHUNK_LENGTHS = {24, 1000};
 
   static TransportServer server;
   static TransportClientFactory clientFactory;
@@ -105,6 +112,25 @@ public class ChunkFetchIntegrationSuiteJ {
         new BaseMessageHandler() {
           @Override
           public void receive(TransportClient client, RequestMessage msg) {
+            if (msg instanceof ChunkRangeFetchRequest) {
+              StreamChunkRange range = ((ChunkRangeFetchRequest) msg).streamChunkRange;
+              if (range.streamId == RANGE_STREAM_ID
+                  && range.startChunkIndex == 0
+                  && range.numChunks == RANGE_CHUNK_LENGTHS.length) {
+                client
+                    .getChannel()
+                    .writeAndFlush(
+                        new ChunkRangeFetchSuccess(
+                            range,
+                            RANGE_CHUNK_LENGTHS,
+                            new FileSegmentManagedBuffer(conf, testFile, 0, testFile.length())));
+              } else {
+                client
+                    .getChannel()
+                    .writeAndFlush(new ChunkRangeFetchFailure(range, "Invalid range " + range));
+              }
+              return;
+            }
             StreamChunkSlice slice = ((ChunkFetchRequest) msg).streamChunkSlice;
             ManagedBuffer buf =
                 streamManager.getChunk(slice.streamId, slice.chunkIndex, slice.offset, slice.len);
@@ -141,7 +167,7 @@ public class ChunkFetchIntegrationSuiteJ {
     }
   }
 
-  private FetchResult fetchChunks(List<Integer> chunkIndices) throws Exception {
+  private FetchResult fetchChunks(List<Integer> chunkIndices, long rangeStreamId) throws Exception {
     TransportClient client = clientFactory.createClient(TestUtils.getLocalHost(), server.getPort());
     final Semaphore sem = new Semaphore(0);
 
@@ -167,8 +193,12 @@ public class ChunkFetchIntegrationSuiteJ {
           }
         };
 
-    for (int chunkIndex : chunkIndices) {
-      client.fetchChunk(STREAM_ID, chunkIndex, callback);
+    if (rangeStreamId >= 0) {
+      client.fetchChunkRange(rangeStreamId, chunkIndices.get(0), chunkIndices.size(), callback);
+    } else {
+      for (int chunkIndex : chunkIndices) {
+        client.fetchChunk(STREAM_ID, chunkIndex, callback);
+      }
     }
     if (!sem.tryAcquire(chunkIndices.size(), 5, TimeUnit.SECONDS)) {
       fail("Timeout getting response from the server");
@@ -177,6 +207,10 @@ public class ChunkFetchIntegrationSuiteJ {
     return res;
   }
 
+  private FetchResult fetchChunks(List<Integer> chunkIndices) throws Exception {
+    return fetchChunks(chunkIndices, -1);
+  }
+
   @Test
   public void fetchBufferChunk() throws Exception {
     FetchResult res = fetchChunks(Arrays.asList(BUFFER_CHUNK_INDEX));
@@ -221,6 +255,28 @@ public class ChunkFetchIntegrationSuiteJ {
     res.releaseBuffers();
   }
 
+  @Test
+  public void fetchChunkRange() throws Exception {
+    FetchResult res = fetchChunks(Arrays.asList(0, 1), RANGE_STREAM_ID);
+    assertEquals(Sets.newHashSet(0, 1), res.successChunks);
+    assertTrue(res.failedChunks.isEmpty());
+    TransportConf conf = new TransportConf("shuffle", new CelebornConf());
+    assertBufferListsEqual(
+        Arrays.asList(
+            new FileSegmentManagedBuffer(conf, testFile, 0, 24),
+            new FileSegmentManagedBuffer(conf, testFile, 24, 1000)),
+        res.buffers);
+    res.releaseBuffers();
+  }
+
+  @Test
+  public void fetchInvalidChunkRange() throws Exception {
+    FetchResult res = fetchChunks(Arrays.asList(1, 2, 3), RANGE_STREAM_ID);
+    assertTrue(res.successChunks.isEmpty());
+    assertEquals(Sets.newHashSet(1, 2, 3), res.failedChunks);
+    assertTrue(res.buffers.isEmpty());
+  }
+
   private static void assertBufferListsEqual(List<ManagedBuffer> list0, List<ManagedBuffer> list1)
       throws Exception {
     assertEquals(list0.size(), list1.size());
@@ -17,12 +17,20 @@
 
 package org.apache.celeborn.common.network.server;
 
+import java.util.Arrays;
+import java.util.List;
+
 import io.netty.channel.Channel;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.meta.FileInfo;
 import org.apache.celeborn.common.meta.FileManagedBuffers;
+import org.apache.celeborn.common.network.buffer.ManagedBuffer;
+import org.apache.celeborn.common.network.util.TransportConf;
 
 public class OneForOneStreamManagerSuiteJ {
   @Test
@@ -44,4 +52,90 @@ public class OneForOneStreamManagerSuiteJ {
     manager.connectionTerminated(dummyChannel);
     assert manager.streams.isEmpty();
   }
+
+  private long registerStream(OneForOneStreamManager manager) {
+    return registerStream(manager, Mockito.mock(Channel.class, Mockito.RETURNS_SMART_NULLS));
+  }
+
+  private long registerStream(OneForOneStreamManager manager, Channel dummyChannel) {
+    FileInfo fileInfo =
+        new FileInfo("/mnt/disk1/app/0/0-0-0", Arrays.asList(0L, 100L, 300L, 350L, 450L), null);
+    return manager.registerStream(
+        new FileManagedBuffers(fileInfo, new TransportConf("shuffle", new CelebornConf())),
+        dummyChannel);
+  }
+
+  @Test
+  public void testStreamIsRemovedAfterLastChunkRange() {
+    OneForOneStreamManager manager = new OneForOneStreamManager();
+    long streamId = registerStream(manager);
+
+    // a range from the first chunk does not read the whole stream
+    Pair<int[], ManagedBuffer> first = manager.getChunkRange(streamId, 0, 2);
+    Assert.assertArrayEquals(new int[] {100, 200}, first.getLeft());
+    Assert.assertEquals(300, first.getRight().size());
+    manager.chunkRangeRead(streamId, 0, 2);
+    Assert.assertEquals(1, manager.numStreamStates());
+
+    // a range in the middle ending at the last chunk does, once it is sent
+    Pair<int[], ManagedBuffer> last = manager.getChunkRange(streamId, 2, 2);
+    Assert.assertArrayEquals(new int[] {50, 100}, last.getLeft());
+    Assert.assertEquals(150, last.getRight().size());
+    Assert.assertEquals(1, manager.numStreamStates());
+    manager.chunkRangeRead(streamId, 2, 2);
+    Assert.assertEquals(0, manager.numStreamStates());
+  }
+
+  @Test
+  public void testChunksOfUnsentRangeCanBeFetched() {
+    OneForOneStreamManager manager = new OneForOneStreamManager();
+    long streamId = registerStream(manager);
+
+    // the range is not sent, the client falls back to single chunks
+    manager.getChunkRange(streamId, 1, 3);
+    Pair<int[], List<ManagedBuffer>> chunks = manager.getChunks(streamId, 1, 3);
+    Assert.assertArrayEquals(new int[] {200, 50, 100}, chunks.getLeft());
+    Assert.assertEquals(3, chunks.getRight().size());
+    Assert.assertEquals(50, chunks.getRight().get(1).size());
+    for (int i = 1; i < 4; i++) {
+      Assert.assertEquals(
+          chunks.getLeft()[i - 1], manager.getChunk(streamId, i, 0, Integer.MAX_VALUE).size());
+      manager.chunkRead(streamId, i, 0, Integer.MAX_VALUE);
+    }
+    Assert.assertEquals(0, manager.numStreamStates());
+  }
+
+  @Test
+  public void testSentChunkIsNotFetchedAgain() {
+    OneForOneStreamManager manager = new OneForOneStreamManager();
+    long streamId = registerStream(manager);
+
+    manager.getChunk(streamId, 0, 0, 60);
+    manager.chunkRead(streamId, 0, 0, 60);
+    // only a part of the chunk is sent
+    manager.getChunk(streamId, 0, 60, Integer.MAX_VALUE);
+    manager.chunkRead(streamId, 0, 60, Integer.MAX_VALUE);
+    try {
+      manager.getChunkRange(streamId, 0, 2);
+      Assert.fail("Chunk 0 has been sent.");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("has already been read"));
+    }
+    Assert.assertEquals(1, manager.numStreamStates());
+  }
+
+  @Test
+  public void testCloseStream() {
+    OneForOneStreamManager manager = new OneForOneStreamManager();
+    Channel channel = Mockito.mock(Channel.class, Mockito.RETURNS_SMART_NULLS);
+    long streamId = registerStream(manager, channel);
+    manager.getChunk(streamId, 1, 0, Integer.MAX_VALUE);
+    manager.chunkRead(streamId, 1, 0, Integer.MAX_VALUE);
+
+    // only the connection which opened the stream can close it
+    manager.closeStream(streamId, Mockito.mock(Channel.class, Mockito.RETURNS_SMART_NULLS));
+    Assert.assertEquals(1, manager.numStreamStates());
+    manager.closeStream(streamId, channel);
+    Assert.assertEquals(0, manager.numStreamStates());
+  }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.common.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.celeborn.common.util.ShuffleBlockInfoUtils.ShuffleBlockInfo;
+
+public class ShuffleBlockIndexSuiteJ {
+
+  // map ids 1, 3 and 4 written in map id order, 1000 bytes per block
+  private Map<Integer, List<ShuffleBlockInfo>> sortedIndexMap() {
+    Map<Integer, List<ShuffleBlockInfo>> indexMap = new TreeMap<>();
+    long offset = 0;
+    for (int mapId : new int[] {1, 3, 4}) {
+      List<ShuffleBlockInfo> blocks = new ArrayList<>();
+      for (int i = 0; i < mapId; i++) {
+        ShuffleBlockInfo info = new ShuffleBlockInfo();
+        info.offset = offset;
+        info.length = 1000;
+        blocks.add(info);
+        offset += 1000;
+      }
+      indexMap.put(mapId, blocks);
+    }
+    return indexMap;
+  }
+
+  @Test
+  public void testChunkOffsets() {
+    ShuffleBlockIndex index =
+        ShuffleBlockIndex.parse(ShuffleBlockIndex.serialize(sortedIndexMap()));
+    Assert.assertEquals(3, index.numMaps());
+    Assert.assertEquals(8, index.numBlocks());
+
+    Assert.assertEquals(
+        Arrays.asList(0L, 2000L, 4000L, 6000L, 8000L), index.getChunkOffsets(0, 10, 1500));
+    Assert.assertEquals(Arrays.asList(1000L, 4000L), index.getChunkOffsets(2, 4, 5000));
+    Assert.assertEquals(Arrays.asList(4000L, 8000L), index.getChunkOffsets(4, 5, 5000));
+    Assert.assertTrue(index.getChunkOffsets(2, 3, 5000).isEmpty());
+    Assert.assertTrue(index.getChunkOffsets(5, 10, 5000).isEmpty());
+  }
+
+  @Test
+  public void testBlocksInFileOrder() {
+    Map<Integer, List<ShuffleBlockInfo>> indexMap = new TreeMap<>();
+    long[][] blocks = {{2, 0, 100}, {1, 100, 50}, {2, 150, 10}, {7, 160, 40}, {1, 200, 5}};
+    for (long[] block : blocks) {
+      ShuffleBlockInfo info = new ShuffleBlockInfo();
+      info.offset = block[1];
+      info.length = block[2];
+      indexMap.computeIfAbsent((int) block[0], k -> new ArrayList<>()).add(info);
+    }
+    ShuffleBlockIndex index = ShuffleBlockIndex.parse(ShuffleBlockIndex.serialize(indexMap));
+
+    List<ShuffleBlockInfo> range = index.getBlocksInFileOrder(1, 3);
+    Assert.assertEquals(4, range.size());
+    long[] expectedOffsets = {0, 100, 150, 200};
+    for (int i = 0; i < expectedOffsets.length; i++) {
+      Assert.assertEquals(expectedOffsets[i], range.get(i).offset);
+    }
+  }
+
+  @Test
+  public void testLegacyLayoutAndMmap() throws IOException {
+    Map<Integer, List<ShuffleBlockInfo>> indexMap = sortedIndexMap();
+    ByteBuffer legacy = ShuffleBlockInfoUtils.serializeShuffleBlockInfos(indexMap);
+    Assert.assertEquals(3 * 8 + 8 * 16, legacy.remaining());
+    // older clients parse HDFS indexes this way
+    Map<Integer, List<ShuffleBlockInfo>> parsed =
+        ShuffleBlockInfoUtils.parseShuffleBlockInfosFromByteBuffer(legacy.duplicate());
+    Assert.assertEquals(indexMap.keySet(), parsed.keySet());
+    for (Map.Entry<Integer, List<ShuffleBlockInfo>> entry : indexMap.entrySet()) {
+      List<ShuffleBlockInfo> blocks = parsed.get(entry.getKey());
+      Assert.assertEquals(entry.getValue().size(), blocks.size());
+      for (int i = 0; i < blocks.size(); i++) {
+        Assert.assertEquals(entry.getValue().get(i).offset, blocks.get(i).offset);
+        Assert.assertEquals(entry.getValue().get(i).length, blocks.get(i).length);
+      }
+    }
+    ShuffleBlockIndex converted = ShuffleBlockIndex.parse(legacy);
+
+    File file = File.createTempFile("celeborn", ".index");
+    try {
+      ByteBuffer serialized = ShuffleBlockIndex.serialize(indexMap);
+      try (FileOutputStream output = new FileOutputStream(file)) {
+        output.write(serialized.array(), serialized.position(), serialized.remaining());
+      }
+      ShuffleBlockIndex mapped = ShuffleBlockIndex.mmap(file);
+      Assert.assertEquals(file.length(), mapped.sizeInBytes());
+      for (int start = 0; start < 6; start++) {
+        for (int end = start; end < 6; end++) {
+          Assert.assertEquals(
+              converted.getChunkOffsets(start, end, 2500),
+              mapped.getChunkOffsets(start, end, 2500));
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
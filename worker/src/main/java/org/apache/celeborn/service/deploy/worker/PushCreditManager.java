@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.service.deploy.worker;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.Channel;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.network.protocol.PushCredit;
+import org.apache.celeborn.common.network.server.MemoryTracker;
+import org.apache.celeborn.common.util.ThreadUtils;
+import org.apache.celeborn.service.deploy.worker.storage.Flusher;
+
+/**
+ * Grants push credits to the connections of the push server. Each connection may have up to a
+ * window of credits, the credits granted and not used yet over all connections are bounded by the
+ * direct memory left before push data is paused, scaled down as the flush queues fill up. A
+ * connection that could not be granted credits is granted them by a periodic check once memory or
+ * flushes catch up, so that only the clients pushing to this worker wait.
+ */
+public class PushCreditManager {
+  private final MemoryTracker memoryTracker;
+  private final Collection<? extends Flusher> flushers;
+  private final long window;
+  // credits are granted in parts of at least this size, to keep the count of grants low
+  private final long minGrant;
+  private final int maxPendingFlushes;
+  private final Map<Channel, ChannelCredits> channelCredits = new ConcurrentHashMap<>();
+  private final AtomicLong outstandingCredits = new AtomicLong();
+
+  private final ScheduledExecutorService grantService =
+      ThreadUtils.newDaemonSingleThreadScheduledExecutor("worker-push-credit-grant");
+
+  public PushCreditManager(
+      CelebornConf conf, MemoryTracker memoryTracker, Collection<? extends Flusher> flushers) {
+    this.memoryTracker = memoryTracker;
+    this.flushers = flushers;
+    this.window = conf.workerPushCreditWindow();
+    this.minGrant = window / 4;
+    this.maxPendingFlushes = conf.workerPushCreditMaxPendingFlushes() * flushers.size();
+    long checkInterval = conf.workerPushCreditCheckInterval();
+    grantService.scheduleWithFixedDelay(
+        () -> channelCredits.values().forEach(this::grant),
+        checkInterval,
+        checkInterval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void channelActive(Channel channel) {
+    ChannelCredits credits = new ChannelCredits(channel);
+    channelCredits.put(channel, credits);
+    grant(credits);
+  }
+
+  public void channelInactive(Channel channel) {
+    ChannelCredits credits = channelCredits.remove(channel);
+    if (credits != null) {
+      synchronized (credits) {
+        credits.closed = true;
+        credits.update(0);
+      }
+    }
+  }
+
+  /** Called when the given bytes were pushed over the channel. */
+  public void onPushed(Channel channel, long bytes) {
+    ChannelCredits credits = channelCredits.get(channel);
+    if (credits != null) {
+      synchronized (credits) {
+        credits.update(credits.outstanding - bytes);
+      }
+      grant(credits);
+    }
+  }
+
+  public long getOutstandingCredits() {
+    return outstandingCredits.get();
+  }
+
+  public void close() {
+    grantService.shutdownNow();
+  }
+
+  private long budget() {
+    long budget = memoryTracker.getPushDataHeadroom() - outstandingCredits.get();
+    if (budget <= 0 || maxPendingFlushes == 0) {
+      return Math.max(budget, 0);
+    }
+    long pendingFlushes = 0;
+    for (Flusher flusher : flushers) {
+      pendingFlushes += flusher.pendingFlushCount();
+    }
+    if (pendingFlushes >= maxPendingFlushes) {
+      return 0;
+    }
+    return budget / maxPendingFlushes * (maxPendingFlushes - pendingFlushes);
+  }
+
+  private void grant(ChannelCredits credits) {
+    long grant;
+    synchronized (credits) {
+      // the client may have overdrawn its credits by the last push
+      long need = window - credits.outstanding;
+      if (credits.closed || need < minGrant) {
+        return;
+      }
+      grant = Math.min(need, budget());
+      if (grant < minGrant) {
+        return;
+      }
+      credits.update(credits.outstanding + grant);
+    }
+    credits.channel.writeAndFlush(new PushCredit(grant));
+  }
+
+  private class ChannelCredits {
+    final Channel channel;
+    // credits granted to the connection and not used yet, negative if overdrawn
+    long outstanding = 0;
+    boolean closed = false;
+
+    ChannelCredits(Channel channel) {
+      this.channel = channel;
+    }
+
+    void update(long newOutstanding) {
+      outstandingCredits.addAndGet(Math.max(newOutstanding, 0) - Math.max(outstanding, 0));
+      outstanding = newOutstanding;
+    }
+  }
+}
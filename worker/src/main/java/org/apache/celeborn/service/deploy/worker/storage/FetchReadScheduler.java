@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.service.deploy.worker.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.meta.ChunkReadCoalescer;
+import org.apache.celeborn.common.meta.DeviceInfo;
+
+/**
+ * Reads chunks of local files for fetches. Each disk has one reader thread and a bounded queue, the
+ * queued reads are served in batches ordered by file and offset, continuing from where the previous
+ * read ended, so that concurrent reducers do not make a HDD seek back and forth. While flushes of
+ * the disk are pending, the reader serves a limited count of reads per finished flush.
+ */
+public class FetchReadScheduler implements ChunkReadCoalescer.SegmentReader {
+  private static final Logger logger = LoggerFactory.getLogger(FetchReadScheduler.class);
+  // reads are never held back longer than this waiting for flushes
+  private static final long MAX_FLUSH_WAIT_MS = 100;
+
+  private static final Comparator<ReadRequest> FILE_ORDER =
+      Comparator.<ReadRequest, String>comparing(request -> request.filePath)
+          .thenComparingLong(request -> request.offset);
+
+  private final Set<String> mountPoints;
+  private final Map<String, ? extends Flusher> flushers;
+  private final int queueCapacity;
+  private final int batchSize;
+  private final int readsPerFlush;
+  private final Map<String, DiskReader> diskReaders = new ConcurrentHashMap<>();
+  private volatile boolean stopped = false;
+
+  public FetchReadScheduler(
+      CelebornConf conf, Set<String> mountPoints, Map<String, ? extends Flusher> flushers) {
+    this.mountPoints = mountPoints;
+    this.flushers = flushers;
+    this.queueCapacity = conf.workerFetchSchedulerQueueCapacity();
+    this.batchSize = conf.workerFetchSchedulerBatchSize();
+    this.readsPerFlush = conf.workerFetchSchedulerReadsPerFlush();
+  }
+
+  @Override
+  public CompletableFuture<ByteBuf> read(File file, long offset, int length) {
+    CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+    if (stopped) {
+      future.completeExceptionally(new IOException("Fetch read scheduler is stopped."));
+      return future;
+    }
+    String mountPoint = DeviceInfo.getMountPoint(file.getAbsolutePath(), mountPoints);
+    DiskReader diskReader = diskReaders.computeIfAbsent(mountPoint, DiskReader::new);
+    if (!diskReader.queue.offer(new ReadRequest(file, offset, length, future))) {
+      future.completeExceptionally(
+          new IOException(
+              "Fetch read queue of disk "
+                  + mountPoint
+                  + " is full, "
+                  + queueCapacity
+                  + " reads are pending."));
+    }
+    return future;
+  }
+
+  public int getPendingReadCount(String mountPoint) {
+    DiskReader diskReader = diskReaders.get(mountPoint);
+    return diskReader == null ? 0 : diskReader.queue.size();
+  }
+
+  public void close() {
+    stopped = true;
+    for (DiskReader diskReader : diskReaders.values()) {
+      diskReader.thread.interrupt();
+      List<ReadRequest> pending = new ArrayList<>();
+      diskReader.queue.drainTo(pending);
+      for (ReadRequest request : pending) {
+        request.future.completeExceptionally(new IOException("Fetch read scheduler is stopped."));
+      }
+    }
+  }
+
+  private static class ReadRequest {
+    final File file;
+    final String filePath;
+    final long offset;
+    final int length;
+    final CompletableFuture<ByteBuf> future;
+
+    ReadRequest(File file, long offset, int length, CompletableFuture<ByteBuf> future) {
+      this.file = file;
+      this.filePath = file.getAbsolutePath();
+      this.offset = offset;
+      this.length = length;
+      this.future = future;
+    }
+  }
+
+  private class DiskReader implements Runnable {
+    private final String mountPoint;
+    private final Flusher flusher;
+    private final LinkedBlockingQueue<ReadRequest> queue;
+    private final Thread thread;
+    // end of the previous read, the next batch starts from the first read after it
+    private String lastPath = null;
+    private long lastOffset = 0;
+    private long lastFinishedFlushes = 0;
+    private int readsSinceFlush = 0;
+
+    DiskReader(String mountPoint) {
+      this.mountPoint = mountPoint;
+      this.flusher = flushers.get(mountPoint);
+      this.queue = new LinkedBlockingQueue<>(queueCapacity);
+      this.thread = new Thread(this, "fetch-reader-" + mountPoint);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    @Override
+    public void run() {
+      List<ReadRequest> batch = new ArrayList<>(batchSize);
+      while (!stopped) {
+        try {
+          batch.add(queue.take());
+          queue.drainTo(batch, batchSize - 1);
+          for (ReadRequest request : elevatorOrder(batch)) {
+            awaitFlushes();
+            read(request);
+          }
+        } catch (InterruptedException e) {
+          for (ReadRequest request : batch) {
+            request.future.completeExceptionally(
+                new IOException("Fetch read scheduler is stopped."));
+          }
+          break;
+        } finally {
+          batch.clear();
+        }
+      }
+      logger.info("Fetch reader of disk {} stopped.", mountPoint);
+    }
+
+    private List<ReadRequest> elevatorOrder(List<ReadRequest> batch) {
+      batch.sort(FILE_ORDER);
+      if (lastPath == null) {
+        return new ArrayList<>(batch);
+      }
+      int start = 0;
+      while (start < batch.size() && isBeforeLastRead(batch.get(start))) {
+        start++;
+      }
+      List<ReadRequest> ordered = new ArrayList<>(batch.subList(start, batch.size()));
+      ordered.addAll(batch.subList(0, start));
+      return ordered;
+    }
+
+    private boolean isBeforeLastRead(ReadRequest request) {
+      int compared = request.filePath.compareTo(lastPath);
+      return compared < 0 || (compared == 0 && request.offset < lastOffset);
+    }
+
+    private void awaitFlushes() throws InterruptedException {
+      if (flusher == null || readsPerFlush == 0) {
+        return;
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_FLUSH_WAIT_MS);
+      while (readsSinceFlush >= readsPerFlush
+          && flusher.pendingFlushCount() > 0
+          && flusher.finishedFlushCount() == lastFinishedFlushes) {
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+          break;
+        }
+        flusher.awaitFinishedFlush(lastFinishedFlushes, remainingNanos);
+      }
+      long finishedFlushes = flusher.finishedFlushCount();
+      if (finishedFlushes != lastFinishedFlushes) {
+        lastFinishedFlushes = finishedFlushes;
+        readsSinceFlush = 0;
+      }
+      readsSinceFlush++;
+    }
+
+    private void read(ReadRequest request) {
+      if (request.future.isDone()) {
+        return;
+      }
+      try {
+        request.future.complete(
+            ChunkReadCoalescer.readFully(request.file, request.offset, request.length));
+      } catch (IOException | RuntimeException e) {
+        logger.warn(
+            "Read {} offset {} length {} failed.",
+            request.filePath,
+            request.offset,
+            request.length,
+            e);
+        request.future.completeExceptionally(e);
+      }
+      lastPath = request.filePath;
+      lastOffset = request.offset + request.length;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
@@ -34,6 +35,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.exception.AlreadyClosedException;
+import org.apache.celeborn.common.meta.ChunkCache;
 import org.apache.celeborn.common.meta.DiskStatus;
 import org.apache.celeborn.common.meta.FileInfo;
 import org.apache.celeborn.common.metrics.source.AbstractSource;
@@ -81,6 +83,12 @@ public final class FileWriter implements DeviceObserver {
   private Runnable destroyHook;
   private boolean deleted = false;
   private RoaringBitmap mapIdBitMap = null;
+  private MapIndexBuilder mapIndexBuilder = null;
+  private final boolean cacheChunks;
+  // copies of the flushed bytes of the current chunk, null until the first copy and once the
+  // chunk cache does not admit the chunk
+  private CompositeByteBuf chunkCacheBuffer = null;
+  private boolean chunkCacheSkipped = false;
 
   @Override
   public void notifyError(String mountPoint, DiskStatus diskStatus) {
@@ -126,6 +134,10 @@ public final class FileWriter implements DeviceObserver {
     if (rangeReadFilter) {
       this.mapIdBitMap = new RoaringBitmap();
     }
+    if (channel != null && conf.partitionSorterIndexOnWriteEnabled()) {
+      this.mapIndexBuilder = new MapIndexBuilder();
+    }
+    this.cacheChunks = channel != null && ChunkCache.instance() != null;
     takeBuffer();
   }
 
@@ -149,6 +161,9 @@ public final class FileWriter implements DeviceObserver {
     int numBytes = flushBuffer.readableBytes();
     notifier.checkException();
     notifier.numPendingFlushes.incrementAndGet();
+    if (cacheChunks && numBytes > 0) {
+      copyForChunkCache(numBytes);
+    }
     FlushTask task = null;
     if (channel != null) {
       task = new LocalFlushTask(flushBuffer, channel, notifier);
@@ -165,6 +180,57 @@ public final class FileWriter implements DeviceObserver {
     if (bytesFlushed >= nextBoundary || forceSet) {
       fileInfo.addChunkOffset(bytesFlushed);
       nextBoundary = bytesFlushed + shuffleChunkSize;
+      cacheChunk();
+    }
+  }
+
+  /**
+   * Copies the flushed bytes before the flush buffer is handed over, the flusher recycles it after
+   * writing. Only chunks the cache admits are copied, the copies count as disk buffer until the
+   * chunk is cached.
+   */
+  private void copyForChunkCache(int numBytes) {
+    if (chunkCacheSkipped) {
+      return;
+    }
+    long chunkSize = bytesFlushed + numBytes - fileInfo.getLastChunkOffset();
+    if (!ChunkCache.instance().admits(fileInfo.getFilePath(), chunkSize)) {
+      // the chunk would not be kept, skip the rest of it
+      releaseChunkCacheBuffer();
+      chunkCacheSkipped = true;
+      return;
+    }
+    if (chunkCacheBuffer == null) {
+      chunkCacheBuffer = PooledByteBufAllocator.DEFAULT.compositeDirectBuffer(Integer.MAX_VALUE);
+    }
+    ByteBuf copy = PooledByteBufAllocator.DEFAULT.directBuffer(numBytes);
+    copy.writeBytes(flushBuffer, flushBuffer.readerIndex(), numBytes);
+    chunkCacheBuffer.addComponent(true, copy);
+    MemoryTracker.instance().incrementDiskBuffer(numBytes);
+  }
+
+  private void cacheChunk() {
+    if (chunkCacheBuffer != null) {
+      int chunkIndex = fileInfo.numChunks() - 1;
+      long chunkOffset = fileInfo.getChunkOffsets().get(chunkIndex);
+      int numBytes = chunkCacheBuffer.readableBytes();
+      if (numBytes == bytesFlushed - chunkOffset) {
+        ChunkCache.instance()
+            .put(fileInfo.getFilePath(), chunkIndex, chunkOffset, chunkCacheBuffer);
+        chunkCacheBuffer = null;
+        MemoryTracker.instance().releaseDiskBuffer(numBytes);
+      } else {
+        releaseChunkCacheBuffer();
+      }
+    }
+    chunkCacheSkipped = false;
+  }
+
+  private synchronized void releaseChunkCacheBuffer() {
+    if (chunkCacheBuffer != null) {
+      MemoryTracker.instance().releaseDiskBuffer(chunkCacheBuffer.readableBytes());
+      chunkCacheBuffer.release();
+      chunkCacheBuffer = null;
     }
   }
 
@@ -197,7 +263,7 @@ public final class FileWriter implements DeviceObserver {
     }
 
     int mapId = 0;
-    if (rangeReadFilter) {
+    if (rangeReadFilter || mapIndexBuilder != null) {
       byte[] header = new byte[16];
       data.markReaderIndex();
       data.readBytes(header);
@@ -217,6 +283,12 @@ public final class FileWriter implements DeviceObserver {
         takeBuffer();
       }
 
+      if (mapIndexBuilder != null) {
+        // Flush tasks of a file are executed in order, so the batch lands right after the bytes
+        // that have been handed to the flusher plus those buffered.
+        mapIndexBuilder.addBlock(mapId, bytesFlushed + flushBuffer.readableBytes(), numBytes);
+      }
+
       data.retain();
       flushBuffer.addComponent(true, data);
 
@@ -262,8 +334,11 @@ public final class FileWriter implements DeviceObserver {
       }
 
       waitOnNoPending(notifier.numPendingFlushes);
+      // only a committed file is read by map range, so its map index is written here
+      writeMapIndex();
     } finally {
       returnBuffer();
+      releaseChunkCacheBuffer();
       try {
         if (channel != null) {
           channel.close();
@@ -294,11 +369,27 @@ public final class FileWriter implements DeviceObserver {
     return bytesFlushed;
   }
 
+  private void writeMapIndex() {
+    if (mapIndexBuilder == null || notifier.hasException()) {
+      return;
+    }
+    String mapIndexPath = fileInfo.getMapIndexPath();
+    try {
+      mapIndexBuilder.writeTo(mapIndexPath);
+    } catch (IOException e) {
+      // Without the map index, range reads of this file fall back to sorting.
+      logger.warn("Write map index {} failed.", mapIndexPath, e);
+      new File(mapIndexPath).delete();
+    }
+    mapIndexBuilder = null;
+  }
+
   public void destroy() {
     if (!closed) {
       closed = true;
       notifier.setException(new IOException("destroyed"));
       returnBuffer();
+      releaseChunkCacheBuffer();
       try {
         if (channel != null) {
           channel.close();
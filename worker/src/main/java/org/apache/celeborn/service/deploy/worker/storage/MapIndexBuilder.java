@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.service.deploy.worker.storage;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.celeborn.common.util.ShuffleBlockIndex;
+
+/**
+ * Records the blocks of each map appended to a partition file. The index is written in the same
+ * layout as the index of a sorted file, but its offsets point into the original file.
+ */
+final class MapIndexBuilder {
+  private int[] mapIds = new int[16];
+  private long[] offsets = new long[16];
+  private long[] lengths = new long[16];
+  private int numBlocks = 0;
+
+  /** Not thread safe, callers append batches in file order. */
+  void addBlock(int mapId, long offset, long length) {
+    if (numBlocks > 0) {
+      int last = numBlocks - 1;
+      if (mapIds[last] == mapId && offsets[last] + lengths[last] == offset) {
+        lengths[last] += length;
+        return;
+      }
+    }
+    if (numBlocks == mapIds.length) {
+      int capacity = numBlocks << 1;
+      mapIds = Arrays.copyOf(mapIds, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+    }
+    mapIds[numBlocks] = mapId;
+    offsets[numBlocks] = offset;
+    lengths[numBlocks] = length;
+    numBlocks++;
+  }
+
+  int numBlocks() {
+    return numBlocks;
+  }
+
+  void writeTo(String indexFilePath) throws IOException {
+    // Sort by (mapId, offset), block indices are appended in offset order.
+    long[] keys = new long[numBlocks];
+    for (int i = 0; i < numBlocks; i++) {
+      keys[i] = ((long) mapIds[i] << 32) | i;
+    }
+    Arrays.sort(keys);
+
+    int[] sortedMapIds = new int[numBlocks];
+    int[] firstBlocks = new int[numBlocks];
+    long[] sortedOffsets = new long[numBlocks];
+    long[] sortedLengths = new long[numBlocks];
+    int numMaps = 0;
+    for (int i = 0; i < numBlocks; i++) {
+      int mapId = (int) (keys[i] >> 32);
+      if (numMaps == 0 || sortedMapIds[numMaps - 1] != mapId) {
+        sortedMapIds[numMaps] = mapId;
+        firstBlocks[numMaps] = i;
+        numMaps++;
+      }
+      int block = (int) keys[i];
+      sortedOffsets[i] = offsets[block];
+      sortedLengths[i] = lengths[block];
+    }
+    ByteBuffer indexBuf =
+        ShuffleBlockIndex.serialize(
+            sortedMapIds, firstBlocks, numMaps, sortedOffsets, sortedLengths, numBlocks);
+
+    try (FileChannel indexChannel = new FileOutputStream(indexFilePath).getChannel()) {
+      while (indexBuf.hasRemaining()) {
+        indexChannel.write(indexBuf);
+      }
+    }
+  }
+}
@@ -25,20 +25,30 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -51,11 +61,16 @@ import sun.nio.ch.DirectBuffer;
 
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.identity.UserIdentifier;
+import org.apache.celeborn.common.meta.ChunkCache;
+import org.apache.celeborn.common.meta.DeviceInfo;
 import org.apache.celeborn.common.meta.FileInfo;
+import org.apache.celeborn.common.meta.FileSegments;
 import org.apache.celeborn.common.metrics.source.AbstractSource;
 import org.apache.celeborn.common.network.server.MemoryTracker;
+import org.apache.celeborn.common.protocol.StorageInfo;
 import org.apache.celeborn.common.unsafe.Platform;
 import org.apache.celeborn.common.util.PbSerDeUtils;
+import org.apache.celeborn.common.util.ShuffleBlockIndex;
 import org.apache.celeborn.common.util.ShuffleBlockInfoUtils;
 import org.apache.celeborn.common.util.ShuffleBlockInfoUtils.ShuffleBlockInfo;
 import org.apache.celeborn.common.util.ThreadUtils;
@@ -70,21 +85,37 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
   private static final LevelDBProvider.StoreVersion CURRENT_VERSION =
       new LevelDBProvider.StoreVersion(1, 0);
   private static final String RECOVERY_SORTED_FILES_FILE_NAME = "sortedFiles.ldb";
+  // More waiting readers first, then smaller files, then submission order.
+  private static final Comparator<FileSorter> SORT_TASK_PRIORITY =
+      Comparator.<FileSorter>comparingInt(task -> -task.waiters.get())
+          .thenComparingLong(task -> task.originFileLen)
+          .thenComparingLong(task -> task.sequence);
   private File recoverFile;
   private volatile boolean shutdown = false;
   private final ConcurrentHashMap<String, Set<String>> sortedShuffleFiles =
       new ConcurrentHashMap<>();
   private final ConcurrentHashMap<String, Set<String>> sortingShuffleFiles =
       new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, Map<String, Map<Integer, List<ShuffleBlockInfo>>>>
-      cachedIndexMaps = new ConcurrentHashMap<>();
-  private final LinkedBlockingQueue<FileSorter> shuffleSortTaskDeque = new LinkedBlockingQueue<>();
+  // fileId -> index, weighted by the bytes of the index
+  private final Cache<String, ShuffleBlockIndex> cachedIndexes;
+  // Guarded by itself, the scheduler thread waits on it for a runnable sort task.
+  private final List<FileSorter> pendingSortTasks = new ArrayList<>();
+  // Sort tasks that have been scheduled, guarded by pendingSortTasks.
+  private final Map<String, Integer> activeSortsPerDisk = new HashMap<>();
+  private long sortTaskSequence = 0;
+  // Threads waiting on pendingSortTasks, only changed under its lock. Memory releases wake them
+  // only if there are any.
+  private volatile int sortMemoryWaiters = 0;
+  private final ConcurrentHashMap<String, FileSorter> fileSorters = new ConcurrentHashMap<>();
 
   private final AtomicInteger sortedFileCount = new AtomicInteger();
   private final AtomicLong sortedFilesSize = new AtomicLong();
   protected final long sortTimeout;
   protected final long shuffleChunkSize;
   protected final long reservedMemoryPerPartition;
+  private final int maxConcurrentSortsPerDisk;
+  private final long sortMemoryRecheckInterval;
+  private final Set<String> mountPoints;
   private boolean gracefulShutdown;
   private long partitionSorterShutdownAwaitTime;
   private DB sortedFilesDb;
@@ -97,13 +128,38 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
           "worker-file-sorter-execute",
           Math.max(Runtime.getRuntime().availableProcessors(), 8),
           120);
+  // Opens and parses indexes for openStreamAsync, so that callers never do disk I/O.
+  private final ExecutorService indexResolveExecutors =
+      ThreadUtils.newDaemonCachedThreadPool(
+          "worker-file-sorter-resolve", Runtime.getRuntime().availableProcessors(), 60);
   private final Thread fileSorterSchedulerThread;
+  private final ScheduledExecutorService sortTimeoutScheduler =
+      ThreadUtils.newDaemonSingleThreadScheduledExecutor("worker-file-sorter-timeout");
 
   public PartitionFilesSorter(
       MemoryTracker memoryTracker, CelebornConf conf, AbstractSource source) {
+    this(memoryTracker, conf, source, Collections.emptySet());
+  }
+
+  /** @param mountPoints mount points of the worker disks, sorts are capped per mount point. */
+  public PartitionFilesSorter(
+      MemoryTracker memoryTracker,
+      CelebornConf conf,
+      AbstractSource source,
+      Set<String> mountPoints) {
     this.sortTimeout = conf.partitionSorterSortPartitionTimeout();
     this.shuffleChunkSize = conf.shuffleChunkSize();
     this.reservedMemoryPerPartition = conf.partitionSorterReservedMemoryPerPartition();
+    this.maxConcurrentSortsPerDisk = conf.partitionSorterMaxConcurrentSortsPerDisk();
+    this.sortMemoryRecheckInterval = conf.partitionSorterSortMemoryRecheckInterval();
+    this.mountPoints = mountPoints;
+    this.cachedIndexes =
+        CacheBuilder.newBuilder()
+            .maximumWeight(conf.partitionSorterIndexCacheMaxWeight())
+            .weigher(
+                (Weigher<String, ShuffleBlockIndex>)
+                    (fileId, index) -> (int) Math.min(index.sizeInBytes(), Integer.MAX_VALUE))
+            .build();
     this.partitionSorterShutdownAwaitTime = conf.partitionSorterCloseAwaitTimeMs();
     this.source = source;
     this.memoryTracker = memoryTracker;
@@ -124,16 +180,14 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       this.sortedFilesDb = null;
     }
 
+    memoryTracker.registerSortMemoryListener(this::wakeUpSortScheduler);
     fileSorterSchedulerThread =
         new Thread(
             () -> {
               try {
                 while (!shutdown) {
-                  FileSorter task = shuffleSortTaskDeque.take();
-                  memoryTracker.reserveSortMemory(reservedMemoryPerPartition);
-                  while (!memoryTracker.sortMemoryReady()) {
-                    Thread.sleep(20);
-                  }
+                  FileSorter task = takeSortTask();
+                  source.stopTimer(WorkerSource.SortWaitTime(), task.fileId);
                   fileSorterExecutors.submit(
                       () -> {
                         try {
@@ -141,6 +195,8 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
                         } catch (InterruptedException e) {
                           logger.warn(
                               "File sorter thread was interrupted when expanding padding buffer.");
+                        } finally {
+                          finishSortTask(task);
                         }
                       });
                 }
@@ -151,8 +207,105 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
     fileSorterSchedulerThread.start();
   }
 
+  private void submitSortTask(FileSorter task) {
+    source.startTimer(WorkerSource.SortWaitTime(), task.fileId);
+    synchronized (pendingSortTasks) {
+      task.sequence = sortTaskSequence++;
+      pendingSortTasks.add(task);
+      pendingSortTasks.notifyAll();
+    }
+  }
+
+  /**
+   * Blocks until sort memory is available and a pending task whose disk is below {@link
+   * #maxConcurrentSortsPerDisk} exists, then reserves memory for it.
+   */
+  private FileSorter takeSortTask() throws InterruptedException {
+    synchronized (pendingSortTasks) {
+      FileSorter task;
+      sortMemoryWaiters++;
+      try {
+        while ((task = nextSortTask()) == null) {
+          pendingSortTasks.wait(sortMemoryRecheckInterval);
+        }
+      } finally {
+        sortMemoryWaiters--;
+      }
+      pendingSortTasks.remove(task);
+      activeSortsPerDisk.merge(task.mountPoint, 1, Integer::sum);
+      memoryTracker.reserveSortMemory(reservedMemoryPerPartition);
+      return task;
+    }
+  }
+
+  /**
+   * Picks the runnable task with the most readers waiting on it, then the smallest file, so that
+   * many small files are not stuck behind one large file.
+   */
+  private FileSorter nextSortTask() {
+    if (pendingSortTasks.isEmpty() || !memoryTracker.sortMemoryReady()) {
+      return null;
+    }
+    FileSorter next = null;
+    for (FileSorter task : pendingSortTasks) {
+      if (activeSortsPerDisk.getOrDefault(task.mountPoint, 0) >= maxConcurrentSortsPerDisk) {
+        continue;
+      }
+      if (next == null || SORT_TASK_PRIORITY.compare(task, next) < 0) {
+        next = task;
+      }
+    }
+    return next;
+  }
+
+  private void finishSortTask(FileSorter task) {
+    synchronized (pendingSortTasks) {
+      activeSortsPerDisk.computeIfPresent(task.mountPoint, (k, v) -> v > 1 ? v - 1 : null);
+      pendingSortTasks.notifyAll();
+    }
+  }
+
+  /**
+   * Called whenever memory is released. A waiter registers itself before it checks sort memory, so
+   * a release after that check always wakes it. Memory freed without a notification is seen after
+   * {@link #sortMemoryRecheckInterval} at the latest.
+   */
+  private void wakeUpSortScheduler() {
+    if (sortMemoryWaiters == 0) {
+      return;
+    }
+    synchronized (pendingSortTasks) {
+      pendingSortTasks.notifyAll();
+    }
+  }
+
+  private void awaitSortMemory() throws InterruptedException {
+    synchronized (pendingSortTasks) {
+      sortMemoryWaiters++;
+      try {
+        while (!memoryTracker.sortMemoryReady()) {
+          pendingSortTasks.wait(sortMemoryRecheckInterval);
+        }
+      } finally {
+        sortMemoryWaiters--;
+      }
+    }
+  }
+
   public int getSortingCount() {
-    return shuffleSortTaskDeque.size();
+    return fileSorters.size();
+  }
+
+  public int getPendingSortCount() {
+    synchronized (pendingSortTasks) {
+      return pendingSortTasks.size();
+    }
+  }
+
+  public int getActiveSortCount(String mountPoint) {
+    synchronized (pendingSortTasks) {
+      return activeSortsPerDisk.getOrDefault(mountPoint, 0);
+    }
   }
 
   public int getSortedCount() {
@@ -166,87 +319,145 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
   public FileInfo openStream(
       String shuffleKey, String fileName, FileInfo fileInfo, int startMapIndex, int endMapIndex)
       throws IOException {
-    if (endMapIndex == Integer.MAX_VALUE) {
-      return fileInfo;
-    } else {
-      String fileId = shuffleKey + "-" + fileName;
-      UserIdentifier userIdentifier = fileInfo.getUserIdentifier();
-
-      Set<String> sorted =
-          sortedShuffleFiles.computeIfAbsent(shuffleKey, v -> ConcurrentHashMap.newKeySet());
-      Set<String> sorting =
-          sortingShuffleFiles.computeIfAbsent(shuffleKey, v -> ConcurrentHashMap.newKeySet());
+    try {
+      return openStreamAsync(shuffleKey, fileName, fileInfo, startMapIndex, endMapIndex).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for sorting " + fileInfo.getFilePath(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
 
-      String sortedFilePath = Utils.getSortedFilePath(fileInfo.getFilePath());
-      String indexFilePath = Utils.getIndexFilePath(fileInfo.getFilePath());
+  /**
+   * Never blocks on sorting or index I/O: the index is resolved on a pool of this sorter, after
+   * the sorter thread has produced the sorted file if the file has to be sorted first. The
+   * returned future fails on sorting failure or after {@link #sortTimeout}.
+   */
+  public CompletableFuture<FileInfo> openStreamAsync(
+      String shuffleKey, String fileName, FileInfo fileInfo, int startMapIndex, int endMapIndex) {
+    if (endMapIndex == Integer.MAX_VALUE) {
+      return CompletableFuture.completedFuture(fileInfo);
+    }
+    String fileId = shuffleKey + "-" + fileName;
+    UserIdentifier userIdentifier = fileInfo.getUserIdentifier();
+
+    Set<String> sorted =
+        sortedShuffleFiles.computeIfAbsent(shuffleKey, v -> ConcurrentHashMap.newKeySet());
+    Set<String> sorting =
+        sortingShuffleFiles.computeIfAbsent(shuffleKey, v -> ConcurrentHashMap.newKeySet());
+
+    String sortedFilePath = Utils.getSortedFilePath(fileInfo.getFilePath());
+    String indexFilePath = Utils.getIndexFilePath(fileInfo.getFilePath());
+    Callable<FileInfo> resolveSorted =
+        () ->
+            resolve(
+                shuffleKey,
+                fileId,
+                userIdentifier,
+                sortedFilePath,
+                indexFilePath,
+                startMapIndex,
+                endMapIndex);
+
+    CompletableFuture<FileInfo> result = new CompletableFuture<>();
+    FileSorter fileSorter;
+    try {
+      if (!fileInfo.isHdfs()
+          && !sorted.contains(fileId)
+          && new File(fileInfo.getMapIndexPath()).exists()) {
+        resolveAsync(
+            result,
+            () ->
+                resolveUnsorted(
+                    shuffleKey, fileId, userIdentifier, fileInfo, startMapIndex, endMapIndex));
+        return result;
+      }
 
       synchronized (sorting) {
         if (sorted.contains(fileId)) {
-          return resolve(
-              shuffleKey,
-              fileId,
-              userIdentifier,
-              sortedFilePath,
-              indexFilePath,
-              startMapIndex,
-              endMapIndex);
+          resolveAsync(result, resolveSorted);
+          return result;
         }
-        if (!sorting.contains(fileId)) {
+        fileSorter = fileSorters.get(fileId);
+        if (fileSorter == null) {
           try {
-            FileSorter fileSorter = new FileSorter(fileInfo, fileId, shuffleKey);
-            sorting.add(fileId);
-            shuffleSortTaskDeque.put(fileSorter);
-          } catch (InterruptedException e) {
-            logger.info("Sorter scheduler thread is interrupted means worker is shutting down.");
-            throw new IOException(
-                "Sort scheduler thread is interrupted means worker is shutting down.", e);
+            fileSorter = new FileSorter(fileInfo, fileId, shuffleKey);
           } catch (IOException e) {
             logger.error("File sorter access hdfs failed.", e);
             throw new IOException("File sorter access hdfs failed.", e);
           }
+          fileSorters.put(fileId, fileSorter);
+          sorting.add(fileId);
+          fileSorter.waiters.incrementAndGet();
+          submitSortTask(fileSorter);
+        } else {
+          fileSorter.waiters.incrementAndGet();
         }
       }
+    } catch (IOException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
 
-      long sortStartTime = System.currentTimeMillis();
-      while (!sorted.contains(fileId)) {
-        if (sorting.contains(fileId)) {
-          try {
-            Thread.sleep(50);
-            if (System.currentTimeMillis() - sortStartTime > sortTimeout) {
-              logger.error("Sorting file {} timeout after {}ms", fileId, sortTimeout);
-              throw new IOException(
-                  "Sort file " + fileInfo.getFilePath() + " timeout after " + sortTimeout);
-            }
-          } catch (InterruptedException e) {
-            logger.error(
-                "Sorter scheduler thread is interrupted means worker is shutting down.", e);
-            throw new IOException(
-                "Sorter scheduler thread is interrupted means worker is shutting down.", e);
+    // the reader stops counting as a waiter once it got the file, failed or timed out
+    FileSorter waitedSorter = fileSorter;
+    result.whenComplete((v, throwable) -> waitedSorter.waiters.decrementAndGet());
+    ScheduledFuture<?> timeout =
+        sortTimeoutScheduler.schedule(
+            () -> {
+              if (result.completeExceptionally(
+                  new IOException(
+                      "Sort file " + fileInfo.getFilePath() + " timeout after " + sortTimeout))) {
+                logger.error("Sorting file {} timeout after {}ms", fileId, sortTimeout);
+              }
+            },
+            sortTimeout,
+            TimeUnit.MILLISECONDS);
+    fileSorter.sortFuture.whenComplete(
+        (v, throwable) -> {
+          timeout.cancel(false);
+          if (throwable != null) {
+            result.completeExceptionally(throwable);
+          } else if (!result.isDone()) {
+            resolveAsync(result, resolveSorted);
           }
-        } else {
-          logger.debug(
-              "Sorting shuffle file for {} {} failed.", shuffleKey, fileInfo.getFilePath());
-          throw new IOException(
-              "Sorting shuffle file for " + shuffleKey + " " + fileInfo.getFilePath() + " failed.");
-        }
-      }
+        });
+    return result;
+  }
 
-      return resolve(
-          shuffleKey,
-          fileId,
-          userIdentifier,
-          sortedFilePath,
-          indexFilePath,
-          startMapIndex,
-          endMapIndex);
+  private void resolveAsync(CompletableFuture<FileInfo> result, Callable<FileInfo> resolver) {
+    try {
+      indexResolveExecutors.submit(
+          () -> {
+            try {
+              result.complete(resolver.call());
+            } catch (Exception e) {
+              result.completeExceptionally(e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(
+          new IOException("Partition sorter is closed means worker is shutting down.", e));
     }
   }
 
+  @VisibleForTesting
+  public int getSortWaiters(String shuffleKey, String fileName) {
+    FileSorter fileSorter = fileSorters.get(shuffleKey + "-" + fileName);
+    return fileSorter == null ? 0 : fileSorter.waiters.get();
+  }
+
   public void cleanup(HashSet<String> expiredShuffleKeys) {
     for (String expiredShuffleKey : expiredShuffleKeys) {
       sortingShuffleFiles.remove(expiredShuffleKey);
       deleteSortedShuffleFiles(expiredShuffleKey);
-      cachedIndexMaps.remove(expiredShuffleKey);
+      String fileIdPrefix = expiredShuffleKey + "-";
+      cachedIndexes.asMap().keySet().removeIf(fileId -> fileId.startsWith(fileIdPrefix));
     }
   }
 
@@ -271,7 +482,14 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       fileSorterSchedulerThread.interrupt();
       fileSorterExecutors.shutdownNow();
     }
-    cachedIndexMaps.clear();
+    sortTimeoutScheduler.shutdownNow();
+    indexResolveExecutors.shutdownNow();
+    for (FileSorter fileSorter : fileSorters.values()) {
+      fileSorter.sortFuture.completeExceptionally(
+          new IOException("Partition sorter is closed means worker is shutting down."));
+    }
+    fileSorters.clear();
+    cachedIndexes.invalidateAll();
     if (sortedFilesDb != null) {
       try {
         updateSortedShuffleFilesInDB();
@@ -353,31 +571,13 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       indexFileChannel = new FileOutputStream(indexFilePath).getChannel();
     }
 
-    int indexSize = 0;
-    for (Map.Entry<Integer, List<ShuffleBlockInfo>> entry : indexMap.entrySet()) {
-      indexSize += 8;
-      indexSize += entry.getValue().size() * 16;
-    }
-
-    ByteBuffer indexBuf = ByteBuffer.allocateDirect(indexSize);
-    for (Map.Entry<Integer, List<ShuffleBlockInfo>> entry : indexMap.entrySet()) {
-      int mapId = entry.getKey();
-      List<ShuffleBlockInfo> list = entry.getValue();
-      indexBuf.putInt(mapId);
-      indexBuf.putInt(list.size());
-      list.forEach(
-          info -> {
-            indexBuf.putLong(info.offset);
-            indexBuf.putLong(info.length);
-          });
-    }
-
-    indexBuf.flip();
+    // HDFS indexes are read by the clients themselves, older ones only know the legacy layout
+    ByteBuffer indexBuf =
+        isHdfs
+            ? ShuffleBlockInfoUtils.serializeShuffleBlockInfos(indexMap)
+            : ShuffleBlockIndex.serialize(indexMap);
     if (isHdfs) {
-      // Direct byte buffer has no array, so can not invoke indexBuf.array() here.
-      byte[] tmpBuf = new byte[indexSize];
-      indexBuf.get(tmpBuf);
-      hdfsIndexOutput.write(tmpBuf);
+      hdfsIndexOutput.write(indexBuf.array(), indexBuf.position(), indexBuf.remaining());
       hdfsIndexOutput.close();
     } else {
       while (indexBuf.hasRemaining()) {
@@ -385,7 +585,6 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       }
       indexFileChannel.close();
     }
-    ((DirectBuffer) indexBuf).cleaner().clean();
   }
 
   protected void readStreamFully(FSDataInputStream stream, ByteBuffer buffer, String path)
@@ -458,50 +657,63 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       int startMapIndex,
       int endMapIndex)
       throws IOException {
-    Map<Integer, List<ShuffleBlockInfo>> indexMap;
-    if (cachedIndexMaps.containsKey(shuffleKey)
-        && cachedIndexMaps.get(shuffleKey).containsKey(fileId)) {
-      indexMap = cachedIndexMaps.get(shuffleKey).get(fileId);
-    } else {
-      FileInputStream indexStream = null;
-      FSDataInputStream hdfsIndexStream = null;
-      boolean isHdfs = Utils.isHdfsPath(indexFilePath);
-      int indexSize = 0;
-      try {
-        if (isHdfs) {
-          hdfsIndexStream = StorageManager.hdfsFs().open(new Path(indexFilePath));
-          indexSize = (int) StorageManager.hdfsFs().getFileStatus(new Path(indexFilePath)).getLen();
-        } else {
-          indexStream = new FileInputStream(indexFilePath);
-          File indexFile = new File(indexFilePath);
-          indexSize = (int) indexFile.length();
-        }
-        ByteBuffer indexBuf = ByteBuffer.allocate(indexSize);
-        if (isHdfs) {
-          readStreamFully(hdfsIndexStream, indexBuf, indexFilePath);
-        } else {
-          readChannelFully(indexStream.getChannel(), indexBuf, indexFilePath);
-        }
-        indexBuf.rewind();
-        indexMap = ShuffleBlockInfoUtils.parseShuffleBlockInfosFromByteBuffer(indexBuf);
-        Map<String, Map<Integer, List<ShuffleBlockInfo>>> cacheMap =
-            cachedIndexMaps.computeIfAbsent(shuffleKey, v -> new ConcurrentHashMap<>());
-        cacheMap.put(fileId, indexMap);
-      } catch (Exception e) {
-        logger.error("Read sorted shuffle file index " + indexFilePath + " error, detail: ", e);
-        throw new IOException("Read sorted shuffle file index failed.", e);
-      } finally {
-        IOUtils.closeQuietly(indexStream, null);
-        IOUtils.closeQuietly(hdfsIndexStream, null);
-      }
-    }
+    ShuffleBlockIndex index = readIndex(fileId, indexFilePath);
     return new FileInfo(
         sortedFilePath,
-        ShuffleBlockInfoUtils.getChunkOffsetsFromShuffleBlockInfos(
-            startMapIndex, endMapIndex, shuffleChunkSize, indexMap),
+        index.getChunkOffsets(startMapIndex, endMapIndex, shuffleChunkSize),
         userIdentifier);
   }
 
+  /**
+   * Resolves a map range of a file which has not been sorted, using the index built while writing
+   * it. The returned stream is the concatenation of the blocks of those maps in file order.
+   */
+  private FileInfo resolveUnsorted(
+      String shuffleKey,
+      String fileId,
+      UserIdentifier userIdentifier,
+      FileInfo fileInfo,
+      int startMapIndex,
+      int endMapIndex)
+      throws IOException {
+    ShuffleBlockIndex index = readIndex(fileId, fileInfo.getMapIndexPath());
+    List<ShuffleBlockInfo> blocks = index.getBlocksInFileOrder(startMapIndex, endMapIndex);
+    return new FileInfo(
+        fileInfo.getFilePath(),
+        ShuffleBlockInfoUtils.getLogicalChunkOffsets(blocks, shuffleChunkSize),
+        new FileSegments(blocks),
+        userIdentifier);
+  }
+
+  /** Local indexes are memory mapped, HDFS indexes are read into heap. */
+  private ShuffleBlockIndex readIndex(String fileId, String indexFilePath) throws IOException {
+    ShuffleBlockIndex index = cachedIndexes.getIfPresent(fileId);
+    if (index != null) {
+      return index;
+    }
+    FSDataInputStream hdfsIndexStream = null;
+    try {
+      if (Utils.isHdfsPath(indexFilePath)) {
+        hdfsIndexStream = StorageManager.hdfsFs().open(new Path(indexFilePath));
+        int indexSize =
+            (int) StorageManager.hdfsFs().getFileStatus(new Path(indexFilePath)).getLen();
+        ByteBuffer indexBuf = ByteBuffer.allocate(indexSize);
+        readStreamFully(hdfsIndexStream, indexBuf, indexFilePath);
+        indexBuf.flip();
+        index = ShuffleBlockIndex.parse(indexBuf);
+      } else {
+        index = ShuffleBlockIndex.mmap(new File(indexFilePath));
+      }
+      cachedIndexes.put(fileId, index);
+    } catch (Exception e) {
+      logger.error("Read sorted shuffle file index " + indexFilePath + " error, detail: ", e);
+      throw new IOException("Read sorted shuffle file index failed.", e);
+    } finally {
+      IOUtils.closeQuietly(hdfsIndexStream, null);
+    }
+    return index;
+  }
+
   class FileSorter {
     private final String originFilePath;
     private final String sortedFilePath;
@@ -510,6 +722,11 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
     private final String fileId;
     private final String shuffleKey;
     private final boolean isHdfs;
+    private final String mountPoint;
+    private final CompletableFuture<Void> sortFuture = new CompletableFuture<>();
+    // readers waiting for this file, a pending sort with more waiters is scheduled first
+    private final AtomicInteger waiters = new AtomicInteger();
+    private long sequence;
 
     private FSDataInputStream hdfsOriginInput = null;
     private FSDataOutputStream hdfsSortedOutput = null;
@@ -524,6 +741,10 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       this.fileId = fileId;
       this.shuffleKey = shuffleKey;
       this.indexFilePath = Utils.getIndexFilePath(originFilePath);
+      this.mountPoint =
+          isHdfs
+              ? StorageInfo.Type.HDFS.name()
+              : DeviceInfo.getMountPoint(originFilePath, mountPoints);
       if (!isHdfs) {
         File sortedFile = new File(this.sortedFilePath);
         if (sortedFile.exists()) {
@@ -546,6 +767,9 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
     public void sort() throws InterruptedException {
       source.startTimer(WorkerSource.SortTime(), fileId);
 
+      // Reserved by the scheduler before this task was submitted, returned on every path.
+      int reservedMemory = (int) reservedMemoryPerPartition;
+      ByteBuffer paddingBuf = null;
       try {
         initializeFiles();
 
@@ -553,9 +777,8 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
         Map<Integer, List<ShuffleBlockInfo>> sortedBlockInfoMap = new HashMap<>();
 
         int batchHeaderLen = 16;
-        int reserveMemory = (int) reservedMemoryPerPartition;
         ByteBuffer headerBuf = ByteBuffer.allocate(batchHeaderLen);
-        ByteBuffer paddingBuf = ByteBuffer.allocateDirect(reserveMemory);
+        paddingBuf = ByteBuffer.allocateDirect(reservedMemory);
 
         long index = 0;
         while (index != originFileLen) {
@@ -576,10 +799,12 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
 
           index += batchHeaderLen + compressedSize;
           paddingBuf.clear();
-          if (compressedSize > reserveMemory) {
+          if (compressedSize > reservedMemory) {
             ((DirectBuffer) paddingBuf).cleaner().clean();
-            paddingBuf = expandBufferAndUpdateMemoryTracker(reserveMemory, compressedSize);
-            reserveMemory = compressedSize;
+            paddingBuf = null;
+            int oldReservedMemory = reservedMemory;
+            reservedMemory = compressedSize;
+            paddingBuf = expandBufferAndUpdateMemoryTracker(oldReservedMemory, compressedSize);
           }
           paddingBuf.limit(compressedSize);
           // TODO: compare skip or read performance differential
@@ -605,7 +830,9 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
         }
 
         ((DirectBuffer) paddingBuf).cleaner().clean();
-        memoryTracker.releaseSortMemory(reserveMemory);
+        paddingBuf = null;
+        memoryTracker.releaseSortMemory(reservedMemory);
+        reservedMemory = 0;
 
         writeIndex(sortedBlockInfoMap, indexFilePath, isHdfs);
         updateSortedShuffleFiles(shuffleKey, fileId, originFileLen);
@@ -616,9 +843,28 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
             "Sorting shuffle file for " + fileId + " " + originFilePath + " failed, detail: ", e);
       } finally {
         closeFiles();
+        if (paddingBuf != null) {
+          ((DirectBuffer) paddingBuf).cleaner().clean();
+        }
+        if (reservedMemory > 0) {
+          memoryTracker.releaseSortMemory(reservedMemory);
+        }
         Set<String> sorting = sortingShuffleFiles.get(shuffleKey);
-        synchronized (sorting) {
-          sorting.remove(fileId);
+        if (sorting != null) {
+          synchronized (sorting) {
+            sorting.remove(fileId);
+            fileSorters.remove(fileId);
+          }
+        } else {
+          fileSorters.remove(fileId);
+        }
+        Set<String> sorted = sortedShuffleFiles.get(shuffleKey);
+        if (sorted != null && sorted.contains(fileId)) {
+          sortFuture.complete(null);
+        } else {
+          sortFuture.completeExceptionally(
+              new IOException(
+                  "Sorting shuffle file for " + shuffleKey + " " + originFilePath + " failed."));
         }
       }
       source.stopTimer(WorkerSource.SortTime(), fileId);
@@ -667,15 +913,20 @@ public class PartitionFilesSorter extends ShuffleRecoverHelper {
       if (!deleteSuccess) {
         logger.warn("Clean origin file failed, origin file is : {}", originFilePath);
       }
+      if (!isHdfs) {
+        new File(Utils.getMapIndexFilePath(originFilePath)).delete();
+        ChunkCache chunkCache = ChunkCache.instance();
+        if (chunkCache != null) {
+          chunkCache.invalidate(originFilePath);
+        }
+      }
     }
 
     private ByteBuffer expandBufferAndUpdateMemoryTracker(int oldCapacity, int newCapacity)
         throws InterruptedException {
       memoryTracker.releaseSortMemory(oldCapacity);
       memoryTracker.reserveSortMemory(newCapacity);
-      while (!memoryTracker.sortMemoryReady()) {
-        Thread.sleep(20);
-      }
+      awaitSortMemory();
       return ByteBuffer.allocateDirect(newCapacity);
     }
   }
@@ -18,22 +18,28 @@
 package org.apache.celeborn.service.deploy.worker
 
 import java.io.{FileNotFoundException, IOException}
+import java.nio.ByteBuffer
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.{CompletableFuture, CompletionException}
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.function.{BiConsumer, Function => JFunction}
+
+import scala.collection.JavaConverters._
 
 import com.google.common.base.Throwables
+import io.netty.buffer.{ByteBuf, Unpooled}
 import io.netty.util.concurrent.{Future, GenericFutureListener}
 
 import org.apache.celeborn.common.exception.RssException
 import org.apache.celeborn.common.internal.Logging
-import org.apache.celeborn.common.meta.{FileInfo, FileManagedBuffers}
+import org.apache.celeborn.common.meta.{ChunkCache, ChunkReadCoalescer, FileInfo, FileManagedBuffers}
 import org.apache.celeborn.common.metrics.source.RPCSource
-import org.apache.celeborn.common.network.buffer.NioManagedBuffer
+import org.apache.celeborn.common.network.buffer.{CompositeFileSegmentManagedBuffer, FileSegmentManagedBuffer, ManagedBuffer, NettyManagedBuffer, NioManagedBuffer}
 import org.apache.celeborn.common.network.client.TransportClient
 import org.apache.celeborn.common.network.protocol._
 import org.apache.celeborn.common.network.server.{BaseMessageHandler, OneForOneStreamManager}
 import org.apache.celeborn.common.network.util.{NettyUtils, TransportConf}
-import org.apache.celeborn.service.deploy.worker.storage.{PartitionFilesSorter, StorageManager}
+import org.apache.celeborn.service.deploy.worker.storage.{FetchReadScheduler, PartitionFilesSorter, StorageManager}
 
 class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logging {
   var streamManager = new OneForOneStreamManager()
@@ -41,29 +47,38 @@ class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logg
   var rpcSource: RPCSource = _
   var storageManager: StorageManager = _
   var partitionsSorter: PartitionFilesSorter = _
+  var fetchReadScheduler: FetchReadScheduler = _
+  var chunkReadCoalescer: ChunkReadCoalescer = _
   var registered: AtomicBoolean = _
+  var shortCircuitEnabled: Boolean = _
 
   def init(worker: Worker): Unit = {
     this.workerSource = worker.workerSource
     this.rpcSource = worker.rpcSource
     this.storageManager = worker.storageManager
     this.partitionsSorter = worker.partitionsSorter
+    this.fetchReadScheduler = worker.fetchReadScheduler
+    this.chunkReadCoalescer = worker.chunkReadCoalescer
     this.registered = worker.registered
+    this.shortCircuitEnabled = worker.conf.workerFetchShortCircuitEnabled
   }
 
   def openStream(
       shuffleKey: String,
       fileName: String,
       startMapIndex: Int,
-      endMapIndex: Int): FileInfo = {
+      endMapIndex: Int): CompletableFuture[FileInfo] = {
     // find FileWriter responsible for the data
     val fileInfo = storageManager.getFileInfo(shuffleKey, fileName)
     if (fileInfo == null) {
       val errMsg = s"Could not find file $fileName for $shuffleKey."
       logWarning(errMsg)
-      throw new FileNotFoundException(errMsg)
+      val future = new CompletableFuture[FileInfo]()
+      future.completeExceptionally(new FileNotFoundException(errMsg))
+      future
+    } else {
+      partitionsSorter.openStreamAsync(shuffleKey, fileName, fileInfo, startMapIndex, endMapIndex)
     }
-    partitionsSorter.openStream(shuffleKey, fileName, fileInfo, startMapIndex, endMapIndex)
   }
 
   override def receive(client: TransportClient, msg: RequestMessage): Unit = {
@@ -71,6 +86,9 @@ class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logg
       case r: ChunkFetchRequest =>
         rpcSource.updateMessageMetrics(r, 0)
         handleChunkFetchRequest(client, r)
+      case r: ChunkRangeFetchRequest =>
+        rpcSource.updateMessageMetrics(r, 0)
+        handleChunkRangeFetchRequest(client, r)
       case r: RpcRequest =>
         handleOpenStream(client, r)
       case unknown: RequestMessage =>
@@ -80,52 +98,220 @@ class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logg
 
   def handleOpenStream(client: TransportClient, request: RpcRequest): Unit = {
     val msg = Message.decode(request.body().nioByteBuffer())
-    val openBlocks = msg.asInstanceOf[OpenStream]
+    request.body().release()
+    msg match {
+      case openFiles: OpenMultiFileStream =>
+        handleOpenMultiFileStream(client, request, openFiles)
+      case openLocal: OpenLocalStream =>
+        handleOpenLocalStream(client, request, openLocal)
+      case openBlocks: OpenStream =>
+        handleOpenStream(client, request, openBlocks)
+      case closeStream: CloseStream =>
+        streamManager.closeStream(closeStream.streamId, client.getChannel)
+        client.getChannel.writeAndFlush(new RpcResponse(
+          request.requestId,
+          new NioManagedBuffer(ByteBuffer.allocate(0))))
+    }
+  }
+
+  private def handleOpenStream(
+      client: TransportClient,
+      request: RpcRequest,
+      openBlocks: OpenStream): Unit = {
     val shuffleKey = new String(openBlocks.shuffleKey, StandardCharsets.UTF_8)
     val fileName = new String(openBlocks.fileName, StandardCharsets.UTF_8)
     val startMapIndex = openBlocks.startMapIndex
     val endMapIndex = openBlocks.endMapIndex
     // metrics start
     workerSource.startTimer(WorkerSource.OpenStreamTime, shuffleKey)
-    try {
-      val fileInfo = openStream(shuffleKey, fileName, startMapIndex, endMapIndex)
-      logDebug(s"Received chunk fetch request $shuffleKey $fileName " +
-        s"$startMapIndex $endMapIndex get file info $fileInfo")
-      try {
-        if (fileInfo.isHdfs) {
-          val streamHandle = new StreamHandle(0, 0)
-          client.getChannel.writeAndFlush(new RpcResponse(
-            request.requestId,
-            new NioManagedBuffer(streamHandle.toByteBuffer)))
-        } else {
-          val buffers = new FileManagedBuffers(fileInfo, conf)
-          val streamId = streamManager.registerStream(buffers, client.getChannel)
-          val streamHandle = new StreamHandle(streamId, fileInfo.numChunks())
-          if (fileInfo.numChunks() == 0) {
-            logDebug(s"StreamId $streamId fileName $fileName startMapIndex" +
-              s" $startMapIndex endMapIndex $endMapIndex is empty.")
+    // Sorting may be needed before the stream can be opened, the response is sent when the
+    // future completes so that the event loop is never blocked.
+    openStream(shuffleKey, fileName, startMapIndex, endMapIndex).whenComplete(
+      new BiConsumer[FileInfo, Throwable] {
+        override def accept(fileInfo: FileInfo, throwable: Throwable): Unit = {
+          try {
+            if (throwable != null) {
+              val cause = throwable match {
+                case e: CompletionException if e.getCause != null => e.getCause
+                case e => e
+              }
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(cause)))
+            } else {
+              replyOpenStream(
+                client,
+                request,
+                fileInfo,
+                shuffleKey,
+                fileName,
+                startMapIndex,
+                endMapIndex)
+            }
+          } catch {
+            case e: Exception =>
+              logError(s"Open stream for $shuffleKey $fileName failed.", e)
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(e)))
+          } finally {
+            // metrics end
+            workerSource.stopTimer(WorkerSource.OpenStreamTime, shuffleKey)
           }
-          client.getChannel.writeAndFlush(new RpcResponse(
-            request.requestId,
-            new NioManagedBuffer(streamHandle.toByteBuffer)))
         }
-      } catch {
-        case e: IOException =>
-          client.getChannel.writeAndFlush(new RpcFailure(
-            request.requestId,
-            Throwables.getStackTraceAsString(
-              new RssException("Chunk offsets meta exception", e))))
-      } finally {
-        // metrics end
-        workerSource.stopTimer(WorkerSource.OpenStreamTime, shuffleKey)
-        request.body().release()
+      })
+  }
+
+  private def handleOpenMultiFileStream(
+      client: TransportClient,
+      request: RpcRequest,
+      openFiles: OpenMultiFileStream): Unit = {
+    val shuffleKey = new String(openFiles.shuffleKey, StandardCharsets.UTF_8)
+    val fileNames = openFiles.fileNames
+    workerSource.startTimer(WorkerSource.OpenStreamTime, shuffleKey)
+    // The files are opened, and sorted if needed, concurrently. The stream is registered once
+    // all of them are ready.
+    val futures = fileNames.map(fileName =>
+      openStream(shuffleKey, fileName, openFiles.startMapIndex, openFiles.endMapIndex))
+    CompletableFuture.allOf(futures: _*).whenComplete(
+      new BiConsumer[Void, Throwable] {
+        override def accept(ignored: Void, throwable: Throwable): Unit = {
+          try {
+            if (throwable != null) {
+              val cause = throwable match {
+                case e: CompletionException if e.getCause != null => e.getCause
+                case e => e
+              }
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(cause)))
+            } else {
+              val fileInfos = futures.map(_.join())
+              if (fileInfos.exists(_.isHdfs)) {
+                throw new IOException(
+                  s"Files ${fileNames.mkString(",")} of $shuffleKey include HDFS files, " +
+                    "which can not be read as one stream.")
+              }
+              val buffers = new FileManagedBuffers(fileInfos.toList.asJava, conf)
+              val streamId = streamManager.registerStream(buffers, client.getChannel)
+              val streamHandle = new StreamHandle(
+                streamId,
+                buffers.numChunks(),
+                buffers.chunkLengths(0, buffers.numChunks()))
+              logDebug(s"StreamId $streamId of files ${fileNames.mkString(",")} has" +
+                s" ${buffers.numChunks()} chunks.")
+              client.getChannel.writeAndFlush(new RpcResponse(
+                request.requestId,
+                new NioManagedBuffer(streamHandle.toByteBuffer)))
+            }
+          } catch {
+            case e: Exception =>
+              logError(s"Open stream for $shuffleKey ${fileNames.mkString(",")} failed.", e)
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(e)))
+          } finally {
+            workerSource.stopTimer(WorkerSource.OpenStreamTime, shuffleKey)
+          }
+        }
+      })
+  }
+
+  private def handleOpenLocalStream(
+      client: TransportClient,
+      request: RpcRequest,
+      openLocal: OpenLocalStream): Unit = {
+    val shuffleKey = new String(openLocal.shuffleKey, StandardCharsets.UTF_8)
+    val fileNames = openLocal.fileNames
+    if (!shortCircuitEnabled) {
+      client.getChannel.writeAndFlush(new RpcFailure(
+        request.requestId,
+        "Short-circuit read is not enabled on this worker."))
+      return
+    }
+    workerSource.startTimer(WorkerSource.OpenStreamTime, shuffleKey)
+    val futures = fileNames.map(fileName =>
+      openStream(shuffleKey, fileName, openLocal.startMapIndex, openLocal.endMapIndex))
+    CompletableFuture.allOf(futures: _*).whenComplete(
+      new BiConsumer[Void, Throwable] {
+        override def accept(ignored: Void, throwable: Throwable): Unit = {
+          try {
+            if (throwable != null) {
+              val cause = throwable match {
+                case e: CompletionException if e.getCause != null => e.getCause
+                case e => e
+              }
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(cause)))
+            } else {
+              val fileInfos = futures.map(_.join())
+              if (fileInfos.exists(_.isHdfs)) {
+                throw new IOException(
+                  s"Files ${fileNames.mkString(",")} of $shuffleKey include HDFS files, " +
+                    "which can not be read locally.")
+              }
+              val segments = fileInfos.map(_.getSegments)
+              val handle = new LocalStreamHandle(
+                fileInfos.map(_.getFilePath),
+                fileInfos.map(_.getChunkOffsets.asScala.map(_.longValue()).toArray),
+                segments.map(s => if (s == null) null else s.getPositions),
+                segments.map(s => if (s == null) null else s.getFileOffsets))
+              logDebug(s"Files ${fileNames.mkString(",")} of $shuffleKey are read locally.")
+              client.getChannel.writeAndFlush(new RpcResponse(
+                request.requestId,
+                new NioManagedBuffer(handle.toByteBuffer)))
+            }
+          } catch {
+            case e: Exception =>
+              logError(s"Open local stream for $shuffleKey ${fileNames.mkString(",")} failed.", e)
+              client.getChannel.writeAndFlush(new RpcFailure(
+                request.requestId,
+                Throwables.getStackTraceAsString(e)))
+          } finally {
+            workerSource.stopTimer(WorkerSource.OpenStreamTime, shuffleKey)
+          }
+        }
+      })
+  }
+
+  private def replyOpenStream(
+      client: TransportClient,
+      request: RpcRequest,
+      fileInfo: FileInfo,
+      shuffleKey: String,
+      fileName: String,
+      startMapIndex: Int,
+      endMapIndex: Int): Unit = {
+    logDebug(s"Received chunk fetch request $shuffleKey $fileName " +
+      s"$startMapIndex $endMapIndex get file info $fileInfo")
+    try {
+      if (fileInfo.isHdfs) {
+        val streamHandle = new StreamHandle(0, 0)
+        client.getChannel.writeAndFlush(new RpcResponse(
+          request.requestId,
+          new NioManagedBuffer(streamHandle.toByteBuffer)))
+      } else {
+        val buffers = new FileManagedBuffers(fileInfo, conf)
+        val streamId = streamManager.registerStream(buffers, client.getChannel)
+        val streamHandle = new StreamHandle(
+          streamId,
+          buffers.numChunks(),
+          buffers.chunkLengths(0, buffers.numChunks()))
+        if (fileInfo.numChunks() == 0) {
+          logDebug(s"StreamId $streamId fileName $fileName startMapIndex" +
+            s" $startMapIndex endMapIndex $endMapIndex is empty.")
+        }
+        client.getChannel.writeAndFlush(new RpcResponse(
+          request.requestId,
+          new NioManagedBuffer(streamHandle.toByteBuffer)))
       }
     } catch {
-      case ioe: IOException =>
-        workerSource.stopTimer(WorkerSource.OpenStreamTime, shuffleKey)
+      case e: IOException =>
         client.getChannel.writeAndFlush(new RpcFailure(
           request.requestId,
-          Throwables.getStackTraceAsString(ioe)))
+          Throwables.getStackTraceAsString(
+            new RssException("Chunk offsets meta exception", e))))
     }
   }
 
@@ -151,13 +337,35 @@ class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logg
           req.streamChunkSlice.offset,
           req.streamChunkSlice.len)
         streamManager.chunkBeingSent(req.streamChunkSlice.streamId)
-        client.getChannel.writeAndFlush(new ChunkFetchSuccess(req.streamChunkSlice, buf))
-          .addListener(new GenericFutureListener[Future[_ >: Void]] {
-            override def operationComplete(future: Future[_ >: Void]): Unit = {
-              streamManager.chunkSent(req.streamChunkSlice.streamId)
-              workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
-            }
-          })
+        buf match {
+          case segment: FileSegmentManagedBuffer
+              if chunkReadCoalescer != null || fetchReadScheduler != null =>
+            // The chunk is read into memory off the event loop and sent when the read is done.
+            readChunk(segment).whenComplete(new BiConsumer[ManagedBuffer, Throwable] {
+              override def accept(readBuf: ManagedBuffer, throwable: Throwable): Unit = {
+                if (throwable != null) {
+                  val cause = throwable match {
+                    case e: CompletionException if e.getCause != null => e.getCause
+                    case e => e
+                  }
+                  logError(s"Read chunk ${req.streamChunkSlice} failed.", cause)
+                  streamManager.chunkSent(req.streamChunkSlice.streamId)
+                  client.getChannel.writeAndFlush(new ChunkFetchFailure(
+                    req.streamChunkSlice,
+                    Throwables.getStackTraceAsString(cause)))
+                  workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+                } else if (!client.getChannel.isActive) {
+                  readBuf.release()
+                  streamManager.chunkSent(req.streamChunkSlice.streamId)
+                  workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+                } else {
+                  sendChunk(client, req, readBuf)
+                }
+              }
+            })
+          case _ =>
+            sendChunk(client, req, buf)
+        }
       } catch {
         case e: Exception =>
           logError(
@@ -172,6 +380,164 @@ class FetchHandler(val conf: TransportConf) extends BaseMessageHandler with Logg
     }
   }
 
+  def handleChunkRangeFetchRequest(client: TransportClient, req: ChunkRangeFetchRequest): Unit = {
+    val range = req.streamChunkRange
+    workerSource.startTimer(WorkerSource.FetchChunkTime, req.toString)
+    logTrace(s"Received req from ${NettyUtils.getRemoteAddress(client.getChannel)}" +
+      s" to fetch blocks $range")
+
+    val chunksBeingTransferred = streamManager.chunksBeingTransferred
+    if (chunksBeingTransferred > conf.maxChunksBeingTransferred) {
+      val message = "Worker is too busy. The number of chunks being transferred " +
+        s"$chunksBeingTransferred exceeds rss.shuffle.maxChunksBeingTransferred " +
+        s"${conf.maxChunksBeingTransferred}."
+      logError(message)
+      client.getChannel.writeAndFlush(new ChunkRangeFetchFailure(range, message))
+      workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+    } else {
+      try {
+        if (ChunkCache.instance() == null && chunkReadCoalescer == null &&
+          fetchReadScheduler == null) {
+          // The range is adjacent in the file, it is sent as one zero-copy region.
+          val chunkRange =
+            streamManager.getChunkRange(range.streamId, range.startChunkIndex, range.numChunks)
+          streamManager.chunkBeingSent(range.streamId)
+          sendChunkRange(client, req, chunkRange.getLeft, chunkRange.getRight)
+        } else {
+          // Each chunk is looked up in the chunk cache and read like a single chunk fetch, so a
+          // range gets the same cache hits and read scheduling as the chunks it replaces.
+          val chunks =
+            streamManager.getChunks(range.streamId, range.startChunkIndex, range.numChunks)
+          streamManager.chunkBeingSent(range.streamId)
+          val reads = chunks.getRight.asScala.toList.map {
+            case segment: FileSegmentManagedBuffer
+                if chunkReadCoalescer != null || fetchReadScheduler != null =>
+              readChunk(segment)
+            case chunk =>
+              CompletableFuture.completedFuture(chunk)
+          }
+          CompletableFuture.allOf(reads: _*).whenComplete(new BiConsumer[Void, Throwable] {
+            override def accept(v: Void, throwable: Throwable): Unit = {
+              val readChunks = reads.filterNot(_.isCompletedExceptionally).map(_.join())
+              if (throwable != null) {
+                readChunks.foreach(_.release())
+                val cause = throwable match {
+                  case e: CompletionException if e.getCause != null => e.getCause
+                  case e => e
+                }
+                logError(s"Read chunks $range failed.", cause)
+                streamManager.chunkSent(range.streamId)
+                client.getChannel.writeAndFlush(new ChunkRangeFetchFailure(
+                  range,
+                  Throwables.getStackTraceAsString(cause)))
+                workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+              } else if (!client.getChannel.isActive) {
+                readChunks.foreach(_.release())
+                streamManager.chunkSent(range.streamId)
+                workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+              } else {
+                try {
+                  sendChunkRange(client, req, chunks.getLeft, joinChunks(range, readChunks))
+                } catch {
+                  case e: Exception =>
+                    logError(s"Join chunks $range failed.", e)
+                    streamManager.chunkSent(range.streamId)
+                    client.getChannel.writeAndFlush(new ChunkRangeFetchFailure(
+                      range,
+                      Throwables.getStackTraceAsString(e)))
+                    workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+                }
+              }
+            }
+          })
+        }
+      } catch {
+        case e: Exception =>
+          logError(
+            s"Error opening blocks $range for request from" +
+              s" ${NettyUtils.getRemoteAddress(client.getChannel)}",
+            e)
+          client.getChannel.writeAndFlush(new ChunkRangeFetchFailure(
+            range,
+            Throwables.getStackTraceAsString(e)))
+          workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+      }
+    }
+  }
+
+  private def readChunk(segment: FileSegmentManagedBuffer): CompletableFuture[ManagedBuffer] = {
+    if (chunkReadCoalescer != null) {
+      chunkReadCoalescer.readAsync(segment.getFile, segment.getOffset, segment.getLength)
+    } else {
+      fetchReadScheduler.read(segment.getFile, segment.getOffset, segment.getLength.toInt)
+        .thenApply[ManagedBuffer](new JFunction[ByteBuf, ManagedBuffer] {
+          override def apply(buf: ByteBuf): ManagedBuffer = new NettyManagedBuffer(buf)
+        })
+    }
+  }
+
+  /**
+   * Joins the chunks of a range into the buffer that is sent. Chunks in memory become one
+   * composite buffer and file chunks one file region. A range holding both, which happens when
+   * only some chunks were cached and the worker does not read chunks itself, is sent from the
+   * files instead.
+   */
+  private def joinChunks(range: StreamChunkRange, chunks: Seq[ManagedBuffer]): ManagedBuffer = {
+    val fileChunks = chunks.count {
+      case _: FileSegmentManagedBuffer | _: CompositeFileSegmentManagedBuffer => true
+      case _ => false
+    }
+    if (fileChunks == chunks.size) {
+      CompositeFileSegmentManagedBuffer.concat(conf, chunks.asJava)
+    } else if (fileChunks > 0) {
+      chunks.foreach(_.release())
+      streamManager.getChunkRange(range.streamId, range.startChunkIndex, range.numChunks).getRight
+    } else {
+      val bufs = chunks.map { chunk =>
+        val buf = chunk.convertToNetty().asInstanceOf[ByteBuf]
+        chunk.release()
+        buf
+      }
+      new NettyManagedBuffer(Unpooled.wrappedBuffer(bufs: _*))
+    }
+  }
+
+  private def sendChunkRange(
+      client: TransportClient,
+      req: ChunkRangeFetchRequest,
+      chunkLengths: Array[Int],
+      buf: ManagedBuffer): Unit = {
+    val range = req.streamChunkRange
+    client.getChannel.writeAndFlush(new ChunkRangeFetchSuccess(range, chunkLengths, buf))
+      .addListener(new GenericFutureListener[Future[_ >: Void]] {
+        override def operationComplete(future: Future[_ >: Void]): Unit = {
+          streamManager.chunkSent(range.streamId)
+          // chunks are read only once sent, so the client can fall back to single chunks
+          if (future.isSuccess) {
+            streamManager.chunkRangeRead(range.streamId, range.startChunkIndex, range.numChunks)
+          }
+          workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+        }
+      })
+  }
+
+  private def sendChunk(
+      client: TransportClient,
+      req: ChunkFetchRequest,
+      buf: ManagedBuffer): Unit = {
+    val slice = req.streamChunkSlice
+    client.getChannel.writeAndFlush(new ChunkFetchSuccess(slice, buf))
+      .addListener(new GenericFutureListener[Future[_ >: Void]] {
+        override def operationComplete(future: Future[_ >: Void]): Unit = {
+          streamManager.chunkSent(slice.streamId)
+          if (future.isSuccess) {
+            streamManager.chunkRead(slice.streamId, slice.chunkIndex, slice.offset, slice.len)
+          }
+          workerSource.stopTimer(WorkerSource.FetchChunkTime, req.toString)
+        }
+      })
+  }
+
   override def checkRegistered: Boolean = registered.get
 
   override def channelInactive(client: TransportClient): Unit = {
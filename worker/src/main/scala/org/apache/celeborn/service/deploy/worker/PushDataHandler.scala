@@ -38,7 +38,8 @@ import org.apache.celeborn.common.protocol.message.StatusCode
 import org.apache.celeborn.common.unsafe.Platform
 import org.apache.celeborn.service.deploy.worker.storage.{FileWriter, LocalFlusher}
 
-class PushDataHandler extends BaseMessageHandler with Logging {
+class PushDataHandler(pushCreditManager: PushCreditManager = null) extends BaseMessageHandler
+  with Logging {
 
   var workerSource: WorkerSource = _
   var rpcSource: RPCSource = _
@@ -73,6 +74,9 @@ class PushDataHandler extends BaseMessageHandler with Logging {
       case pushData: PushData =>
         try {
           rpcSource.updateMessageMetrics(pushData, pushData.body().size())
+          if (pushCreditManager != null) {
+            pushCreditManager.onPushed(client.getChannel, pushData.body().size())
+          }
           handlePushData(
             pushData,
             new RpcResponseCallback {
@@ -102,6 +106,9 @@ class PushDataHandler extends BaseMessageHandler with Logging {
       case pushMergedData: PushMergedData =>
         try {
           rpcSource.updateMessageMetrics(pushMergedData, pushMergedData.body().size())
+          if (pushCreditManager != null) {
+            pushCreditManager.onPushed(client.getChannel, pushMergedData.body().size())
+          }
           handlePushMergedData(
             pushMergedData,
             new RpcResponseCallback {
@@ -456,4 +463,16 @@ class PushDataHandler extends BaseMessageHandler with Logging {
   }
 
   override def checkRegistered(): Boolean = registered.get()
+
+  override def channelActive(client: TransportClient): Unit = {
+    if (pushCreditManager != null) {
+      pushCreditManager.channelActive(client.getChannel)
+    }
+  }
+
+  override def channelInactive(client: TransportClient): Unit = {
+    if (pushCreditManager != null) {
+      pushCreditManager.channelInactive(client.getChannel)
+    }
+  }
 }
@@ -17,7 +17,7 @@
 
 package org.apache.celeborn.service.deploy.worker
 
-import java.util.{HashSet => JHashSet}
+import java.util.{HashMap => JHashMap, HashSet => JHashSet}
 import java.util.concurrent._
 import java.util.concurrent.atomic.AtomicBoolean
 
@@ -32,7 +32,7 @@ import org.apache.celeborn.common.exception.RssException
 import org.apache.celeborn.common.haclient.RssHARetryClient
 import org.apache.celeborn.common.identity.UserIdentifier
 import org.apache.celeborn.common.internal.Logging
-import org.apache.celeborn.common.meta.{DiskInfo, PartitionLocationInfo, WorkerInfo}
+import org.apache.celeborn.common.meta.{ChunkCache, ChunkReadCoalescer, DiskInfo, PartitionLocationInfo, WorkerInfo}
 import org.apache.celeborn.common.metrics.MetricsSystem
 import org.apache.celeborn.common.metrics.source.{JVMCPUSource, JVMSource, RPCSource}
 import org.apache.celeborn.common.network.TransportContext
@@ -43,7 +43,7 @@ import org.apache.celeborn.common.quota.ResourceConsumption
 import org.apache.celeborn.common.rpc._
 import org.apache.celeborn.common.util.{ShutdownHookManager, ThreadUtils, Utils}
 import org.apache.celeborn.server.common.{HttpService, Service}
-import org.apache.celeborn.service.deploy.worker.storage.{PartitionFilesSorter, StorageManager}
+import org.apache.celeborn.service.deploy.worker.storage.{FetchReadScheduler, LocalFlusher, PartitionFilesSorter, StorageManager}
 
 private[celeborn] class Worker(
     override val conf: CelebornConf,
@@ -96,12 +96,53 @@ private[celeborn] class Worker(
     conf.workerDirectMemoryReportIntervalSecond)
   memoryTracker.registerMemoryListener(storageManager)
 
-  val partitionsSorter = new PartitionFilesSorter(memoryTracker, conf, workerSource)
+  val chunkCache: ChunkCache =
+    if (conf.workerChunkCacheEnabled) {
+      val cache =
+        ChunkCache.initialize(conf.workerChunkCacheCapacityPerDisk, storageManager.mountPoints)
+      memoryTracker.registerMemoryListener(cache)
+      cache
+    } else {
+      null
+    }
+  val fetchReadScheduler: FetchReadScheduler =
+    if (conf.workerFetchSchedulerEnabled) {
+      val flushers = new JHashMap[String, LocalFlusher]()
+      storageManager.mountPoints.asScala.foreach { mountPoint =>
+        val flusher = storageManager.localFlusher(mountPoint)
+        if (flusher != null) {
+          flushers.put(mountPoint, flusher)
+        }
+      }
+      new FetchReadScheduler(conf, storageManager.mountPoints, flushers)
+    } else {
+      null
+    }
+  // shared reads are done by the fetch read scheduler if it is enabled, or by read threads of
+  // the coalescer otherwise, never by the netty event loops
+  val chunkReadCoalescer: ChunkReadCoalescer =
+    if (conf.workerFetchCoalesceReadsEnabled) {
+      ChunkReadCoalescer.initialize(fetchReadScheduler)
+    } else {
+      null
+    }
+
+  val partitionsSorter =
+    new PartitionFilesSorter(memoryTracker, conf, workerSource, storageManager.mountPoints)
 
   var controller = new Controller(rpcEnv, conf, metricsSystem)
   rpcEnv.setupEndpoint(RpcNameConstants.WORKER_EP, controller, Some(rpcSource))
 
-  val pushDataHandler = new PushDataHandler()
+  val pushCreditManager: PushCreditManager =
+    if (conf.workerPushCreditEnabled) {
+      val flushers = storageManager.mountPoints.asScala.toList
+        .flatMap(mountPoint => Option(storageManager.localFlusher(mountPoint)))
+      new PushCreditManager(conf, memoryTracker, flushers.asJava)
+    } else {
+      null
+    }
+  // only clients pushing data are granted credits, replication is limited by the memory tracker
+  val pushDataHandler = new PushDataHandler(pushCreditManager)
   val (pushServer, pushClientFactory) = {
     val closeIdleConnections = conf.workerCloseIdleConnections
     val numThreads = conf.workerPushIoThreads.getOrElse(storageManager.disksSnapshot().size * 2)
@@ -208,14 +249,51 @@ private[celeborn] class Worker(
   workerSource.addGauge(WorkerSource.SlotsAllocated, _ => workerInfo.allocationsInLastHour())
   workerSource.addGauge(WorkerSource.SortMemory, _ => memoryTracker.getSortMemoryCounter.get())
   workerSource.addGauge(WorkerSource.SortingFiles, _ => partitionsSorter.getSortingCount)
+  workerSource.addGauge(WorkerSource.PendingSortFiles, _ => partitionsSorter.getPendingSortCount)
+  storageManager.mountPoints.asScala.foreach { mountPoint =>
+    workerSource.addGauge(
+      s"${WorkerSource.ActiveSorts}-$mountPoint",
+      _ => partitionsSorter.getActiveSortCount(mountPoint))
+  }
   workerSource.addGauge(WorkerSource.SortedFiles, _ => partitionsSorter.getSortedCount)
   workerSource.addGauge(WorkerSource.SortedFileSize, _ => partitionsSorter.getSortedSize)
   workerSource.addGauge(WorkerSource.DiskBuffer, _ => memoryTracker.getDiskBufferCounter.get())
+  if (chunkCache != null) {
+    workerSource.addGauge(WorkerSource.ChunkCacheSize, _ => chunkCache.getUsedBytes)
+    storageManager.mountPoints.asScala.foreach { mountPoint =>
+      workerSource.addGauge(
+        s"${WorkerSource.ChunkCacheHit}-$mountPoint",
+        _ => chunkCache.getHitCount(mountPoint))
+      workerSource.addGauge(
+        s"${WorkerSource.ChunkCacheMiss}-$mountPoint",
+        _ => chunkCache.getMissCount(mountPoint))
+    }
+  }
+  if (fetchReadScheduler != null) {
+    storageManager.mountPoints.asScala.foreach { mountPoint =>
+      workerSource.addGauge(
+        s"${WorkerSource.PendingFetchReads}-$mountPoint",
+        _ => fetchReadScheduler.getPendingReadCount(mountPoint))
+    }
+  }
+  if (chunkReadCoalescer != null) {
+    workerSource.addGauge(
+      WorkerSource.CoalescedChunkReads,
+      _ => chunkReadCoalescer.getCoalescedReadCount)
+    workerSource.addGauge(
+      WorkerSource.InFlightChunkReads,
+      _ => chunkReadCoalescer.getInFlightReadCount)
+  }
   workerSource.addGauge(WorkerSource.NettyMemory, _ => memoryTracker.getNettyMemoryCounter.get())
   workerSource.addGauge(WorkerSource.PausePushDataCount, _ => memoryTracker.getPausePushDataCounter)
   workerSource.addGauge(
     WorkerSource.PausePushDataAndReplicateCount,
     _ => memoryTracker.getPausePushDataAndReplicateCounter)
+  if (pushCreditManager != null) {
+    workerSource.addGauge(
+      WorkerSource.OutstandingPushCredits,
+      _ => pushCreditManager.getOutstandingCredits)
+  }
 
   private def heartBeatToMaster(): Unit = {
     val shuffleKeys = new JHashSet[String]
@@ -329,6 +407,13 @@ private[celeborn] class Worker(
       commitThreadPool.shutdownNow()
       asyncReplyPool.shutdownNow()
       partitionsSorter.close()
+      if (fetchReadScheduler != null) {
+        fetchReadScheduler.close()
+      }
+
+      if (pushCreditManager != null) {
+        pushCreditManager.close()
+      }
 
       if (null != storageManager) {
         storageManager.close()
@@ -40,6 +40,7 @@ class WorkerSource(conf: CelebornConf) extends AbstractSource(conf, MetricsSyste
   addTimer(OpenStreamTime)
   addTimer(TakeBufferTime)
   addTimer(SortTime)
+  addTimer(SortWaitTime)
 
   // start cleaner thread
   startCleaner()
@@ -76,9 +77,22 @@ object WorkerSource {
   val SortTime = "SortTime"
   val SortMemory = "SortMemory"
   val SortingFiles = "SortingFiles"
+  val SortWaitTime = "SortWaitTime"
+  val PendingSortFiles = "PendingSortFiles"
+  // suffixed with the mount point
+  val ActiveSorts = "ActiveSorts"
   val SortedFiles = "SortedFiles"
   val SortedFileSize = "SortedFileSize"
   val DiskBuffer = "DiskBuffer"
+  val ChunkCacheSize = "ChunkCacheSize"
+  // suffixed with the mount point
+  val ChunkCacheHit = "ChunkCacheHit"
+  val ChunkCacheMiss = "ChunkCacheMiss"
+  val CoalescedChunkReads = "CoalescedChunkReads"
+  val InFlightChunkReads = "InFlightChunkReads"
+  // suffixed with the mount point
+  val PendingFetchReads = "PendingFetchReads"
   val PausePushDataCount = "PausePushData"
   val PausePushDataAndReplicateCount = "PausePushDataAndReplicate"
+  val OutstandingPushCredits = "OutstandingPushCredits"
 }
@@ -20,7 +20,7 @@ package org.apache.celeborn.service.deploy.worker.storage
 import java.io.IOException
 import java.nio.channels.ClosedByInterruptException
 import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
-import java.util.concurrent.atomic.{AtomicBoolean, AtomicLongArray, LongAdder}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong, AtomicLongArray, LongAdder}
 
 import scala.collection.JavaConverters._
 import scala.util.Random
@@ -45,6 +45,11 @@ abstract private[worker] class Flusher(
   protected val workers = new Array[Thread](threadCount)
   protected var nextWorkerIndex: Int = 0
   protected val flushCount = new LongAdder
+  // never reset, unlike flushCount
+  protected val finishedFlushes = new AtomicLong
+  // notified when a flush finishes while some thread waits in awaitFinishedFlush
+  private val flushFinishedLock = new Object
+  @volatile private var flushFinishedWaiters = 0
   protected val flushTotalTime = new LongAdder
   protected val avgTimeWindow = new Array[(Long, Long)](avgFlushTimeSlidingWindowSize)
   protected var avgTimeWindowCurrentIndex = 0
@@ -87,6 +92,12 @@ abstract private[worker] class Flusher(
               }
               returnBuffer(task.buffer)
               task.notifier.numPendingFlushes.decrementAndGet()
+              finishedFlushes.incrementAndGet()
+              if (flushFinishedWaiters > 0) {
+                flushFinishedLock.synchronized {
+                  flushFinishedLock.notifyAll()
+                }
+              }
             }
           }
         }
@@ -141,9 +152,11 @@ abstract private[worker] class Flusher(
   }
 
   def returnBuffer(buffer: CompositeByteBuf): Unit = {
-    MemoryTracker.instance().releaseDiskBuffer(buffer.readableBytes())
+    val numBytes = buffer.readableBytes()
     buffer.removeComponents(0, buffer.numComponents())
     buffer.clear()
+    // released after the components, so that sort memory listeners see the memory freed
+    MemoryTracker.instance().releaseDiskBuffer(numBytes)
 
     bufferQueue.put(buffer)
   }
@@ -152,6 +165,30 @@ abstract private[worker] class Flusher(
     workingQueues(workerIndex).offer(task, timeoutMs, TimeUnit.MILLISECONDS)
   }
 
+  def pendingFlushCount: Int = workingQueues.map(_.size()).sum
+
+  def finishedFlushCount: Long = finishedFlushes.get()
+
+  /**
+   * Waits until more than `finishedCount` flushes have finished, or at most `timeoutNanos`.
+   */
+  @throws[InterruptedException]
+  def awaitFinishedFlush(finishedCount: Long, timeoutNanos: Long): Unit = {
+    val deadline = System.nanoTime() + timeoutNanos
+    flushFinishedLock.synchronized {
+      flushFinishedWaiters += 1
+      try {
+        var remaining = timeoutNanos
+        while (finishedFlushes.get() == finishedCount && remaining > 0) {
+          TimeUnit.NANOSECONDS.timedWait(flushFinishedLock, remaining)
+          remaining = deadline - System.nanoTime()
+        }
+      } finally {
+        flushFinishedWaiters -= 1
+      }
+    }
+  }
+
   def bufferQueueInfo(): String = s"$this used buffers: ${bufferQueue.size()}"
 
   def stopAndCleanFlusher(): Unit = {
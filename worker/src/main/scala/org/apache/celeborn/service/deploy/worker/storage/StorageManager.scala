@@ -38,7 +38,7 @@ import org.apache.celeborn.common.CelebornConf
 import org.apache.celeborn.common.exception.RssException
 import org.apache.celeborn.common.identity.UserIdentifier
 import org.apache.celeborn.common.internal.Logging
-import org.apache.celeborn.common.meta.{DeviceInfo, DiskInfo, DiskStatus, FileInfo}
+import org.apache.celeborn.common.meta.{ChunkCache, DeviceInfo, DiskInfo, DiskStatus, FileInfo}
 import org.apache.celeborn.common.metrics.source.AbstractSource
 import org.apache.celeborn.common.network.server.MemoryTracker.MemoryTrackerListener
 import org.apache.celeborn.common.protocol.{PartitionLocation, PartitionSplitMode, PartitionType}
@@ -347,6 +347,8 @@ final private[worker] class StorageManager(conf: CelebornConf, workerSource: Abs
     throw exception
   }
 
+  def localFlusher(mountPoint: String): LocalFlusher = localFlushers.get(mountPoint)
+
   def getFileInfo(shuffleKey: String, fileName: String): FileInfo = {
     val shuffleMap = fileInfos.get(shuffleKey)
     if (shuffleMap ne null) {
@@ -365,7 +367,11 @@ final private[worker] class StorageManager(conf: CelebornConf, workerSource: Abs
   def cleanupExpiredShuffleKey(expiredShuffleKeys: util.HashSet[String]): Unit = {
     expiredShuffleKeys.asScala.foreach { shuffleKey =>
       logInfo(s"Cleanup expired shuffle $shuffleKey.")
-      val hdfsInfos = fileInfos.remove(shuffleKey).asScala.filter(_._2.isHdfs)
+      val (hdfsInfos, localInfos) = fileInfos.remove(shuffleKey).asScala.partition(_._2.isHdfs)
+      val chunkCache = ChunkCache.instance()
+      if (chunkCache != null) {
+        localInfos.foreach(item => chunkCache.invalidate(item._2.getFilePath))
+      }
       val (appId, shuffleId) = Utils.splitShuffleKey(shuffleKey)
       disksSnapshot().filter(_.status != DiskStatus.IO_HANG).foreach { diskInfo =>
         diskInfo.dirs.foreach { dir =>
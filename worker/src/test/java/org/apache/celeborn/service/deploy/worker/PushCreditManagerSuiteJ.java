@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.service.deploy.worker;
+
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.apache.celeborn.common.CelebornConf;
+import org.apache.celeborn.common.network.client.PushCredits;
+import org.apache.celeborn.common.network.protocol.PushCredit;
+import org.apache.celeborn.common.network.server.MemoryTracker;
+import org.apache.celeborn.service.deploy.worker.storage.LocalFlusher;
+
+public class PushCreditManagerSuiteJ {
+
+  private long grantedCredits(EmbeddedChannel channel) {
+    long credits = 0;
+    Object msg;
+    while ((msg = channel.readOutbound()) != null) {
+      credits += ((PushCredit) msg).credit;
+    }
+    return credits;
+  }
+
+  @Test
+  public void testGrantWithinBudget() throws Exception {
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.worker.push.credit.window", "1000");
+    conf.set("celeborn.worker.push.credit.maxPendingFlushes", "10");
+    // grants are left to the calls below
+    conf.set("celeborn.worker.push.credit.checkInterval", "1h");
+    MemoryTracker memoryTracker = Mockito.mock(MemoryTracker.class);
+    when(memoryTracker.getPushDataHeadroom()).thenReturn(1500L);
+    LocalFlusher flusher = Mockito.mock(LocalFlusher.class);
+    when(flusher.pendingFlushCount()).thenReturn(0);
+    PushCreditManager manager =
+        new PushCreditManager(conf, memoryTracker, Collections.singletonList(flusher));
+    try {
+      EmbeddedChannel first = new EmbeddedChannel();
+      EmbeddedChannel second = new EmbeddedChannel();
+      manager.channelActive(first);
+      Assert.assertEquals(1000, grantedCredits(first));
+      // the second connection shares what the first one left
+      manager.channelActive(second);
+      Assert.assertEquals(500, grantedCredits(second));
+      Assert.assertEquals(1500, manager.getOutstandingCredits());
+
+      // small pushes are not granted back one by one
+      manager.onPushed(first, 100);
+      Assert.assertEquals(0, grantedCredits(first));
+      // the memory the pushes take is no longer free
+      when(memoryTracker.getPushDataHeadroom()).thenReturn(1100L);
+      manager.onPushed(first, 300);
+      Assert.assertEquals(0, grantedCredits(first));
+      when(memoryTracker.getPushDataHeadroom()).thenReturn(1500L);
+      manager.onPushed(first, 0);
+      Assert.assertEquals(400, grantedCredits(first));
+
+      // no credits while the flushes are behind
+      when(flusher.pendingFlushCount()).thenReturn(10);
+      manager.onPushed(second, 500);
+      Assert.assertEquals(0, grantedCredits(second));
+      // half of the flush queue is pending, half of the budget is granted
+      when(flusher.pendingFlushCount()).thenReturn(5);
+      manager.onPushed(second, 0);
+      Assert.assertEquals(250, grantedCredits(second));
+
+      manager.channelInactive(first);
+      Assert.assertEquals(250, manager.getOutstandingCredits());
+    } finally {
+      manager.close();
+    }
+  }
+
+  @Test
+  public void testClientWaitsForCredits() throws Exception {
+    PushCredits credits = new PushCredits();
+    // not limited before the worker grants credits
+    Assert.assertTrue(credits.acquire(100, 0));
+    credits.grant(100);
+    // overdraws the credits
+    Assert.assertTrue(credits.acquire(150, 0));
+    Assert.assertFalse(credits.acquire(100, 10));
+
+    Thread granter =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                return;
+              }
+              credits.grant(100);
+            });
+    granter.start();
+    Assert.assertTrue(credits.acquire(100, 10000));
+    Assert.assertEquals(-50, credits.available());
+    granter.join();
+
+    credits.close();
+    Assert.assertTrue(credits.acquire(100, 0));
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.celeborn.service.deploy.worker.storage;
+
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.apache.celeborn.common.CelebornConf;
+
+public class FetchReadSchedulerSuiteJ {
+
+  private File createFile(int size) throws IOException {
+    File file = File.createTempFile("celeborn", ".data");
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) (i / 100);
+    }
+    try (FileOutputStream output = new FileOutputStream(file)) {
+      output.write(data);
+    }
+    return file;
+  }
+
+  @Test
+  public void testElevatorOrder() throws Exception {
+    File file = createFile(500);
+    String mountPoint = file.getParentFile().getAbsolutePath();
+    LocalFlusher flusher = Mockito.mock(LocalFlusher.class);
+    CountDownLatch firstReadStarted = new CountDownLatch(1);
+    CountDownLatch queued = new CountDownLatch(1);
+    // holds the reader on its first read until the other reads are queued
+    when(flusher.finishedFlushCount())
+        .thenAnswer(
+            invocation -> {
+              firstReadStarted.countDown();
+              queued.await();
+              return 0L;
+            })
+        .thenReturn(0L);
+    FetchReadScheduler scheduler =
+        new FetchReadScheduler(
+            new CelebornConf(),
+            Collections.singleton(mountPoint),
+            Collections.singletonMap(mountPoint, flusher));
+    try {
+      List<Long> readOrder = Collections.synchronizedList(new ArrayList<>());
+      List<CompletableFuture<ByteBuf>> futures = new ArrayList<>();
+      for (long offset : new long[] {200, 100, 400, 0}) {
+        futures.add(
+            scheduler
+                .read(file, offset, 100)
+                .whenComplete((buf, throwable) -> readOrder.add(offset)));
+        if (offset == 200) {
+          Assert.assertTrue(firstReadStarted.await(10, TimeUnit.SECONDS));
+        }
+      }
+      Assert.assertEquals(3, scheduler.getPendingReadCount(mountPoint));
+      queued.countDown();
+
+      for (CompletableFuture<ByteBuf> future : futures) {
+        ByteBuf buf = future.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(100, buf.readableBytes());
+        buf.release();
+      }
+      // continues from the end of the first read, then wraps around to the start of the file
+      Assert.assertEquals(Arrays.asList(200L, 400L, 0L, 100L), readOrder);
+    } finally {
+      scheduler.close();
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testWaitForFlush() throws Exception {
+    File file = createFile(500);
+    String mountPoint = file.getParentFile().getAbsolutePath();
+    LocalFlusher flusher = Mockito.mock(LocalFlusher.class);
+    AtomicLong finishedFlushes = new AtomicLong();
+    when(flusher.pendingFlushCount()).thenReturn(1);
+    when(flusher.finishedFlushCount()).thenAnswer(invocation -> finishedFlushes.get());
+    // a flush finishes while the reader waits for it
+    Mockito.doAnswer(
+            invocation -> {
+              finishedFlushes.incrementAndGet();
+              return null;
+            })
+        .when(flusher)
+        .awaitFinishedFlush(Mockito.anyLong(), Mockito.anyLong());
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.worker.fetch.scheduler.readsPerFlush", "1");
+    FetchReadScheduler scheduler =
+        new FetchReadScheduler(
+            conf, Collections.singleton(mountPoint), Collections.singletonMap(mountPoint, flusher));
+    try {
+      for (long offset : new long[] {0, 100}) {
+        scheduler.read(file, offset, 100).get(10, TimeUnit.SECONDS).release();
+      }
+      // the second read waited for one flush
+      Mockito.verify(flusher, Mockito.times(1))
+          .awaitFinishedFlush(Mockito.eq(0L), Mockito.anyLong());
+      Assert.assertEquals(1, finishedFlushes.get());
+    } finally {
+      scheduler.close();
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testReadFailure() throws Exception {
+    File file = createFile(500);
+    FetchReadScheduler scheduler =
+        new FetchReadScheduler(new CelebornConf(), Collections.emptySet(), Collections.emptyMap());
+    try {
+      ByteBuf buf = scheduler.read(file, 300, 200).get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(3, buf.getByte(0));
+      buf.release();
+      try {
+        scheduler.read(file, 400, 200).get(10, TimeUnit.SECONDS);
+        Assert.fail("Reading beyond the end of the file should fail.");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+    } finally {
+      scheduler.close();
+      file.delete();
+    }
+    try {
+      scheduler.read(file, 0, 100).get(10, TimeUnit.SECONDS);
+      Assert.fail("Reading after close should fail.");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+}
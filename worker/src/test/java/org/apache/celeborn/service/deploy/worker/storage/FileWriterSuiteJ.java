@@ -19,6 +19,7 @@ package org.apache.celeborn.service.deploy.worker.storage;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -33,6 +34,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -56,6 +58,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.identity.UserIdentifier;
+import org.apache.celeborn.common.meta.ChunkReadCoalescer;
 import org.apache.celeborn.common.meta.FileInfo;
 import org.apache.celeborn.common.metrics.MetricsSystem;
 import org.apache.celeborn.common.metrics.source.RPCSource;
@@ -74,6 +77,7 @@ import org.apache.celeborn.common.network.util.TransportConf;
 import org.apache.celeborn.common.protocol.PartitionSplitMode;
 import org.apache.celeborn.common.protocol.PartitionType;
 import org.apache.celeborn.common.protocol.StorageInfo;
+import org.apache.celeborn.common.unsafe.Platform;
 import org.apache.celeborn.common.util.ThreadUtils;
 import org.apache.celeborn.common.util.Utils;
 import org.apache.celeborn.service.deploy.worker.FetchHandler;
@@ -123,12 +127,17 @@ public class FileWriterSuiteJ {
   }
 
   public static void setupChunkServer(FileInfo info) throws Exception {
+    setupChunkServer(info, null);
+  }
+
+  public static void setupChunkServer(FileInfo info, ChunkReadCoalescer coalescer)
+      throws Exception {
     FetchHandler handler =
         new FetchHandler(transConf) {
           @Override
-          public FileInfo openStream(
+          public CompletableFuture<FileInfo> openStream(
               String shuffleKey, String fileName, int startMapIndex, int endMapIndex) {
-            return info;
+            return CompletableFuture.completedFuture(info);
           }
 
           @Override
@@ -146,6 +155,7 @@ public class FileWriterSuiteJ {
             return true;
           }
         };
+    handler.chunkReadCoalescer_$eq(coalescer);
     TransportContext context = new TransportContext(transConf, handler);
     server = context.createServer();
 
@@ -402,6 +412,133 @@ public class FileWriterSuiteJ {
     closeChunkServer();
   }
 
+  @Test
+  public void testWriteAndMapRangeChunkRead() throws Exception {
+    File file = getTemporaryFile();
+    FileInfo fileInfo = new FileInfo(file, userIdentifier);
+    FileWriter fileWriter =
+        new FileWriter(
+            fileInfo,
+            localFlusher,
+            source,
+            CONF,
+            DeviceMonitor$.MODULE$.EmptyMonitor(),
+            SPLIT_THRESHOLD,
+            splitMode,
+            partitionType,
+            false);
+
+    long expectedLength = 0;
+    for (int i = 0; i < 100; i++) {
+      byte[] bytes = generateData();
+      int mapId = i % 3;
+      Platform.putInt(bytes, Platform.BYTE_ARRAY_OFFSET, mapId);
+      if (mapId == 1) {
+        expectedLength += bytes.length;
+      }
+      fileWriter.incrementPendingWrites();
+      fileWriter.write(Unpooled.wrappedBuffer(bytes));
+    }
+    fileWriter.close();
+    assertTrue(new File(fileInfo.getMapIndexPath()).exists());
+
+    PartitionFilesSorter sorter =
+        new PartitionFilesSorter(MemoryTracker.instance(), CONF, Mockito.mock(WorkerSource.class));
+    FileInfo rangeInfo = sorter.openStream("shuffleKey", "location", fileInfo, 1, 2);
+    sorter.close();
+    assertEquals(expectedLength, rangeInfo.getFileLength());
+
+    setupChunkServer(rangeInfo);
+    TransportClient client =
+        clientFactory.createClient(InetAddress.getLocalHost().getHostAddress(), server.getPort());
+    setUpConn(client);
+    List<Integer> indices = new ArrayList<>();
+    for (int i = 0; i < numChunks; i++) {
+      indices.add(i);
+    }
+    FetchResult result = fetchChunks(client, indices);
+    assertEquals(numChunks, result.successChunks.size());
+    long fetchedLength = 0;
+    for (ManagedBuffer buffer : result.buffers) {
+      fetchedLength += buffer.size();
+    }
+    assertEquals(expectedLength, fetchedLength);
+    result.releaseBuffers();
+    closeChunkServer();
+  }
+
+  @Test
+  public void testWriteAndChunkRangeReadThroughCoalescer() throws Exception {
+    File file = getTemporaryFile();
+    FileInfo fileInfo = new FileInfo(file, userIdentifier);
+    FileWriter fileWriter =
+        new FileWriter(
+            fileInfo,
+            localFlusher,
+            source,
+            CONF,
+            DeviceMonitor$.MODULE$.EmptyMonitor(),
+            SPLIT_THRESHOLD,
+            splitMode,
+            partitionType,
+            false);
+    long expectedLength = 0;
+    for (int i = 0; i < 10; i++) {
+      byte[] bytes = generateData();
+      expectedLength += bytes.length;
+      fileWriter.incrementPendingWrites();
+      fileWriter.write(Unpooled.wrappedBuffer(bytes));
+    }
+    fileWriter.close();
+
+    ChunkReadCoalescer coalescer = ChunkReadCoalescer.initialize();
+    long diskReads = coalescer.getDiskReadCount();
+    setupChunkServer(fileInfo, coalescer);
+    TransportClient client =
+        clientFactory.createClient(InetAddress.getLocalHost().getHostAddress(), server.getPort());
+    setUpConn(client);
+
+    Semaphore sem = new Semaphore(0);
+    FetchResult result = new FetchResult();
+    result.successChunks = Collections.synchronizedSet(new HashSet<>());
+    result.failedChunks = Collections.synchronizedSet(new HashSet<>());
+    result.buffers = Collections.synchronizedList(new LinkedList<>());
+    client.fetchChunkRange(
+        streamId,
+        0,
+        numChunks,
+        new ChunkReceivedCallback() {
+          @Override
+          public void onSuccess(int chunkIndex, ManagedBuffer buffer) {
+            buffer.retain();
+            result.successChunks.add(chunkIndex);
+            result.buffers.add(buffer);
+            sem.release();
+          }
+
+          @Override
+          public void onFailure(int chunkIndex, Throwable e) {
+            result.failedChunks.add(chunkIndex);
+            sem.release();
+          }
+        });
+    if (!sem.tryAcquire(numChunks, 5, TimeUnit.SECONDS)) {
+      fail("Timeout getting response from the server");
+    }
+    client.close();
+
+    // every chunk of the range is read by the coalescer like a single chunk fetch
+    assertEquals(numChunks, result.successChunks.size());
+    assertEquals(numChunks, coalescer.getDiskReadCount() - diskReads);
+    long fetchedLength = 0;
+    for (ManagedBuffer buffer : result.buffers) {
+      fetchedLength += buffer.size();
+    }
+    assertEquals(expectedLength, fetchedLength);
+    result.releaseBuffers();
+    closeChunkServer();
+  }
+
   @Test
   public void testCompositeBufClear() {
     ByteBuf buf = Unpooled.wrappedBuffer("hello world".getBytes(StandardCharsets.UTF_8));
@@ -24,9 +24,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -38,7 +46,9 @@ import org.slf4j.LoggerFactory;
 import org.apache.celeborn.common.CelebornConf;
 import org.apache.celeborn.common.identity.UserIdentifier;
 import org.apache.celeborn.common.meta.FileInfo;
+import org.apache.celeborn.common.meta.FileManagedBuffers;
 import org.apache.celeborn.common.network.server.MemoryTracker;
+import org.apache.celeborn.common.network.util.TransportConf;
 import org.apache.celeborn.common.unsafe.Platform;
 import org.apache.celeborn.common.util.Utils;
 import org.apache.celeborn.service.deploy.worker.WorkerSource;
@@ -53,6 +63,8 @@ public class PartitionFilesSorterSuiteJ {
   private String originFileName;
   private long originFileLen;
   private FileWriter fileWriter;
+  private MapIndexBuilder mapIndexBuilder;
+  private Map<Integer, Long> mapSizes;
   private long sortTimeout = 16 * 1000;
   private UserIdentifier userIdentifier = new UserIdentifier("mock-tenantId", "mock-name");
 
@@ -66,6 +78,8 @@ public class PartitionFilesSorterSuiteJ {
     FileOutputStream fileOutputStream = new FileOutputStream(shuffleFile);
     FileChannel channel = fileOutputStream.getChannel();
     Map<Integer, Integer> batchIds = new HashMap<>();
+    mapIndexBuilder = new MapIndexBuilder();
+    mapSizes = new HashMap<>();
 
     int maxMapId = 50;
     int mapCount = 1000;
@@ -96,6 +110,8 @@ public class PartitionFilesSorterSuiteJ {
       while (buf1.hasRemaining()) {
         channel.write(buf1);
       }
+      mapIndexBuilder.addBlock(mapId, channel.position() - 16, dataSize + 16);
+      mapSizes.merge(mapId, (long) dataSize + 16, Long::sum);
       random.nextBytes(mockedData);
       ByteBuffer buf2 = ByteBuffer.wrap(mockedData);
       while (buf2.hasRemaining()) {
@@ -135,6 +151,210 @@ public class PartitionFilesSorterSuiteJ {
     clean();
   }
 
+  @Test
+  public void testOpenStreamAsync() throws Exception {
+    prepare(false);
+    CelebornConf conf = new CelebornConf();
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(MemoryTracker.instance(), conf, new WorkerSource(conf));
+    CompletableFuture<FileInfo> first =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    CompletableFuture<FileInfo> second =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 10, 20);
+    FileInfo firstInfo = first.get(sortTimeout, TimeUnit.MILLISECONDS);
+    FileInfo secondInfo = second.get(sortTimeout, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(firstInfo.numChunks() > 0);
+    Assert.assertTrue(secondInfo.numChunks() > 0);
+    Assert.assertEquals(fileInfo.getSortedPath(), firstInfo.getFilePath());
+    Assert.assertEquals(1, partitionFilesSorter.getSortedCount());
+    partitionFilesSorter.close();
+    new File(fileInfo.getSortedPath()).delete();
+    new File(fileInfo.getIndexPath()).delete();
+  }
+
+  @Test
+  public void testSortSchedulerPerDiskLimit() throws Exception {
+    prepare(false);
+    File copiedFile = File.createTempFile("RSS", "sort-suite");
+    Files.copy(shuffleFile.toPath(), copiedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    FileInfo copiedFileInfo = new FileInfo(copiedFile, userIdentifier);
+    copiedFileInfo.getChunkOffsets().add(originFileLen);
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.worker.partitionSorter.maxConcurrentSortsPerDisk", "1");
+    // holds each sort at its end until released, so the sorts overlap if the cap is not kept
+    CountDownLatch sorting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    MemoryTracker memoryTracker = Mockito.spy(MemoryTracker.instance());
+    Mockito.doAnswer(
+            invocation -> {
+              sorting.countDown();
+              release.await();
+              return invocation.callRealMethod();
+            })
+        .when(memoryTracker)
+        .releaseSortMemory(Mockito.anyLong());
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(memoryTracker, conf, new WorkerSource(conf));
+    CompletableFuture<FileInfo> first =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    CompletableFuture<FileInfo> second =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", copiedFile.getAbsolutePath(), copiedFileInfo, 5, 10);
+    Assert.assertTrue(sorting.await(sortTimeout, TimeUnit.MILLISECONDS));
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(1, partitionFilesSorter.getActiveSortCount(""));
+      Assert.assertEquals(1, partitionFilesSorter.getPendingSortCount());
+      Thread.sleep(20);
+    }
+    release.countDown();
+    Assert.assertEquals(
+        first.get(sortTimeout, TimeUnit.MILLISECONDS).getFileLength(),
+        second.get(sortTimeout, TimeUnit.MILLISECONDS).getFileLength());
+    Assert.assertEquals(2, partitionFilesSorter.getSortedCount());
+    Assert.assertEquals(0, partitionFilesSorter.getPendingSortCount());
+    partitionFilesSorter.close();
+    new File(fileInfo.getSortedPath()).delete();
+    new File(fileInfo.getIndexPath()).delete();
+    new File(copiedFileInfo.getSortedPath()).delete();
+    new File(copiedFileInfo.getIndexPath()).delete();
+  }
+
+  @Test
+  public void testSortScheduledOnMemoryRelease() throws Exception {
+    prepare(false);
+    CelebornConf conf = new CelebornConf();
+    // long enough that the sort only starts if the release wakes the scheduler
+    conf.set("celeborn.worker.partitionSorter.sortMemory.recheckInterval", "1h");
+    AtomicBoolean memoryReady = new AtomicBoolean(false);
+    MemoryTracker memoryTracker = Mockito.spy(MemoryTracker.instance());
+    Mockito.doAnswer(invocation -> memoryReady.get() && (Boolean) invocation.callRealMethod())
+        .when(memoryTracker)
+        .sortMemoryReady();
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(memoryTracker, conf, new WorkerSource(conf));
+    CompletableFuture<FileInfo> info =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    Thread.sleep(200);
+    Assert.assertEquals(1, partitionFilesSorter.getPendingSortCount());
+    memoryReady.set(true);
+    // a flushed buffer is released
+    memoryTracker.incrementDiskBuffer(1024);
+    memoryTracker.releaseDiskBuffer(1024);
+    Assert.assertTrue(info.get(sortTimeout, TimeUnit.MILLISECONDS).numChunks() > 0);
+    Assert.assertEquals(0, partitionFilesSorter.getPendingSortCount());
+    partitionFilesSorter.close();
+    new File(fileInfo.getSortedPath()).delete();
+    new File(fileInfo.getIndexPath()).delete();
+  }
+
+  @Test
+  public void testSortWaitersAfterTimeout() throws Exception {
+    prepare(false);
+    CelebornConf conf = new CelebornConf();
+    conf.set("celeborn.worker.partitionSorter.sort.timeout", "500ms");
+    // holds the sort at its end until released, so the readers time out
+    CountDownLatch sorting = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    MemoryTracker memoryTracker = Mockito.spy(MemoryTracker.instance());
+    Mockito.doAnswer(
+            invocation -> {
+              sorting.countDown();
+              release.await();
+              return invocation.callRealMethod();
+            })
+        .when(memoryTracker)
+        .releaseSortMemory(Mockito.anyLong());
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(memoryTracker, conf, new WorkerSource(conf));
+    CompletableFuture<FileInfo> first =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    CompletableFuture<FileInfo> second =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 10, 20);
+    Assert.assertTrue(sorting.await(sortTimeout, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(2, partitionFilesSorter.getSortWaiters("application-1", originFileName));
+    for (CompletableFuture<FileInfo> reader : Arrays.asList(first, second)) {
+      try {
+        reader.get(sortTimeout, TimeUnit.MILLISECONDS);
+        Assert.fail("Reading a file which is still being sorted should time out.");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+    Assert.assertEquals(0, partitionFilesSorter.getSortWaiters("application-1", originFileName));
+    release.countDown();
+    partitionFilesSorter.close();
+    new File(fileInfo.getSortedPath()).delete();
+    new File(fileInfo.getIndexPath()).delete();
+  }
+
+  @Test
+  public void testSortMemoryReleasedOnFailure() throws Exception {
+    prepare(false);
+    CelebornConf conf = new CelebornConf();
+    MemoryTracker memoryTracker = MemoryTracker.instance();
+    long sortMemory = memoryTracker.getSortMemoryCounter().get();
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(memoryTracker, conf, new WorkerSource(conf));
+    // the sorter fails to open the origin file
+    clean();
+    CompletableFuture<FileInfo> info =
+        partitionFilesSorter.openStreamAsync(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    try {
+      info.get(sortTimeout, TimeUnit.MILLISECONDS);
+      Assert.fail("Sorting a missing file should fail.");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+    Assert.assertEquals(sortMemory, memoryTracker.getSortMemoryCounter().get());
+    partitionFilesSorter.close();
+    new File(fileInfo.getSortedPath()).delete();
+  }
+
+  @Test
+  public void testIndexOnWrite() throws IOException {
+    prepare(false);
+    mapIndexBuilder.writeTo(fileInfo.getMapIndexPath());
+    CelebornConf conf = new CelebornConf();
+    PartitionFilesSorter partitionFilesSorter =
+        new PartitionFilesSorter(MemoryTracker.instance(), conf, new WorkerSource(conf));
+    FileInfo info =
+        partitionFilesSorter.openStream(
+            "application-1", originFileName, fileWriter.getFileInfo(), 5, 10);
+    Assert.assertEquals(originFileName, info.getFilePath());
+    Assert.assertNotNull(info.getSegments());
+    Assert.assertFalse(new File(fileInfo.getSortedPath()).exists());
+
+    long expectedLength = 0;
+    for (int mapId = 5; mapId < 10; mapId++) {
+      expectedLength += mapSizes.getOrDefault(mapId, 0L);
+    }
+    Assert.assertEquals(expectedLength, info.getFileLength());
+
+    FileManagedBuffers buffers =
+        new FileManagedBuffers(info, new TransportConf("shuffle", new CelebornConf()));
+    for (int i = 0; i < buffers.numChunks(); i++) {
+      ByteBuffer chunk = buffers.chunk(i, 0, Integer.MAX_VALUE).nioByteBuffer();
+      byte[] batchHeader = new byte[16];
+      while (chunk.hasRemaining()) {
+        chunk.get(batchHeader);
+        int mapId = Platform.getInt(batchHeader, Platform.BYTE_ARRAY_OFFSET);
+        int size = Platform.getInt(batchHeader, Platform.BYTE_ARRAY_OFFSET + 12);
+        Assert.assertTrue(mapId >= 5 && mapId < 10);
+        chunk.position(chunk.position() + size);
+      }
+    }
+    partitionFilesSorter.close();
+    new File(fileInfo.getMapIndexPath()).delete();
+    clean();
+  }
+
   @Test
   @Ignore
   public void testLargeFile() throws InterruptedException, IOException {
@@ -52,4 +52,8 @@ class ClusterReadWriteTestWithZSTD extends AnyFunSuite with MiniClusterFeature
     testReadWriteByCode(CompressionCodec.ZSTD)
   }
 
+  test(s"test MiniCluster With ZSTD dictionary") {
+    testReadWriteWithDictionary()
+  }
+
 }
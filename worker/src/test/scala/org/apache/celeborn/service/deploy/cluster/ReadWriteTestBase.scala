@@ -94,4 +94,63 @@ trait ReadWriteTestBase extends Logging {
 
   }
 
+  def testReadWriteWithDictionary(): Unit = {
+    val APP = "app-dictionary"
+
+    val clientConf = new CelebornConf()
+      .set("celeborn.master.endpoints", s"localhost:$masterPort")
+      .set("celeborn.shuffle.compression.codec", CompressionCodec.ZSTD.name)
+      .set("celeborn.shuffle.compression.zstd.dictionary.enabled", "true")
+      .set("celeborn.shuffle.compression.zstd.dictionary.sampleSize", "64k")
+      .set("celeborn.shuffle.compression.zstd.dictionary.size", "4k")
+    val lifecycleManager = new LifecycleManager(APP, clientConf)
+    // the mapper trains the dictionary, the reducer is another executor which only gets it from
+    // the LifecycleManager together with the file groups
+    val mapperClient = new ShuffleClientImpl(clientConf, UserIdentifier("mock", "mock"))
+    mapperClient.setupMetaServiceRef(lifecycleManager.self)
+    val reducerClient = new ShuffleClientImpl(clientConf, UserIdentifier("mock", "mock"))
+    reducerClient.setupMetaServiceRef(lifecycleManager.self)
+
+    val expected = new ByteArrayOutputStream()
+    var batches = 0
+    def pushBatch(): Unit = {
+      val builder = new StringBuilder()
+      (0 until 20).foreach { i =>
+        val key = batches * 20 + i
+        builder.append(s"""{"key": $key, "name": "user-${key % 97}", """)
+        builder.append(s""""city": "city-${key % 13}"}\n""")
+      }
+      val data = builder.toString.getBytes(StandardCharsets.UTF_8)
+      mapperClient.pushData(APP, 1, 0, 0, 0, data, 0, data.length, 1, 1)
+      expected.write(data)
+      batches += 1
+    }
+
+    // the batches before the dictionary arrives are compressed without it
+    val deadline = System.currentTimeMillis() + 30000
+    while (mapperClient.getShuffleDictionary(1) == null &&
+      System.currentTimeMillis() < deadline) {
+      pushBatch()
+    }
+    Assert.assertNotNull(mapperClient.getShuffleDictionary(1))
+    (0 until 100).foreach(_ => pushBatch())
+    mapperClient.mapperEnd(APP, 1, 0, 0, 1)
+
+    val inputStream = reducerClient.readPartition(APP, 1, 0, 0)
+    val outputStream = new ByteArrayOutputStream()
+    val buf = new Array[Byte](4096)
+    var read = inputStream.read(buf, 0, buf.length)
+    while (read != -1) {
+      outputStream.write(buf, 0, read)
+      read = inputStream.read(buf, 0, buf.length)
+    }
+    inputStream.close()
+    Assert.assertArrayEquals(expected.toByteArray, outputStream.toByteArray)
+    Assert.assertNull(reducerClient.getShuffleDictionary(1))
+
+    mapperClient.shutDown()
+    reducerClient.shutDown()
+    lifecycleManager.rpcEnv.shutdown()
+  }
+
 }